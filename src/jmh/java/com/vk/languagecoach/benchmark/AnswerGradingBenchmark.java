@@ -0,0 +1,65 @@
+package com.vk.languagecoach.benchmark;
+
+import com.vk.languagecoach.dto.request.GradeAnswerRequest;
+import com.vk.languagecoach.dto.request.GradeRequest;
+import com.vk.languagecoach.dto.response.ExerciseResponse;
+import com.vk.languagecoach.dto.response.GradeResponse;
+import com.vk.languagecoach.mapper.ExerciseMapper;
+import com.vk.languagecoach.model.Exercises;
+import com.vk.languagecoach.service.grading.AnswerIndex;
+import com.vk.languagecoach.service.grading.GradingService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Grades a whole quiz of mixed exact, accented, misspelled and wrong answers against the answer index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AnswerGradingBenchmark {
+
+    private static final String[] ANSWERS = {"читав", " Чита́в ", "чітав", "писала"};
+
+    @Param({"10", "100"})
+    private int exerciseCount;
+
+    private GradingService gradingService;
+    private GradeRequest gradeRequest;
+
+    @Setup
+    public void setUp() {
+        Exercises exercises = BenchmarkData.exercises(exerciseCount);
+        AnswerIndex answerIndex = new AnswerIndex(100_000, 2);
+        answerIndex.index(exercises);
+        // Every exercise is indexed, the store is never consulted
+        gradingService = new GradingService(answerIndex, null);
+        List<ExerciseResponse> responses = new ExerciseMapper().mapToExerciseResponses(exercises);
+
+        List<GradeAnswerRequest> answers = new ArrayList<>();
+        for (int i = 0; i < responses.size(); i++) {
+            GradeAnswerRequest answer = new GradeAnswerRequest();
+            answer.setExerciseId(responses.get(i).getId());
+            answer.setPosition(1);
+            answer.setAnswer(ANSWERS[i % ANSWERS.length]);
+            answers.add(answer);
+        }
+        gradeRequest = new GradeRequest();
+        gradeRequest.setAnswers(answers);
+    }
+
+    @Benchmark
+    public GradeResponse grade() {
+        return gradingService.grade(gradeRequest);
+    }
+}
@@ -0,0 +1,46 @@
+package com.vk.languagecoach.benchmark;
+
+import com.vk.languagecoach.service.AudioZipWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AudioZipWriterBenchmark {
+
+    @Param({"10", "100"})
+    private int chunkCount;
+
+    @Param({"16384", "262144"})
+    private int chunkBytes;
+
+    private byte[] audio;
+
+    @Setup
+    public void setUp() {
+        audio = BenchmarkData.audio(chunkBytes);
+    }
+
+    @Benchmark
+    public long writeArchive() throws IOException {
+        AudioZipWriter zipWriter = new AudioZipWriter(OutputStream.nullOutputStream());
+        for (int i = 0; i < chunkCount; i++) {
+            zipWriter.accept("0-" + i + ".mp3", new ByteArrayInputStream(audio));
+        }
+        zipWriter.finish();
+        zipWriter.close();
+        return zipWriter.getAudioBytes();
+    }
+}
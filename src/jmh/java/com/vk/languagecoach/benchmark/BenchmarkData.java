@@ -0,0 +1,84 @@
+package com.vk.languagecoach.benchmark;
+
+import com.vk.languagecoach.dto.AIProvider;
+import com.vk.languagecoach.dto.ExerciseDifficulty;
+import com.vk.languagecoach.dto.request.ExerciseRequest;
+import com.vk.languagecoach.model.Exercise;
+import com.vk.languagecoach.model.ExerciseAnswer;
+import com.vk.languagecoach.model.ExerciseHint;
+import com.vk.languagecoach.model.Exercises;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Deterministic payloads shared by the benchmarks and the fake provider.
+ */
+final class BenchmarkData {
+
+    static final int ANSWERS_PER_EXERCISE = 2;
+    static final int HINTS_PER_EXERCISE = 2;
+
+    private BenchmarkData() {
+    }
+
+    static ExerciseRequest exerciseRequest(AIProvider provider, int total) {
+        return ExerciseRequest.builder()
+                .provider(provider)
+                .exerciseLanguage("Ukrainian")
+                .userLanguage("English")
+                .topic("Past tense of imperfective verbs")
+                .total(total)
+                .difficulty(ExerciseDifficulty.B1)
+                .includeBaseForm(true)
+                .includeHints(true)
+                .build();
+    }
+
+    static Exercises exercises(int count) {
+        List<Exercise> exercises = new ArrayList<>(count);
+        List<ExerciseAnswer> answers = new ArrayList<>(count * ANSWERS_PER_EXERCISE);
+        List<ExerciseHint> hints = new ArrayList<>(count * HINTS_PER_EXERCISE);
+        for (int id = 1; id <= count; id++) {
+            Exercise exercise = new Exercise();
+            exercise.setExerciseId(id);
+            exercise.setText("Вчора я ___ (читати) книгу номер " + id + ", а потім ___ (писати) лист.");
+            exercises.add(exercise);
+
+            for (int position = 1; position <= ANSWERS_PER_EXERCISE; position++) {
+                ExerciseAnswer answer = new ExerciseAnswer();
+                answer.setExerciseId(id);
+                answer.setPosition(position);
+                answer.setAnswer(position == 1 ? "читав" : "писав");
+                answer.setExplanation("Past tense, masculine singular of an imperfective verb " + id);
+                answers.add(answer);
+            }
+            for (int evidence = 1; evidence <= HINTS_PER_EXERCISE; evidence++) {
+                ExerciseHint hint = new ExerciseHint();
+                hint.setExerciseId(id);
+                hint.setEvidence(evidence * 40);
+                hint.setHint("The action happened yesterday and was ongoing " + id);
+                hints.add(hint);
+            }
+        }
+
+        Exercises result = new Exercises();
+        result.setExercises(exercises);
+        result.setAnswers(answers);
+        result.setHints(hints);
+        return result;
+    }
+
+    static byte[] audio(int size) {
+        byte[] audio = new byte[size];
+        // Compressed audio does not deflate well, pseudo-random bytes keep the ZIP honest
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < size; i++) {
+            seed ^= seed << 13;
+            seed ^= seed >>> 7;
+            seed ^= seed << 17;
+            audio[i] = (byte) seed;
+        }
+        return audio;
+    }
+}
@@ -0,0 +1,139 @@
+package com.vk.languagecoach.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vk.languagecoach.LanguagecoachApplication;
+import com.vk.languagecoach.dto.AIProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives the REST endpoints of a fully started application whose providers point at {@link FakeOpenAIServer}.
+ * Caches and the exercise pool are disabled so that every call goes through the provider path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(16)
+public class EndToEndBenchmark {
+
+    private static final String BOUNDARY = "benchmark-boundary";
+
+    @Param({"0", "50"})
+    private int latencyMillis;
+
+    @Param({"10", "50"})
+    private int exerciseCount;
+
+    @Param({"65536"})
+    private int audioBytes;
+
+    private FakeOpenAIServer provider;
+    private ConfigurableApplicationContext application;
+    private HttpClient httpClient;
+    private String baseUrl;
+    private byte[] exerciseBody;
+    private byte[] textToSpeechBody;
+    private byte[] speechToTextBody;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        provider = new FakeOpenAIServer(Duration.ofMillis(latencyMillis), exerciseCount, audioBytes);
+        application = new SpringApplicationBuilder(LanguagecoachApplication.class)
+                .properties(
+                        "server.port=0",
+                        "logging.level.root=WARN",
+                        "openai.api-key=benchmark",
+                        "openai.base-url=" + provider.baseUrl(),
+                        "groq.api-key=benchmark",
+                        "groq.base-url=" + provider.baseUrl(),
+                        "exercises.pool.enabled=false",
+                        "speech-to-text.cache.enabled=false",
+                        "text-to-speech.cache.enabled=false",
+                        "ai.http.retry.max-retries=0",
+                        "ai.routing.hedging.enabled=false",
+                        "ai.rate-limit.enabled=false")
+                .run();
+        int port = ((WebServerApplicationContext) application).getWebServer().getPort();
+        baseUrl = "http://localhost:" + port;
+        httpClient = HttpClient.newBuilder().executor(Executors.newVirtualThreadPerTaskExecutor()).build();
+
+        ObjectMapper objectMapper = new ObjectMapper();
+        exerciseBody = objectMapper.writeValueAsBytes(BenchmarkData.exerciseRequest(AIProvider.OPENAI, exerciseCount));
+        textToSpeechBody = objectMapper.writeValueAsBytes(Map.of(
+                "texts", List.of(Map.of("chunks", List.of("Вчора я читав книгу.", "А потім писав лист."))),
+                "speed", 1.0));
+        speechToTextBody = multipart(BenchmarkData.audio(audioBytes));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        httpClient.close();
+        application.close();
+        provider.close();
+    }
+
+    @Benchmark
+    public byte[] exercises() throws Exception {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/exercises"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(exerciseBody)));
+    }
+
+    @Benchmark
+    public byte[] textToSpeech() throws Exception {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/text-to-speech"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(textToSpeechBody)));
+    }
+
+    @Benchmark
+    public byte[] speechToText() throws Exception {
+        return send(HttpRequest.newBuilder(URI.create(baseUrl + "/api/speech-to-text?language=uk&provider=openai"))
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(speechToTextBody)));
+    }
+
+    private byte[] send(HttpRequest.Builder request) throws Exception {
+        HttpResponse<byte[]> response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode() + ": "
+                    + new String(response.body(), StandardCharsets.UTF_8));
+        }
+        return response.body();
+    }
+
+    private static byte[] multipart(byte[] audio) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(audio.length + 256);
+        body.write(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"files\"; filename=\"recording.mp3\"\r\n"
+                + "Content-Type: audio/mpeg\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        body.write(audio);
+        body.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.US_ASCII));
+        return body.toByteArray();
+    }
+}
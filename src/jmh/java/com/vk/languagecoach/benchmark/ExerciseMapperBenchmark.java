@@ -0,0 +1,39 @@
+package com.vk.languagecoach.benchmark;
+
+import com.vk.languagecoach.dto.response.ExerciseResponse;
+import com.vk.languagecoach.mapper.ExerciseMapper;
+import com.vk.languagecoach.model.Exercises;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExerciseMapperBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int exerciseCount;
+
+    private ExerciseMapper mapper;
+    private Exercises exercises;
+
+    @Setup
+    public void setUp() {
+        mapper = new ExerciseMapper();
+        exercises = BenchmarkData.exercises(exerciseCount);
+    }
+
+    @Benchmark
+    public List<ExerciseResponse> mapToExerciseResponses() {
+        return mapper.mapToExerciseResponses(exercises);
+    }
+}
@@ -0,0 +1,57 @@
+package com.vk.languagecoach.benchmark;
+
+import com.vk.languagecoach.dto.AIProvider;
+import com.vk.languagecoach.dto.ExerciseDifficulty;
+import com.vk.languagecoach.entity.ExerciseSetEntity;
+import com.vk.languagecoach.mapper.ExerciseMapper;
+import com.vk.languagecoach.service.search.ExerciseSearchIndex;
+import com.vk.languagecoach.service.search.SearchDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ranks the exercise sets of an index holding {@code setCount} sets of ten exercises each.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ExerciseSearchBenchmark {
+
+    @Param({"1000", "10000"})
+    private int setCount;
+
+    private ExerciseSearchIndex exerciseSearchIndex;
+
+    @Setup
+    public void setUp() {
+        ExerciseMapper exerciseMapper = new ExerciseMapper();
+        ExerciseSetEntity exerciseSet = exerciseMapper.mapToExerciseSetEntity(
+                BenchmarkData.exerciseRequest(AIProvider.OPENAI, 10), BenchmarkData.exercises(10));
+        SearchDocument document = SearchDocument.of(exerciseSet);
+
+        exerciseSearchIndex = new ExerciseSearchIndex();
+        for (long id = 1; id <= setCount; id++) {
+            exerciseSearchIndex.add(new SearchDocument(id, document.createdAt(), document.exerciseLanguage(),
+                    document.userLanguage(), document.difficulty(), document.terms(), document.length()));
+        }
+    }
+
+    @Benchmark
+    public List<ExerciseSearchIndex.Hit> search() {
+        return exerciseSearchIndex.search("past tense imperfective verbs", "Ukrainian", null, null, 10);
+    }
+
+    @Benchmark
+    public List<ExerciseSearchIndex.Hit> searchInflected() {
+        return exerciseSearchIndex.search("читала", "Ukrainian", null, ExerciseDifficulty.B1, 10);
+    }
+}
@@ -0,0 +1,88 @@
+package com.vk.languagecoach.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+/**
+ * In-process OpenAI-compatible server answering chat completions, speech and transcription calls with
+ * canned payloads after a fixed latency, so that benchmarks measure our own code rather than a provider.
+ */
+final class FakeOpenAIServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final Duration latency;
+    private final byte[] completion;
+    private final byte[] speech;
+    private final byte[] transcription;
+
+    FakeOpenAIServer(Duration latency, int exerciseCount, int audioBytes) throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper();
+        this.latency = latency;
+        this.completion = objectMapper.writeValueAsBytes(completion(objectMapper, exerciseCount));
+        this.speech = BenchmarkData.audio(audioBytes);
+        this.transcription = objectMapper.writeValueAsBytes(Map.of("text", "Вчора я читав книгу."));
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        this.server.createContext("/v1/chat/completions", exchange -> respond(exchange, "application/json", completion));
+        this.server.createContext("/v1/audio/speech", exchange -> respond(exchange, "audio/mpeg", speech));
+        this.server.createContext("/v1/audio/transcriptions",
+                exchange -> respond(exchange, "application/json", transcription));
+        this.server.start();
+    }
+
+    String baseUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/v1";
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void respond(HttpExchange exchange, String contentType, byte[] body) throws IOException {
+        try (exchange; InputStream requestBody = exchange.getRequestBody()) {
+            requestBody.transferTo(OutputStream.nullOutputStream());
+            if (!latency.isZero()) {
+                Thread.sleep(latency);
+            }
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static Map<String, Object> completion(ObjectMapper objectMapper, int exerciseCount) throws IOException {
+        String content = objectMapper.writeValueAsString(BenchmarkData.exercises(exerciseCount));
+        int completionTokens = content.getBytes(StandardCharsets.UTF_8).length / 4;
+        return Map.of(
+                "id", "chatcmpl-benchmark",
+                "object", "chat.completion",
+                "created", 0,
+                "model", "benchmark",
+                "choices", List.of(Map.of(
+                        "index", 0,
+                        "finish_reason", "stop",
+                        "message", Map.of("role", "assistant", "content", content))),
+                "usage", Map.of(
+                        "prompt_tokens", 1500,
+                        "completion_tokens", completionTokens,
+                        "total_tokens", 1500 + completionTokens));
+    }
+}
@@ -0,0 +1,42 @@
+package com.vk.languagecoach.benchmark;
+
+import com.vk.languagecoach.dto.AIProvider;
+import com.vk.languagecoach.dto.request.ExerciseRequest;
+import com.vk.languagecoach.service.ExercisePromptBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PromptRenderingBenchmark {
+
+    private ExercisePromptBuilder cachingBuilder;
+    private ExercisePromptBuilder renderingBuilder;
+    private ExerciseRequest request;
+
+    @Setup
+    public void setUp() {
+        cachingBuilder = new ExercisePromptBuilder(1000);
+        // Without memoization every call renders the per-request suffix
+        renderingBuilder = new ExercisePromptBuilder(0);
+        request = BenchmarkData.exerciseRequest(AIProvider.OPENAI, 20);
+    }
+
+    @Benchmark
+    public ExercisePromptBuilder.ExercisePrompt cached() {
+        return cachingBuilder.build(request);
+    }
+
+    @Benchmark
+    public ExercisePromptBuilder.ExercisePrompt rendered() {
+        return renderingBuilder.build(request);
+    }
+}
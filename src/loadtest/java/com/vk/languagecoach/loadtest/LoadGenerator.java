@@ -0,0 +1,310 @@
+package com.vk.languagecoach.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load generator for the exercise, text-to-speech and speech-to-text endpoints. A fixed number of
+ * workers start requests on a schedule derived from the target rate; latency is measured from the scheduled
+ * start, so a saturated service shows up as latency instead of silently lowering the offered load.
+ * Run against an instance with {@code replay.enabled=true} and {@code text-to-speech.provider=replay}
+ * to size nodes without calling a live provider.
+ *
+ * <pre>
+ * ./gradlew loadTest -PloadTestArgs="--rps 20 --duration 2m --mix exercises=2,tts=1,stt=1"
+ * </pre>
+ */
+public final class LoadGenerator {
+
+    private static final double[] PERCENTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Options options;
+    private final HttpClient httpClient;
+    private final byte[] audio;
+    private final List<Endpoint> schedule;
+    private final Map<Endpoint, Recorder> recorders = new LinkedHashMap<>();
+    private final AtomicLong tickets = new AtomicLong();
+
+    private LoadGenerator(Options options) throws IOException {
+        this.options = options;
+        this.httpClient = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        this.audio = options.audio != null ? Files.readAllBytes(options.audio) : silentAudio();
+        this.schedule = new ArrayList<>();
+        options.mix.forEach((endpoint, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                schedule.add(endpoint);
+            }
+            recorders.put(endpoint, new Recorder());
+        });
+        if (schedule.isEmpty()) {
+            throw new IllegalArgumentException("The mix must include at least one endpoint");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        new LoadGenerator(options).run();
+    }
+
+    private void run() throws InterruptedException {
+        System.out.printf(Locale.ROOT, "Driving %s at %.1f rps for %s (warmup %s) with %d workers, mix %s%n",
+                options.baseUrl, options.rps, options.duration, options.warmup, options.concurrency, options.mix);
+
+        long intervalNanos = (long) (1_000_000_000L / options.rps);
+        long start = System.nanoTime() + intervalNanos;
+        long measureFrom = start + options.warmup.toNanos();
+        long end = measureFrom + options.duration.toNanos();
+
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < options.concurrency; i++) {
+                workers.submit(() -> work(start, intervalNanos, measureFrom, end));
+            }
+        }
+        report(Duration.ofNanos(end - measureFrom));
+    }
+
+    private Void work(long start, long intervalNanos, long measureFrom, long end) throws InterruptedException {
+        while (true) {
+            long ticket = tickets.getAndIncrement();
+            long scheduled = start + ticket * intervalNanos;
+            if (scheduled >= end) {
+                return null;
+            }
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                Thread.sleep(Duration.ofNanos(wait));
+            }
+
+            Endpoint endpoint = schedule.get((int) (ticket % schedule.size()));
+            boolean success;
+            try {
+                HttpResponse<Void> response = httpClient.send(request(endpoint, ticket),
+                        HttpResponse.BodyHandlers.discarding());
+                success = response.statusCode() / 100 == 2;
+            } catch (IOException e) {
+                success = false;
+            }
+            if (scheduled >= measureFrom) {
+                recorders.get(endpoint).record(System.nanoTime() - scheduled, success);
+            }
+        }
+    }
+
+    private HttpRequest request(Endpoint endpoint, long ticket) {
+        // Distinct keys bound the hit rate of the service's caches and the exercise pool
+        long key = ticket % options.distinctKeys;
+        return switch (endpoint) {
+            case EXERCISES -> HttpRequest.newBuilder(uri("/api/exercises"))
+                    .timeout(options.timeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("""
+                            {"provider":"%s","exerciseLanguage":"Ukrainian","userLanguage":"English",\
+                            "topic":"Past tense %d","total":%d,"difficulty":"B1",\
+                            "includeBaseForm":true,"includeHints":true}"""
+                            .formatted(options.provider, key, options.exercises)))
+                    .build();
+            case TTS -> HttpRequest.newBuilder(uri("/api/text-to-speech"))
+                    .timeout(options.timeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("""
+                            {"texts":[{"chunks":["Вчора я читав книгу номер %d."]}],"speed":1.0}"""
+                            .formatted(key)))
+                    .build();
+            case STT -> {
+                String boundary = UUID.randomUUID().toString();
+                yield HttpRequest.newBuilder(uri("/api/speech-to-text?language=uk&provider=" + options.provider))
+                        .timeout(options.timeout)
+                        .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(multipart(boundary, key)))
+                        .build();
+            }
+        };
+    }
+
+    private byte[] multipart(String boundary, long key) {
+        byte[] head = ("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"files\"; filename=\"recording-" + key + ".mp3\"\r\n"
+                + "Content-Type: audio/mpeg\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+        // The key is appended to the audio so that distinct keys have distinct fingerprints
+        byte[] suffix = Long.toString(key).getBytes(StandardCharsets.UTF_8);
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+
+        byte[] body = new byte[head.length + audio.length + suffix.length + tail.length];
+        System.arraycopy(head, 0, body, 0, head.length);
+        System.arraycopy(audio, 0, body, head.length, audio.length);
+        System.arraycopy(suffix, 0, body, head.length + audio.length, suffix.length);
+        System.arraycopy(tail, 0, body, head.length + audio.length + suffix.length, tail.length);
+        return body;
+    }
+
+    private URI uri(String path) {
+        return URI.create(options.baseUrl + path);
+    }
+
+    private void report(Duration measured) {
+        System.out.printf(Locale.ROOT, "%n%-10s %9s %8s %10s %10s %10s %10s %10s %10s%n",
+                "endpoint", "requests", "errors", "rps", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        Recorder total = new Recorder();
+        recorders.forEach((endpoint, recorder) -> {
+            print(endpoint.name().toLowerCase(Locale.ROOT), recorder, measured);
+            total.addAll(recorder);
+        });
+        print("total", total, measured);
+    }
+
+    private void print(String name, Recorder recorder, Duration measured) {
+        long[] latencies = recorder.sorted();
+        StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "%-10s %9d %8d %10.2f",
+                name, latencies.length, recorder.errors(), latencies.length / (measured.toNanos() / 1e9)));
+        for (double percentile : PERCENTILES) {
+            line.append(String.format(Locale.ROOT, " %10.1f", millis(percentile(latencies, percentile))));
+        }
+        line.append(String.format(Locale.ROOT, " %10.1f", millis(latencies.length == 0 ? 0 : latencies[latencies.length - 1])));
+        System.out.println(line);
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static byte[] silentAudio() {
+        // Silent MPEG-1 Layer III frames, enough to look like a short recording
+        byte[] audio = new byte[417 * 100];
+        for (int frame = 0; frame < audio.length; frame += 417) {
+            audio[frame] = (byte) 0xFF;
+            audio[frame + 1] = (byte) 0xFB;
+            audio[frame + 2] = (byte) 0x90;
+        }
+        return audio;
+    }
+
+    enum Endpoint {
+        EXERCISES, TTS, STT
+    }
+
+    private static final class Recorder {
+
+        private long[] latencies = new long[1024];
+        private int size;
+        private long errors;
+
+        synchronized void record(long latencyNanos, boolean success) {
+            if (size == latencies.length) {
+                latencies = Arrays.copyOf(latencies, size * 2);
+            }
+            latencies[size++] = latencyNanos;
+            if (!success) {
+                errors++;
+            }
+        }
+
+        synchronized void addAll(Recorder other) {
+            long[] otherLatencies = other.sorted();
+            for (long latency : otherLatencies) {
+                record(latency, true);
+            }
+            errors += other.errors();
+        }
+
+        synchronized long[] sorted() {
+            long[] sorted = Arrays.copyOf(latencies, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+
+        synchronized long errors() {
+            return errors;
+        }
+    }
+
+    private record Options(String baseUrl, double rps, Duration duration, Duration warmup, int concurrency,
+                           Map<Endpoint, Integer> mix, String provider, int exercises, long distinctKeys,
+                           Duration timeout, Path audio) {
+
+        static Options parse(String[] args) {
+            Map<String, String> values = new LinkedHashMap<>(Map.of(
+                    "base-url", "http://localhost:8080",
+                    "rps", "10",
+                    "duration", "60s",
+                    "warmup", "10s",
+                    "concurrency", "64",
+                    "mix", "exercises=1,tts=1,stt=1",
+                    "provider", "replay",
+                    "exercises", "10",
+                    "distinct-keys", "1000",
+                    "timeout", "60s"));
+            for (int i = 0; i < args.length; i++) {
+                if (!args[i].startsWith("--") || i + 1 == args.length) {
+                    throw new IllegalArgumentException("Expected --name value, got: " + args[i]);
+                }
+                values.put(args[i].substring(2), args[++i]);
+            }
+
+            Map<Endpoint, Integer> mix = new LinkedHashMap<>();
+            for (String entry : values.get("mix").split(",")) {
+                String[] parts = entry.split("=");
+                mix.put(Endpoint.valueOf(parts[0].trim().toUpperCase(Locale.ROOT)),
+                        parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1);
+            }
+
+            return new Options(
+                    values.get("base-url").replaceAll("/+$", ""),
+                    Double.parseDouble(values.get("rps")),
+                    duration(values.get("duration")),
+                    duration(values.get("warmup")),
+                    Integer.parseInt(values.get("concurrency")),
+                    mix,
+                    values.get("provider"),
+                    Integer.parseInt(values.get("exercises")),
+                    Long.parseLong(values.get("distinct-keys")),
+                    duration(values.get("timeout")),
+                    values.containsKey("audio") ? Path.of(values.get("audio")) : null);
+        }
+
+        private static Duration duration(String value) {
+            // Accepts 500ms, 30s, 5m or an ISO-8601 duration
+            String lower = value.trim().toLowerCase(Locale.ROOT);
+            if (lower.startsWith("p")) {
+                return Duration.parse(value.trim());
+            }
+            if (lower.endsWith("ms")) {
+                return Duration.ofMillis(Long.parseLong(lower.substring(0, lower.length() - 2)));
+            }
+            if (lower.endsWith("s")) {
+                return Duration.ofSeconds(Long.parseLong(lower.substring(0, lower.length() - 1)));
+            }
+            if (lower.endsWith("m")) {
+                return Duration.ofMinutes(Long.parseLong(lower.substring(0, lower.length() - 1)));
+            }
+            return Duration.ofSeconds(Long.parseLong(lower));
+        }
+    }
+}
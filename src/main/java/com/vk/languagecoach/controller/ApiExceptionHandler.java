@@ -0,0 +1,38 @@
+package com.vk.languagecoach.controller;
+
+import com.vk.languagecoach.service.ai.RateLimitExceededException;
+import com.vk.languagecoach.service.budget.TokenBudgetExceededException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+@RestControllerAdvice
+@Slf4j
+public class ApiExceptionHandler {
+
+    @ExceptionHandler(RateLimitExceededException.class)
+    public ResponseEntity<ProblemDetail> handleRateLimitExceeded(RateLimitExceededException e) {
+        log.warn(e.getMessage());
+        // Retry-After is in whole seconds, round up so that clients do not come back too early
+        long retryAfterSeconds = (e.getRetryAfter().toMillis() + 999) / 1000;
+
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(HttpStatus.TOO_MANY_REQUESTS,
+                "Provider " + e.getProvider() + " is at capacity, retry later");
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds))
+                .body(problem);
+    }
+
+    @ExceptionHandler(TokenBudgetExceededException.class)
+    public ResponseEntity<ProblemDetail> handleTokenBudgetExceeded(TokenBudgetExceededException e) {
+        log.warn(e.getMessage());
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(HttpStatus.UNPROCESSABLE_ENTITY,
+                "At most " + e.getMaxExercises() + " exercises can currently be generated within "
+                        + e.getLatencySlo().toSeconds() + " seconds, requested " + e.getRequested());
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(problem);
+    }
+}
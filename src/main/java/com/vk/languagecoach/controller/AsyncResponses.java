@@ -0,0 +1,48 @@
+package com.vk.languagecoach.controller;
+
+import org.springframework.web.context.request.async.AsyncRequestTimeoutException;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Adapts service futures to async request handling. Unlike returning the future itself, the request gets its own
+ * timeout, and the future is cancelled when the request times out or the connection fails, so that the work
+ * behind it stops instead of finishing for nobody.
+ */
+final class AsyncResponses {
+
+    private AsyncResponses() {
+    }
+
+    /**
+     * The future must be the one doing the work, cancelling a stage derived from it would not stop it. The
+     * response is therefore built here, once the future completes.
+     */
+    static <S, T> DeferredResult<T> of(CompletableFuture<S> future, Function<? super S, T> response,
+                                       Duration timeout) {
+        DeferredResult<T> result = new DeferredResult<>(timeout.toMillis());
+        result.onTimeout(() -> {
+            // Set before cancelling, the cancelled future must not turn the timeout into a server error
+            result.setErrorResult(new AsyncRequestTimeoutException());
+            future.cancel(true);
+        });
+        result.onError(error -> future.cancel(true));
+        future.whenComplete((value, error) -> {
+            if (error != null) {
+                result.setErrorResult(error instanceof CompletionException && error.getCause() != null ?
+                        error.getCause() : error);
+                return;
+            }
+            try {
+                result.setResult(response.apply(value));
+            } catch (RuntimeException e) {
+                result.setErrorResult(e);
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,46 @@
+package com.vk.languagecoach.controller;
+
+import com.vk.languagecoach.dto.request.ExerciseBatchRequest;
+import com.vk.languagecoach.dto.response.ExerciseBatchResponse;
+import com.vk.languagecoach.mapper.ExerciseBatchMapper;
+import com.vk.languagecoach.service.job.ExerciseBatchJob;
+import com.vk.languagecoach.service.job.ExerciseBatchService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.URI;
+
+@RestController
+@RequestMapping("/api/exercises/batches")
+@RequiredArgsConstructor
+public class ExerciseBatchController {
+
+    private final ExerciseBatchService exerciseBatchService;
+
+    private final ExerciseBatchMapper exerciseBatchMapper;
+
+    @PostMapping
+    public ResponseEntity<ExerciseBatchResponse> submitBatch(@RequestBody ExerciseBatchRequest request) {
+        if (request.getRequests() == null || request.getRequests().isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        ExerciseBatchJob job = exerciseBatchService.submit(request);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/exercises/batches/" + job.getId()))
+                .body(exerciseBatchMapper.mapToExerciseBatchResponse(job));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<ExerciseBatchResponse> findBatch(@PathVariable String id) {
+        return exerciseBatchService.find(id)
+                .map(exerciseBatchMapper::mapToExerciseBatchResponse)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
@@ -1,31 +1,90 @@
 package com.vk.languagecoach.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vk.languagecoach.dto.AIProvider;
 import com.vk.languagecoach.dto.request.ExerciseRequest;
+import com.vk.languagecoach.dto.request.GradeRequest;
 import com.vk.languagecoach.dto.response.ExerciseResponse;
+import com.vk.languagecoach.dto.response.GradeResponse;
 import com.vk.languagecoach.mapper.ExerciseMapper;
-import com.vk.languagecoach.model.Exercises;
+import com.vk.languagecoach.metrics.AIMetrics;
 import com.vk.languagecoach.service.ExerciseService;
-import lombok.RequiredArgsConstructor;
+import com.vk.languagecoach.service.grading.GradingService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.Duration;
 import java.util.List;
 
+import static com.vk.languagecoach.dto.AIModelType.TEXT;
+
 @RestController
 @RequestMapping("/api/exercises")
-@RequiredArgsConstructor
 public class ExerciseController {
 
     private final ExerciseService exerciseService;
 
     private final ExerciseMapper exerciseMapper;
 
+    private final GradingService gradingService;
+
+    private final ObjectMapper objectMapper;
+
+    private final AIMetrics aiMetrics;
+
+    private final Duration requestTimeout;
+
+    public ExerciseController(ExerciseService exerciseService,
+                              ExerciseMapper exerciseMapper,
+                              GradingService gradingService,
+                              ObjectMapper objectMapper,
+                              AIMetrics aiMetrics,
+                              @Value("${exercises.request-timeout}") Duration requestTimeout) {
+        this.exerciseService = exerciseService;
+        this.exerciseMapper = exerciseMapper;
+        this.gradingService = gradingService;
+        this.objectMapper = objectMapper;
+        this.aiMetrics = aiMetrics;
+        this.requestTimeout = requestTimeout;
+    }
+
     @PostMapping
-    public ResponseEntity<List<ExerciseResponse>> generateExercises(@RequestBody ExerciseRequest exerciseRequest) {
-        Exercises exercises = exerciseService.generateExercises(exerciseRequest);
-        return ResponseEntity.ok(exerciseMapper.mapToExerciseResponses(exercises));
+    public DeferredResult<ResponseEntity<List<ExerciseResponse>>> generateExercises(
+            @RequestBody ExerciseRequest exerciseRequest) {
+        AIProvider provider = exerciseRequest.getProvider();
+        String model = exerciseService.getModel(provider);
+        return AsyncResponses.of(exerciseService.generateExercisesAsync(exerciseRequest),
+                exercises -> ResponseEntity.ok(aiMetrics.recordMapping(provider, model, TEXT,
+                        () -> exerciseMapper.mapToExerciseResponses(exercises))),
+                requestTimeout);
+    }
+
+    @PostMapping(path = "/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamExercises(@RequestBody ExerciseRequest exerciseRequest) {
+        AIProvider provider = exerciseRequest.getProvider();
+        String model = exerciseService.getModel(provider);
+        StreamingResponseBody body = outputStream -> exerciseService.streamExercises(exerciseRequest, item -> {
+            ExerciseResponse response = aiMetrics.recordMapping(provider, model, TEXT,
+                    () -> exerciseMapper.mapToExerciseResponse(item));
+            outputStream.write(objectMapper.writeValueAsBytes(response));
+            outputStream.write('\n');
+            outputStream.flush();
+        });
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    @PostMapping("/grade")
+    public ResponseEntity<GradeResponse> gradeAnswers(@RequestBody GradeRequest gradeRequest) {
+        return ResponseEntity.ok(gradingService.grade(gradeRequest));
     }
 }
@@ -0,0 +1,55 @@
+package com.vk.languagecoach.controller;
+
+import com.vk.languagecoach.dto.ExerciseDifficulty;
+import com.vk.languagecoach.dto.response.ExerciseSetResponse;
+import com.vk.languagecoach.dto.response.ExerciseSetSearchResponse;
+import com.vk.languagecoach.service.ExerciseStoreService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.data.web.PagedModel;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/exercises/sets")
+@RequiredArgsConstructor
+public class ExerciseSetController {
+
+    private final ExerciseStoreService exerciseStoreService;
+
+    @GetMapping
+    public ResponseEntity<PagedModel<ExerciseSetResponse>> findExerciseSets(
+            @RequestParam(required = false) String exerciseLanguage,
+            @RequestParam(required = false) String userLanguage,
+            @RequestParam(required = false) String topic,
+            @RequestParam(required = false) ExerciseDifficulty difficulty,
+            @PageableDefault(size = 20, sort = "createdAt", direction = Sort.Direction.DESC) Pageable pageable) {
+        return ResponseEntity.ok(new PagedModel<>(
+                exerciseStoreService.find(exerciseLanguage, userLanguage, topic, difficulty, pageable)));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<ExerciseSetSearchResponse>> searchExerciseSets(
+            @RequestParam String q,
+            @RequestParam(required = false) String exerciseLanguage,
+            @RequestParam(required = false) String userLanguage,
+            @RequestParam(required = false) ExerciseDifficulty difficulty,
+            @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(exerciseStoreService.search(q, exerciseLanguage, userLanguage, difficulty, limit));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<ExerciseSetResponse> findExerciseSet(@PathVariable Long id) {
+        return exerciseStoreService.findById(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
@@ -1,25 +1,27 @@
 package com.vk.languagecoach.controller;
 
 
+import com.vk.languagecoach.dto.AudioFormat;
 import com.vk.languagecoach.dto.request.tts.TextToSpeechRequest;
-import com.vk.languagecoach.dto.response.tts.TextToSpeechResponse;
-import com.vk.languagecoach.dto.response.tts.TextToSpeechTextChunkResponse;
-import com.vk.languagecoach.dto.response.tts.TextToSpeechTextResponse;
+import com.vk.languagecoach.metrics.AIMetrics;
+import com.vk.languagecoach.service.AudioZipWriter;
 import com.vk.languagecoach.service.TextToSpeechService;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
+
+import static com.vk.languagecoach.dto.AIModelType.TEXT_TO_SPEECH;
 
 @RestController
 @RequestMapping("/api/text-to-speech")
@@ -28,34 +30,48 @@ public class TextToSpeechController {
 
     private final TextToSpeechService textToSpeechService;
 
-    @PostMapping(produces = "application/zip")
-    public ResponseEntity<ByteArrayResource> textToSpeech(@RequestBody TextToSpeechRequest request) throws IOException {
-        byte[] zipBytes;
-
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             ZipOutputStream zipOut = new ZipOutputStream(baos)) {
+    private final AIMetrics aiMetrics;
 
-            TextToSpeechResponse response = textToSpeechService.textToSpeech(request);
-
-            for (TextToSpeechTextResponse textResponse : response.getTexts()) {
-                for (TextToSpeechTextChunkResponse chunk : textResponse.getChunks()) {
-                    ZipEntry zipEntry = new ZipEntry(chunk.getName());
-                    zipOut.putNextEntry(zipEntry);
-                    zipOut.write(chunk.getAudio().getByteArray());
-                    zipOut.closeEntry();
-                }
+    @PostMapping(produces = "application/zip")
+    public ResponseEntity<StreamingResponseBody> textToSpeech(@RequestBody TextToSpeechRequest request) {
+        StreamingResponseBody body = outputStream -> {
+            Timer.Sample sample = aiMetrics.start();
+            AudioZipWriter zipWriter = new AudioZipWriter(outputStream);
+            try {
+                textToSpeechService.textToSpeech(request, zipWriter);
+                // A failed chunk aborts the response without the central directory, so the download is truncated
+                zipWriter.finish();
+                zipWriter.close();
+                aiMetrics.recordZipAssembly(sample, textToSpeechService.getProvider(), textToSpeechService.getModel(),
+                        TEXT_TO_SPEECH, null);
+            } catch (IOException | RuntimeException e) {
+                aiMetrics.recordZipAssembly(sample, textToSpeechService.getProvider(), textToSpeechService.getModel(),
+                        TEXT_TO_SPEECH, e);
+                throw e;
             }
-
-            zipOut.finish();  // optional, safe to call
-            zipBytes = baos.toByteArray();
-        }
-
-        ByteArrayResource zipResource = new ByteArrayResource(zipBytes);
+        };
 
         return ResponseEntity.ok()
                 .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"files.zip\"")
                 .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .contentLength(zipResource.contentLength())
-                .body(zipResource);
+                .body(body);
+    }
+
+    /**
+     * Streams the audio of a single phrase with chunked transfer encoding, so that an audio element can start
+     * playback while the provider is still synthesizing.
+     */
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamSpeech(@RequestParam String text,
+                                                              @RequestParam(required = false) String instructions,
+                                                              @RequestParam(defaultValue = "1.0") double speed,
+                                                              @RequestParam(defaultValue = "mp3") String format) {
+        AudioFormat audioFormat = AudioFormat.fromString(format);
+        StreamingResponseBody body = outputStream ->
+                textToSpeechService.streamSpeech(text, instructions, speed, audioFormat, outputStream);
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(audioFormat.getMediaType()))
+                .body(body);
     }
 }
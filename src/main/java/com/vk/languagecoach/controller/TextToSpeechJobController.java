@@ -0,0 +1,82 @@
+package com.vk.languagecoach.controller;
+
+import com.vk.languagecoach.dto.request.tts.TextToSpeechRequest;
+import com.vk.languagecoach.dto.response.tts.TextToSpeechJobResponse;
+import com.vk.languagecoach.mapper.TextToSpeechJobMapper;
+import com.vk.languagecoach.service.job.TextToSpeechJob;
+import com.vk.languagecoach.service.job.TextToSpeechJobService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.net.URI;
+
+@RestController
+@RequestMapping("/api/text-to-speech/jobs")
+@RequiredArgsConstructor
+public class TextToSpeechJobController {
+
+    private final TextToSpeechJobService textToSpeechJobService;
+
+    private final TextToSpeechJobMapper textToSpeechJobMapper;
+
+    @PostMapping
+    public ResponseEntity<TextToSpeechJobResponse> submitJob(@RequestBody TextToSpeechRequest request) throws IOException {
+        TextToSpeechJob job = textToSpeechJobService.submit(request);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/text-to-speech/jobs/" + job.getId()))
+                .body(textToSpeechJobMapper.mapToTextToSpeechJobResponse(job));
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<TextToSpeechJobResponse> findJob(@PathVariable String id) {
+        return textToSpeechJobService.find(id)
+                .map(textToSpeechJobMapper::mapToTextToSpeechJobResponse)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping(path = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> subscribeToJob(@PathVariable String id) {
+        return textToSpeechJobService.find(id)
+                .map(textToSpeechJobService::subscribe)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/{id}/retry")
+    public ResponseEntity<TextToSpeechJobResponse> retryJob(@PathVariable String id) {
+        return textToSpeechJobService.find(id)
+                .map(textToSpeechJobService::retry)
+                .map(textToSpeechJobMapper::mapToTextToSpeechJobResponse)
+                .map(response -> ResponseEntity.accepted().body(response))
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Serves the finished archive from its spool file. Range requests are handled by Spring for resources,
+     * so interrupted downloads can be resumed.
+     */
+    @GetMapping(path = "/{id}/archive", produces = "application/zip")
+    public ResponseEntity<Resource> downloadArchive(@PathVariable String id) {
+        return textToSpeechJobService.find(id)
+                .map(job -> job.getStatus() == TextToSpeechJob.Status.COMPLETED ?
+                        ResponseEntity.ok()
+                                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"files.zip\"")
+                                .<Resource>body(new FileSystemResource(job.getArchive())) :
+                        ResponseEntity.status(HttpStatus.CONFLICT).<Resource>build())
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
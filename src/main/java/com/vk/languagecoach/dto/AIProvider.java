@@ -3,7 +3,7 @@ package com.vk.languagecoach.dto;
 import com.fasterxml.jackson.annotation.JsonCreator;
 
 public enum AIProvider {
-    GROQ, OPENAI;
+    GROQ, OPENAI, REPLAY, AUTO;
 
     @JsonCreator
     public static AIProvider fromString(String provider) {
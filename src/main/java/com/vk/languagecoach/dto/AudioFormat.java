@@ -0,0 +1,39 @@
+package com.vk.languagecoach.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+
+import java.util.Locale;
+
+public enum AudioFormat {
+    MP3("audio/mpeg"),
+    OPUS("audio/ogg"),
+    AAC("audio/aac"),
+    FLAC("audio/flac"),
+    WAV("audio/wav"),
+    // Raw 24 kHz 16-bit mono samples, the lowest latency option since there is no container to wait for
+    PCM("audio/L16;rate=24000;channels=1");
+
+    private final String mediaType;
+
+    AudioFormat(String mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    @JsonCreator
+    public static AudioFormat fromString(String format) {
+        try {
+            return AudioFormat.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported audio format: " + format);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,15 @@
+package com.vk.languagecoach.dto.request;
+
+import com.vk.languagecoach.dto.AIProvider;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class ExerciseBatchRequest {
+
+    private AIProvider provider;
+    private List<ExerciseRequest> requests;
+}
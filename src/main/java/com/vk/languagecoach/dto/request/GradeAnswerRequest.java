@@ -0,0 +1,13 @@
+package com.vk.languagecoach.dto.request;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+public class GradeAnswerRequest {
+
+    private String exerciseId;
+    private int position;
+    private String answer;
+}
@@ -0,0 +1,13 @@
+package com.vk.languagecoach.dto.request;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class GradeRequest {
+
+    private List<GradeAnswerRequest> answers;
+}
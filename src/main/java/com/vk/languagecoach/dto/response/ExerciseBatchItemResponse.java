@@ -0,0 +1,17 @@
+package com.vk.languagecoach.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExerciseBatchItemResponse {
+    private int index;
+    private String status;
+    private Long exerciseSetId;
+    private String error;
+}
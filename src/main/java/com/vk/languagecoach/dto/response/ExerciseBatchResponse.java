@@ -0,0 +1,27 @@
+package com.vk.languagecoach.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExerciseBatchResponse {
+    private String id;
+    private String provider;
+    private String mode;
+    private String status;
+    private String providerBatchId;
+    private int completedRequests;
+    private int failedRequests;
+    private int totalRequests;
+    private Instant createdAt;
+    private Instant finishedAt;
+    private List<ExerciseBatchItemResponse> items;
+}
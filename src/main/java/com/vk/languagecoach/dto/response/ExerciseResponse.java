@@ -12,6 +12,7 @@ import java.util.List;
 @AllArgsConstructor
 @Builder
 public class ExerciseResponse {
+    private String id;
     private String text;
     private List<ExerciseAnswerResponse> answers;
     private List<ExerciseHintResponse> hints;
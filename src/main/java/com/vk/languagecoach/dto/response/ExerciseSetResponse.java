@@ -0,0 +1,26 @@
+package com.vk.languagecoach.dto.response;
+
+import com.vk.languagecoach.dto.ExerciseDifficulty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExerciseSetResponse {
+    private Long id;
+    private String exerciseLanguage;
+    private String userLanguage;
+    private String topic;
+    private ExerciseDifficulty difficulty;
+    private boolean includeBaseForm;
+    private boolean includeHints;
+    private Instant createdAt;
+    private List<ExerciseResponse> exercises;
+}
@@ -0,0 +1,15 @@
+package com.vk.languagecoach.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExerciseSetSearchResponse {
+    private double score;
+    private ExerciseSetResponse exerciseSet;
+}
@@ -0,0 +1,18 @@
+package com.vk.languagecoach.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GradeResponse {
+    private int correct;
+    private int total;
+    private List<GradeResultResponse> results;
+}
@@ -0,0 +1,18 @@
+package com.vk.languagecoach.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GradeResultResponse {
+    private String exerciseId;
+    private int position;
+    private String verdict;
+    private String expected;
+    private Integer distance;
+}
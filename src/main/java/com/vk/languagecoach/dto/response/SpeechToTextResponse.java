@@ -9,4 +9,5 @@ public class SpeechToTextResponse {
     private String fileName;
     private String text;
     private String language;
+    private String error;
 }
@@ -1,15 +1,16 @@
 package com.vk.languagecoach.dto.response.tts;
 
 import lombok.AllArgsConstructor;
+import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
-import org.springframework.core.io.ByteArrayResource;
 
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
-public class TextToSpeechTextChunkResponse {
+@Builder
+public class TextToSpeechJobChunkResponse {
     private String name;
-    private String text;
-    private ByteArrayResource audio;
+    private String status;
+    private String error;
 }
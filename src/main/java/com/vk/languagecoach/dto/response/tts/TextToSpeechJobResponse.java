@@ -0,0 +1,24 @@
+package com.vk.languagecoach.dto.response.tts;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class TextToSpeechJobResponse {
+    private String id;
+    private String status;
+    private int completedChunks;
+    private int failedChunks;
+    private int totalChunks;
+    private Instant createdAt;
+    private Instant finishedAt;
+    private List<TextToSpeechJobChunkResponse> chunks;
+}
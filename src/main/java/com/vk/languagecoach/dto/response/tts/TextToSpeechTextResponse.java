@@ -1,14 +0,0 @@
-package com.vk.languagecoach.dto.response.tts;
-
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
-
-import java.util.List;
-
-@Data
-@NoArgsConstructor
-@AllArgsConstructor
-public class TextToSpeechTextResponse {
-    private List<TextToSpeechTextChunkResponse> chunks;
-}
@@ -0,0 +1,41 @@
+package com.vk.languagecoach.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Entity
+@Table(name = "exercise_answer")
+@Getter
+@Setter
+@NoArgsConstructor
+public class ExerciseAnswerEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "exercise_answer_seq")
+    @SequenceGenerator(name = "exercise_answer_seq", sequenceName = "exercise_answer_seq", allocationSize = 50)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "exercise_id", nullable = false)
+    private ExerciseEntity exercise;
+
+    @Column(name = "position", nullable = false)
+    private int position;
+
+    @Column(name = "answer", nullable = false, length = 1000)
+    private String answer;
+
+    @Column(name = "explanation", length = 4000)
+    private String explanation;
+}
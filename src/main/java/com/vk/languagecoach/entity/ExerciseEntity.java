@@ -0,0 +1,59 @@
+package com.vk.languagecoach.entity;
+
+import jakarta.persistence.CascadeType;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.OneToMany;
+import jakarta.persistence.OrderBy;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Entity
+@Table(name = "exercise", indexes = {
+        @Index(name = "idx_exercise_grading_id", columnList = "grading_id")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class ExerciseEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "exercise_seq")
+    @SequenceGenerator(name = "exercise_seq", sequenceName = "exercise_seq", allocationSize = 50)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "exercise_set_id", nullable = false)
+    private ExerciseSetEntity exerciseSet;
+
+    @Column(name = "position", nullable = false)
+    private int position;
+
+    @Column(name = "text", nullable = false, length = 4000)
+    private String text;
+
+    // The answer index id, so that exercises evicted from the index can be graded from the store
+    @Column(name = "grading_id", length = 32)
+    private String gradingId;
+
+    @OneToMany(mappedBy = "exercise", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("position")
+    private List<ExerciseAnswerEntity> answers = new ArrayList<>();
+
+    @OneToMany(mappedBy = "exercise", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("evidence")
+    private List<ExerciseHintEntity> hints = new ArrayList<>();
+}
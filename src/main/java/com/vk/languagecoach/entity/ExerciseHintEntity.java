@@ -0,0 +1,38 @@
+package com.vk.languagecoach.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Entity
+@Table(name = "exercise_hint")
+@Getter
+@Setter
+@NoArgsConstructor
+public class ExerciseHintEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "exercise_hint_seq")
+    @SequenceGenerator(name = "exercise_hint_seq", sequenceName = "exercise_hint_seq", allocationSize = 50)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "exercise_id", nullable = false)
+    private ExerciseEntity exercise;
+
+    @Column(name = "evidence", nullable = false)
+    private int evidence;
+
+    @Column(name = "hint", nullable = false, length = 4000)
+    private String hint;
+}
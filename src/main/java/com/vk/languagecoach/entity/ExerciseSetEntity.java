@@ -0,0 +1,70 @@
+package com.vk.languagecoach.entity;
+
+import com.vk.languagecoach.dto.AIProvider;
+import com.vk.languagecoach.dto.ExerciseDifficulty;
+import jakarta.persistence.CascadeType;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.OneToMany;
+import jakarta.persistence.OrderBy;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+@Entity
+@Table(name = "exercise_set", indexes = {
+        @Index(name = "idx_exercise_set_lookup", columnList = "exercise_language, user_language, topic, difficulty"),
+        @Index(name = "idx_exercise_set_created_at", columnList = "created_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class ExerciseSetEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "exercise_set_seq")
+    @SequenceGenerator(name = "exercise_set_seq", sequenceName = "exercise_set_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "exercise_language", nullable = false)
+    private String exerciseLanguage;
+
+    @Column(name = "user_language", nullable = false)
+    private String userLanguage;
+
+    @Column(name = "topic", nullable = false, length = 1000)
+    private String topic;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "difficulty")
+    private ExerciseDifficulty difficulty;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "provider")
+    private AIProvider provider;
+
+    @Column(name = "include_base_form", nullable = false)
+    private boolean includeBaseForm;
+
+    @Column(name = "include_hints", nullable = false)
+    private boolean includeHints;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @OneToMany(mappedBy = "exerciseSet", cascade = CascadeType.ALL, orphanRemoval = true)
+    @OrderBy("position")
+    private List<ExerciseEntity> exercises = new ArrayList<>();
+}
@@ -0,0 +1,41 @@
+package com.vk.languagecoach.mapper;
+
+import com.vk.languagecoach.dto.response.ExerciseBatchItemResponse;
+import com.vk.languagecoach.dto.response.ExerciseBatchResponse;
+import com.vk.languagecoach.service.job.ExerciseBatchJob;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+public class ExerciseBatchMapper {
+
+    public ExerciseBatchResponse mapToExerciseBatchResponse(ExerciseBatchJob job) {
+        List<ExerciseBatchItemResponse> items = job.getItems().stream()
+                .map(item -> ExerciseBatchItemResponse.builder()
+                        .index(item.getIndex())
+                        .status(item.getStatus().name())
+                        .exerciseSetId(item.getExerciseSetId())
+                        .error(item.getError())
+                        .build())
+                .toList();
+
+        return ExerciseBatchResponse.builder()
+                .id(job.getId())
+                .provider(job.getProvider().toString())
+                .mode(job.getMode().name())
+                .status(job.getStatus().name())
+                .providerBatchId(job.getProviderBatchId())
+                .completedRequests(count(job, ExerciseBatchJob.ItemStatus.DONE))
+                .failedRequests(count(job, ExerciseBatchJob.ItemStatus.FAILED))
+                .totalRequests(items.size())
+                .createdAt(job.getCreatedAt())
+                .finishedAt(job.getFinishedAt())
+                .items(items)
+                .build();
+    }
+
+    private int count(ExerciseBatchJob job, ExerciseBatchJob.ItemStatus status) {
+        return (int) job.getItems().stream().filter(item -> item.getStatus() == status).count();
+    }
+}
@@ -1,14 +1,26 @@
 package com.vk.languagecoach.mapper;
 
+import com.vk.languagecoach.dto.request.ExerciseRequest;
 import com.vk.languagecoach.dto.response.ExerciseResponse;
+import com.vk.languagecoach.dto.response.ExerciseSetResponse;
+import com.vk.languagecoach.entity.ExerciseAnswerEntity;
+import com.vk.languagecoach.entity.ExerciseEntity;
+import com.vk.languagecoach.entity.ExerciseHintEntity;
+import com.vk.languagecoach.entity.ExerciseSetEntity;
 import com.vk.languagecoach.model.Exercises;
 import com.vk.languagecoach.model.Exercise;
 import com.vk.languagecoach.model.ExerciseAnswer;
 import com.vk.languagecoach.model.ExerciseHint;
+import com.vk.languagecoach.model.ExerciseItem;
 import com.vk.languagecoach.dto.response.ExerciseAnswerResponse;
 import com.vk.languagecoach.dto.response.ExerciseHintResponse;
+import com.vk.languagecoach.service.cache.ExerciseRequestKey;
+import com.vk.languagecoach.service.grading.AnswerIndex;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -43,36 +55,146 @@ public class ExerciseMapper {
             List.of();
     }
 
+    public ExerciseSetEntity mapToExerciseSetEntity(ExerciseRequest exerciseRequest, Exercises exercises) {
+        ExerciseRequestKey key = ExerciseRequestKey.of(exerciseRequest);
+
+        ExerciseSetEntity exerciseSet = new ExerciseSetEntity();
+        exerciseSet.setExerciseLanguage(key.exerciseLanguage());
+        exerciseSet.setUserLanguage(key.userLanguage());
+        exerciseSet.setTopic(key.topic());
+        exerciseSet.setDifficulty(key.difficulty());
+        exerciseSet.setProvider(key.provider());
+        exerciseSet.setIncludeBaseForm(key.includeBaseForm());
+        exerciseSet.setIncludeHints(key.includeHints());
+        // Millisecond precision survives every database, the search index tells sets apart by it
+        exerciseSet.setCreatedAt(Instant.now().truncatedTo(ChronoUnit.MILLIS));
+
+        Map<Integer, List<ExerciseAnswer>> answersByExerciseId = exercises.getAnswers() != null ?
+                exercises.getAnswers().stream().collect(Collectors.groupingBy(ExerciseAnswer::getExerciseId)) :
+                Map.of();
+        Map<Integer, List<ExerciseHint>> hintsByExerciseId = exercises.getHints() != null ?
+                exercises.getHints().stream().collect(Collectors.groupingBy(ExerciseHint::getExerciseId)) :
+                Map.of();
+
+        for (Exercise exercise : exercises.getExercises() != null ? exercises.getExercises() : List.<Exercise>of()) {
+            ExerciseEntity exerciseEntity = new ExerciseEntity();
+            exerciseEntity.setExerciseSet(exerciseSet);
+            exerciseEntity.setPosition(exercise.getExerciseId());
+            exerciseEntity.setText(exercise.getText());
+            List<ExerciseAnswer> answers = answersByExerciseId.getOrDefault(exercise.getExerciseId(), List.of());
+            exerciseEntity.setGradingId(AnswerIndex.id(exercise.getText(), answers));
+
+            for (ExerciseAnswer answer : answers) {
+                ExerciseAnswerEntity answerEntity = new ExerciseAnswerEntity();
+                answerEntity.setExercise(exerciseEntity);
+                answerEntity.setPosition(answer.getPosition());
+                answerEntity.setAnswer(answer.getAnswer());
+                answerEntity.setExplanation(answer.getExplanation());
+                exerciseEntity.getAnswers().add(answerEntity);
+            }
+            for (ExerciseHint hint : hintsByExerciseId.getOrDefault(exercise.getExerciseId(), List.of())) {
+                ExerciseHintEntity hintEntity = new ExerciseHintEntity();
+                hintEntity.setExercise(exerciseEntity);
+                hintEntity.setEvidence(hint.getEvidence());
+                hintEntity.setHint(hint.getHint());
+                exerciseEntity.getHints().add(hintEntity);
+            }
+            exerciseSet.getExercises().add(exerciseEntity);
+        }
+        return exerciseSet;
+    }
+
+    public Exercises mapToExercises(ExerciseSetEntity exerciseSet) {
+        List<Exercise> exercises = new ArrayList<>();
+        List<ExerciseAnswer> answers = new ArrayList<>();
+        List<ExerciseHint> hints = new ArrayList<>();
+
+        for (ExerciseEntity exerciseEntity : exerciseSet.getExercises()) {
+            Exercise exercise = new Exercise();
+            exercise.setExerciseId(exerciseEntity.getPosition());
+            exercise.setText(exerciseEntity.getText());
+            exercises.add(exercise);
+
+            for (ExerciseAnswerEntity answerEntity : exerciseEntity.getAnswers()) {
+                ExerciseAnswer answer = new ExerciseAnswer();
+                answer.setExerciseId(exerciseEntity.getPosition());
+                answer.setPosition(answerEntity.getPosition());
+                answer.setAnswer(answerEntity.getAnswer());
+                answer.setExplanation(answerEntity.getExplanation());
+                answers.add(answer);
+            }
+            for (ExerciseHintEntity hintEntity : exerciseEntity.getHints()) {
+                ExerciseHint hint = new ExerciseHint();
+                hint.setExerciseId(exerciseEntity.getPosition());
+                hint.setEvidence(hintEntity.getEvidence());
+                hint.setHint(hintEntity.getHint());
+                hints.add(hint);
+            }
+        }
+
+        Exercises result = new Exercises();
+        result.setExercises(exercises);
+        result.setAnswers(answers);
+        result.setHints(hints);
+        return result;
+    }
+
+    public ExerciseSetResponse mapToExerciseSetResponse(ExerciseSetEntity exerciseSet) {
+        return ExerciseSetResponse.builder()
+                .id(exerciseSet.getId())
+                .exerciseLanguage(exerciseSet.getExerciseLanguage())
+                .userLanguage(exerciseSet.getUserLanguage())
+                .topic(exerciseSet.getTopic())
+                .difficulty(exerciseSet.getDifficulty())
+                .includeBaseForm(exerciseSet.isIncludeBaseForm())
+                .includeHints(exerciseSet.isIncludeHints())
+                .createdAt(exerciseSet.getCreatedAt())
+                .exercises(mapToExerciseResponses(mapToExercises(exerciseSet)))
+                .build();
+    }
+
+    public ExerciseResponse mapToExerciseResponse(ExerciseItem item) {
+        List<ExerciseAnswer> answers = item.getAnswers() != null ? item.getAnswers() : List.of();
+        return ExerciseResponse.builder()
+                .id(AnswerIndex.id(item.getText(), answers))
+                .text(item.getText())
+                .answers(mapAnswers(answers))
+                .hints(mapHints(item.getHints() != null ? item.getHints() : List.of()))
+                .build();
+    }
+
     private ExerciseResponse mapToExerciseResponse(
             Exercise exercise,
             Map<Integer, List<ExerciseAnswer>> answersByExerciseId,
             Map<Integer, List<ExerciseHint>> hintsByExerciseId) {
 
         int exerciseId = exercise.getExerciseId();
+        List<ExerciseAnswer> answers = answersByExerciseId.getOrDefault(exerciseId, List.of());
+
+        return ExerciseResponse.builder()
+                .id(AnswerIndex.id(exercise.getText(), answers))
+                .text(exercise.getText())
+                .answers(mapAnswers(answers))
+                .hints(mapHints(hintsByExerciseId.getOrDefault(exerciseId, List.of())))
+                .build();
+    }
 
-        // Map answers for this exercise
-        List<ExerciseAnswerResponse> answers = answersByExerciseId.getOrDefault(exerciseId, List.of())
-                .stream()
+    private List<ExerciseAnswerResponse> mapAnswers(List<ExerciseAnswer> answers) {
+        return answers.stream()
                 .map(answer -> ExerciseAnswerResponse.builder()
                         .position(answer.getPosition())
                         .answer(answer.getAnswer())
                         .explanation(answer.getExplanation())
                         .build())
                 .collect(Collectors.toList());
+    }
 
-        // Map hints for this exercise
-        List<ExerciseHintResponse> hints = hintsByExerciseId.getOrDefault(exerciseId, List.of())
-                .stream()
+    private List<ExerciseHintResponse> mapHints(List<ExerciseHint> hints) {
+        return hints.stream()
                 .map(hint -> ExerciseHintResponse.builder()
                         .evidence(hint.getEvidence())
                         .hint(hint.getHint())
                         .build())
                 .collect(Collectors.toList());
-
-        return ExerciseResponse.builder()
-                .text(exercise.getText())
-                .answers(answers)
-                .hints(hints)
-                .build();
     }
 } 
\ No newline at end of file
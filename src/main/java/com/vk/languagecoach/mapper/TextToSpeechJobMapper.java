@@ -0,0 +1,37 @@
+package com.vk.languagecoach.mapper;
+
+import com.vk.languagecoach.dto.response.tts.TextToSpeechJobChunkResponse;
+import com.vk.languagecoach.dto.response.tts.TextToSpeechJobResponse;
+import com.vk.languagecoach.service.job.TextToSpeechJob;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+public class TextToSpeechJobMapper {
+
+    public TextToSpeechJobResponse mapToTextToSpeechJobResponse(TextToSpeechJob job) {
+        List<TextToSpeechJobChunkResponse> chunks = job.getChunks().stream()
+                .map(chunk -> TextToSpeechJobChunkResponse.builder()
+                        .name(chunk.getSpeechChunk().name())
+                        .status(chunk.getStatus().name())
+                        .error(chunk.getError())
+                        .build())
+                .toList();
+
+        return TextToSpeechJobResponse.builder()
+                .id(job.getId())
+                .status(job.getStatus().name())
+                .completedChunks(count(job, TextToSpeechJob.ChunkStatus.DONE))
+                .failedChunks(count(job, TextToSpeechJob.ChunkStatus.FAILED))
+                .totalChunks(chunks.size())
+                .createdAt(job.getCreatedAt())
+                .finishedAt(job.getFinishedAt())
+                .chunks(chunks)
+                .build();
+    }
+
+    private int count(TextToSpeechJob job, TextToSpeechJob.ChunkStatus status) {
+        return (int) job.getChunks().stream().filter(chunk -> chunk.getStatus() == status).count();
+    }
+}
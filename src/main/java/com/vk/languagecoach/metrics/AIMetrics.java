@@ -0,0 +1,117 @@
+package com.vk.languagecoach.metrics;
+
+import com.vk.languagecoach.dto.AIModelType;
+import com.vk.languagecoach.dto.AIProvider;
+import com.vk.languagecoach.service.cache.SingleFlight;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * Timers and counters for the AI call paths. Timers publish a percentile histogram,
+ * so latency percentiles can be aggregated across instances.
+ */
+@Component
+public class AIMetrics {
+
+    private final MeterRegistry meterRegistry;
+
+    public AIMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(meterRegistry);
+    }
+
+    public void recordProviderCall(Timer.Sample sample, AIProvider provider, String model, AIModelType type,
+                                   Throwable error) {
+        Tags tags = tags(provider, model, type);
+        sample.stop(timer("ai.provider.latency", tags.and("outcome", error == null ? "success" : "error")));
+        if (error != null) {
+            Counter.builder("ai.errors")
+                    .tags(tags.and("exception", error.getClass().getSimpleName()))
+                    .register(meterRegistry)
+                    .increment();
+        }
+    }
+
+    /**
+     * Prompts are rendered before the call is routed, an {@link AIProvider#AUTO} request is tagged as such.
+     */
+    public <T> T recordPromptRendering(AIProvider provider, String model, AIModelType type, Supplier<T> rendering) {
+        return timer("ai.prompt.rendering", tags(provider, model, type)).record(rendering);
+    }
+
+    public void recordParsing(AIProvider provider, String model, AIModelType type, Duration duration) {
+        timer("ai.response.parsing", tags(provider, model, type)).record(duration);
+    }
+
+    public <T> T recordMapping(AIProvider provider, String model, AIModelType type, Supplier<T> mapping) {
+        return timer("exercises.mapping", tags(provider, model, type)).record(mapping);
+    }
+
+    public void recordZipAssembly(Timer.Sample sample, AIProvider provider, String model, AIModelType type,
+                                  Throwable error) {
+        sample.stop(timer("tts.zip.assembly",
+                tags(provider, model, type).and("outcome", error == null ? "success" : "error")));
+    }
+
+    public void recordTokens(AIProvider provider, String model, AIModelType type, long promptTokens,
+                             long completionTokens) {
+        Tags tags = tags(provider, model, type);
+        Counter.builder("ai.tokens").tags(tags.and("kind", "prompt")).register(meterRegistry).increment(promptTokens);
+        Counter.builder("ai.tokens").tags(tags.and("kind", "completion")).register(meterRegistry).increment(completionTokens);
+    }
+
+    public void recordAudioBytes(AIModelType type, String direction, long bytes) {
+        Counter.builder("ai.audio.bytes")
+                .baseUnit("bytes")
+                .tags("type", tag(type), "direction", direction)
+                .register(meterRegistry)
+                .increment(bytes);
+    }
+
+    /**
+     * Audio served from a cache rather than transferred by the provider.
+     */
+    public void recordCachedAudioBytes(AIModelType type, long bytes) {
+        Counter.builder("ai.audio.cache.bytes")
+                .baseUnit("bytes")
+                .tags("type", tag(type))
+                .register(meterRegistry)
+                .increment(bytes);
+    }
+
+    public void registerSingleFlight(String name, SingleFlight<?, ?> singleFlight) {
+        FunctionCounter.builder("singleflight.calls", singleFlight, SingleFlight::getLeaders)
+                .tags("name", name, "role", "leader")
+                .register(meterRegistry);
+        FunctionCounter.builder("singleflight.calls", singleFlight, SingleFlight::getFollowers)
+                .tags("name", name, "role", "follower")
+                .register(meterRegistry);
+    }
+
+    private Timer timer(String name, Tags tags) {
+        return Timer.builder(name)
+                .tags(tags)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private Tags tags(AIProvider provider, String model, AIModelType type) {
+        return Tags.of("provider", provider.toString(), "model", model, "type", tag(type));
+    }
+
+    private String tag(AIModelType type) {
+        return type.name().toLowerCase(Locale.ROOT);
+    }
+}
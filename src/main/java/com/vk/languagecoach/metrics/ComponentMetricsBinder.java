@@ -0,0 +1,119 @@
+package com.vk.languagecoach.metrics;
+
+import com.vk.languagecoach.dto.AIModelType;
+import com.vk.languagecoach.dto.AIProvider;
+import com.vk.languagecoach.service.ai.AIClientFactory;
+import com.vk.languagecoach.service.ai.ProviderRouter;
+import com.vk.languagecoach.service.ai.RateLimiter;
+import com.vk.languagecoach.service.buffer.AudioBufferPool;
+import com.vk.languagecoach.service.cache.ExercisePool;
+import com.vk.languagecoach.service.cache.TextToSpeechCache;
+import com.vk.languagecoach.service.cache.TranscriptionCache;
+import com.vk.languagecoach.service.search.ExerciseSearchIndex;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.function.ToDoubleBiFunction;
+
+/**
+ * Exposes the counters of the caches, the exercise pool, the search index, the audio buffer pool, the shared HTTP
+ * connection pool, the provider router and the rate limiter.
+ */
+@Component
+@RequiredArgsConstructor
+public class ComponentMetricsBinder implements MeterBinder {
+
+    private final TextToSpeechCache textToSpeechCache;
+    private final TranscriptionCache transcriptionCache;
+    private final ExercisePool exercisePool;
+    private final ExerciseSearchIndex exerciseSearchIndex;
+    private final AudioBufferPool audioBufferPool;
+    private final AIClientFactory aiClientFactory;
+    private final ProviderRouter providerRouter;
+    private final RateLimiter rateLimiter;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("tts.cache.hits", textToSpeechCache, c -> c.getStats().memoryHits())
+                .tag("tier", "memory").register(registry);
+        FunctionCounter.builder("tts.cache.hits", textToSpeechCache, c -> c.getStats().diskHits())
+                .tag("tier", "disk").register(registry);
+        FunctionCounter.builder("tts.cache.misses", textToSpeechCache, c -> c.getStats().misses())
+                .register(registry);
+        FunctionCounter.builder("tts.cache.evictions", textToSpeechCache, c -> c.getStats().memoryEvictions())
+                .tag("tier", "memory").register(registry);
+        FunctionCounter.builder("tts.cache.evictions", textToSpeechCache, c -> c.getStats().diskEvictions())
+                .tag("tier", "disk").register(registry);
+        Gauge.builder("tts.cache.size", textToSpeechCache, c -> c.getStats().memoryBytes())
+                .tag("tier", "memory").baseUnit("bytes").register(registry);
+        Gauge.builder("tts.cache.size", textToSpeechCache, c -> c.getStats().diskBytes())
+                .tag("tier", "disk").baseUnit("bytes").register(registry);
+
+        FunctionCounter.builder("stt.cache.hits", transcriptionCache, c -> c.getStats().hits()).register(registry);
+        FunctionCounter.builder("stt.cache.misses", transcriptionCache, c -> c.getStats().misses()).register(registry);
+        FunctionCounter.builder("stt.cache.evictions", transcriptionCache, c -> c.getStats().evictions())
+                .register(registry);
+        FunctionCounter.builder("stt.cache.expirations", transcriptionCache, c -> c.getStats().expirations())
+                .register(registry);
+        Gauge.builder("stt.cache.size", transcriptionCache, c -> c.getStats().size()).register(registry);
+
+        FunctionCounter.builder("exercises.pool.hits", exercisePool, p -> p.getStats().hits()).register(registry);
+        FunctionCounter.builder("exercises.pool.misses", exercisePool, p -> p.getStats().misses()).register(registry);
+        FunctionCounter.builder("exercises.pool.retired", exercisePool, p -> p.getStats().retired()).register(registry);
+        Gauge.builder("exercises.pool.keys", exercisePool, p -> p.getStats().keys()).register(registry);
+        Gauge.builder("exercises.pool.sets", exercisePool, p -> p.getStats().sets()).register(registry);
+
+        Gauge.builder("exercises.search.sets", exerciseSearchIndex, i -> i.getStats().sets()).register(registry);
+        Gauge.builder("exercises.search.terms", exerciseSearchIndex, i -> i.getStats().terms()).register(registry);
+
+        Gauge.builder("audio.buffers.memory", audioBufferPool, p -> p.getStats().inUseBytes())
+                .tag("state", "in-use").baseUnit("bytes").register(registry);
+        Gauge.builder("audio.buffers.memory", audioBufferPool, p -> p.getStats().idleBytes())
+                .tag("state", "idle").baseUnit("bytes").register(registry);
+        FunctionCounter.builder("audio.buffers.acquisitions", audioBufferPool, p -> p.getStats().hits())
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("audio.buffers.acquisitions", audioBufferPool, p -> p.getStats().misses())
+                .tag("result", "miss").register(registry);
+        FunctionCounter.builder("audio.buffers.acquisitions", audioBufferPool, p -> p.getStats().unpooled())
+                .tag("result", "unpooled").register(registry);
+        FunctionCounter.builder("audio.buffers.dropped", audioBufferPool, p -> p.getStats().dropped())
+                .register(registry);
+
+        Gauge.builder("ai.http.connections", aiClientFactory, f -> f.getPoolStats().connections())
+                .tag("state", "total").register(registry);
+        Gauge.builder("ai.http.connections", aiClientFactory, f -> f.getPoolStats().idleConnections())
+                .tag("state", "idle").register(registry);
+        Gauge.builder("ai.http.calls", aiClientFactory, f -> f.getPoolStats().runningCalls())
+                .tag("state", "running").register(registry);
+        Gauge.builder("ai.http.calls", aiClientFactory, f -> f.getPoolStats().queuedCalls())
+                .tag("state", "queued").register(registry);
+
+        FunctionCounter.builder("ai.ratelimit.rejected", rateLimiter, RateLimiter::getRejected).register(registry);
+        Gauge.builder("ai.ratelimit.queued", rateLimiter, RateLimiter::getQueued).register(registry);
+
+        for (AIProvider provider : AIProvider.values()) {
+            if (provider == AIProvider.AUTO) {
+                continue;
+            }
+            for (AIModelType type : AIModelType.values()) {
+                ProviderRouter.RouteKey key = new ProviderRouter.RouteKey(provider, type);
+                route(registry, "ai.routing.latency.ewma", key, ProviderRouter::getEwmaLatencyMillis);
+                route(registry, "ai.routing.error.rate", key, ProviderRouter::getErrorRate);
+                route(registry, "ai.routing.available", key, ProviderRouter::getAvailable);
+            }
+        }
+    }
+
+    private void route(MeterRegistry registry, String name, ProviderRouter.RouteKey key,
+                       ToDoubleBiFunction<ProviderRouter, ProviderRouter.RouteKey> value) {
+        // Routes appear once they have been used, until then the gauge reports NaN
+        Gauge.builder(name, providerRouter, router -> value.applyAsDouble(router, key))
+                .tags("provider", key.provider().toString(), "type", key.type().name().toLowerCase(Locale.ROOT))
+                .register(registry);
+    }
+}
@@ -0,0 +1,15 @@
+package com.vk.languagecoach.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class ExerciseItem {
+    private int exerciseId;
+    private String text;
+    private List<ExerciseAnswer> answers;
+    private List<ExerciseHint> hints;
+}
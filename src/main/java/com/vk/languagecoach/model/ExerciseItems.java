@@ -0,0 +1,16 @@
+package com.vk.languagecoach.model;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Response format for streamed generation: every exercise carries its own answers and hints,
+ * so it is complete as soon as its object is closed.
+ */
+@Data
+@NoArgsConstructor
+public class ExerciseItems {
+    private List<ExerciseItem> exercises;
+}
@@ -0,0 +1,31 @@
+package com.vk.languagecoach.repository;
+
+import com.vk.languagecoach.entity.ExerciseEntity;
+import com.vk.languagecoach.entity.ExerciseSetEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ExerciseSetRepository extends JpaRepository<ExerciseSetEntity, Long>,
+        JpaSpecificationExecutor<ExerciseSetEntity> {
+
+    @Query("select s.id as id, s.createdAt as createdAt from ExerciseSetEntity s")
+    List<StoredSet> findAllStoredSets();
+
+    @Query("select distinct e from ExerciseEntity e left join fetch e.answers where e.gradingId in :gradingIds")
+    List<ExerciseEntity> findExercisesByGradingIds(@Param("gradingIds") Collection<String> gradingIds);
+
+    interface StoredSet {
+
+        Long getId();
+
+        Instant getCreatedAt();
+    }
+}
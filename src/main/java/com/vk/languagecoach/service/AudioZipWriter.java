@@ -0,0 +1,42 @@
+package com.vk.languagecoach.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes synthesized chunks into a ZIP archive as they arrive, flushing after every entry so that
+ * the client receives the archive progressively. The archive is only finished and closed explicitly, so that
+ * a failure part way leaves a visibly truncated download instead of a well-formed archive missing entries.
+ */
+public class AudioZipWriter implements TextToSpeechService.ChunkAudioConsumer {
+
+    private final ZipOutputStream zipOut;
+    private long audioBytes;
+
+    public AudioZipWriter(OutputStream outputStream) {
+        this.zipOut = new ZipOutputStream(outputStream);
+    }
+
+    @Override
+    public void accept(String name, InputStream audio) throws IOException {
+        zipOut.putNextEntry(new ZipEntry(name));
+        audioBytes += audio.transferTo(zipOut);
+        zipOut.closeEntry();
+        zipOut.flush();
+    }
+
+    public void finish() throws IOException {
+        zipOut.finish();
+    }
+
+    public long getAudioBytes() {
+        return audioBytes;
+    }
+
+    public void close() throws IOException {
+        zipOut.close();
+    }
+}
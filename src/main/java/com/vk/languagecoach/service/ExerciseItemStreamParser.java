@@ -0,0 +1,105 @@
+package com.vk.languagecoach.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.vk.languagecoach.model.ExerciseItem;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Incremental parser for a streamed {@link com.vk.languagecoach.model.ExerciseItems} document.
+ * Content deltas are fed as they arrive and every element of the {@code exercises} array is
+ * handed to the consumer as soon as its closing brace has been parsed.
+ */
+public class ExerciseItemStreamParser {
+
+    private static final String EXERCISES_FIELD = "exercises";
+
+    private final ObjectMapper objectMapper;
+    private final ExerciseItemConsumer consumer;
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+
+    private int depth;
+    private boolean inExercises;
+    private TokenBuffer item;
+    private int emitted;
+
+    public ExerciseItemStreamParser(ObjectMapper objectMapper, ExerciseItemConsumer consumer) throws IOException {
+        this.objectMapper = objectMapper;
+        this.consumer = consumer;
+        this.parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    public void feed(String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        feeder.feedInput(bytes, 0, bytes.length);
+        drain();
+    }
+
+    /**
+     * Signals the end of the content and returns the number of emitted exercises.
+     */
+    public int finish() throws IOException {
+        feeder.endOfInput();
+        drain();
+        parser.close();
+        if (depth != 0) {
+            throw new IllegalStateException("Incomplete exercises response");
+        }
+        return emitted;
+    }
+
+    private void drain() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            handle(token);
+        }
+    }
+
+    private void handle(JsonToken token) throws IOException {
+        if (item == null && inExercises && depth == 2 && token == JsonToken.START_OBJECT) {
+            item = new TokenBuffer(objectMapper, false);
+        }
+        if (item != null) {
+            item.copyCurrentEvent(parser);
+        }
+
+        switch (token) {
+            case START_OBJECT, START_ARRAY -> {
+                depth++;
+                if (token == JsonToken.START_ARRAY && depth == 2 && EXERCISES_FIELD.equals(parser.currentName())) {
+                    inExercises = true;
+                }
+            }
+            case END_OBJECT, END_ARRAY -> {
+                depth--;
+                if (token == JsonToken.END_OBJECT && depth == 2 && item != null) {
+                    emit();
+                } else if (token == JsonToken.END_ARRAY && depth == 1) {
+                    inExercises = false;
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void emit() throws IOException {
+        try (JsonParser itemParser = item.asParser()) {
+            item = null;
+            consumer.accept(objectMapper.readValue(itemParser, ExerciseItem.class));
+            emitted++;
+        }
+    }
+
+    @FunctionalInterface
+    public interface ExerciseItemConsumer {
+        void accept(ExerciseItem item) throws IOException;
+    }
+}
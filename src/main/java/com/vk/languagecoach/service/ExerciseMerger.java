@@ -0,0 +1,101 @@
+package com.vk.languagecoach.service;
+
+import com.vk.languagecoach.model.Exercise;
+import com.vk.languagecoach.model.ExerciseAnswer;
+import com.vk.languagecoach.model.ExerciseHint;
+import com.vk.languagecoach.model.Exercises;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Merges exercise sets generated by separate shards into one set with consecutive exercise ids,
+ * dropping exercises whose words are nearly identical to an exercise that was already kept, and those beyond
+ * the requested total.
+ */
+@Component
+public class ExerciseMerger {
+
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final double duplicateSimilarity;
+
+    public ExerciseMerger(@Value("${exercises.sharding.duplicate-similarity}") double duplicateSimilarity) {
+        this.duplicateSimilarity = duplicateSimilarity;
+    }
+
+    public Exercises merge(List<Exercises> shards, int limit) {
+        List<Exercise> exercises = new ArrayList<>();
+        List<ExerciseAnswer> answers = new ArrayList<>();
+        List<ExerciseHint> hints = new ArrayList<>();
+        List<Set<String>> keptWords = new ArrayList<>();
+
+        for (Exercises shard : shards) {
+            if (shard.getExercises() == null) {
+                continue;
+            }
+
+            Map<Integer, List<ExerciseAnswer>> answersByExerciseId = shard.getAnswers() != null ?
+                    shard.getAnswers().stream().collect(Collectors.groupingBy(ExerciseAnswer::getExerciseId)) :
+                    Map.of();
+            Map<Integer, List<ExerciseHint>> hintsByExerciseId = shard.getHints() != null ?
+                    shard.getHints().stream().collect(Collectors.groupingBy(ExerciseHint::getExerciseId)) :
+                    Map.of();
+
+            for (Exercise exercise : shard.getExercises()) {
+                if (exercises.size() >= limit) {
+                    break;
+                }
+                Set<String> words = words(exercise.getText());
+                if (keptWords.stream().anyMatch(kept -> similarity(kept, words) >= duplicateSimilarity)) {
+                    continue;
+                }
+                keptWords.add(words);
+
+                int oldId = exercise.getExerciseId();
+                int newId = exercises.size();
+                exercise.setExerciseId(newId);
+                exercises.add(exercise);
+                answersByExerciseId.getOrDefault(oldId, List.of()).forEach(answer -> {
+                    answer.setExerciseId(newId);
+                    answers.add(answer);
+                });
+                hintsByExerciseId.getOrDefault(oldId, List.of()).forEach(hint -> {
+                    hint.setExerciseId(newId);
+                    hints.add(hint);
+                });
+            }
+        }
+
+        Exercises merged = new Exercises();
+        merged.setExercises(exercises);
+        merged.setAnswers(answers);
+        merged.setHints(hints);
+        return merged;
+    }
+
+    private Set<String> words(String text) {
+        if (text == null) {
+            return Set.of();
+        }
+        return Arrays.stream(NON_WORD.split(text.toLowerCase(Locale.ROOT)))
+                .filter(word -> !word.isEmpty())
+                .collect(Collectors.toSet());
+    }
+
+    private double similarity(Set<String> first, Set<String> second) {
+        if (first.isEmpty() && second.isEmpty()) {
+            return 1;
+        }
+        long common = first.stream().filter(second::contains).count();
+        return (double) common / (first.size() + second.size() - common);
+    }
+}
@@ -0,0 +1,87 @@
+package com.vk.languagecoach.service;
+
+import com.github.mustachejava.DefaultMustacheFactory;
+import com.github.mustachejava.Mustache;
+import com.github.mustachejava.MustacheFactory;
+import com.vk.languagecoach.dto.ExerciseDifficulty;
+import com.vk.languagecoach.dto.request.ExerciseRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Builds exercise prompts from a static system prefix and a small per-request suffix. The prefix is rendered
+ * once and is byte-identical across requests, so providers can serve it from their prompt cache; rendered
+ * suffixes are memoized per parameter tuple in a bounded LRU.
+ */
+@Component
+public class ExercisePromptBuilder {
+
+    private final String systemPrompt;
+    private final Mustache userTemplate;
+    private final int maxEntries;
+    private final Map<PromptKey, String> userPrompts;
+
+    public ExercisePromptBuilder(@Value("${exercises.prompt.cache.max-entries}") int maxEntries) {
+        MustacheFactory mustacheFactory = new DefaultMustacheFactory();
+        this.systemPrompt = mustacheFactory.compile("prompts/exercises-system.mustache")
+                .execute(new StringWriter(), Map.of())
+                .toString();
+        this.userTemplate = mustacheFactory.compile("prompts/exercises-user.mustache");
+        this.maxEntries = maxEntries;
+        this.userPrompts = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PromptKey, String> eldest) {
+                return size() > ExercisePromptBuilder.this.maxEntries;
+            }
+        };
+    }
+
+    public ExercisePrompt build(ExerciseRequest exerciseRequest) {
+        return new ExercisePrompt(systemPrompt, userPrompt(PromptKey.of(exerciseRequest)));
+    }
+
+    private String userPrompt(PromptKey key) {
+        synchronized (userPrompts) {
+            String cached = userPrompts.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        // The key doubles as the template scope, so rendering needs no parameter map. Misses run on short-lived
+        // virtual threads, where a per-thread writer would be allocated just as often and then held per thread
+        String rendered = userTemplate.execute(new StringWriter(256), key).toString();
+        if (maxEntries > 0) {
+            synchronized (userPrompts) {
+                userPrompts.put(key, rendered);
+            }
+        }
+        return rendered;
+    }
+
+    public record ExercisePrompt(String system, String user) {
+
+        public int length() {
+            return system.length() + user.length();
+        }
+    }
+
+    public record PromptKey(String exerciseLanguage, String userLanguage, String topic, ExerciseDifficulty level,
+                            int exerciseCount, boolean includeBaseForm, boolean includeHints) {
+
+        static PromptKey of(ExerciseRequest exerciseRequest) {
+            return new PromptKey(
+                    exerciseRequest.getExerciseLanguage(),
+                    exerciseRequest.getUserLanguage(),
+                    exerciseRequest.getTopic(),
+                    exerciseRequest.getDifficulty(),
+                    exerciseRequest.getTotal(),
+                    exerciseRequest.isIncludeBaseForm(),
+                    exerciseRequest.isIncludeHints());
+        }
+    }
+}
@@ -1,22 +1,49 @@
 package com.vk.languagecoach.service;
 
-import com.github.mustachejava.DefaultMustacheFactory;
-import com.github.mustachejava.Mustache;
-import com.github.mustachejava.MustacheFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openai.client.OpenAIClient;
+import com.openai.core.http.StreamResponse;
+import com.openai.models.chat.completions.ChatCompletion;
+import com.openai.models.chat.completions.ChatCompletionChunk;
 import com.openai.models.chat.completions.ChatCompletionCreateParams;
 import com.openai.models.chat.completions.StructuredChatCompletion;
 import com.openai.models.chat.completions.StructuredChatCompletionCreateParams;
 import com.openai.models.completions.CompletionUsage;
+import com.vk.languagecoach.dto.AIProvider;
 import com.vk.languagecoach.dto.request.ExerciseRequest;
+import com.vk.languagecoach.metrics.AIMetrics;
+import com.vk.languagecoach.model.Exercise;
+import com.vk.languagecoach.model.ExerciseAnswer;
+import com.vk.languagecoach.model.ExerciseHint;
+import com.vk.languagecoach.model.ExerciseItem;
+import com.vk.languagecoach.model.ExerciseItems;
 import com.vk.languagecoach.model.Exercises;
 import com.vk.languagecoach.service.ai.AIServiceProvider;
-import jakarta.annotation.PostConstruct;
+import com.vk.languagecoach.service.ai.RateLimiter;
+import com.vk.languagecoach.service.async.AsyncTasks;
+import com.vk.languagecoach.service.budget.ExerciseTokenBudget;
+import com.vk.languagecoach.service.budget.TokenBudgetExceededException;
+import com.vk.languagecoach.service.cache.ExercisePool;
+import com.vk.languagecoach.service.cache.ExerciseRequestKey;
+import com.vk.languagecoach.service.cache.SingleFlight;
+import com.vk.languagecoach.service.grading.AnswerIndex;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.io.StringWriter;
-import java.util.HashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 import static com.vk.languagecoach.dto.AIModelType.TEXT;
 
@@ -24,61 +51,492 @@ import static com.vk.languagecoach.dto.AIModelType.TEXT;
 @Slf4j
 public class ExerciseService {
 
+    // A completion cut off by the token cap is retried once with a doubled cap
+    private static final int MAX_COMPLETION_ATTEMPTS = 2;
+    // Rounds that generate the exercises missing after failed shards or dropped near-duplicates
+    private static final int MAX_TOP_UP_ROUNDS = 2;
+
     private final AIServiceProvider aiServiceProvider;
-    private Mustache promptTemplate;
+    private final ExercisePool exercisePool;
+    private final ExerciseMerger exerciseMerger;
+    private final ExerciseStoreService exerciseStoreService;
+    private final ExercisePromptBuilder exercisePromptBuilder;
+    private final ExerciseTokenBudget exerciseTokenBudget;
+    private final AnswerIndex answerIndex;
+    private final AsyncTasks asyncTasks;
+    private final SingleFlight<ExerciseRequestKey, Exercises> exerciseFlights = new SingleFlight<>();
+    private final ObjectMapper objectMapper;
+    private final AIMetrics aiMetrics;
+    private final Semaphore refillPermits;
+    private final int shardingThreshold;
+    private final int shardSize;
+    private final boolean spreadProviders;
+    private final int maxShards;
 
-    public ExerciseService(AIServiceProvider aiServiceProvider) {
+    public ExerciseService(AIServiceProvider aiServiceProvider,
+                           ExercisePool exercisePool,
+                           ExerciseMerger exerciseMerger,
+                           ExerciseStoreService exerciseStoreService,
+                           ExercisePromptBuilder exercisePromptBuilder,
+                           ExerciseTokenBudget exerciseTokenBudget,
+                           AnswerIndex answerIndex,
+                           AsyncTasks asyncTasks,
+                           ObjectMapper objectMapper,
+                           AIMetrics aiMetrics,
+                           @Value("${exercises.pool.refill-concurrency}") int refillConcurrency,
+                           @Value("${exercises.sharding.threshold}") int shardingThreshold,
+                           @Value("${exercises.sharding.shard-size}") int shardSize,
+                           @Value("${exercises.sharding.spread-providers}") boolean spreadProviders,
+                           @Value("${exercises.budget.max-shards}") int maxShards) {
         this.aiServiceProvider = aiServiceProvider;
+        this.exercisePool = exercisePool;
+        this.exerciseMerger = exerciseMerger;
+        this.exerciseStoreService = exerciseStoreService;
+        this.exercisePromptBuilder = exercisePromptBuilder;
+        this.exerciseTokenBudget = exerciseTokenBudget;
+        this.answerIndex = answerIndex;
+        this.asyncTasks = asyncTasks;
+        this.objectMapper = objectMapper;
+        this.aiMetrics = aiMetrics;
+        aiMetrics.registerSingleFlight("exercises", exerciseFlights);
+        this.refillPermits = new Semaphore(refillConcurrency);
+        this.shardingThreshold = shardingThreshold;
+        this.shardSize = shardSize;
+        this.spreadProviders = spreadProviders;
+        this.maxShards = maxShards;
     }
 
-    @PostConstruct
-    public void loadPromptTemplate() {
-        MustacheFactory mustacheFactory = new DefaultMustacheFactory();
-        this.promptTemplate = mustacheFactory.compile("prompts/exercises.mustache");
+    public Exercises generateExercises(ExerciseRequest exerciseRequest) {
+        Optional<Exercises> pooled = exercisePool.take(exerciseRequest);
+        if (pooled.isPresent()) {
+            log.info("Serving pooled exercises for request: {}", exerciseRequest);
+            return pooled.get();
+        }
+
+        // Identical requests arriving together share one generation
+        return exerciseFlights.execute(ExerciseRequestKey.of(exerciseRequest), () -> {
+            Exercises exercises = createExercises(exerciseRequest, RateLimiter.Priority.STANDARD);
+            exercisePool.offer(exerciseRequest, exercises, true);
+            return exercises;
+        });
     }
 
-    public Exercises generateExercises(ExerciseRequest exerciseRequest) {
+    /**
+     * Same as {@link #generateExercises(ExerciseRequest)} on a virtual thread. Cancelling the future cancels the
+     * generation in flight, a generation shared with identical requests is taken over by one of them.
+     */
+    public CompletableFuture<Exercises> generateExercisesAsync(ExerciseRequest exerciseRequest) {
+        return asyncTasks.supply(() -> generateExercises(exerciseRequest));
+    }
+
+    @Scheduled(fixedDelayString = "${exercises.pool.refill-interval-ms}")
+    public void refillPool() {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (ExercisePool.PoolDeficit deficit : exercisePool.deficits()) {
+                for (int i = 0; i < deficit.missing(); i++) {
+                    executor.submit(() -> refillPool(deficit.request()));
+                }
+            }
+        }
+    }
+
+    private void refillPool(ExerciseRequest exerciseRequest) {
+        try {
+            refillPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            exercisePool.offer(exerciseRequest, createExercises(exerciseRequest, RateLimiter.Priority.BULK), false);
+        } catch (RuntimeException e) {
+            log.warn("Failed to refill exercise pool for request: {}", exerciseRequest, e);
+        } finally {
+            refillPermits.release();
+        }
+    }
+
+    /**
+     * Generates exercises with a streamed completion and hands each exercise to the consumer
+     * as soon as its answers and hints are complete. Each exercise is indexed for grading before it is handed out,
+     * the set is stored once the stream has completed.
+     */
+    public void streamExercises(ExerciseRequest exerciseRequest,
+                                ExerciseItemStreamParser.ExerciseItemConsumer consumer) throws IOException {
+        log.info("Streaming exercises for request: {}", exerciseRequest);
+
+        ExercisePromptBuilder.ExercisePrompt prompt = buildPrompt(exerciseRequest);
+        List<ExerciseItem> items = new ArrayList<>();
+        ExerciseItemStreamParser parser = new ExerciseItemStreamParser(objectMapper, item -> {
+            answerIndex.index(item.getText(), item.getAnswers() != null ? item.getAnswers() : List.of());
+            items.add(item);
+            consumer.accept(item);
+        });
+        long parsingNanos = 0;
+        int total;
+        try (ServedStream served = aiServiceProvider.execute(exerciseRequest.getProvider(), TEXT,
+                admission(exerciseRequest, prompt, RateLimiter.Priority.STANDARD), (provider, client, model) -> {
+                    StructuredChatCompletionCreateParams<ExerciseItems> createParams = ChatCompletionCreateParams.builder()
+                            .addSystemMessage(prompt.system())
+                            .addUserMessage(prompt.user())
+                            .responseFormat(ExerciseItems.class)
+                            .temperature(1.75)
+                            .topP(0.95)
+                            .maxCompletionTokens(exerciseTokenBudget.estimate(exerciseRequest, prompt, model)
+                                    .maxCompletionTokens())
+                            .model(model)
+                            .build();
+                    return new ServedStream(provider, model,
+                            client.chat().completions().createStreaming(createParams.rawParams()));
+                })) {
+            Iterator<ChatCompletionChunk> chunks = served.stream().stream().iterator();
+            while (chunks.hasNext()) {
+                for (ChatCompletionChunk.Choice choice : chunks.next().choices()) {
+                    if (choice.delta().content().isPresent()) {
+                        // Excludes the time spent waiting on the provider between chunks
+                        long start = System.nanoTime();
+                        parser.feed(choice.delta().content().get());
+                        parsingNanos += System.nanoTime() - start;
+                    }
+                }
+            }
+            total = parser.finish();
+            aiMetrics.recordParsing(served.provider(), served.model(), TEXT, Duration.ofNanos(parsingNanos));
+        }
+        store(exerciseRequest, toExercises(items));
+
+        log.info("Streamed {} exercises for request: {}", total, exerciseRequest);
+    }
+
+    /**
+     * Generates a fresh set at bulk priority, bypassing the pool and the store, for callers that store
+     * the result themselves.
+     */
+    public Exercises generateBulkExercises(ExerciseRequest exerciseRequest) {
+        return completeAnyExercises(exerciseRequest, RateLimiter.Priority.BULK);
+    }
+
+    /**
+     * Builds the completion parameters of a request, for callers that submit them on their own.
+     */
+    public StructuredChatCompletionCreateParams<Exercises> createCompletionParams(ExerciseRequest exerciseRequest,
+                                                                                  String model) {
+        ExercisePromptBuilder.ExercisePrompt prompt = buildPrompt(exerciseRequest);
+        return createCompletionParams(prompt, model,
+                exerciseTokenBudget.estimate(exerciseRequest, prompt, model).maxCompletionTokens());
+    }
+
+    /**
+     * Records the usage of a completion generated from {@link #createCompletionParams(ExerciseRequest, String)}.
+     * How long the provider took says nothing about its throughput then, so only the token ratios are learned.
+     */
+    public void recordUsage(AIProvider provider, String model, ExerciseRequest exerciseRequest,
+                            CompletionUsage usage) {
+        recordUsage(provider, model, exerciseRequest, buildPrompt(exerciseRequest), usage, Duration.ZERO);
+    }
+
+    /**
+     * The configured text model of the provider, or {@code auto} for a request that is yet to be routed.
+     */
+    public String getModel(AIProvider provider) {
+        return provider == AIProvider.AUTO ? provider.toString() : aiServiceProvider.getModel(provider, TEXT);
+    }
+
+    private Exercises createExercises(ExerciseRequest exerciseRequest, RateLimiter.Priority priority) {
+        Exercises exercises = completeAnyExercises(exerciseRequest, priority);
+        store(exerciseRequest, exercises);
+        return exercises;
+    }
+
+    /**
+     * Shards run in parallel, so a request fits the latency SLO when each of its shards does. Interactive
+     * requests needing more shards than allowed to fit are rejected before anything is sent, bulk requests
+     * have no one waiting on them and are sharded regardless.
+     */
+    private Exercises completeAnyExercises(ExerciseRequest exerciseRequest, RateLimiter.Priority priority) {
+        int total = exerciseRequest.getTotal();
+        int withinSlo = Math.max(1, exerciseTokenBudget.maxExercisesWithinSlo(exerciseRequest,
+                candidateModels(exerciseRequest)));
+        if (priority != RateLimiter.Priority.BULK && (total + withinSlo - 1) / withinSlo > maxShards) {
+            throw new TokenBudgetExceededException(total, withinSlo * maxShards, exerciseTokenBudget.getLatencySlo());
+        }
+
+        int size = total < shardingThreshold ? withinSlo : Math.min(shardSize, withinSlo);
+        if (total <= size) {
+            return completeExercises(exerciseRequest, priority);
+        }
+        if (total < shardingThreshold) {
+            log.info("Splitting request into shards of {} exercises to fit the latency SLO: {}",
+                    size, exerciseTokenBudget.getLatencySlo());
+        }
+        return completeShardedExercises(exerciseRequest, priority, size);
+    }
+
+    /**
+     * Flattens streamed exercises into a set. Answers and hints are nested in their exercise, so they are tied to
+     * it regardless of the ids the model gave them.
+     */
+    private Exercises toExercises(List<ExerciseItem> items) {
+        List<Exercise> exercises = new ArrayList<>(items.size());
+        List<ExerciseAnswer> answers = new ArrayList<>();
+        List<ExerciseHint> hints = new ArrayList<>();
+        for (ExerciseItem item : items) {
+            Exercise exercise = new Exercise();
+            exercise.setExerciseId(item.getExerciseId());
+            exercise.setText(item.getText());
+            exercises.add(exercise);
+            for (ExerciseAnswer answer : item.getAnswers() != null ? item.getAnswers() : List.<ExerciseAnswer>of()) {
+                answer.setExerciseId(item.getExerciseId());
+                answers.add(answer);
+            }
+            for (ExerciseHint hint : item.getHints() != null ? item.getHints() : List.<ExerciseHint>of()) {
+                hint.setExerciseId(item.getExerciseId());
+                hints.add(hint);
+            }
+        }
+
+        Exercises result = new Exercises();
+        result.setExercises(exercises);
+        result.setAnswers(answers);
+        result.setHints(hints);
+        return result;
+    }
+
+    private void store(ExerciseRequest exerciseRequest, Exercises exercises) {
+        try {
+            exerciseStoreService.save(exerciseRequest, exercises);
+        } catch (RuntimeException e) {
+            // Storing is best effort, the learner still gets the generated exercises
+            log.warn("Failed to store exercises for request: {}", exerciseRequest, e);
+        }
+    }
+
+    /**
+     * Generates the shards concurrently and merges them. Exercises missing after a shard failed or after
+     * near-duplicates were dropped are generated in top-up rounds, a request that still falls short fails.
+     */
+    private Exercises completeShardedExercises(ExerciseRequest exerciseRequest, RateLimiter.Priority priority,
+                                               int exercisesPerShard) {
+        int total = exerciseRequest.getTotal();
+        Exercises merged = null;
+        RuntimeException failure = null;
+        for (int round = 0; round <= MAX_TOP_UP_ROUNDS; round++) {
+            int missing = total - size(merged);
+            if (missing <= 0) {
+                break;
+            }
+            List<ExerciseRequest> shards = shard(exerciseRequest.toBuilder().total(missing).build(),
+                    exercisesPerShard);
+            if (round == 0) {
+                log.info("Generating exercises in {} shards for request: {}", shards.size(), exerciseRequest);
+            } else {
+                log.warn("Topping up {} missing exercises in {} shards for request: {}",
+                        missing, shards.size(), exerciseRequest);
+            }
+
+            List<Exercises> results = new ArrayList<>();
+            if (merged != null) {
+                results.add(merged);
+            }
+            failure = completeShards(exerciseRequest, shards, priority, results);
+            merged = exerciseMerger.merge(results, total);
+        }
+
+        int generated = size(merged);
+        if (generated < total) {
+            if (failure != null) {
+                throw failure;
+            }
+            throw new IllegalStateException("Generated only " + generated + " of " + total + " distinct exercises");
+        }
+        return merged;
+    }
+
+    /**
+     * Adds the exercises of every shard that succeeded to the results and returns the failure of the last
+     * one that did not.
+     */
+    private RuntimeException completeShards(ExerciseRequest exerciseRequest, List<ExerciseRequest> shards,
+                                            RateLimiter.Priority priority, List<Exercises> results) {
+        RuntimeException failure = null;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Exercises>> futures = shards.stream()
+                    .map(shard -> executor.submit(() -> completeExercises(shard, priority)))
+                    .toList();
+            for (Future<Exercises> future : futures) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException e) {
+                    log.warn("Exercise shard failed for request: {}", exerciseRequest, e.getCause());
+                    failure = e.getCause() instanceof RuntimeException runtimeException ?
+                            runtimeException : new IllegalStateException(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    executor.shutdownNow();
+                    throw new IllegalStateException("Interrupted while generating exercises", e);
+                }
+            }
+        }
+        return failure;
+    }
+
+    private static int size(Exercises exercises) {
+        return exercises == null || exercises.getExercises() == null ? 0 : exercises.getExercises().size();
+    }
+
+    private List<ExerciseRequest> shard(ExerciseRequest exerciseRequest, int exercisesPerShard) {
+        int total = exerciseRequest.getTotal();
+        int shardCount = (total + exercisesPerShard - 1) / exercisesPerShard;
+
+        List<AIProvider> providers = new ArrayList<>(List.of(exerciseRequest.getProvider()));
+        if (spreadProviders) {
+            aiServiceProvider.getProviders(TEXT).stream()
+                    .filter(provider -> provider != exerciseRequest.getProvider())
+                    .forEach(providers::add);
+        }
+
+        List<ExerciseRequest> shards = new ArrayList<>();
+        for (int i = 0; i < shardCount; i++) {
+            // Spread the remainder so that shard sizes differ by at most one
+            int shardTotal = total / shardCount + (i < total % shardCount ? 1 : 0);
+            shards.add(exerciseRequest.toBuilder()
+                    .total(shardTotal)
+                    .provider(providers.get(i % providers.size()))
+                    .build());
+        }
+        return shards;
+    }
+
+    private Exercises completeExercises(ExerciseRequest exerciseRequest, RateLimiter.Priority priority) {
         log.info("Generating exercises for request: {}", exerciseRequest);
 
-        Map<String, Object> params = new HashMap<>();
-        params.put("exerciseLanguage", exerciseRequest.getExerciseLanguage());
-        params.put("userLanguage", exerciseRequest.getUserLanguage());
-        params.put("topic", exerciseRequest.getTopic());
-        params.put("level", exerciseRequest.getDifficulty());
-        params.put("isIncludeBaseForm", exerciseRequest.isIncludeBaseForm());
-        params.put("isIncludeHints", exerciseRequest.isIncludeHints());
-        params.put("exerciseCount", exerciseRequest.getTotal());
-
-        StringWriter writer = new StringWriter();
-        promptTemplate.execute(writer, params);
-
-        String model = aiServiceProvider.getModel(exerciseRequest.getProvider(), TEXT);
-        StructuredChatCompletionCreateParams<Exercises> createParams = ChatCompletionCreateParams.builder()
-                .addUserMessage(writer.toString())
+        ExercisePromptBuilder.ExercisePrompt prompt = buildPrompt(exerciseRequest);
+        for (int attempt = 1; ; attempt++) {
+            long capMultiplier = attempt;
+            ServedCompletion served = aiServiceProvider.execute(exerciseRequest.getProvider(), TEXT,
+                    admission(exerciseRequest, prompt, priority),
+                    (provider, client, model) -> complete(provider, client, model, exerciseRequest, prompt,
+                            capMultiplier));
+            StructuredChatCompletion<Exercises> exercisesResponseStructuredChatCompletion = served.completion();
+
+            String model = exercisesResponseStructuredChatCompletion.rawChatCompletion().model();
+            CompletionUsage usage = exercisesResponseStructuredChatCompletion.rawChatCompletion().usage().get();
+            long completionTokens = usage.completionTokens();
+            long promptTokens = usage.promptTokens();
+            long cachedPromptTokens = usage.promptTokensDetails()
+                    .flatMap(CompletionUsage.PromptTokensDetails::cachedTokens)
+                    .orElse(0L);
+
+            log.info("Generated exercises using model: {}, completion tokens: {}, prompt tokens: {}, "
+                            + "cached prompt tokens: {}, request: {}",
+                    model, completionTokens, promptTokens, cachedPromptTokens, exerciseRequest);
+
+            // A completion cut off by the cap is truncated JSON, a runaway sample is unlikely to repeat
+            ChatCompletion.Choice choice = exercisesResponseStructuredChatCompletion.rawChatCompletion()
+                    .choices().getFirst();
+            if (choice.finishReason().equals(ChatCompletion.Choice.FinishReason.LENGTH)) {
+                if (attempt < MAX_COMPLETION_ATTEMPTS) {
+                    log.warn("Exercise completion reached the token cap at {} tokens, retrying with a doubled cap, "
+                            + "request: {}", completionTokens, exerciseRequest);
+                    continue;
+                }
+                throw new IllegalStateException("Exercise completion reached the token cap at "
+                        + completionTokens + " tokens");
+            }
+
+            // The structured content is deserialized lazily, on first access
+            long start = System.nanoTime();
+            Exercises exercises = exercisesResponseStructuredChatCompletion
+                    .choices()
+                    .getFirst()
+                    .message()
+                    .content()
+                    .orElseThrow(() -> new IllegalStateException("No content in the response"));
+            aiMetrics.recordParsing(served.provider(), served.model(), TEXT,
+                    Duration.ofNanos(System.nanoTime() - start));
+            return exercises;
+        }
+    }
+
+    private ServedCompletion complete(AIProvider provider,
+                                      OpenAIClient client,
+                                      String model,
+                                      ExerciseRequest exerciseRequest,
+                                      ExercisePromptBuilder.ExercisePrompt prompt,
+                                      long capMultiplier) {
+        long maxCompletionTokens = exerciseTokenBudget.estimate(exerciseRequest, prompt, model)
+                .maxCompletionTokens() * capMultiplier;
+        long start = System.nanoTime();
+        StructuredChatCompletion<Exercises> completion = client.chat().completions()
+                .create(createCompletionParams(prompt, model, maxCompletionTokens));
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+        completion.rawChatCompletion().usage().ifPresent(usage ->
+                recordUsage(provider, model, exerciseRequest, prompt, usage, elapsed));
+        return new ServedCompletion(provider, model, completion);
+    }
+
+    private void recordUsage(AIProvider provider, String model, ExerciseRequest exerciseRequest,
+                             ExercisePromptBuilder.ExercisePrompt prompt, CompletionUsage usage, Duration elapsed) {
+        // Tagged with the configured model, the reported one is a dated snapshot that only goes to the log
+        aiMetrics.recordTokens(provider, model, TEXT, usage.promptTokens(), usage.completionTokens());
+        exerciseTokenBudget.record(exerciseRequest, prompt, model, usage.promptTokens(), usage.completionTokens(),
+                elapsed);
+    }
+
+    private StructuredChatCompletionCreateParams<Exercises> createCompletionParams(
+            ExercisePromptBuilder.ExercisePrompt prompt, String model, long maxCompletionTokens) {
+        return ChatCompletionCreateParams.builder()
+                .addSystemMessage(prompt.system())
+                .addUserMessage(prompt.user())
                 .responseFormat(Exercises.class)
                 .temperature(1.75)
                 .topP(0.95)
+                .maxCompletionTokens(maxCompletionTokens)
                 .model(model)
                 .build();
+    }
+
+    private RateLimiter.Admission admission(ExerciseRequest exerciseRequest,
+                                            ExercisePromptBuilder.ExercisePrompt prompt,
+                                            RateLimiter.Priority priority) {
+        long estimatedTokens = candidateModels(exerciseRequest).stream()
+                .mapToLong(model -> exerciseTokenBudget.estimate(exerciseRequest, prompt, model).totalTokens())
+                .max()
+                .orElse(0);
+        return new RateLimiter.Admission(priority, estimatedTokens);
+    }
+
+    /**
+     * The models the request may be routed to; any configured one for {@link AIProvider#AUTO}.
+     */
+    private List<String> candidateModels(ExerciseRequest exerciseRequest) {
+        List<AIProvider> providers = exerciseRequest.getProvider() == AIProvider.AUTO ?
+                aiServiceProvider.getProviders(TEXT) : List.of(exerciseRequest.getProvider());
+        return providers.stream().map(provider -> aiServiceProvider.getModel(provider, TEXT)).toList();
+    }
+
+    private ExercisePromptBuilder.ExercisePrompt buildPrompt(ExerciseRequest exerciseRequest) {
+        AIProvider provider = exerciseRequest.getProvider();
+        return aiMetrics.recordPromptRendering(provider, getModel(provider), TEXT,
+                () -> exercisePromptBuilder.build(exerciseRequest));
+    }
+
+    /**
+     * A completion with the provider and configured model that served it, known only once the call is routed.
+     */
+    private record ServedCompletion(AIProvider provider, String model, StructuredChatCompletion<Exercises> completion) {
+    }
+
+    /**
+     * Same as {@link ServedCompletion} for a streamed completion, closeable so that an abandoned hedge attempt
+     * closes its stream.
+     */
+    private record ServedStream(AIProvider provider, String model, StreamResponse<ChatCompletionChunk> stream)
+            implements AutoCloseable {
 
-        StructuredChatCompletion<Exercises> exercisesResponseStructuredChatCompletion =
-                aiServiceProvider.getClient(exerciseRequest.getProvider())
-                        .chat()
-                        .completions()
-                        .create(createParams);
-
-        CompletionUsage usage = exercisesResponseStructuredChatCompletion.rawChatCompletion().usage().get();
-        long completionTokens = usage.completionTokens();
-        long promptTokens = usage.promptTokens();
-
-        log.info("Generated exercises using model: {}, completion tokens: {}, prompt tokens: {}, request: {}",
-                model, completionTokens, promptTokens, exerciseRequest);
-
-        return exercisesResponseStructuredChatCompletion
-                .choices()
-                .getFirst()
-                .message()
-                .content()
-                .orElseThrow(() -> new IllegalStateException("No content in the response"));
+        @Override
+        public void close() {
+            stream.close();
+        }
     }
 }
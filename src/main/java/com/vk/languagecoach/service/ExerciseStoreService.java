@@ -0,0 +1,111 @@
+package com.vk.languagecoach.service;
+
+import com.vk.languagecoach.dto.ExerciseDifficulty;
+import com.vk.languagecoach.dto.request.ExerciseRequest;
+import com.vk.languagecoach.dto.response.ExerciseSetResponse;
+import com.vk.languagecoach.dto.response.ExerciseSetSearchResponse;
+import com.vk.languagecoach.entity.ExerciseSetEntity;
+import com.vk.languagecoach.mapper.ExerciseMapper;
+import com.vk.languagecoach.model.Exercises;
+import com.vk.languagecoach.repository.ExerciseSetRepository;
+import com.vk.languagecoach.service.grading.AnswerIndex;
+import com.vk.languagecoach.service.search.ExerciseSearchIndex;
+import com.vk.languagecoach.service.search.SearchDocument;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.vk.languagecoach.service.cache.ExerciseRequestKey.normalize;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ExerciseStoreService {
+
+    private static final int MAX_SEARCH_RESULTS = 50;
+
+    private final ExerciseSetRepository exerciseSetRepository;
+    private final ExerciseMapper exerciseMapper;
+    private final ExerciseSearchIndex exerciseSearchIndex;
+    private final AnswerIndex answerIndex;
+
+    @Transactional
+    public Long save(ExerciseRequest exerciseRequest, Exercises exercises) {
+        // Gradable even when storing fails, the store is only the fallback once the index has evicted them
+        answerIndex.index(exercises);
+        ExerciseSetEntity exerciseSet = exerciseSetRepository.save(
+                exerciseMapper.mapToExerciseSetEntity(exerciseRequest, exercises));
+        log.info("Stored exercise set: {} with {} exercises", exerciseSet.getId(), exerciseSet.getExercises().size());
+
+        // Searchable once committed, so a rolled back set never shows up in results
+        SearchDocument document = SearchDocument.of(exerciseSet);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    exerciseSearchIndex.add(document);
+                }
+            });
+        } else {
+            exerciseSearchIndex.add(document);
+        }
+        return exerciseSet.getId();
+    }
+
+    @Transactional(readOnly = true)
+    public List<ExerciseSetSearchResponse> search(String query,
+                                                  String exerciseLanguage,
+                                                  String userLanguage,
+                                                  ExerciseDifficulty difficulty,
+                                                  int limit) {
+        List<ExerciseSearchIndex.Hit> hits = exerciseSearchIndex.search(query, exerciseLanguage, userLanguage,
+                difficulty, Math.min(limit, MAX_SEARCH_RESULTS));
+        Map<Long, ExerciseSetEntity> exerciseSets = exerciseSetRepository
+                .findAllById(hits.stream().map(ExerciseSearchIndex.Hit::setId).toList()).stream()
+                .collect(Collectors.toMap(ExerciseSetEntity::getId, Function.identity()));
+
+        return hits.stream()
+                .filter(hit -> exerciseSets.containsKey(hit.setId()))
+                .map(hit -> new ExerciseSetSearchResponse(hit.score(),
+                        exerciseMapper.mapToExerciseSetResponse(exerciseSets.get(hit.setId()))))
+                .toList();
+    }
+
+    @Transactional(readOnly = true)
+    public Page<ExerciseSetResponse> find(String exerciseLanguage,
+                                          String userLanguage,
+                                          String topic,
+                                          ExerciseDifficulty difficulty,
+                                          Pageable pageable) {
+        Specification<ExerciseSetEntity> specification = Specification.allOf(
+                equalTo("exerciseLanguage", exerciseLanguage == null ? null : normalize(exerciseLanguage)),
+                equalTo("userLanguage", userLanguage == null ? null : normalize(userLanguage)),
+                equalTo("topic", topic == null ? null : normalize(topic)),
+                equalTo("difficulty", difficulty));
+
+        return exerciseSetRepository.findAll(specification, pageable)
+                .map(exerciseMapper::mapToExerciseSetResponse);
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<ExerciseSetResponse> findById(Long id) {
+        return exerciseSetRepository.findById(id).map(exerciseMapper::mapToExerciseSetResponse);
+    }
+
+    private Specification<ExerciseSetEntity> equalTo(String attribute, Object value) {
+        return (root, query, criteriaBuilder) ->
+                value == null ? null : criteriaBuilder.equal(root.get(attribute), value);
+    }
+}
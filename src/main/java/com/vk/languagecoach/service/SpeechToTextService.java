@@ -1,20 +1,35 @@
 package com.vk.languagecoach.service;
 
+import com.openai.core.MultipartField;
 import com.openai.models.audio.transcriptions.Transcription;
 import com.openai.models.audio.transcriptions.TranscriptionCreateParams;
 import com.vk.languagecoach.dto.AIProvider;
 import com.vk.languagecoach.dto.response.SpeechToTextResponse;
+import com.vk.languagecoach.metrics.AIMetrics;
 import com.vk.languagecoach.service.ai.AIServiceProvider;
+import com.vk.languagecoach.service.ai.RateLimitExceededException;
+import com.vk.languagecoach.service.async.AsyncTasks;
+import com.vk.languagecoach.service.buffer.AudioBuffer;
+import com.vk.languagecoach.service.buffer.AudioBufferPool;
+import com.vk.languagecoach.service.cache.SingleFlight;
+import com.vk.languagecoach.service.cache.TranscriptionCache;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
-import java.util.Arrays;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 
 import static com.vk.languagecoach.dto.AIModelType.SPEECH_TO_TEXT;
 
@@ -24,59 +39,183 @@ public class SpeechToTextService {
 
 
     private final AIServiceProvider aiServiceProvider;
+    private final TranscriptionCache transcriptionCache;
+    private final AudioBufferPool audioBufferPool;
+    private final AsyncTasks asyncTasks;
+    private final AIMetrics aiMetrics;
+    private final SingleFlight<String, String> transcriptionFlights = new SingleFlight<>();
+    private final Semaphore permits;
 
-    public SpeechToTextService(AIServiceProvider aiServiceProvider) {
+    public SpeechToTextService(AIServiceProvider aiServiceProvider,
+                               TranscriptionCache transcriptionCache,
+                               AudioBufferPool audioBufferPool,
+                               AsyncTasks asyncTasks,
+                               AIMetrics aiMetrics,
+                               @Value("${speech-to-text.concurrency}") int concurrency) {
         this.aiServiceProvider = aiServiceProvider;
+        this.transcriptionCache = transcriptionCache;
+        this.audioBufferPool = audioBufferPool;
+        this.asyncTasks = asyncTasks;
+        this.aiMetrics = aiMetrics;
+        aiMetrics.registerSingleFlight("speech-to-text", transcriptionFlights);
+        this.permits = new Semaphore(concurrency, true);
     }
 
-    public List<SpeechToTextResponse> speechToText(MultipartFile[] files, String language, AIProvider provider) throws IOException {
-        return Arrays.stream(files)
-                .map(file -> {
-                    try {
-                        return speechToText(file, language, provider);
-                    } catch (IOException e) {
-                        throw new RuntimeException("Error processing file: " + file.getOriginalFilename(), e);
+    /**
+     * Transcribes all files concurrently. A failing file does not fail the batch, its error is
+     * reported in its own response instead. When the rate limiter rejects every file, the rejection is thrown
+     * so that the caller is told when to retry.
+     */
+    public List<SpeechToTextResponse> speechToText(MultipartFile[] files, String language, AIProvider provider) {
+        List<SpeechToTextResponse> responses = new ArrayList<>(files.length);
+        RateLimitExceededException rejection = null;
+        int rejected = 0;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<SpeechToTextResponse>> futures = new ArrayList<>(files.length);
+            for (MultipartFile file : files) {
+                futures.add(executor.submit(() -> speechToTextOrError(file, language, provider)));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    responses.add(futures.get(i).get());
+                } catch (InterruptedException e) {
+                    // Closing the executor waits for the transcriptions, cancel them first
+                    executor.shutdownNow();
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while transcribing files", e);
+                } catch (ExecutionException e) {
+                    if (!(e.getCause() instanceof RateLimitExceededException exceeded)) {
+                        throw new IllegalStateException("Error transcribing files", e.getCause());
+                    }
+                    rejected++;
+                    if (rejection == null || exceeded.getRetryAfter().compareTo(rejection.getRetryAfter()) > 0) {
+                        rejection = exceeded;
                     }
-                })
-                .collect(Collectors.toList());
+                    responses.add(errorResponse(files[i], language, exceeded));
+                }
+            }
+        }
+        if (rejection != null && rejected == files.length) {
+            throw rejection;
+        }
+        return responses;
     }
 
-    public SpeechToTextResponse speechToText(MultipartFile file, String language, AIProvider provider) throws IOException {
-        log.info("Processing file: {}, language: {}, provider: {}", file.getOriginalFilename(), language, provider);
-        File tempFile = File.createTempFile(UUID.randomUUID().toString(), getFileExtension(file));
-        try {
-            file.transferTo(tempFile.toPath());
-
-            TranscriptionCreateParams createParams = TranscriptionCreateParams.builder()
-                    .file(tempFile.toPath())
-                    .model(aiServiceProvider.getModel(provider, SPEECH_TO_TEXT))
-                    .build();
-            Transcription transcription = aiServiceProvider.getClient(provider)
-                    .audio().transcriptions().create(createParams).asTranscription();
+    /**
+     * Same as {@link #speechToText(MultipartFile[], String, AIProvider)} on a virtual thread. Cancelling the
+     * future cancels the transcriptions in flight.
+     */
+    public CompletableFuture<List<SpeechToTextResponse>> speechToTextAsync(MultipartFile[] files, String language,
+                                                                           AIProvider provider) {
+        return asyncTasks.supply(() -> speechToText(files, language, provider));
+    }
 
-            log.info("Processed file: {}, language: {}, provider: {}, transcription: {}",
-                    file.getOriginalFilename(), language, provider, transcription.text());
+    public SpeechToTextResponse speechToText(MultipartFile file, String language, AIProvider provider) {
+        log.info("Processing file: {}, language: {}, provider: {}", file.getOriginalFilename(), language, provider);
+        validateFileExtension(file);
 
+        // The fingerprint is hashed straight off the upload, a cache hit never buffers it
+        String fingerprint = fingerprint(file, language, provider);
+        Optional<String> cached = transcriptionCache.get(fingerprint);
+        if (cached.isPresent()) {
+            log.info("Serving cached transcription for file: {}, language: {}, provider: {}",
+                    file.getOriginalFilename(), language, provider);
             return SpeechToTextResponse.builder()
                     .language(language)
-                    .text(transcription.text())
+                    .text(cached.get())
                     .fileName(file.getOriginalFilename())
                     .build();
-        } finally {
-            if (tempFile.exists()) {
-                tempFile.delete();
+        }
+
+        // Identical recordings submitted together share one transcription, only its leader buffers the upload
+        String text = transcriptionFlights.execute(fingerprint, () -> {
+            AudioBuffer audio = read(file);
+            try {
+                String transcription = transcribe(audio, file.getOriginalFilename(), provider);
+                transcriptionCache.put(fingerprint, transcription);
+                return transcription;
+            } finally {
+                audio.release();
             }
+        });
+
+        log.info("Processed file: {}, language: {}, provider: {}, transcription: {}",
+                file.getOriginalFilename(), language, provider, text);
+
+        return SpeechToTextResponse.builder()
+                .language(language)
+                .text(text)
+                .fileName(file.getOriginalFilename())
+                .build();
+    }
+
+    private String transcribe(AudioBuffer audio, String fileName, AIProvider provider) {
+        // Retries and hedged attempts replay the body from the buffer, every attempt opens its own stream
+        Transcription transcription = aiServiceProvider.execute(provider, SPEECH_TO_TEXT, (client, model) -> {
+            try (InputStream inputStream = audio.open()) {
+                TranscriptionCreateParams createParams = TranscriptionCreateParams.builder()
+                        .file(MultipartField.<InputStream>builder()
+                                .value(inputStream)
+                                .filename(fileName)
+                                .build())
+                        .model(model)
+                        .build();
+                return client.audio().transcriptions().create(createParams).asTranscription();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Error reading file: " + fileName, e);
+            }
+        });
+        aiMetrics.recordAudioBytes(SPEECH_TO_TEXT, "in", audio.size());
+        return transcription.text();
+    }
+
+    private AudioBuffer read(MultipartFile file) {
+        AudioBuffer audio = audioBufferPool.allocate((int) Math.min(file.getSize(), Integer.MAX_VALUE));
+        try (InputStream inputStream = file.getInputStream()) {
+            audio.readFrom(inputStream);
+            return audio;
+        } catch (IOException e) {
+            audio.release();
+            throw new UncheckedIOException("Error reading file: " + file.getOriginalFilename(), e);
+        }
+    }
+
+    private SpeechToTextResponse speechToTextOrError(MultipartFile file, String language, AIProvider provider)
+            throws InterruptedException {
+        permits.acquire();
+        try {
+            return speechToText(file, language, provider);
+        } catch (RateLimitExceededException e) {
+            // Left to the caller, which rejects the whole request when no file was admitted
+            throw e;
+        } catch (RuntimeException e) {
+            log.warn("Error processing file: {}", file.getOriginalFilename(), e);
+            return errorResponse(file, language, e);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private SpeechToTextResponse errorResponse(MultipartFile file, String language, RuntimeException e) {
+        return SpeechToTextResponse.builder()
+                .language(language)
+                .fileName(file.getOriginalFilename())
+                .error(e.getMessage())
+                .build();
+    }
+
+    private String fingerprint(MultipartFile file, String language, AIProvider provider) {
+        String model = provider == AIProvider.AUTO ? "" : aiServiceProvider.getModel(provider, SPEECH_TO_TEXT);
+        try (InputStream inputStream = file.getInputStream()) {
+            return transcriptionCache.key(inputStream, provider, model, language);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading file: " + file.getOriginalFilename(), e);
         }
     }
 
-    private String getFileExtension(MultipartFile file) {
-        int lastDotIndex = file.getOriginalFilename().lastIndexOf(".");
-        String fileExtension;
-        if (lastDotIndex != -1) {
-            fileExtension = file.getOriginalFilename().substring(lastDotIndex);
-        } else {
+    private void validateFileExtension(MultipartFile file) {
+        if (file.getOriginalFilename() == null || file.getOriginalFilename().lastIndexOf(".") == -1) {
             throw new IllegalArgumentException("File must have an extension");
         }
-        return fileExtension;
     }
 }
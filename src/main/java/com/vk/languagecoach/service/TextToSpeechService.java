@@ -2,90 +2,426 @@ package com.vk.languagecoach.service;
 
 import com.openai.core.http.HttpResponse;
 import com.openai.models.audio.speech.SpeechCreateParams;
+import com.vk.languagecoach.dto.AIProvider;
+import com.vk.languagecoach.dto.AudioFormat;
 import com.vk.languagecoach.dto.request.tts.TextToSpeechRequest;
 import com.vk.languagecoach.dto.request.tts.TextToSpeechTextRequest;
-import com.vk.languagecoach.dto.response.tts.TextToSpeechResponse;
-import com.vk.languagecoach.dto.response.tts.TextToSpeechTextChunkResponse;
-import com.vk.languagecoach.dto.response.tts.TextToSpeechTextResponse;
+import com.vk.languagecoach.metrics.AIMetrics;
 import com.vk.languagecoach.service.ai.AIServiceProvider;
+import com.vk.languagecoach.service.ai.HttpResponseInputStream;
+import com.vk.languagecoach.service.ai.RateLimiter;
+import com.vk.languagecoach.service.buffer.AudioBufferPool;
+import com.vk.languagecoach.service.buffer.SharedAudio;
+import com.vk.languagecoach.service.cache.SingleFlight;
+import com.vk.languagecoach.service.cache.TextToSpeechCache;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.ByteArrayResource;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StreamUtils;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.function.LongConsumer;
 
 import static com.vk.languagecoach.dto.AIModelType.TEXT_TO_SPEECH;
-import static com.vk.languagecoach.dto.AIProvider.OPENAI;
 
 @Service
 @Slf4j
 public class TextToSpeechService {
 
+    private static final SpeechCreateParams.Voice VOICE = SpeechCreateParams.Voice.ALLOY;
+    private static final AudioFormat DEFAULT_FORMAT = AudioFormat.MP3;
+    private static final int STREAM_BUFFER_SIZE = 8192;
 
     private final AIServiceProvider aiServiceProvider;
+    private final TextToSpeechCache textToSpeechCache;
+    private final AudioBufferPool audioBufferPool;
+    private final AIMetrics aiMetrics;
+    private final SingleFlight<String, SharedAudio> speechFlights = new SingleFlight<>();
+    private final ExecutorService responseReaders = Executors.newVirtualThreadPerTaskExecutor();
+    private final AIProvider provider;
+    private final Semaphore globalPermits;
+    private final int perRequestConcurrency;
+    private final Duration followerTimeout;
 
-    public TextToSpeechService(AIServiceProvider aiServiceProvider) {
+    public TextToSpeechService(AIServiceProvider aiServiceProvider,
+                               TextToSpeechCache textToSpeechCache,
+                               AudioBufferPool audioBufferPool,
+                               AIMetrics aiMetrics,
+                               @Value("${text-to-speech.provider}") String provider,
+                               @Value("${text-to-speech.concurrency.per-request}") int perRequestConcurrency,
+                               @Value("${text-to-speech.concurrency.global}") int globalConcurrency,
+                               @Value("${text-to-speech.follower-timeout}") Duration followerTimeout) {
         this.aiServiceProvider = aiServiceProvider;
+        this.textToSpeechCache = textToSpeechCache;
+        this.audioBufferPool = audioBufferPool;
+        this.aiMetrics = aiMetrics;
+        aiMetrics.registerSingleFlight("text-to-speech", speechFlights);
+        this.provider = AIProvider.fromString(provider);
+        this.perRequestConcurrency = perRequestConcurrency;
+        this.globalPermits = new Semaphore(globalConcurrency, true);
+        this.followerTimeout = followerTimeout;
     }
 
-    public ByteArrayResource textToSpeech(String text, String instructions, double speed) throws IOException {
-        log.info("Generating speech for text: {}, instructions: {}, speed: {}", text, instructions, speed);
-        SpeechCreateParams build = SpeechCreateParams.builder()
-                .body(SpeechCreateParams.Body.builder()
-                        .input(text)
-                        .model(aiServiceProvider.getModel(OPENAI, TEXT_TO_SPEECH))
-                        .voice(SpeechCreateParams.Voice.ALLOY)
-                        .build())
-                .responseFormat(SpeechCreateParams.ResponseFormat.MP3)
-                .instructions(instructions)
-                .speed(speed)
-                .build();
-
-        try (HttpResponse httpResponse = aiServiceProvider.getClient(OPENAI).audio().speech().create(build)) {
-            byte[] bytes;
-            try (InputStream inputStream = httpResponse.body()) {
-                bytes = StreamUtils.copyToByteArray(inputStream);
+    @PreDestroy
+    public void shutdown() {
+        responseReaders.shutdownNow();
+    }
+
+    public AIProvider getProvider() {
+        return provider;
+    }
+
+    public String getModel() {
+        return aiServiceProvider.getModel(provider, TEXT_TO_SPEECH);
+    }
+
+    public HttpResponse textToSpeech(String text, String instructions, double speed, AudioFormat format,
+                                     RateLimiter.Admission admission) {
+        log.info("Generating speech for text: {}, instructions: {}, speed: {}, format: {}",
+                text, instructions, speed, format);
+        return aiServiceProvider.execute(provider, TEXT_TO_SPEECH, admission, (client, model) -> {
+            SpeechCreateParams build = SpeechCreateParams.builder()
+                    .body(SpeechCreateParams.Body.builder()
+                            .input(text)
+                            .model(model)
+                            .voice(VOICE)
+                            .build())
+                    .responseFormat(SpeechCreateParams.ResponseFormat.of(format.toString()))
+                    .instructions(instructions)
+                    .speed(speed)
+                    .build();
+
+            return client.audio().speech().create(build);
+        });
+    }
+
+    public InputStream openSpeech(String text, String instructions, double speed) {
+        return openSpeech(text, instructions, speed, DEFAULT_FORMAT, RateLimiter.Admission.of(TEXT_TO_SPEECH));
+    }
+
+    /**
+     * Opens the audio of a single chunk, served from the cache when the same phrase was synthesized before.
+     * Concurrent requests for the same phrase share a single provider call: its response is read at the
+     * provider's pace into a shared buffer, which every caller streams from as it fills. The leader holds a global
+     * permit until the provider response has been read, callers waiting for another caller's synthesis hold none.
+     */
+    public InputStream openSpeech(String text, String instructions, double speed, AudioFormat format,
+                                  RateLimiter.Admission admission) {
+        String key = textToSpeechCache.key(aiServiceProvider.getModel(provider, TEXT_TO_SPEECH), VOICE.toString(),
+                text, instructions, speed, format.toString());
+        Optional<InputStream> cached = textToSpeechCache.get(key);
+        if (cached.isPresent()) {
+            log.info("Serving cached speech for text: {}, instructions: {}, speed: {}", text, instructions, speed);
+            return fromCache(cached.get());
+        }
+
+        SingleFlight.Flight<SharedAudio> flight = speechFlights.begin(key);
+        if (!flight.isLeader()) {
+            Optional<InputStream> shared = openShared(flight, key);
+            if (shared.isPresent()) {
+                log.info("Serving coalesced speech for text: {}, instructions: {}, speed: {}", text, instructions, speed);
+                return shared.get();
             }
+            // The leader's call failed or did not respond in time, synthesize on our own
+            return textToSpeechCache.tee(key, fromProvider(synthesize(text, instructions, speed, format, admission)));
+        }
+
+        InputStream response;
+        try {
+            acquireGlobalPermit();
+        } catch (RuntimeException e) {
+            flight.fail(e);
+            throw e;
+        }
+        try {
+            response = new HttpResponseInputStream(textToSpeech(text, instructions, speed, format, admission));
+        } catch (RuntimeException e) {
+            globalPermits.release();
+            flight.fail(e);
+            throw e;
+        }
+        SharedAudio audio = new SharedAudio(audioBufferPool.allocate(0));
+        InputStream leaderStream = audio.tryOpen().orElseThrow();
+        flight.share(audio);
+        try {
+            // The permit goes with the response, it is safe to hold since reading it never waits on a reader
+            responseReaders.execute(() -> readResponse(key, response, audio, flight));
+        } catch (RejectedExecutionException e) {
+            closeQuietly(response);
+            audio.fail(e);
+            audio.release();
+            flight.fail(e);
+            globalPermits.release();
+        }
+        return leaderStream;
+    }
 
-            log.info("Generated speech for text: {}, instructions: {}, speed: {}", text, instructions, speed);
-            return new ByteArrayResource(bytes);
+    /**
+     * Streams the audio of a single phrase to the output as the provider produces it, flushing after every read
+     * so that playback can start before synthesis is complete. The audio is teed into the cache on the way.
+     */
+    public void streamSpeech(String text, String instructions, double speed, AudioFormat format,
+                             OutputStream outputStream) throws IOException {
+        // A learner is waiting for playback, admit ahead of bulk synthesis
+        try (InputStream inputStream = openSpeech(text, instructions, speed, format,
+                new RateLimiter.Admission(RateLimiter.Priority.INTERACTIVE, 0))) {
+            byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, read);
+                outputStream.flush();
+            }
         }
     }
 
-    public TextToSpeechResponse textToSpeech(TextToSpeechRequest textToSpeechRequest) throws IOException {
+    /**
+     * Synthesizes all chunks of the request and hands each chunk's audio to the consumer in request order
+     * while the provider is still streaming it. At most {@code per-request} responses are open at a time,
+     * so memory stays bounded regardless of the number of chunks.
+     */
+    public void textToSpeech(TextToSpeechRequest textToSpeechRequest, ChunkAudioConsumer consumer) throws IOException {
         log.info("Generating speech for request: {}", textToSpeechRequest);
 
-        List<TextToSpeechTextResponse> textResponses = new ArrayList<>();
+        List<SpeechChunk> chunks = chunks(textToSpeechRequest);
+        Deque<Future<InputStream>> window = new ArrayDeque<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            int submitted = 0;
+            try {
+                for (; submitted < Math.min(perRequestConcurrency, chunks.size()); submitted++) {
+                    window.add(submitChunk(executor, textToSpeechRequest, chunks.get(submitted)));
+                }
+
+                for (SpeechChunk chunk : chunks) {
+                    try (InputStream inputStream = awaitChunk(window.poll())) {
+                        if (submitted < chunks.size()) {
+                            window.add(submitChunk(executor, textToSpeechRequest, chunks.get(submitted)));
+                            submitted++;
+                        }
+                        consumer.accept(chunk.name(), inputStream);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                discard(window);
+                executor.shutdownNow();
+                throw e;
+            }
+        }
+
+        log.info("Generated response for request: {}", textToSpeechRequest);
+    }
 
+    /**
+     * Flattens the texts of the request into named chunks, in the order they appear in the archive.
+     */
+    public List<SpeechChunk> chunks(TextToSpeechRequest textToSpeechRequest) {
+        List<SpeechChunk> chunks = new ArrayList<>();
         List<TextToSpeechTextRequest> textRequests = textToSpeechRequest.getTexts();
         for (int i = 0; i < textRequests.size(); i++) {
-            TextToSpeechTextRequest textRequest = textRequests.get(i);
-            List<String> chunkRequests = textRequest.getChunks();
-            List<TextToSpeechTextChunkResponse> chunkResponses = processChunks(textToSpeechRequest, chunkRequests, i);
-            TextToSpeechTextResponse textResponse = new TextToSpeechTextResponse(chunkResponses);
-            textResponses.add(textResponse);
+            List<String> texts = textRequests.get(i).getChunks();
+            for (int chunkIndex = 0; chunkIndex < texts.size(); chunkIndex++) {
+                String name = String.format("%d-%d.mp3", i, chunkIndex);
+                chunks.add(new SpeechChunk(name, texts.get(chunkIndex)));
+            }
         }
+        return chunks;
+    }
 
+    /**
+     * Synthesizes a single chunk into the target file. The file only appears once the audio is complete.
+     */
+    public void writeSpeech(TextToSpeechRequest textToSpeechRequest, SpeechChunk chunk, Path target) throws IOException {
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+        try (InputStream inputStream = openSpeech(chunk.text(), textToSpeechRequest.getInstructions(),
+                textToSpeechRequest.getSpeed())) {
+            Files.copy(inputStream, partial, StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
 
-        log.info("Generated response for request: {}", textToSpeechRequest);
-        return new TextToSpeechResponse(textResponses);
+    /**
+     * Synthesizes for a follower that could not join its leader. The global permit only covers the provider
+     * round-trip, the body is read at the caller's pace and bounded by the caller's window.
+     */
+    private InputStream synthesize(String text, String instructions, double speed, AudioFormat format,
+                                   RateLimiter.Admission admission) {
+        acquireGlobalPermit();
+        try {
+            return new HttpResponseInputStream(textToSpeech(text, instructions, speed, format, admission));
+        } finally {
+            globalPermits.release();
+        }
     }
 
-    private List<TextToSpeechTextChunkResponse> processChunks(TextToSpeechRequest textToSpeechRequest,
-                                                              List<String> chunkRequests,
-                                                              int textRequestIndex) throws IOException {
-        List<TextToSpeechTextChunkResponse> chunkResponses = new ArrayList<>();
-        for (int chunkIndex = 0; chunkIndex < chunkRequests.size(); chunkIndex++) {
-            String chunk = chunkRequests.get(chunkIndex);
-            String name = String.format("%d-%d.mp3", textRequestIndex, chunkIndex);
+    private void acquireGlobalPermit() {
+        try {
+            globalPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating speech", e);
+        }
+    }
+
+    /**
+     * Reads the provider response into the shared audio as fast as the provider sends it, regardless of how
+     * fast its readers consume it, and caches the audio once complete. Releases the leader's global permit.
+     */
+    private void readResponse(String key, InputStream response, SharedAudio audio,
+                              SingleFlight.Flight<SharedAudio> flight) {
+        long received = 0;
+        try (response) {
+            byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+            int read;
+            while ((read = response.read(buffer)) != -1) {
+                audio.write(buffer, 0, read);
+                received += read;
+            }
+            audio.finish();
+            // Cached before the flight ends, so that callers arriving after it find the audio
+            textToSpeechCache.put(key, audio.getAudio());
+            flight.complete(audio);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to read speech response for key: {}", key, e);
+            audio.fail(e);
+            flight.fail(e);
+        } finally {
+            audio.release();
+            globalPermits.release();
+            aiMetrics.recordAudioBytes(TEXT_TO_SPEECH, "out", received);
+        }
+    }
 
-            ByteArrayResource resource = textToSpeech(chunk, textToSpeechRequest.getInstructions(), textToSpeechRequest.getSpeed());
-            chunkResponses.add(new TextToSpeechTextChunkResponse(name, chunk, resource));
+    private Optional<InputStream> openShared(SingleFlight.Flight<SharedAudio> flight, String key) {
+        try {
+            // The shared audio goes back to the pool once it is complete and every reader is done, late followers
+            // read the cache
+            Optional<InputStream> shared = flight.await(followerTimeout).tryOpen();
+            return shared.isPresent() ? shared : textToSpeechCache.get(key).map(this::fromCache);
+        } catch (RuntimeException e) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw e;
+            }
+            return Optional.empty();
+        }
+    }
+
+    private InputStream fromCache(InputStream audio) {
+        return new MeteredInputStream(audio, bytes -> aiMetrics.recordCachedAudioBytes(TEXT_TO_SPEECH, bytes));
+    }
+
+    private InputStream fromProvider(InputStream audio) {
+        return new MeteredInputStream(audio, bytes -> aiMetrics.recordAudioBytes(TEXT_TO_SPEECH, "out", bytes));
+    }
+
+    private Future<InputStream> submitChunk(ExecutorService executor,
+                                             TextToSpeechRequest textToSpeechRequest,
+                                             SpeechChunk chunk) {
+        return executor.submit(() -> openSpeech(chunk.text(), textToSpeechRequest.getInstructions(),
+                textToSpeechRequest.getSpeed()));
+    }
+
+    private InputStream awaitChunk(Future<InputStream> chunkFuture) throws IOException {
+        try {
+            return chunkFuture.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while generating speech", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException("Error generating speech", cause);
+        }
+    }
+
+    private void discard(Deque<Future<InputStream>> window) {
+        for (Future<InputStream> future : window) {
+            if (!future.cancel(true) && future.state() == Future.State.SUCCESS) {
+                closeQuietly(future.resultNow());
+            }
+        }
+        window.clear();
+    }
+
+    private void closeQuietly(InputStream inputStream) {
+        try {
+            inputStream.close();
+        } catch (IOException e) {
+            log.warn("Failed to close speech stream", e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface ChunkAudioConsumer {
+        void accept(String name, InputStream audio) throws IOException;
+    }
+
+    public record SpeechChunk(String name, String text) {
+    }
+
+    /**
+     * Reports how many bytes were read from the stream once it is closed.
+     */
+    private static final class MeteredInputStream extends FilterInputStream {
+
+        private final LongConsumer recorder;
+        private long bytes;
+        private boolean closed;
+
+        MeteredInputStream(InputStream in, LongConsumer recorder) {
+            super(in);
+            this.recorder = recorder;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = super.read();
+            if (read != -1) {
+                bytes++;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                bytes += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (!closed) {
+                    closed = true;
+                    recorder.accept(bytes);
+                }
+            }
         }
-        return chunkResponses;
     }
 }
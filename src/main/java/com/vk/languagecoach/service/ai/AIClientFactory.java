@@ -0,0 +1,114 @@
+package com.vk.languagecoach.service.ai;
+
+import com.openai.client.OpenAIClient;
+import com.openai.client.OpenAIClientImpl;
+import com.openai.core.ClientOptions;
+import com.openai.core.Timeout;
+import jakarta.annotation.PreDestroy;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the OpenAI-compatible clients of all {@link AIService} implementations on top of one shared,
+ * tuned connection pool, so that warm TLS connections are reused across providers and requests.
+ */
+@Component
+public class AIClientFactory {
+
+    private final OkHttpClient okHttpClient;
+    private final ExecutorService dispatcherExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final OkHttpAIClient.RetryPolicy retryPolicy;
+    private final Timeout timeout;
+    private final RateLimiter rateLimiter;
+
+    public AIClientFactory(RateLimiter rateLimiter,
+                           @Value("${ai.http.max-idle-connections}") int maxIdleConnections,
+                           @Value("${ai.http.keep-alive}") Duration keepAlive,
+                           @Value("${ai.http.max-requests}") int maxRequests,
+                           @Value("${ai.http.max-requests-per-host}") int maxRequestsPerHost,
+                           @Value("${ai.http.http2-enabled}") boolean http2Enabled,
+                           @Value("${ai.http.connect-timeout}") Duration connectTimeout,
+                           @Value("${ai.http.read-timeout}") Duration readTimeout,
+                           @Value("${ai.http.write-timeout}") Duration writeTimeout,
+                           @Value("${ai.http.call-timeout}") Duration callTimeout,
+                           @Value("${ai.http.retry.max-retries}") int maxRetries,
+                           @Value("${ai.http.retry.initial-backoff}") Duration initialBackoff,
+                           @Value("${ai.http.retry.max-backoff}") Duration maxBackoff,
+                           @Value("${ai.http.retry.jitter}") double jitter) {
+        Dispatcher dispatcher = new Dispatcher(dispatcherExecutor);
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+        this.okHttpClient = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAlive.toMillis(), TimeUnit.MILLISECONDS))
+                .dispatcher(dispatcher)
+                .protocols(http2Enabled ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1) : List.of(Protocol.HTTP_1_1))
+                .connectTimeout(connectTimeout)
+                .readTimeout(readTimeout)
+                .writeTimeout(writeTimeout)
+                .callTimeout(callTimeout)
+                .build();
+        this.retryPolicy = new OkHttpAIClient.RetryPolicy(maxRetries, initialBackoff, maxBackoff, jitter);
+        this.timeout = Timeout.builder()
+                .connect(connectTimeout)
+                .read(readTimeout)
+                .write(writeTimeout)
+                .request(callTimeout)
+                .build();
+        this.rateLimiter = rateLimiter;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcherExecutor.shutdownNow();
+        okHttpClient.connectionPool().evictAll();
+    }
+
+    public OpenAIClient createClient(String apiKey, String baseUrl) {
+        return createClient(apiKey, baseUrl, okHttpClient);
+    }
+
+    /**
+     * Creates a client whose calls pass through the interceptor before they reach the network. The client still
+     * shares the connection pool, dispatcher and retry policy of all other clients.
+     */
+    public OpenAIClient createClient(String apiKey, String baseUrl, Interceptor interceptor) {
+        return createClient(apiKey, baseUrl, okHttpClient.newBuilder().addInterceptor(interceptor).build());
+    }
+
+    private OpenAIClient createClient(String apiKey, String baseUrl, OkHttpClient client) {
+        ClientOptions.Builder options = ClientOptions.builder()
+                .httpClient(new OkHttpAIClient(client, retryPolicy, rateLimiter::currentObserver))
+                .apiKey(apiKey)
+                // Retries are handled by OkHttpAIClient
+                .maxRetries(0)
+                // The SDK passes these on with every request unless the call overrides them
+                .timeout(timeout);
+        if (baseUrl != null && !baseUrl.isBlank()) {
+            options.baseUrl(baseUrl);
+        }
+        return new OpenAIClientImpl(options.build());
+    }
+
+    public PoolStats getPoolStats() {
+        return new PoolStats(
+                okHttpClient.connectionPool().connectionCount(),
+                okHttpClient.connectionPool().idleConnectionCount(),
+                okHttpClient.dispatcher().runningCallsCount(),
+                okHttpClient.dispatcher().queuedCallsCount());
+    }
+
+    public record PoolStats(int connections, int idleConnections, int runningCalls, int queuedCalls) {
+    }
+}
@@ -3,42 +3,83 @@ package com.vk.languagecoach.service.ai;
 import com.openai.client.OpenAIClient;
 import com.vk.languagecoach.dto.AIModelType;
 import com.vk.languagecoach.dto.AIProvider;
+import com.vk.languagecoach.metrics.AIMetrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
+import static com.vk.languagecoach.dto.AIProvider.AUTO;
+
 @Service
+@Slf4j
 public class AIServiceProvider {
 
     private Map<AIProvider, OpenAIClient> aiServices;
     private Map<AIProvider, String> textModels;
     private Map<AIProvider, String> textToSpeechModels;
     private Map<AIProvider, String> speechToTextModels;
+    private final ProviderRouter providerRouter;
+    private final AIMetrics aiMetrics;
+    private final RateLimiter rateLimiter;
+    private final ExecutorService hedgeExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
     public AIServiceProvider(List<AIService> aiServices,
+                             ProviderRouter providerRouter,
+                             AIMetrics aiMetrics,
+                             RateLimiter rateLimiter,
                              @Value("${groq.text.model}") String groqTextModel,
                              @Value("${openai.text.model}") String openAiTextModel,
                              @Value("${groq.speech-to-text.model}") String groqSpeechToTextModel,
                              @Value("${openai.speech-to-text.model}") String openAiSpeechToTextModel,
-                             @Value("${openai.text-to-speech.model}") String openAiTextToSpeechModel) {
+                             @Value("${openai.text-to-speech.model}") String openAiTextToSpeechModel,
+                             @Value("${replay.text.model}") String replayTextModel,
+                             @Value("${replay.speech-to-text.model}") String replaySpeechToTextModel,
+                             @Value("${replay.text-to-speech.model}") String replayTextToSpeechModel) {
         this.aiServices = aiServices.stream()
                 .collect(Collectors.toMap(AIService::getName, AIService::getClient));
+        this.providerRouter = providerRouter;
+        this.aiMetrics = aiMetrics;
+        this.rateLimiter = rateLimiter;
         this.textModels = Map.of(
                 AIProvider.GROQ, groqTextModel,
-                AIProvider.OPENAI, openAiTextModel
+                AIProvider.OPENAI, openAiTextModel,
+                AIProvider.REPLAY, replayTextModel
         );
         this.speechToTextModels = Map.of(
                 AIProvider.GROQ, groqSpeechToTextModel,
-                AIProvider.OPENAI, openAiSpeechToTextModel
+                AIProvider.OPENAI, openAiSpeechToTextModel,
+                AIProvider.REPLAY, replaySpeechToTextModel
         );
         this.textToSpeechModels = Map.of(
-                AIProvider.OPENAI, openAiTextToSpeechModel
+                AIProvider.OPENAI, openAiTextToSpeechModel,
+                AIProvider.REPLAY, replayTextToSpeechModel
         );
     }
 
+    @PreDestroy
+    public void shutdown() {
+        hedgeExecutor.shutdownNow();
+    }
+
     public OpenAIClient getClient(AIProvider provider) {
         OpenAIClient client = aiServices.get(provider);
         if (client == null) {
@@ -48,16 +89,197 @@ public class AIServiceProvider {
     }
 
     public String getModel(AIProvider provider, AIModelType type) {
-        Map<AIProvider, String> models = switch (type) {
+        String model = getModels(type).get(provider);
+        if (model == null) {
+            throw new IllegalArgumentException("Model not configured for provider: " + provider);
+        }
+        return model;
+    }
+
+    /**
+     * The configured providers that {@link AIProvider#AUTO} and other automatic selections may choose from.
+     * Recorded responses never stand in for live ones, {@link AIProvider#REPLAY} only serves requests naming it.
+     */
+    public List<AIProvider> getProviders(AIModelType type) {
+        Map<AIProvider, String> models = getModels(type);
+        return Arrays.stream(AIProvider.values())
+                .filter(provider -> provider != AIProvider.REPLAY)
+                .filter(provider -> models.containsKey(provider) && aiServices.containsKey(provider))
+                .toList();
+    }
+
+    /**
+     * Executes a call against the requested provider. For {@link AIProvider#AUTO} the call is routed to the
+     * fastest healthy provider, hedged on the next one when it is slower than usual, and failed over to the
+     * remaining providers when it fails. Results of abandoned calls are closed when they are closeable.
+     */
+    public <T> T execute(AIProvider provider, AIModelType type, AICall<T> call) {
+        return execute(provider, type, RateLimiter.Admission.of(type), call);
+    }
+
+    /**
+     * Same as {@link #execute(AIProvider, AIModelType, AICall)}, admitting the call with the given priority and
+     * estimated token usage. A call rejected by the rate limiter of one provider fails over like any other failure.
+     */
+    public <T> T execute(AIProvider provider, AIModelType type, RateLimiter.Admission admission, AICall<T> call) {
+        return execute(provider, type, admission, (served, client, model) -> call.call(client, model));
+    }
+
+    /**
+     * Same as {@link #execute(AIProvider, AIModelType, RateLimiter.Admission, AICall)}, for calls that need to know
+     * the provider serving them, which for {@link AIProvider#AUTO} is only known once the call is routed.
+     */
+    public <T> T execute(AIProvider provider, AIModelType type, RateLimiter.Admission admission,
+                         ProviderCall<T> call) {
+        if (provider != AUTO) {
+            return executeOn(provider, type, admission, call);
+        }
+
+        List<AIProvider> candidates = providerRouter.rank(type, getProviders(type));
+        if (candidates.isEmpty()) {
+            throw new IllegalArgumentException("No provider configured for model type: " + type);
+        }
+
+        RuntimeException failure = null;
+        int next = 0;
+        while (next < candidates.size()) {
+            AIProvider primary = candidates.get(next++);
+            Optional<Duration> hedgeDelay = next < candidates.size() ?
+                    providerRouter.hedgeDelay(primary, type) : Optional.empty();
+            try {
+                if (hedgeDelay.isEmpty()) {
+                    return executeOn(primary, type, admission, call);
+                }
+                return hedge(primary, candidates.get(next++), hedgeDelay.get(), type, admission, call);
+            } catch (RuntimeException e) {
+                // A caller that gave up is not served by another provider either
+                if (Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                log.warn("Provider {} failed for model type: {}, failing over", primary, type, e);
+                failure = e;
+            }
+        }
+        throw failure;
+    }
+
+    private <T> T hedge(AIProvider primary, AIProvider secondary, Duration delay, AIModelType type,
+                        RateLimiter.Admission admission, ProviderCall<T> call) {
+        CompletableFuture<T> first = submit(primary, type, admission, call);
+        try {
+            return first.get(delay.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.info("Hedging {} request on provider {} after {}", type, secondary, delay);
+        } catch (ExecutionException e) {
+            log.warn("Provider {} failed for model type: {}, failing over", primary, type, e.getCause());
+            return executeOn(secondary, type, admission, call);
+        } catch (InterruptedException e) {
+            first.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for provider: " + primary, e);
+        }
+
+        CompletableFuture<T> second = submit(secondary, type, admission, call);
+        CompletableFuture<T> winner = new CompletableFuture<>();
+        AtomicInteger remaining = new AtomicInteger(2);
+        for (CompletableFuture<T> attempt : List.of(first, second)) {
+            attempt.whenComplete((result, error) -> {
+                if (error == null) {
+                    if (!winner.complete(result)) {
+                        closeQuietly(result);
+                    }
+                } else if (remaining.decrementAndGet() == 0) {
+                    winner.completeExceptionally(error);
+                }
+            });
+        }
+
+        try {
+            return winner.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+        } finally {
+            first.cancel(true);
+            second.cancel(true);
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(AIProvider provider, AIModelType type, RateLimiter.Admission admission,
+                                            ProviderCall<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Future<?> task = hedgeExecutor.submit(() -> {
+            try {
+                T result = executeOn(provider, type, admission, call);
+                if (!future.complete(result)) {
+                    closeQuietly(result);
+                }
+            } catch (RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        future.whenComplete((result, error) -> {
+            if (error instanceof CancellationException) {
+                task.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    private <T> T executeOn(AIProvider provider, AIModelType type, RateLimiter.Admission admission,
+                            ProviderCall<T> call) {
+        String model = getModel(provider, type);
+        OpenAIClient client = getClient(provider);
+
+        // Waiting for admission is not provider latency and a rejection is not a provider failure
+        try (RateLimiter.Permit permit = rateLimiter.acquire(provider, model, admission)) {
+            return invoke(provider, model, type, client, call);
+        }
+    }
+
+    private <T> T invoke(AIProvider provider, String model, AIModelType type, OpenAIClient client,
+                         ProviderCall<T> call) {
+        Timer.Sample sample = aiMetrics.start();
+        long start = System.nanoTime();
+        try {
+            T result = call.call(provider, client, model);
+            providerRouter.recordSuccess(provider, type, Duration.ofNanos(System.nanoTime() - start));
+            aiMetrics.recordProviderCall(sample, provider, model, type, null);
+            return result;
+        } catch (RuntimeException e) {
+            // Abandoned hedge attempts are interrupted, that is not the provider's fault
+            if (!Thread.currentThread().isInterrupted()) {
+                providerRouter.recordFailure(provider, type, e);
+            }
+            aiMetrics.recordProviderCall(sample, provider, model, type, e);
+            throw e;
+        }
+    }
+
+    private void closeQuietly(Object result) {
+        if (result instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                log.warn("Failed to close abandoned provider response", e);
+            }
+        }
+    }
+
+    private Map<AIProvider, String> getModels(AIModelType type) {
+        return switch (type) {
             case TEXT -> textModels;
             case SPEECH_TO_TEXT -> speechToTextModels;
             case TEXT_TO_SPEECH -> textToSpeechModels;
         };
+    }
 
-        String model = models.get(provider);
-        if (model == null) {
-            throw new IllegalArgumentException("Model not configured for provider: " + provider);
-        }
-        return model;
+    @FunctionalInterface
+    public interface AICall<T> {
+        T call(OpenAIClient client, String model);
+    }
+
+    @FunctionalInterface
+    public interface ProviderCall<T> {
+        T call(AIProvider provider, OpenAIClient client, String model);
     }
 }
@@ -1,7 +1,6 @@
 package com.vk.languagecoach.service.ai;
 
 import com.openai.client.OpenAIClient;
-import com.openai.client.okhttp.OpenAIOkHttpClient;
 import com.vk.languagecoach.dto.AIProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -11,11 +10,10 @@ public class GroqService implements AIService {
 
     private final OpenAIClient client;
 
-    public GroqService(@Value("${groq.api-key}") String apiKey, @Value("${groq.base-url}") String baseUrl) {
-        this.client = OpenAIOkHttpClient.builder()
-                .apiKey(apiKey)
-                .baseUrl(baseUrl)
-                .build();
+    public GroqService(AIClientFactory aiClientFactory,
+                       @Value("${groq.api-key}") String apiKey,
+                       @Value("${groq.base-url}") String baseUrl) {
+        this.client = aiClientFactory.createClient(apiKey, baseUrl);
     }
 
     @Override
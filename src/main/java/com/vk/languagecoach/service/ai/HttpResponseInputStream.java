@@ -0,0 +1,28 @@
+package com.vk.languagecoach.service.ai;
+
+import com.openai.core.http.HttpResponse;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+
+/**
+ * Body of a provider response that releases the underlying connection when closed.
+ */
+public class HttpResponseInputStream extends FilterInputStream {
+
+    private final HttpResponse httpResponse;
+
+    public HttpResponseInputStream(HttpResponse httpResponse) {
+        super(httpResponse.body());
+        this.httpResponse = httpResponse;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            httpResponse.close();
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.vk.languagecoach.service.ai;
+
+import com.openai.core.RequestOptions;
+import com.openai.core.Timeout;
+import com.openai.core.http.HttpClient;
+import com.openai.core.http.HttpRequest;
+import com.openai.core.http.HttpRequestBody;
+import com.openai.core.http.HttpResponse;
+import com.openai.core.http.QueryParams;
+import com.openai.errors.OpenAIIoException;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSink;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * OpenAI SDK transport on top of a shared, tuned {@link OkHttpClient}. Calls are dispatched asynchronously,
+ * so the dispatcher's per-host limit applies to every request, and interrupting a waiting caller cancels
+ * the in-flight call. Retries with exponential backoff and {@code Retry-After} support are done here
+ * instead of in the SDK. A 429 is never retried here, the rate limiter pauses the provider and the caller
+ * decides whether to wait for admission again. Every provider response, including retried ones, is reported to
+ * the observer of the calling thread. The timeouts of the request options apply to each attempt, the call timeout
+ * covering it from connecting until the body has been read.
+ */
+public class OkHttpAIClient implements HttpClient {
+
+    private static final Set<String> METHODS_WITH_BODY = Set.of("POST", "PUT", "PATCH");
+
+    private final OkHttpClient okHttpClient;
+    private final RetryPolicy retryPolicy;
+    private final Supplier<ResponseObserver> observers;
+
+    public OkHttpAIClient(OkHttpClient okHttpClient, RetryPolicy retryPolicy, Supplier<ResponseObserver> observers) {
+        this.okHttpClient = okHttpClient;
+        this.retryPolicy = retryPolicy;
+        this.observers = observers;
+    }
+
+    @Override
+    public HttpResponse execute(HttpRequest request, RequestOptions requestOptions) {
+        Execution execution = new Execution(request, client(requestOptions));
+        try {
+            return execution.start().get();
+        } catch (InterruptedException e) {
+            execution.cancel();
+            Thread.currentThread().interrupt();
+            throw new OpenAIIoException("Request interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new OpenAIIoException("Request failed", e.getCause());
+        }
+    }
+
+    @Override
+    public CompletableFuture<HttpResponse> executeAsync(HttpRequest request, RequestOptions requestOptions) {
+        Execution execution = new Execution(request, client(requestOptions));
+        CompletableFuture<HttpResponse> future = execution.start();
+        future.whenComplete((response, error) -> {
+            if (error instanceof CancellationException) {
+                execution.cancel();
+            }
+        });
+        return future;
+    }
+
+    @Override
+    public void close() {
+        // The underlying client is shared between providers and owned by AIClientFactory
+    }
+
+    /**
+     * The shared client, or a view of it with the timeouts of the request options. The view still shares the
+     * connection pool and dispatcher.
+     */
+    private OkHttpClient client(RequestOptions requestOptions) {
+        Timeout timeout = requestOptions.getTimeout();
+        if (timeout == null
+                || timeout.connect().toMillis() == okHttpClient.connectTimeoutMillis()
+                && timeout.read().toMillis() == okHttpClient.readTimeoutMillis()
+                && timeout.write().toMillis() == okHttpClient.writeTimeoutMillis()
+                && timeout.request().toMillis() == okHttpClient.callTimeoutMillis()) {
+            return okHttpClient;
+        }
+        return okHttpClient.newBuilder()
+                .connectTimeout(timeout.connect())
+                .readTimeout(timeout.read())
+                .writeTimeout(timeout.write())
+                .callTimeout(timeout.request())
+                .build();
+    }
+
+    private Request toRequest(HttpRequest request) {
+        HttpUrl.Builder url = HttpUrl.get(request.baseUrl()).newBuilder();
+        request.pathSegments().forEach(url::addPathSegment);
+        QueryParams queryParams = request.queryParams();
+        for (String key : queryParams.keys()) {
+            for (String value : queryParams.values(key)) {
+                url.addQueryParameter(key, value);
+            }
+        }
+
+        String method = request.method().name();
+        RequestBody body = request.body() != null ? toRequestBody(request.body()) : null;
+        if (body == null && METHODS_WITH_BODY.contains(method)) {
+            body = RequestBody.create(new byte[0], null);
+        }
+
+        Request.Builder builder = new Request.Builder().url(url.build()).method(method, body);
+        com.openai.core.http.Headers headers = request.headers();
+        for (String name : headers.names()) {
+            for (String value : headers.values(name)) {
+                builder.addHeader(name, value);
+            }
+        }
+        return builder.build();
+    }
+
+    private RequestBody toRequestBody(HttpRequestBody body) {
+        MediaType mediaType = body.contentType() != null ? MediaType.parse(body.contentType()) : null;
+        long contentLength = body.contentLength();
+        boolean oneShot = !body.repeatable();
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return mediaType;
+            }
+
+            @Override
+            public long contentLength() {
+                return contentLength;
+            }
+
+            @Override
+            public boolean isOneShot() {
+                return oneShot;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) {
+                body.writeTo(sink.outputStream());
+            }
+        };
+    }
+
+    private HttpResponse toResponse(Response response) {
+        com.openai.core.http.Headers.Builder headers = com.openai.core.http.Headers.builder();
+        for (String name : response.headers().names()) {
+            for (String value : response.headers(name)) {
+                headers.put(name, value);
+            }
+        }
+        com.openai.core.http.Headers responseHeaders = headers.build();
+
+        return new HttpResponse() {
+            @Override
+            public int statusCode() {
+                return response.code();
+            }
+
+            @Override
+            public com.openai.core.http.Headers headers() {
+                return responseHeaders;
+            }
+
+            @Override
+            public InputStream body() {
+                return response.body().byteStream();
+            }
+
+            @Override
+            public void close() {
+                response.close();
+            }
+        };
+    }
+
+    @FunctionalInterface
+    public interface ResponseObserver {
+
+        ResponseObserver NONE = response -> {
+        };
+
+        void onResponse(Response response);
+    }
+
+    public record RetryPolicy(int maxRetries, Duration initialBackoff, Duration maxBackoff, double jitter) {
+
+        private static final Duration MAX_RETRY_AFTER = Duration.ofMinutes(1);
+
+        boolean isRetryable(int statusCode) {
+            return statusCode == 408 || statusCode == 409 || statusCode >= 500;
+        }
+
+        Duration delay(int attempt, Response response) {
+            Duration retryAfter = response != null ? retryAfter(response) : null;
+            if (retryAfter != null && !retryAfter.isNegative() && retryAfter.compareTo(MAX_RETRY_AFTER) <= 0) {
+                return retryAfter;
+            }
+
+            long backoff = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() << Math.min(attempt, 20));
+            double factor = 1 - jitter * ThreadLocalRandom.current().nextDouble();
+            return Duration.ofMillis((long) (backoff * factor));
+        }
+
+        private Duration retryAfter(Response response) {
+            String retryAfterMs = response.header("retry-after-ms");
+            if (retryAfterMs != null) {
+                try {
+                    return Duration.ofMillis((long) Double.parseDouble(retryAfterMs));
+                } catch (NumberFormatException ignored) {
+                    // Fall back to Retry-After
+                }
+            }
+
+            String retryAfter = response.header("retry-after");
+            if (retryAfter == null) {
+                return null;
+            }
+            try {
+                return Duration.ofMillis((long) (Double.parseDouble(retryAfter) * 1000));
+            } catch (NumberFormatException ignored) {
+                // Retry-After may also be an HTTP date
+            }
+            try {
+                ZonedDateTime date = ZonedDateTime.parse(retryAfter, DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Duration.between(ZonedDateTime.now(), date);
+            } catch (DateTimeParseException e) {
+                return null;
+            }
+        }
+    }
+
+    private class Execution {
+
+        private final HttpRequest request;
+        private final OkHttpClient client;
+        private final ResponseObserver observer;
+        private final CompletableFuture<HttpResponse> result = new CompletableFuture<>();
+        private volatile Call call;
+        private volatile boolean cancelled;
+        private int attempt;
+
+        Execution(HttpRequest request, OkHttpClient client) {
+            this.request = request;
+            this.client = client;
+            // Callbacks run on dispatcher threads, the observer has to be resolved on the calling thread
+            this.observer = observers.get();
+        }
+
+        CompletableFuture<HttpResponse> start() {
+            result.whenComplete((response, error) -> {
+                if (request.body() != null) {
+                    request.body().close();
+                }
+            });
+            send();
+            return result;
+        }
+
+        void cancel() {
+            cancelled = true;
+            Call current = call;
+            if (current != null) {
+                current.cancel();
+            }
+        }
+
+        private void send() {
+            if (cancelled) {
+                result.completeExceptionally(new OpenAIIoException("Request cancelled", null));
+                return;
+            }
+
+            Call current = client.newCall(toRequest(request));
+            call = current;
+            current.enqueue(new Callback() {
+                @Override
+                public void onFailure(Call call, IOException e) {
+                    if (canRetry()) {
+                        retry(retryPolicy.delay(attempt, null));
+                    } else {
+                        result.completeExceptionally(new OpenAIIoException("Request failed", e));
+                    }
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    observer.onResponse(response);
+                    if (canRetry() && shouldRetry(response)) {
+                        Duration delay = retryPolicy.delay(attempt, response);
+                        response.close();
+                        retry(delay);
+                    } else if (!result.complete(toResponse(response))) {
+                        response.close();
+                    }
+                }
+            });
+        }
+
+        private boolean canRetry() {
+            return !cancelled
+                    && attempt < retryPolicy.maxRetries()
+                    && (request.body() == null || request.body().repeatable());
+        }
+
+        private boolean shouldRetry(Response response) {
+            // Retrying a 429 would bypass the rate limiter that has just been paused by it
+            if (response.code() == 429) {
+                return false;
+            }
+            String shouldRetry = response.header("x-should-retry");
+            if (shouldRetry != null) {
+                return Boolean.parseBoolean(shouldRetry);
+            }
+            return retryPolicy.isRetryable(response.code());
+        }
+
+        private void retry(Duration delay) {
+            attempt++;
+            CompletableFuture.delayedExecutor(delay.toMillis(), TimeUnit.MILLISECONDS).execute(this::send);
+        }
+    }
+}
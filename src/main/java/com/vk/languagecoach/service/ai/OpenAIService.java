@@ -1,7 +1,6 @@
 package com.vk.languagecoach.service.ai;
 
 import com.openai.client.OpenAIClient;
-import com.openai.client.okhttp.OpenAIOkHttpClient;
 import com.vk.languagecoach.dto.AIProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
@@ -11,10 +10,10 @@ public class OpenAIService implements AIService {
 
     private final OpenAIClient client;
 
-    public OpenAIService(@Value("${openai.api-key}") String apiKey) {
-        this.client = OpenAIOkHttpClient.builder()
-                .apiKey(apiKey)
-                .build();
+    public OpenAIService(AIClientFactory aiClientFactory,
+                         @Value("${openai.api-key}") String apiKey,
+                         @Value("${openai.base-url}") String baseUrl) {
+        this.client = aiClientFactory.createClient(apiKey, baseUrl);
     }
 
     @Override
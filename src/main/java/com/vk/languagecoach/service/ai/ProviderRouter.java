@@ -0,0 +1,231 @@
+package com.vk.languagecoach.service.ai;
+
+import com.openai.errors.OpenAIServiceException;
+import com.vk.languagecoach.dto.AIModelType;
+import com.vk.languagecoach.dto.AIProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps rolling latency and error statistics per provider and model type and ranks providers for
+ * {@link AIProvider#AUTO} requests. Providers whose circuit breaker is open are ranked last, providers without
+ * latency samples are ranked as if they had the median latency of the others.
+ */
+@Component
+@Slf4j
+public class ProviderRouter {
+
+    private final double ewmaAlpha;
+    private final int latencyWindow;
+    private final boolean hedgingEnabled;
+    private final double hedgingPercentile;
+    private final int hedgingMinSamples;
+    private final Duration hedgingMinDelay;
+    private final int failureThreshold;
+    private final Duration openDuration;
+
+    private final Map<RouteKey, ProviderStats> stats = new ConcurrentHashMap<>();
+
+    public ProviderRouter(@Value("${ai.routing.ewma-alpha}") double ewmaAlpha,
+                          @Value("${ai.routing.latency-window}") int latencyWindow,
+                          @Value("${ai.routing.hedging.enabled}") boolean hedgingEnabled,
+                          @Value("${ai.routing.hedging.percentile}") double hedgingPercentile,
+                          @Value("${ai.routing.hedging.min-samples}") int hedgingMinSamples,
+                          @Value("${ai.routing.hedging.min-delay}") Duration hedgingMinDelay,
+                          @Value("${ai.routing.circuit-breaker.failure-threshold}") int failureThreshold,
+                          @Value("${ai.routing.circuit-breaker.open-duration}") Duration openDuration) {
+        this.ewmaAlpha = ewmaAlpha;
+        this.latencyWindow = latencyWindow;
+        this.hedgingEnabled = hedgingEnabled;
+        this.hedgingPercentile = hedgingPercentile;
+        this.hedgingMinSamples = hedgingMinSamples;
+        this.hedgingMinDelay = hedgingMinDelay;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+    }
+
+    /**
+     * Orders the providers from the fastest healthy one to the slowest, with open circuits last. Providers
+     * with equal scores keep their given order.
+     */
+    public List<AIProvider> rank(AIModelType type, List<AIProvider> providers) {
+        Instant now = Instant.now();
+        // An unobserved provider would otherwise score zero and take all traffic until its first sample
+        double priorLatencyMillis = medianLatencyMillis(type, providers);
+        Map<AIProvider, Double> scores = new HashMap<>();
+        Map<AIProvider, Boolean> available = new HashMap<>();
+        for (AIProvider provider : providers) {
+            ProviderStats providerStats = stats(provider, type);
+            scores.put(provider, providerStats.score(priorLatencyMillis));
+            available.put(provider, providerStats.isAvailable(now));
+        }
+        return providers.stream()
+                .sorted(Comparator.comparing((AIProvider provider) -> !available.get(provider))
+                        .thenComparingDouble(scores::get))
+                .toList();
+    }
+
+    /**
+     * Delay after which a second request is sent to another provider, based on the latency percentile
+     * of the provider that received the first one. Empty until enough samples have been observed.
+     */
+    public Optional<Duration> hedgeDelay(AIProvider provider, AIModelType type) {
+        if (!hedgingEnabled) {
+            return Optional.empty();
+        }
+        return stats(provider, type).percentile(hedgingPercentile, hedgingMinSamples)
+                .map(delay -> delay.compareTo(hedgingMinDelay) < 0 ? hedgingMinDelay : delay);
+    }
+
+    public void recordSuccess(AIProvider provider, AIModelType type, Duration latency) {
+        stats(provider, type).recordSuccess(latency);
+    }
+
+    public void recordFailure(AIProvider provider, AIModelType type, RuntimeException error) {
+        // Requests rejected for their content say nothing about the health of the provider
+        if (error instanceof OpenAIServiceException serviceException
+                && serviceException.statusCode() < 500
+                && serviceException.statusCode() != 408
+                && serviceException.statusCode() != 429) {
+            return;
+        }
+        ProviderStats providerStats = stats(provider, type);
+        if (providerStats.recordFailure()) {
+            log.warn("Circuit opened for provider: {}, type: {} for {}", provider, type, openDuration);
+        }
+    }
+
+    public Map<RouteKey, RouteSnapshot> getStats() {
+        Instant now = Instant.now();
+        return stats.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().snapshot(now)));
+    }
+
+    /**
+     * Reads a single field of a route without snapshotting every route, NaN until the route has been used.
+     */
+    public double getEwmaLatencyMillis(RouteKey key) {
+        return read(key, ProviderStats::ewmaLatencyMillis);
+    }
+
+    public double getErrorRate(RouteKey key) {
+        return read(key, ProviderStats::errorRate);
+    }
+
+    public double getAvailable(RouteKey key) {
+        return read(key, providerStats -> providerStats.isAvailable(Instant.now()) ? 1 : 0);
+    }
+
+    private double read(RouteKey key, ToDoubleFunction<ProviderStats> field) {
+        ProviderStats providerStats = stats.get(key);
+        return providerStats == null ? Double.NaN : field.applyAsDouble(providerStats);
+    }
+
+    private double medianLatencyMillis(AIModelType type, List<AIProvider> providers) {
+        double[] observed = providers.stream()
+                .map(provider -> stats(provider, type))
+                .filter(ProviderStats::hasSamples)
+                .mapToDouble(ProviderStats::ewmaLatencyMillis)
+                .sorted()
+                .toArray();
+        if (observed.length == 0) {
+            return 0;
+        }
+        int middle = observed.length / 2;
+        return observed.length % 2 == 1 ? observed[middle] : (observed[middle - 1] + observed[middle]) / 2;
+    }
+
+    private ProviderStats stats(AIProvider provider, AIModelType type) {
+        return stats.computeIfAbsent(new RouteKey(provider, type), key -> new ProviderStats());
+    }
+
+    public record RouteKey(AIProvider provider, AIModelType type) {
+    }
+
+    public record RouteSnapshot(double ewmaLatencyMillis, double errorRate, Duration p99, boolean available) {
+    }
+
+    private class ProviderStats {
+
+        private final long[] latencies = new long[latencyWindow];
+        private int samples;
+        private int next;
+        private double ewmaLatencyMillis;
+        private double errorRate;
+        private int consecutiveFailures;
+        private Instant openUntil = Instant.MIN;
+
+        synchronized void recordSuccess(Duration latency) {
+            long millis = latency.toMillis();
+            latencies[next] = millis;
+            next = (next + 1) % latencies.length;
+            samples = Math.min(samples + 1, latencies.length);
+            ewmaLatencyMillis = samples == 1 ? millis : ewmaAlpha * millis + (1 - ewmaAlpha) * ewmaLatencyMillis;
+            errorRate = (1 - ewmaAlpha) * errorRate;
+            consecutiveFailures = 0;
+            openUntil = Instant.MIN;
+        }
+
+        /**
+         * Returns true when this failure opened the circuit.
+         */
+        synchronized boolean recordFailure() {
+            errorRate = ewmaAlpha + (1 - ewmaAlpha) * errorRate;
+            consecutiveFailures++;
+            // A failed half-open trial reopens the circuit right away
+            if (consecutiveFailures >= failureThreshold) {
+                openUntil = Instant.now().plus(openDuration);
+                return consecutiveFailures == failureThreshold;
+            }
+            return false;
+        }
+
+        synchronized boolean isAvailable(Instant now) {
+            return !now.isBefore(openUntil);
+        }
+
+        synchronized boolean hasSamples() {
+            return samples > 0;
+        }
+
+        synchronized double ewmaLatencyMillis() {
+            return ewmaLatencyMillis;
+        }
+
+        synchronized double errorRate() {
+            return errorRate;
+        }
+
+        synchronized double score(double priorLatencyMillis) {
+            return (samples > 0 ? ewmaLatencyMillis : priorLatencyMillis) * (1 + 4 * errorRate);
+        }
+
+        synchronized Optional<Duration> percentile(double percentile, int minSamples) {
+            if (samples < Math.max(1, minSamples)) {
+                return Optional.empty();
+            }
+            long[] sorted = Arrays.copyOf(latencies, samples);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * samples) - 1;
+            return Optional.of(Duration.ofMillis(sorted[Math.max(0, Math.min(index, samples - 1))]));
+        }
+
+        synchronized RouteSnapshot snapshot(Instant now) {
+            return new RouteSnapshot(ewmaLatencyMillis, errorRate,
+                    percentile(0.99, 1).orElse(Duration.ZERO), isAvailable(now));
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.vk.languagecoach.service.ai;
+
+import com.vk.languagecoach.dto.AIProvider;
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a call cannot be admitted within the provider's quota, either because the admission queue
+ * is full or because the call waited longer than allowed.
+ */
+@Getter
+public class RateLimitExceededException extends RuntimeException {
+
+    private final AIProvider provider;
+    private final String model;
+    private final Duration retryAfter;
+
+    public RateLimitExceededException(AIProvider provider, String model, Duration retryAfter) {
+        super("Rate limit exceeded for provider: " + provider + ", model: " + model + ", retry after: " + retryAfter);
+        this.provider = provider;
+        this.model = model;
+        this.retryAfter = retryAfter;
+    }
+}
@@ -0,0 +1,369 @@
+package com.vk.languagecoach.service.ai;
+
+import com.vk.languagecoach.dto.AIModelType;
+import com.vk.languagecoach.dto.AIProvider;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Response;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Admission control in front of the providers. Every provider and model has a requests per minute and a
+ * tokens per minute bucket; calls that do not fit wait in a bounded priority queue and are rejected when the
+ * queue is full or the wait gets too long. Rate limit headers of provider responses keep the buckets in sync
+ * with the provider's own accounting, and a 429 pauses the bucket until the provider allows calls again.
+ */
+@Component
+@Slf4j
+public class RateLimiter {
+
+    private static final Pattern RESET_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+    private static final Duration MIN_RETRY_AFTER = Duration.ofSeconds(1);
+    private static final Comparator<Waiter> WAITER_ORDER = Comparator
+            .comparing((Waiter waiter) -> waiter.admission.priority())
+            .thenComparingLong(waiter -> waiter.sequence);
+
+    private final boolean enabled;
+    private final int queueCapacity;
+    private final Duration maxWait;
+    private final Map<AIProvider, Quota> quotas;
+    private final Map<LimitKey, Limit> limits = new ConcurrentHashMap<>();
+    private final ThreadLocal<Limit> current = new ThreadLocal<>();
+    private final AtomicLong rejected = new AtomicLong();
+
+    public RateLimiter(@Value("${ai.rate-limit.enabled}") boolean enabled,
+                       @Value("${ai.rate-limit.queue-capacity}") int queueCapacity,
+                       @Value("${ai.rate-limit.max-wait}") Duration maxWait,
+                       @Value("${ai.rate-limit.groq.requests-per-minute}") long groqRequestsPerMinute,
+                       @Value("${ai.rate-limit.groq.tokens-per-minute}") long groqTokensPerMinute,
+                       @Value("${ai.rate-limit.openai.requests-per-minute}") long openAiRequestsPerMinute,
+                       @Value("${ai.rate-limit.openai.tokens-per-minute}") long openAiTokensPerMinute) {
+        this.enabled = enabled;
+        this.queueCapacity = queueCapacity;
+        this.maxWait = maxWait;
+        this.quotas = Map.of(
+                AIProvider.GROQ, new Quota(groqRequestsPerMinute, groqTokensPerMinute),
+                AIProvider.OPENAI, new Quota(openAiRequestsPerMinute, openAiTokensPerMinute)
+        );
+    }
+
+    /**
+     * Waits until the call is admitted. The returned permit binds the provider's response headers to this
+     * limiter for the duration of the call and must be closed on the calling thread.
+     */
+    public Permit acquire(AIProvider provider, String model, Admission admission) {
+        Quota quota = quotas.get(provider);
+        if (!enabled || quota == null) {
+            return () -> {
+            };
+        }
+
+        Limit limit = limits.computeIfAbsent(new LimitKey(provider, model), key -> new Limit(key, quota));
+        limit.acquire(admission);
+        current.set(limit);
+        return current::remove;
+    }
+
+    /**
+     * Returns the observer of the call admitted on the current thread, used by {@link OkHttpAIClient} to
+     * feed rate limit headers back.
+     */
+    public OkHttpAIClient.ResponseObserver currentObserver() {
+        Limit limit = current.get();
+        return limit != null ? limit::observe : OkHttpAIClient.ResponseObserver.NONE;
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public int getQueued() {
+        return limits.values().stream().mapToInt(Limit::queued).sum();
+    }
+
+    public enum Priority {
+        INTERACTIVE, STANDARD, BULK
+    }
+
+    public record Admission(Priority priority, long estimatedTokens) {
+
+        /**
+         * Transcriptions are awaited by a learner, exercises are standard and speech is synthesized in bulk.
+         */
+        public static Admission of(AIModelType type) {
+            return new Admission(switch (type) {
+                case SPEECH_TO_TEXT -> Priority.INTERACTIVE;
+                case TEXT -> Priority.STANDARD;
+                case TEXT_TO_SPEECH -> Priority.BULK;
+            }, 0);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private record LimitKey(AIProvider provider, String model) {
+    }
+
+    private record Quota(long requestsPerMinute, long tokensPerMinute) {
+    }
+
+    private static final class Waiter {
+
+        private final Admission admission;
+        private final long sequence;
+        private boolean evicted;
+
+        Waiter(Admission admission, long sequence) {
+            this.admission = admission;
+            this.sequence = sequence;
+        }
+    }
+
+    private class Limit {
+
+        private final LimitKey key;
+        private final TokenBucket requests;
+        private final TokenBucket tokens;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private final PriorityQueue<Waiter> queue = new PriorityQueue<>(WAITER_ORDER);
+        private long sequence;
+        private long pausedUntil = System.nanoTime();
+
+        Limit(LimitKey key, Quota quota) {
+            this.key = key;
+            this.requests = quota.requestsPerMinute() > 0 ? new TokenBucket(quota.requestsPerMinute()) : null;
+            this.tokens = quota.tokensPerMinute() > 0 ? new TokenBucket(quota.tokensPerMinute()) : null;
+        }
+
+        void acquire(Admission admission) {
+            lock.lock();
+            try {
+                if (queue.isEmpty() && tryConsume(admission, System.nanoTime())) {
+                    return;
+                }
+
+                Waiter waiter = new Waiter(admission, sequence++);
+                if (queue.size() >= queueCapacity) {
+                    // A full queue still admits more urgent calls by evicting the least urgent waiter
+                    Waiter lowest = queue.stream().max(WAITER_ORDER).orElseThrow();
+                    if (WAITER_ORDER.compare(waiter, lowest) >= 0) {
+                        throw reject(admission);
+                    }
+                    queue.remove(lowest);
+                    lowest.evicted = true;
+                    changed.signalAll();
+                }
+                queue.add(waiter);
+                await(waiter);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void await(Waiter waiter) {
+            long deadline = System.nanoTime() + maxWait.toNanos();
+            try {
+                while (true) {
+                    if (waiter.evicted) {
+                        throw reject(waiter.admission);
+                    }
+                    long now = System.nanoTime();
+                    boolean head = queue.peek() == waiter;
+                    if (head && tryConsume(waiter.admission, now)) {
+                        queue.poll();
+                        changed.signalAll();
+                        return;
+                    }
+                    if (now >= deadline) {
+                        queue.remove(waiter);
+                        changed.signalAll();
+                        throw reject(waiter.admission);
+                    }
+                    long wait = head ? Math.min(deadline - now, waitNanos(waiter.admission, now)) : deadline - now;
+                    changed.awaitNanos(Math.max(wait, TimeUnit.MILLISECONDS.toNanos(1)));
+                }
+            } catch (InterruptedException e) {
+                queue.remove(waiter);
+                changed.signalAll();
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for rate limit: " + key, e);
+            }
+        }
+
+        void observe(Response response) {
+            lock.lock();
+            try {
+                long now = System.nanoTime();
+                Long remainingRequests = parseLong(response.header("x-ratelimit-remaining-requests"));
+                if (requests != null && remainingRequests != null) {
+                    requests.refill(now);
+                    requests.clamp(remainingRequests);
+                }
+                Long remainingTokens = parseLong(response.header("x-ratelimit-remaining-tokens"));
+                if (tokens != null && remainingTokens != null) {
+                    tokens.refill(now);
+                    tokens.clamp(remainingTokens);
+                }
+
+                if (response.code() == 429) {
+                    Duration pause = pause(response);
+                    log.warn("Provider {} rate limited model {}, pausing for {}", key.provider(), key.model(), pause);
+                    pausedUntil = Math.max(pausedUntil, now + pause.toNanos());
+                }
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int queued() {
+            lock.lock();
+            try {
+                return queue.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean tryConsume(Admission admission, long now) {
+            if (now < pausedUntil) {
+                return false;
+            }
+            if (requests != null) {
+                requests.refill(now);
+                if (requests.available < 1) {
+                    return false;
+                }
+            }
+            if (tokens != null) {
+                tokens.refill(now);
+                if (tokens.available < tokens.cap(admission.estimatedTokens())) {
+                    return false;
+                }
+            }
+
+            if (requests != null) {
+                requests.available -= 1;
+            }
+            if (tokens != null) {
+                tokens.available -= tokens.cap(admission.estimatedTokens());
+            }
+            return true;
+        }
+
+        private long waitNanos(Admission admission, long now) {
+            long wait = pausedUntil - now;
+            if (requests != null) {
+                requests.refill(now);
+                wait = Math.max(wait, requests.nanosUntil(1));
+            }
+            if (tokens != null) {
+                tokens.refill(now);
+                wait = Math.max(wait, tokens.nanosUntil(tokens.cap(admission.estimatedTokens())));
+            }
+            return Math.max(wait, 0);
+        }
+
+        private RateLimitExceededException reject(Admission admission) {
+            rejected.incrementAndGet();
+            Duration retryAfter = Duration.ofNanos(waitNanos(admission, System.nanoTime()));
+            if (retryAfter.compareTo(MIN_RETRY_AFTER) < 0) {
+                retryAfter = MIN_RETRY_AFTER;
+            }
+            return new RateLimitExceededException(key.provider(), key.model(), retryAfter);
+        }
+
+        private Duration pause(Response response) {
+            Long retryAfter = parseLong(response.header("retry-after"));
+            if (retryAfter != null) {
+                return Duration.ofSeconds(retryAfter);
+            }
+            Duration resetRequests = parseReset(response.header("x-ratelimit-reset-requests"));
+            Duration resetTokens = parseReset(response.header("x-ratelimit-reset-tokens"));
+            Duration pause = resetRequests.compareTo(resetTokens) >= 0 ? resetRequests : resetTokens;
+            return pause.isZero() ? MIN_RETRY_AFTER : pause;
+        }
+    }
+
+    private static final class TokenBucket {
+
+        private final double capacity;
+        private final double refillPerNano;
+        private double available;
+        private long refilledAt = System.nanoTime();
+
+        TokenBucket(long perMinute) {
+            this.capacity = perMinute;
+            this.refillPerNano = perMinute / (double) TimeUnit.MINUTES.toNanos(1);
+            this.available = perMinute;
+        }
+
+        void refill(long now) {
+            available = Math.min(capacity, available + (now - refilledAt) * refillPerNano);
+            refilledAt = now;
+        }
+
+        void clamp(long remaining) {
+            available = Math.min(available, remaining);
+        }
+
+        // Calls larger than the whole bucket would never fit, they wait for a full bucket instead
+        double cap(long amount) {
+            return Math.min(amount, capacity);
+        }
+
+        long nanosUntil(double amount) {
+            return available >= amount ? 0 : (long) Math.ceil((amount - available) / refillPerNano);
+        }
+    }
+
+    private static Long parseLong(String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return (long) Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Parses reset durations such as {@code 1m30.5s} or {@code 250ms}.
+     */
+    private static Duration parseReset(String value) {
+        if (value == null) {
+            return Duration.ZERO;
+        }
+        Duration duration = Duration.ZERO;
+        Matcher matcher = RESET_PART.matcher(value.trim());
+        while (matcher.find()) {
+            double amount = Double.parseDouble(matcher.group(1));
+            long millis = switch (matcher.group(2)) {
+                case "h" -> (long) (amount * 3_600_000);
+                case "m" -> (long) (amount * 60_000);
+                case "s" -> (long) (amount * 1000);
+                default -> (long) amount;
+            };
+            duration = duration.plusMillis(millis);
+        }
+        return duration;
+    }
+}
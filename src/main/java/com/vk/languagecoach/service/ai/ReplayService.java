@@ -0,0 +1,69 @@
+package com.vk.languagecoach.service.ai;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.openai.client.OpenAIClient;
+import com.vk.languagecoach.dto.AIProvider;
+import com.vk.languagecoach.service.ai.replay.LatencyDistribution;
+import com.vk.languagecoach.service.ai.replay.ReplayCorpus;
+import com.vk.languagecoach.service.ai.replay.ReplayInterceptor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Offline provider for load tests. Serves recorded OpenAI-compatible responses with injected latency and
+ * failures instead of calling a live API, or records the responses of a live API into the corpus.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(name = "replay.enabled", havingValue = "true")
+public class ReplayService implements AIService {
+
+    private final OpenAIClient client;
+
+    public ReplayService(AIClientFactory aiClientFactory,
+                         ObjectMapper objectMapper,
+                         @Value("${replay.mode}") String mode,
+                         @Value("${replay.corpus-directory:}") String corpusDirectory,
+                         @Value("${replay.api-key}") String apiKey,
+                         @Value("${replay.base-url}") String baseUrl,
+                         @Value("${replay.latency.chat.median}") Duration chatMedian,
+                         @Value("${replay.latency.chat.p99}") Duration chatP99,
+                         @Value("${replay.latency.speech.median}") Duration speechMedian,
+                         @Value("${replay.latency.speech.p99}") Duration speechP99,
+                         @Value("${replay.latency.transcription.median}") Duration transcriptionMedian,
+                         @Value("${replay.latency.transcription.p99}") Duration transcriptionP99,
+                         @Value("${replay.errors.rate}") double errorRate,
+                         @Value("${replay.errors.status}") int errorStatus,
+                         @Value("${replay.errors.throttle-rate}") double throttleRate,
+                         @Value("${replay.synthetic.audio-bytes}") int syntheticAudioBytes) throws IOException {
+        ReplayInterceptor.Mode replayMode = ReplayInterceptor.Mode.fromString(mode);
+        ReplayCorpus corpus = new ReplayCorpus(corpusDirectory.isBlank() ? null : Path.of(corpusDirectory));
+        LatencyDistribution chatLatency = new LatencyDistribution(chatMedian, chatP99);
+        ReplayInterceptor interceptor = new ReplayInterceptor(corpus, replayMode, objectMapper,
+                Map.of(ReplayCorpus.Endpoint.CHAT, chatLatency,
+                        ReplayCorpus.Endpoint.CHAT_STREAM, chatLatency,
+                        ReplayCorpus.Endpoint.SPEECH, new LatencyDistribution(speechMedian, speechP99),
+                        ReplayCorpus.Endpoint.TRANSCRIPTION, new LatencyDistribution(transcriptionMedian, transcriptionP99)),
+                errorRate, errorStatus, throttleRate, syntheticAudioBytes);
+        this.client = aiClientFactory.createClient(apiKey, baseUrl, interceptor);
+        log.warn("Replay provider enabled in {} mode with corpus: {}", replayMode,
+                corpusDirectory.isBlank() ? "<synthetic>" : corpusDirectory);
+    }
+
+    @Override
+    public OpenAIClient getClient() {
+        return this.client;
+    }
+
+    @Override
+    public AIProvider getName() {
+        return AIProvider.REPLAY;
+    }
+}
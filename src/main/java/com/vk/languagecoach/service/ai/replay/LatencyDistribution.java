@@ -0,0 +1,21 @@
+package com.vk.languagecoach.service.ai.replay;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Log-normal latency given by its median and 99th percentile, the usual shape of provider response times.
+ */
+public record LatencyDistribution(Duration median, Duration p99) {
+
+    private static final double Z_99 = 2.3263478740408408;
+
+    public Duration sample() {
+        if (median.isZero()) {
+            return Duration.ZERO;
+        }
+        double mu = Math.log(median.toNanos());
+        double sigma = Math.max(0, Math.log(p99.toNanos()) - mu) / Z_99;
+        return Duration.ofNanos((long) Math.exp(mu + sigma * ThreadLocalRandom.current().nextGaussian()));
+    }
+}
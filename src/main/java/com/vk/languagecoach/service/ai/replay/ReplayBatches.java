@@ -0,0 +1,183 @@
+package com.vk.languagecoach.service.ai.replay;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import okhttp3.MediaType;
+import okhttp3.MultipartReader;
+import okio.Buffer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory stand-in for the OpenAI-compatible Files and Batch APIs. A batch is answered line by line when it is
+ * created and reported completed from the first retrieval on, its output holding successful lines and its error
+ * file the failed ones.
+ */
+final class ReplayBatches {
+
+    private static final Pattern FILE_CONTENT = Pattern.compile(".*/files/([^/]+)/content");
+    private static final Pattern BATCH = Pattern.compile(".*/batches/([^/]+)");
+    private static final Pattern FILE_NAME = Pattern.compile("filename=\"([^\"]*)\"");
+    private static final String BATCH_PURPOSE = "batch";
+    private static final String BATCH_OUTPUT_PURPOSE = "batch_output";
+
+    private final ObjectMapper objectMapper;
+    private final LineHandler lineHandler;
+    private final Map<String, StoredFile> files = new ConcurrentHashMap<>();
+    private final Map<String, ObjectNode> batches = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+
+    ReplayBatches(ObjectMapper objectMapper, LineHandler lineHandler) {
+        this.objectMapper = objectMapper;
+        this.lineHandler = lineHandler;
+    }
+
+    static boolean handles(String method, String path) {
+        return switch (method) {
+            case "POST" -> path.endsWith("/files") || path.endsWith("/batches");
+            case "GET" -> FILE_CONTENT.matcher(path).matches() || BATCH.matcher(path).matches();
+            default -> false;
+        };
+    }
+
+    /**
+     * Answers a call on one of the {@link #handles handled} endpoints, or empty when it names an unknown
+     * file or batch.
+     */
+    Optional<Reply> handle(String method, String path, MediaType contentType, byte[] body) throws IOException {
+        if (method.equals("POST") && path.endsWith("/files")) {
+            return Optional.of(upload(contentType, body));
+        }
+        if (method.equals("POST")) {
+            return Optional.of(create(objectMapper.readTree(body)));
+        }
+        Matcher content = FILE_CONTENT.matcher(path);
+        if (content.matches()) {
+            return Optional.ofNullable(files.get(content.group(1)))
+                    .map(file -> new Reply(MediaType.get("application/octet-stream"), file.content()));
+        }
+        Matcher batch = BATCH.matcher(path);
+        return batch.matches() ? Optional.ofNullable(batches.get(batch.group(1))).map(this::retrieve)
+                : Optional.empty();
+    }
+
+    private Reply upload(MediaType contentType, byte[] body) throws IOException {
+        String boundary = contentType != null ? contentType.parameter("boundary") : null;
+        if (boundary == null) {
+            throw new IOException("File upload is not a multipart body");
+        }
+        try (MultipartReader reader = new MultipartReader(new Buffer().write(body), boundary)) {
+            for (MultipartReader.Part part = reader.nextPart(); part != null; part = reader.nextPart()) {
+                String disposition = Objects.requireNonNullElse(part.headers().get("Content-Disposition"), "");
+                Matcher fileName = FILE_NAME.matcher(disposition);
+                if (fileName.find()) {
+                    return json(store("file", fileName.group(1), BATCH_PURPOSE, part.body().readByteArray()));
+                }
+            }
+        }
+        throw new IOException("File upload has no file part");
+    }
+
+    private Reply create(JsonNode request) throws IOException {
+        StoredFile input = files.get(request.path("input_file_id").asText());
+        if (input == null) {
+            throw new IOException("Unknown batch input file: " + request.path("input_file_id").asText());
+        }
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        int completed = 0;
+        int failed = 0;
+        for (String line : new String(input.content(), StandardCharsets.UTF_8).split("\n")) {
+            if (line.isBlank()) {
+                continue;
+            }
+            JsonNode requestLine = objectMapper.readTree(line);
+            LineResponse response = lineHandler.handle(requestLine.path("url").asText(), requestLine.path("body"));
+            ObjectNode result = objectMapper.createObjectNode();
+            result.put("id", "batch_req_replay_" + ids.incrementAndGet());
+            result.put("custom_id", requestLine.path("custom_id").asText());
+            result.putObject("response")
+                    .put("status_code", response.status())
+                    .set("body", objectMapper.readTree(response.body()));
+            result.putNull("error");
+            boolean successful = response.status() == 200;
+            (successful ? output : errors).writeBytes((result + "\n").getBytes(StandardCharsets.UTF_8));
+            if (successful) {
+                completed++;
+            } else {
+                failed++;
+            }
+        }
+
+        ObjectNode batch = objectMapper.createObjectNode();
+        batch.put("id", "batch_replay_" + ids.incrementAndGet());
+        batch.put("object", "batch");
+        batch.put("endpoint", request.path("endpoint").asText());
+        batch.put("input_file_id", input.id());
+        batch.put("completion_window", request.path("completion_window").asText());
+        batch.put("status", "validating");
+        batch.put("created_at", System.currentTimeMillis() / 1000);
+        batch.putObject("request_counts")
+                .put("total", completed + failed)
+                .put("completed", completed)
+                .put("failed", failed);
+        if (completed > 0) {
+            batch.put("output_file_id", store("batch_output", "output.jsonl", BATCH_OUTPUT_PURPOSE,
+                    output.toByteArray()).path("id").asText());
+        }
+        if (failed > 0) {
+            batch.put("error_file_id", store("batch_errors", "errors.jsonl", BATCH_OUTPUT_PURPOSE,
+                    errors.toByteArray()).path("id").asText());
+        }
+        batches.put(batch.path("id").asText(), batch);
+        return json(batch);
+    }
+
+    private Reply retrieve(ObjectNode batch) {
+        ObjectNode retrieved = batch.deepCopy();
+        retrieved.put("status", "completed");
+        return json(retrieved);
+    }
+
+    private ObjectNode store(String prefix, String fileName, String purpose, byte[] content) {
+        ObjectNode file = objectMapper.createObjectNode();
+        file.put("id", prefix + "_replay_" + ids.incrementAndGet());
+        file.put("object", "file");
+        file.put("bytes", content.length);
+        file.put("created_at", System.currentTimeMillis() / 1000);
+        file.put("filename", fileName);
+        file.put("purpose", purpose);
+        file.put("status", "processed");
+        files.put(file.path("id").asText(), new StoredFile(file.path("id").asText(), content));
+        return file;
+    }
+
+    private Reply json(JsonNode body) {
+        return new Reply(MediaType.get("application/json"), body.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    @FunctionalInterface
+    interface LineHandler {
+        LineResponse handle(String url, JsonNode body) throws IOException;
+    }
+
+    record LineResponse(int status, byte[] body) {
+    }
+
+    record Reply(MediaType contentType, byte[] body) {
+    }
+
+    private record StoredFile(String id, byte[] content) {
+    }
+}
@@ -0,0 +1,119 @@
+package com.vk.languagecoach.service.ai.replay;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+/**
+ * Recorded provider responses on disk, one directory per endpoint and one file per request fingerprint.
+ * A request without a recording of its own is answered with a recording picked by its fingerprint, so that
+ * a small corpus covers any number of distinct requests.
+ */
+@Slf4j
+public class ReplayCorpus {
+
+    private static final String FILE_SUFFIX = ".body";
+
+    private final Path directory;
+    private final Map<Endpoint, List<String>> keys = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, Set<String>> keySets = new EnumMap<>(Endpoint.class);
+    private final Map<Path, byte[]> bodies = new ConcurrentHashMap<>();
+
+    public ReplayCorpus(Path directory) throws IOException {
+        this.directory = directory;
+        for (Endpoint endpoint : Endpoint.values()) {
+            keys.put(endpoint, new CopyOnWriteArrayList<>());
+            keySets.put(endpoint, ConcurrentHashMap.newKeySet());
+        }
+        if (directory != null) {
+            load();
+        }
+    }
+
+    public Optional<byte[]> find(Endpoint endpoint, String key) {
+        List<String> recorded = keys.get(endpoint);
+        if (recorded.isEmpty()) {
+            return Optional.empty();
+        }
+        String match = keySets.get(endpoint).contains(key) ? key
+                : recorded.get(Math.floorMod(key.hashCode(), recorded.size()));
+        return Optional.of(bodies.computeIfAbsent(file(endpoint, match), this::read));
+    }
+
+    public void record(Endpoint endpoint, String key, byte[] body) throws IOException {
+        if (directory == null) {
+            return;
+        }
+        Path file = file(endpoint, key);
+        Files.createDirectories(file.getParent());
+        Path tempFile = Files.createTempFile(file.getParent(), key, ".tmp");
+        Files.write(tempFile, body);
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        bodies.put(file, body);
+        if (keySets.get(endpoint).add(key)) {
+            keys.get(endpoint).add(key);
+        }
+    }
+
+    private void load() throws IOException {
+        for (Endpoint endpoint : Endpoint.values()) {
+            Path endpointDirectory = directory.resolve(endpoint.getDirectory());
+            if (!Files.isDirectory(endpointDirectory)) {
+                continue;
+            }
+            try (Stream<Path> files = Files.list(endpointDirectory)) {
+                files.map(file -> file.getFileName().toString())
+                        .filter(fileName -> fileName.endsWith(FILE_SUFFIX))
+                        .sorted()
+                        .map(fileName -> fileName.substring(0, fileName.length() - FILE_SUFFIX.length()))
+                        .forEach(key -> {
+                            keys.get(endpoint).add(key);
+                            keySets.get(endpoint).add(key);
+                        });
+            }
+            log.info("Loaded {} recorded {} responses from {}", keys.get(endpoint).size(), endpoint, endpointDirectory);
+        }
+    }
+
+    private Path file(Endpoint endpoint, String key) {
+        return directory.resolve(endpoint.getDirectory()).resolve(key + FILE_SUFFIX);
+    }
+
+    private byte[] read(Path file) {
+        try {
+            return Files.readAllBytes(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read recorded response: " + file, e);
+        }
+    }
+
+    public enum Endpoint {
+        CHAT("chat"),
+        CHAT_STREAM("chat-stream"),
+        SPEECH("speech"),
+        TRANSCRIPTION("transcriptions");
+
+        private final String directory;
+
+        Endpoint(String directory) {
+            this.directory = directory;
+        }
+
+        public String getDirectory() {
+            return directory;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.vk.languagecoach.service.ai.replay;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.vk.languagecoach.dto.AudioFormat;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Answers OpenAI-compatible chat completion, speech and transcription calls from a {@link ReplayCorpus} instead
+ * of the network, after a sampled latency and with injected failures. Batch calls are answered by
+ * {@link ReplayBatches} without latency, failures are injected into their lines instead. In record mode calls go
+ * through to the provider and successful responses are added to the corpus. Other endpoints are not supported.
+ */
+public class ReplayInterceptor implements Interceptor {
+
+    private static final MediaType JSON = MediaType.get("application/json");
+    private static final MediaType EVENT_STREAM = MediaType.get("text/event-stream");
+    private static final Pattern EXERCISE_COUNT = Pattern.compile("Number of exercises: (\\d+)");
+    private static final int DEFAULT_EXERCISE_COUNT = 10;
+    private static final Duration CANCEL_POLL_INTERVAL = Duration.ofMillis(10);
+    private static final String RETRY_AFTER_MS = "1000";
+
+    private final ReplayCorpus corpus;
+    private final Mode mode;
+    private final ObjectMapper objectMapper;
+    private final Map<ReplayCorpus.Endpoint, LatencyDistribution> latencies;
+    private final double errorRate;
+    private final int errorStatus;
+    private final double throttleRate;
+    private final int syntheticAudioBytes;
+    private final ReplayBatches batches;
+
+    public ReplayInterceptor(ReplayCorpus corpus,
+                             Mode mode,
+                             ObjectMapper objectMapper,
+                             Map<ReplayCorpus.Endpoint, LatencyDistribution> latencies,
+                             double errorRate,
+                             int errorStatus,
+                             double throttleRate,
+                             int syntheticAudioBytes) {
+        this.corpus = corpus;
+        this.mode = mode;
+        this.objectMapper = objectMapper;
+        this.latencies = latencies;
+        this.errorRate = errorRate;
+        this.errorStatus = errorStatus;
+        this.throttleRate = throttleRate;
+        this.syntheticAudioBytes = syntheticAudioBytes;
+        this.batches = new ReplayBatches(objectMapper, this::batchLine);
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        if (mode == Mode.REPLAY && ReplayBatches.handles(request.method(), request.url().encodedPath())) {
+            return batch(request);
+        }
+        ReplayCorpus.Endpoint endpoint = endpoint(request);
+        if (endpoint == null) {
+            return mode == Mode.RECORD ? chain.proceed(request)
+                    : error(request, HttpStatus.NOT_FOUND.value(), "not_found", "Not supported by the replay provider");
+        }
+
+        byte[] body = body(request);
+        JsonNode json = endpoint == ReplayCorpus.Endpoint.TRANSCRIPTION ? MissingNode.getInstance()
+                : objectMapper.readTree(body);
+        if (endpoint == ReplayCorpus.Endpoint.CHAT && json.path("stream").asBoolean()) {
+            endpoint = ReplayCorpus.Endpoint.CHAT_STREAM;
+        }
+        String key = fingerprint(request.url().encodedPath(),
+                request.body() != null ? request.body().contentType() : null, body, json);
+
+        if (mode == Mode.RECORD) {
+            return record(chain, request, endpoint, key, body);
+        }
+        return replay(chain, request, endpoint, key, json);
+    }
+
+    private Response replay(Chain chain, Request request, ReplayCorpus.Endpoint endpoint, String key, JsonNode json)
+            throws IOException {
+        delay(chain, latencies.get(endpoint).sample());
+
+        double failure = ThreadLocalRandom.current().nextDouble();
+        if (failure < throttleRate) {
+            return error(request, HttpStatus.TOO_MANY_REQUESTS.value(), "rate_limit_exceeded", "Injected rate limit")
+                    .newBuilder()
+                    .header("retry-after-ms", RETRY_AFTER_MS)
+                    .build();
+        }
+        if (failure < throttleRate + errorRate) {
+            return error(request, errorStatus, "server_error", "Injected failure");
+        }
+
+        byte[] response = corpus.find(endpoint, key).orElse(null);
+        if (response == null) {
+            response = synthetic(endpoint, json);
+        }
+        return response(request, 200, contentType(endpoint, json), response);
+    }
+
+    private Response record(Chain chain, Request request, ReplayCorpus.Endpoint endpoint, String key, byte[] body)
+            throws IOException {
+        // The original body may be one-shot and has already been read
+        Request forwarded = request.body() == null ? request : request.newBuilder()
+                .method(request.method(), RequestBody.create(body, request.body().contentType()))
+                .build();
+        Response response = chain.proceed(forwarded);
+        if (!response.isSuccessful()) {
+            return response;
+        }
+
+        byte[] recorded;
+        MediaType contentType;
+        try (ResponseBody responseBody = response.body()) {
+            contentType = responseBody.contentType();
+            recorded = responseBody.bytes();
+        }
+        corpus.record(endpoint, key, recorded);
+        return response.newBuilder().body(ResponseBody.create(recorded, contentType)).build();
+    }
+
+    private Response batch(Request request) throws IOException {
+        MediaType contentType = request.body() != null ? request.body().contentType() : null;
+        Optional<ReplayBatches.Reply> reply = batches.handle(request.method(), request.url().encodedPath(),
+                contentType, body(request));
+        if (reply.isEmpty()) {
+            return error(request, HttpStatus.NOT_FOUND.value(), "not_found", "No such file or batch");
+        }
+        return response(request, 200, reply.get().contentType(), reply.get().body());
+    }
+
+    /**
+     * Answers one line of a batch like the chat completion it stands for.
+     */
+    private ReplayBatches.LineResponse batchLine(String url, JsonNode json) throws IOException {
+        if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+            return new ReplayBatches.LineResponse(errorStatus, errorBody("server_error", "Injected failure"));
+        }
+        byte[] body = objectMapper.writeValueAsBytes(json);
+        byte[] response = corpus.find(ReplayCorpus.Endpoint.CHAT, fingerprint(url, JSON, body, json)).orElse(null);
+        if (response == null) {
+            response = synthetic(ReplayCorpus.Endpoint.CHAT, json);
+        }
+        return new ReplayBatches.LineResponse(200, response);
+    }
+
+    private ReplayCorpus.Endpoint endpoint(Request request) {
+        String path = request.url().encodedPath();
+        if (path.endsWith("/chat/completions")) {
+            return ReplayCorpus.Endpoint.CHAT;
+        }
+        if (path.endsWith("/audio/speech")) {
+            return ReplayCorpus.Endpoint.SPEECH;
+        }
+        if (path.endsWith("/audio/transcriptions")) {
+            return ReplayCorpus.Endpoint.TRANSCRIPTION;
+        }
+        return null;
+    }
+
+    private byte[] body(Request request) throws IOException {
+        if (request.body() == null) {
+            return new byte[0];
+        }
+        Buffer buffer = new Buffer();
+        request.body().writeTo(buffer);
+        return buffer.readByteArray();
+    }
+
+    /**
+     * Identifies a request regardless of the model, so that a corpus recorded with one model replays for another,
+     * and regardless of the completion cap, which adapts to observed usage. Multipart bodies are hashed without
+     * their random boundary.
+     */
+    private String fingerprint(String path, MediaType contentType, byte[] body, JsonNode json) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(path.getBytes(StandardCharsets.UTF_8));
+            if (json instanceof ObjectNode object) {
+                ObjectNode identifying = object.deepCopy();
+                identifying.remove(List.of("model", "max_completion_tokens"));
+                digest.update(identifying.toString().getBytes(StandardCharsets.UTF_8));
+            } else {
+                String boundary = contentType != null ? contentType.parameter("boundary") : null;
+                String content = new String(body, StandardCharsets.ISO_8859_1);
+                if (boundary != null) {
+                    content = content.replace(boundary, "");
+                }
+                digest.update(content.getBytes(StandardCharsets.ISO_8859_1));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private byte[] synthetic(ReplayCorpus.Endpoint endpoint, JsonNode json) throws IOException {
+        String model = json.path("model").asText("replay");
+        return switch (endpoint) {
+            case CHAT -> SyntheticResponses.completion(objectMapper, model, exerciseCount(json));
+            case CHAT_STREAM -> SyntheticResponses.completionStream(objectMapper, model, exerciseCount(json));
+            case SPEECH -> SyntheticResponses.speech(syntheticAudioBytes);
+            case TRANSCRIPTION -> SyntheticResponses.transcription(objectMapper);
+        };
+    }
+
+    private int exerciseCount(JsonNode json) {
+        for (JsonNode message : json.path("messages")) {
+            Matcher matcher = EXERCISE_COUNT.matcher(message.path("content").asText(""));
+            if (matcher.find()) {
+                return Integer.parseInt(matcher.group(1));
+            }
+        }
+        return DEFAULT_EXERCISE_COUNT;
+    }
+
+    private MediaType contentType(ReplayCorpus.Endpoint endpoint, JsonNode json) {
+        return switch (endpoint) {
+            case CHAT, TRANSCRIPTION -> JSON;
+            case CHAT_STREAM -> EVENT_STREAM;
+            case SPEECH -> MediaType.get(audioFormat(json).getMediaType());
+        };
+    }
+
+    private AudioFormat audioFormat(JsonNode json) {
+        try {
+            return AudioFormat.fromString(json.path("response_format").asText("mp3"));
+        } catch (IllegalArgumentException e) {
+            return AudioFormat.MP3;
+        }
+    }
+
+    private void delay(Chain chain, Duration latency) throws IOException {
+        // Cancelling an OkHttp call does not interrupt its thread, so the cancellation is polled
+        long deadline = System.nanoTime() + latency.toNanos();
+        try {
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > 0) {
+                if (chain.call().isCanceled()) {
+                    throw new IOException("Canceled");
+                }
+                Thread.sleep(Duration.ofNanos(Math.min(remaining, CANCEL_POLL_INTERVAL.toNanos())));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while replaying a response");
+        }
+    }
+
+    private Response error(Request request, int status, String type, String message) throws IOException {
+        return response(request, status, JSON, errorBody(type, message));
+    }
+
+    private byte[] errorBody(String type, String message) throws IOException {
+        return objectMapper.writeValueAsBytes(Map.of("error", Map.of("message", message, "type", type)));
+    }
+
+    private Response response(Request request, int status, MediaType contentType, byte[] body) {
+        HttpStatus httpStatus = HttpStatus.resolve(status);
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(status)
+                .message(httpStatus != null ? httpStatus.getReasonPhrase() : "")
+                .body(ResponseBody.create(body, contentType))
+                .build();
+    }
+
+    public enum Mode {
+        REPLAY, RECORD;
+
+        public static Mode fromString(String mode) {
+            try {
+                return Mode.valueOf(mode.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown replay mode: " + mode);
+            }
+        }
+    }
+}
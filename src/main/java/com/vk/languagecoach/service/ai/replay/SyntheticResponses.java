@@ -0,0 +1,154 @@
+package com.vk.languagecoach.service.ai.replay;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vk.languagecoach.model.Exercise;
+import com.vk.languagecoach.model.ExerciseAnswer;
+import com.vk.languagecoach.model.ExerciseHint;
+import com.vk.languagecoach.model.ExerciseItem;
+import com.vk.languagecoach.model.ExerciseItems;
+import com.vk.languagecoach.model.Exercises;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Well-formed provider responses for endpoints that have no recordings, so that a replay run works
+ * without a corpus.
+ */
+final class SyntheticResponses {
+
+    private static final int STREAM_CHUNK_CHARS = 64;
+    // MPEG-1 Layer III, 128 kbit/s, 44.1 kHz, no padding; a frame with empty side info decodes to silence
+    private static final byte[] SILENT_FRAME_HEADER = {(byte) 0xFF, (byte) 0xFB, (byte) 0x90, 0x00};
+    private static final int SILENT_FRAME_BYTES = 417;
+
+    private SyntheticResponses() {
+    }
+
+    static byte[] completion(ObjectMapper objectMapper, String model, int exerciseCount)
+            throws JsonProcessingException {
+        String content = objectMapper.writeValueAsString(exercises(exerciseCount));
+        int promptTokens = 1500;
+        int completionTokens = content.length() / 4;
+        return objectMapper.writeValueAsBytes(Map.of(
+                "id", "chatcmpl-replay",
+                "object", "chat.completion",
+                "created", System.currentTimeMillis() / 1000,
+                "model", model,
+                "choices", List.of(Map.of(
+                        "index", 0,
+                        "finish_reason", "stop",
+                        "message", Map.of("role", "assistant", "content", content))),
+                "usage", Map.of(
+                        "prompt_tokens", promptTokens,
+                        "completion_tokens", completionTokens,
+                        "total_tokens", promptTokens + completionTokens)));
+    }
+
+    static byte[] completionStream(ObjectMapper objectMapper, String model, int exerciseCount)
+            throws JsonProcessingException {
+        String content = objectMapper.writeValueAsString(exerciseItems(exerciseCount));
+        long created = System.currentTimeMillis() / 1000;
+        ByteArrayOutputStream events = new ByteArrayOutputStream();
+        for (int start = 0; start < content.length(); start += STREAM_CHUNK_CHARS) {
+            String delta = content.substring(start, Math.min(content.length(), start + STREAM_CHUNK_CHARS));
+            event(events, objectMapper, chunk(model, created, Map.of("content", delta), null));
+        }
+        event(events, objectMapper, chunk(model, created, Map.of(), "stop"));
+        events.writeBytes("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        return events.toByteArray();
+    }
+
+    static byte[] transcription(ObjectMapper objectMapper) throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(Map.of("text", "Вчора я читав книгу."));
+    }
+
+    static byte[] speech(int size) {
+        byte[] audio = new byte[Math.max(size, SILENT_FRAME_BYTES)];
+        for (int frame = 0; frame + SILENT_FRAME_BYTES <= audio.length; frame += SILENT_FRAME_BYTES) {
+            System.arraycopy(SILENT_FRAME_HEADER, 0, audio, frame, SILENT_FRAME_HEADER.length);
+        }
+        return audio;
+    }
+
+    private static Map<String, Object> chunk(String model, long created, Map<String, String> delta,
+                                             String finishReason) {
+        Map<String, Object> choice = new HashMap<>();
+        choice.put("index", 0);
+        choice.put("delta", delta);
+        choice.put("finish_reason", finishReason);
+        return Map.of(
+                "id", "chatcmpl-replay",
+                "object", "chat.completion.chunk",
+                "created", created,
+                "model", model,
+                "choices", List.of(choice));
+    }
+
+    private static void event(ByteArrayOutputStream events, ObjectMapper objectMapper, Object data)
+            throws JsonProcessingException {
+        events.writeBytes(("data: " + objectMapper.writeValueAsString(data) + "\n\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Exercises exercises(int count) {
+        List<Exercise> exercises = new ArrayList<>(count);
+        List<ExerciseAnswer> answers = new ArrayList<>(count);
+        List<ExerciseHint> hints = new ArrayList<>(count);
+        for (int id = 1; id <= count; id++) {
+            Exercise exercise = new Exercise();
+            exercise.setExerciseId(id);
+            exercise.setText(text(id));
+            exercises.add(exercise);
+            answers.add(answer(id));
+            hints.add(hint(id));
+        }
+
+        Exercises result = new Exercises();
+        result.setExercises(exercises);
+        result.setAnswers(answers);
+        result.setHints(hints);
+        return result;
+    }
+
+    private static ExerciseItems exerciseItems(int count) {
+        List<ExerciseItem> items = new ArrayList<>(count);
+        for (int id = 1; id <= count; id++) {
+            ExerciseItem item = new ExerciseItem();
+            item.setExerciseId(id);
+            item.setText(text(id));
+            item.setAnswers(List.of(answer(id)));
+            item.setHints(List.of(hint(id)));
+            items.add(item);
+        }
+
+        ExerciseItems result = new ExerciseItems();
+        result.setExercises(items);
+        return result;
+    }
+
+    private static String text(int id) {
+        return "Вчора я ___ (читати) книгу номер " + id + ".";
+    }
+
+    private static ExerciseAnswer answer(int id) {
+        ExerciseAnswer answer = new ExerciseAnswer();
+        answer.setExerciseId(id);
+        answer.setPosition(1);
+        answer.setAnswer("читав");
+        answer.setExplanation("Past tense, masculine singular of an imperfective verb");
+        return answer;
+    }
+
+    private static ExerciseHint hint(int id) {
+        ExerciseHint hint = new ExerciseHint();
+        hint.setExerciseId(id);
+        hint.setEvidence(40);
+        hint.setHint("The action happened yesterday and was ongoing");
+        return hint;
+    }
+}
@@ -0,0 +1,43 @@
+package com.vk.languagecoach.service.async;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Runs blocking service calls on virtual threads and exposes them as futures. Unlike
+ * {@link CompletableFuture#supplyAsync}, completing the future early, by cancelling it or by a timeout, interrupts
+ * the call still running, which cancels its in-flight provider request.
+ */
+@Component
+public class AsyncTasks {
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public <T> CompletableFuture<T> supply(Supplier<T> supplier) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            try {
+                future.complete(supplier.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        future.whenComplete((result, error) -> {
+            if (error != null) {
+                task.cancel(true);
+            }
+        });
+        return future;
+    }
+}
@@ -0,0 +1,183 @@
+package com.vk.languagecoach.service.budget;
+
+import com.vk.languagecoach.dto.request.ExerciseRequest;
+import com.vk.languagecoach.service.ExercisePromptBuilder;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.vk.languagecoach.service.cache.ExerciseRequestKey.normalize;
+
+/**
+ * Predicts the prompt and completion tokens of an exercise generation before it is sent, and from the completion
+ * tokens its latency, so that the output can be capped and requests too large for the latency SLO can be split.
+ * <p>
+ * Completion tokens start from a per-exercise prior derived from the request shape and are corrected by the ratio
+ * of observed to predicted tokens, learned per model and exercise language with a per-model fallback. The output
+ * cap leaves room for three mean deviations of that ratio. Throughput is learned per model from the same
+ * observations.
+ */
+@Component
+public class ExerciseTokenBudget {
+
+    // JSON envelope of the response, and the prior of one exercise with its text, answer and explanation
+    private static final long ENVELOPE_TOKENS = 20;
+    private static final long EXERCISE_TOKENS = 90;
+    private static final long HINT_TOKENS = 45;
+    private static final long BASE_FORM_TOKENS = 10;
+    // Chat formatting added to the system and user messages
+    private static final long MESSAGE_OVERHEAD_TOKENS = 8;
+    private static final double INITIAL_DEVIATION = 0.25;
+    private static final double CAP_DEVIATIONS = 3;
+    private static final long MIN_CAP_MARGIN_TOKENS = 64;
+    // Calls this short say more about latency to first token than about throughput
+    private static final long MIN_THROUGHPUT_SAMPLE_TOKENS = 200;
+
+    @Getter
+    private final Duration latencySlo;
+    private final double defaultTokensPerSecond;
+    private final double alpha;
+    private final Map<String, Ewma> completionRatios = new ConcurrentHashMap<>();
+    private final Map<String, Ewma> promptRatios = new ConcurrentHashMap<>();
+    private final Map<String, Ewma> throughputs = new ConcurrentHashMap<>();
+
+    public record Estimate(String model, long promptTokens, long completionTokens, long maxCompletionTokens,
+                           Duration latency) {
+
+        public long totalTokens() {
+            return promptTokens + completionTokens;
+        }
+    }
+
+    public ExerciseTokenBudget(@Value("${exercises.budget.latency-slo}") Duration latencySlo,
+                               @Value("${exercises.budget.default-tokens-per-second}") double defaultTokensPerSecond,
+                               @Value("${exercises.budget.ewma-alpha}") double alpha) {
+        this.latencySlo = latencySlo;
+        this.defaultTokensPerSecond = defaultTokensPerSecond;
+        this.alpha = alpha;
+    }
+
+    public Estimate estimate(ExerciseRequest exerciseRequest, ExercisePromptBuilder.ExercisePrompt prompt,
+                             String model) {
+        long promptPrior = TokenCounter.count(prompt.system()) + TokenCounter.count(prompt.user())
+                + 2 * MESSAGE_OVERHEAD_TOKENS;
+        long promptTokens = Math.round(promptPrior * ratio(promptRatios, model, null).mean());
+
+        long completionPrior = completionPrior(exerciseRequest, exerciseRequest.getTotal());
+        Ewma completionRatio = ratio(completionRatios, model, exerciseRequest.getExerciseLanguage());
+        long completionTokens = Math.round(completionPrior * completionRatio.mean());
+        double capRatio = completionRatio.mean() + CAP_DEVIATIONS * completionRatio.deviation();
+        long maxCompletionTokens = Math.max(completionTokens + MIN_CAP_MARGIN_TOKENS,
+                Math.round(completionPrior * capRatio));
+
+        return new Estimate(model, promptTokens, completionTokens, maxCompletionTokens,
+                latency(model, completionTokens));
+    }
+
+    /**
+     * The largest number of exercises of this request that every given model is expected to generate within
+     * the latency SLO, which may be zero.
+     */
+    public int maxExercisesWithinSlo(ExerciseRequest exerciseRequest, Collection<String> models) {
+        long perExercise = completionPrior(exerciseRequest, 1) - ENVELOPE_TOKENS;
+        int max = exerciseRequest.getTotal();
+        for (String model : models) {
+            double tokensWithinSlo = tokensPerSecond(model) * latencySlo.toMillis() / 1000.0;
+            double ratio = ratio(completionRatios, model, exerciseRequest.getExerciseLanguage()).mean();
+            max = Math.min(max, (int) Math.max(0, (tokensWithinSlo / ratio - ENVELOPE_TOKENS) / perExercise));
+        }
+        return max;
+    }
+
+    /**
+     * Learns from a completed generation. A truncated completion still teaches that more tokens were needed.
+     */
+    public void record(ExerciseRequest exerciseRequest, ExercisePromptBuilder.ExercisePrompt prompt, String model,
+                       long promptTokens, long completionTokens, Duration elapsed) {
+        long promptPrior = TokenCounter.count(prompt.system()) + TokenCounter.count(prompt.user())
+                + 2 * MESSAGE_OVERHEAD_TOKENS;
+        update(promptRatios, model, null, (double) promptTokens / promptPrior);
+
+        double completionRatio = (double) completionTokens / completionPrior(exerciseRequest,
+                exerciseRequest.getTotal());
+        update(completionRatios, model, exerciseRequest.getExerciseLanguage(), completionRatio);
+        update(completionRatios, model, null, completionRatio);
+
+        if (completionTokens >= MIN_THROUGHPUT_SAMPLE_TOKENS && !elapsed.isZero()) {
+            throughputs.computeIfAbsent(model, key -> new Ewma(defaultTokensPerSecond, 0))
+                    .update(completionTokens * 1000.0 / elapsed.toMillis(), alpha);
+        }
+    }
+
+    private long completionPrior(ExerciseRequest exerciseRequest, int total) {
+        long perExercise = EXERCISE_TOKENS
+                + (exerciseRequest.isIncludeHints() ? HINT_TOKENS : 0)
+                + (exerciseRequest.isIncludeBaseForm() ? BASE_FORM_TOKENS : 0);
+        return ENVELOPE_TOKENS + perExercise * total;
+    }
+
+    private Duration latency(String model, long completionTokens) {
+        return Duration.ofMillis(Math.round(completionTokens * 1000.0 / tokensPerSecond(model)));
+    }
+
+    private double tokensPerSecond(String model) {
+        Ewma throughput = throughputs.get(model);
+        return throughput == null ? defaultTokensPerSecond : throughput.mean();
+    }
+
+    private Ewma ratio(Map<String, Ewma> ratios, String model, String language) {
+        Ewma ratio = language == null ? null : ratios.get(key(model, language));
+        if (ratio == null) {
+            ratio = ratios.get(key(model, null));
+        }
+        return ratio == null ? new Ewma(1, INITIAL_DEVIATION) : ratio;
+    }
+
+    private void update(Map<String, Ewma> ratios, String model, String language, double observed) {
+        if (Double.isFinite(observed) && observed > 0) {
+            // A new key starts from its fallback, so one observation does not swing the estimate
+            ratios.computeIfAbsent(key(model, language), key -> ratio(ratios, model, null).copy())
+                    .update(observed, alpha);
+        }
+    }
+
+    private static String key(String model, String language) {
+        return language == null ? model : model + '\u0000' + normalize(language);
+    }
+
+    /**
+     * Exponentially weighted mean and mean absolute deviation of an observed quantity.
+     */
+    private static final class Ewma {
+
+        private double mean;
+        private double deviation;
+
+        Ewma(double mean, double deviation) {
+            this.mean = mean;
+            this.deviation = deviation;
+        }
+
+        synchronized double mean() {
+            return mean;
+        }
+
+        synchronized double deviation() {
+            return deviation;
+        }
+
+        synchronized Ewma copy() {
+            return new Ewma(mean, deviation);
+        }
+
+        synchronized void update(double observed, double alpha) {
+            deviation += alpha * (Math.abs(observed - mean) - deviation);
+            mean += alpha * (observed - mean);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.vk.languagecoach.service.budget;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Thrown when a request is too large to be generated within the latency SLO even when split into the maximum
+ * number of parallel shards.
+ */
+@Getter
+public class TokenBudgetExceededException extends RuntimeException {
+
+    private final int requested;
+    private final int maxExercises;
+    private final Duration latencySlo;
+
+    public TokenBudgetExceededException(int requested, int maxExercises, Duration latencySlo) {
+        super("Cannot generate " + requested + " exercises within the latency SLO: " + latencySlo
+                + ", at most: " + maxExercises);
+        this.requested = requested;
+        this.maxExercises = maxExercises;
+        this.latencySlo = latencySlo;
+    }
+}
@@ -0,0 +1,65 @@
+package com.vk.languagecoach.service.budget;
+
+/**
+ * Approximates the number of tokens a BPE tokenizer produces for a text without its vocabulary. Latin words take
+ * about one token per four letters, other alphabets about one per three, ideographs and kana one each, digits
+ * are grouped by three and punctuation by two. Systematic errors are corrected by the ratios learned per model.
+ */
+final class TokenCounter {
+
+    private TokenCounter() {
+    }
+
+    static long count(CharSequence text) {
+        long tokens = 0;
+        int i = 0;
+        int length = text.length();
+        while (i < length) {
+            int codePoint = Character.codePointAt(text, i);
+            if (Character.isWhitespace(codePoint)) {
+                // A leading space is part of the token that follows it
+                i += Character.charCount(codePoint);
+                continue;
+            }
+
+            Run run = Run.of(codePoint);
+            int runLength = 0;
+            while (i < length) {
+                codePoint = Character.codePointAt(text, i);
+                // Combining marks such as stress marks extend the word they belong to
+                boolean mark = Character.getType(codePoint) == Character.NON_SPACING_MARK;
+                if (!mark && Run.of(codePoint) != run || Character.isWhitespace(codePoint)) {
+                    break;
+                }
+                runLength++;
+                i += Character.charCount(codePoint);
+            }
+            tokens += (runLength + run.charactersPerToken - 1) / run.charactersPerToken;
+        }
+        return tokens;
+    }
+
+    private enum Run {
+        LATIN(4), ALPHABET(3), IDEOGRAPHIC(1), DIGITS(3), PUNCTUATION(2);
+
+        private final int charactersPerToken;
+
+        Run(int charactersPerToken) {
+            this.charactersPerToken = charactersPerToken;
+        }
+
+        static Run of(int codePoint) {
+            if (Character.isDigit(codePoint)) {
+                return DIGITS;
+            }
+            if (!Character.isLetter(codePoint)) {
+                return PUNCTUATION;
+            }
+            return switch (Character.UnicodeScript.of(codePoint)) {
+                case LATIN, COMMON, INHERITED -> LATIN;
+                case HAN, HIRAGANA, KATAKANA, HANGUL, THAI, LAO, KHMER, MYANMAR -> IDEOGRAPHIC;
+                default -> ALPHABET;
+            };
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.vk.languagecoach.service.buffer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reference-counted audio payload backed by a pooled buffer. The creator holds the first reference, the memory
+ * goes back to the pool once every holder has released its reference. The buffer is written by its creator
+ * before it is shared, readers get independent views; {@link SharedAudio} shares it while it is being written.
+ */
+public final class AudioBuffer {
+
+    private final AudioBufferPool pool;
+    private final AtomicInteger references = new AtomicInteger(1);
+    private ByteBuffer buffer;
+
+    AudioBuffer(AudioBufferPool pool, ByteBuffer buffer) {
+        this.pool = pool;
+        this.buffer = buffer;
+    }
+
+    public int size() {
+        return buffer.position();
+    }
+
+    public void write(int b) {
+        ensureRemaining(1);
+        buffer.put((byte) b);
+    }
+
+    public void write(byte[] source, int offset, int length) {
+        ensureRemaining(length);
+        buffer.put(source, offset, length);
+    }
+
+    public void write(ByteBuffer source) {
+        ensureRemaining(source.remaining());
+        buffer.put(source);
+    }
+
+    /**
+     * Appends the rest of the stream without closing it.
+     */
+    public long readFrom(InputStream inputStream) throws IOException {
+        ReadableByteChannel channel = Channels.newChannel(inputStream);
+        long total = 0;
+        int read;
+        do {
+            ensureRemaining(1);
+            read = channel.read(buffer);
+            total += Math.max(read, 0);
+        } while (read != -1);
+        return total;
+    }
+
+    /**
+     * Appends exactly {@code length} bytes of the channel, reading them straight into the pooled buffer.
+     */
+    public void readFrom(ReadableByteChannel channel, int length) throws IOException {
+        ensureRemaining(length);
+        int limit = buffer.limit();
+        buffer.limit(buffer.position() + length);
+        try {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) == -1) {
+                    throw new EOFException("Channel ended " + buffer.remaining() + " bytes early");
+                }
+            }
+        } finally {
+            buffer.limit(limit);
+        }
+    }
+
+    /**
+     * Copies up to {@code length} bytes starting at the position, or returns -1 when there are none. Must not
+     * race with a write, which may move the content to a larger buffer.
+     */
+    public int read(int position, byte[] target, int offset, int length) {
+        Objects.checkFromIndexSize(offset, length, target.length);
+        int read = Math.min(length, size() - position);
+        if (read <= 0) {
+            return length == 0 ? 0 : -1;
+        }
+        buffer.get(position, target, offset, read);
+        return read;
+    }
+
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer view = view();
+        while (view.hasRemaining()) {
+            channel.write(view);
+        }
+    }
+
+    public AudioBuffer retain() {
+        if (!tryRetain()) {
+            throw new IllegalStateException("Audio buffer has already been released");
+        }
+        return this;
+    }
+
+    /**
+     * Takes another reference unless the buffer has already gone back to the pool.
+     */
+    public boolean tryRetain() {
+        int count;
+        do {
+            count = references.get();
+            if (count == 0) {
+                return false;
+            }
+        } while (!references.compareAndSet(count, count + 1));
+        return true;
+    }
+
+    public void release() {
+        int count = references.decrementAndGet();
+        if (count == 0) {
+            ByteBuffer released = buffer;
+            buffer = null;
+            pool.recycle(released);
+        } else if (count < 0) {
+            throw new IllegalStateException("Audio buffer has already been released");
+        }
+    }
+
+    /**
+     * Opens a stream over the audio that holds its own reference until it is closed.
+     */
+    public InputStream open() {
+        retain();
+        return new AudioBufferInputStream(view());
+    }
+
+    /**
+     * Like {@link #open()}, or empty when the buffer has already gone back to the pool.
+     */
+    public Optional<InputStream> tryOpen() {
+        return tryRetain() ? Optional.of(new AudioBufferInputStream(view())) : Optional.empty();
+    }
+
+    private ByteBuffer view() {
+        ByteBuffer view = buffer.duplicate();
+        view.flip();
+        return view;
+    }
+
+    private void ensureRemaining(int length) {
+        if (buffer.remaining() >= length) {
+            return;
+        }
+        int required = Math.addExact(buffer.position(), length);
+        ByteBuffer grown = pool.acquire(Math.max(required, buffer.capacity() * 2));
+        grown.put(view());
+        pool.recycle(buffer);
+        buffer = grown;
+    }
+
+    private class AudioBufferInputStream extends InputStream {
+
+        private final ByteBuffer view;
+        private boolean closed;
+
+        AudioBufferInputStream(ByteBuffer view) {
+            this.view = view;
+        }
+
+        @Override
+        public int read() {
+            return view.hasRemaining() ? view.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (len == 0) {
+                return 0;
+            }
+            if (!view.hasRemaining()) {
+                return -1;
+            }
+            int read = Math.min(len, view.remaining());
+            view.get(b, off, read);
+            return read;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.min(Math.max(n, 0), view.remaining());
+            view.position(view.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return view.remaining();
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release();
+            }
+        }
+    }
+}
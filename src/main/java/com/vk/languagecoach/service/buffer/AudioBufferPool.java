@@ -0,0 +1,106 @@
+package com.vk.languagecoach.service.buffer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of direct buffers for audio payloads, in power-of-two size classes, so that multi-hundred-kilobyte
+ * audio never lands on the heap. Released buffers are kept up to a byte budget and handed out again
+ * most recently used first. Payloads larger than the largest class fall back to unpooled heap buffers.
+ */
+@Component
+public class AudioBufferPool {
+
+    private final boolean enabled;
+    private final int minBufferBytes;
+    private final int maxBufferBytes;
+    private final long maxIdleBytes;
+    private final Deque<ByteBuffer>[] freeBuffers;
+
+    private final AtomicLong inUseBytes = new AtomicLong();
+    private final AtomicLong idleBytes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong unpooled = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    @SuppressWarnings("unchecked")
+    public AudioBufferPool(@Value("${audio.buffer-pool.enabled}") boolean enabled,
+                           @Value("${audio.buffer-pool.min-buffer-bytes}") int minBufferBytes,
+                           @Value("${audio.buffer-pool.max-buffer-bytes}") int maxBufferBytes,
+                           @Value("${audio.buffer-pool.max-idle-bytes}") long maxIdleBytes) {
+        this.enabled = enabled;
+        this.minBufferBytes = powerOfTwo(minBufferBytes);
+        this.maxBufferBytes = Math.max(this.minBufferBytes, powerOfTwo(maxBufferBytes));
+        this.maxIdleBytes = maxIdleBytes;
+        this.freeBuffers = new Deque[sizeClass(this.maxBufferBytes) + 1];
+        for (int i = 0; i < freeBuffers.length; i++) {
+            freeBuffers[i] = new ConcurrentLinkedDeque<>();
+        }
+    }
+
+    /**
+     * Allocates an empty audio buffer with room for at least the given number of bytes. It grows as it is
+     * written, the caller holds its only reference.
+     */
+    public AudioBuffer allocate(int capacity) {
+        return new AudioBuffer(this, acquire(capacity));
+    }
+
+    public BufferPoolStats getStats() {
+        return new BufferPoolStats(inUseBytes.get(), idleBytes.get(), hits.get(), misses.get(),
+                unpooled.get(), dropped.get());
+    }
+
+    ByteBuffer acquire(int capacity) {
+        if (!enabled || capacity > maxBufferBytes) {
+            unpooled.incrementAndGet();
+            return ByteBuffer.allocate(capacity);
+        }
+
+        int sizeClass = sizeClass(capacity);
+        ByteBuffer buffer = freeBuffers[sizeClass].pollFirst();
+        if (buffer != null) {
+            hits.incrementAndGet();
+            idleBytes.addAndGet(-buffer.capacity());
+            buffer.clear();
+        } else {
+            misses.incrementAndGet();
+            buffer = ByteBuffer.allocateDirect(minBufferBytes << sizeClass);
+        }
+        inUseBytes.addAndGet(buffer.capacity());
+        return buffer;
+    }
+
+    void recycle(ByteBuffer buffer) {
+        // Heap buffers are unpooled, the garbage collector takes care of them
+        if (!buffer.isDirect()) {
+            return;
+        }
+
+        int capacity = buffer.capacity();
+        inUseBytes.addAndGet(-capacity);
+        if (idleBytes.addAndGet(capacity) > maxIdleBytes) {
+            idleBytes.addAndGet(-capacity);
+            dropped.incrementAndGet();
+            return;
+        }
+        freeBuffers[sizeClass(capacity)].offerFirst(buffer);
+    }
+
+    private int sizeClass(int capacity) {
+        if (capacity <= minBufferBytes) {
+            return 0;
+        }
+        return Integer.numberOfTrailingZeros(powerOfTwo(capacity)) - Integer.numberOfTrailingZeros(minBufferBytes);
+    }
+
+    private static int powerOfTwo(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+}
@@ -0,0 +1,9 @@
+package com.vk.languagecoach.service.buffer;
+
+public record BufferPoolStats(long inUseBytes,
+                              long idleBytes,
+                              long hits,
+                              long misses,
+                              long unpooled,
+                              long dropped) {
+}
@@ -0,0 +1,133 @@
+package com.vk.languagecoach.service.buffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Audio appended by a single producer while any number of readers stream it, each reader waiting for more bytes
+ * until the producer finishes or fails. The producer holds the first reference on the buffer, readers take their
+ * own. A lock rather than a monitor keeps waiting virtual threads from pinning their carrier.
+ */
+public final class SharedAudio {
+
+    private final AudioBuffer audio;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private boolean finished;
+    private Throwable failure;
+
+    public SharedAudio(AudioBuffer audio) {
+        this.audio = audio;
+    }
+
+    public void write(byte[] source, int offset, int length) {
+        lock.lock();
+        try {
+            audio.write(source, offset, length);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void finish() {
+        lock.lock();
+        try {
+            finished = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void fail(Throwable failure) {
+        lock.lock();
+        try {
+            this.failure = failure;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The underlying buffer, to be shared further only once the audio is finished.
+     */
+    public AudioBuffer getAudio() {
+        return audio;
+    }
+
+    /**
+     * Releases the producer's reference.
+     */
+    public void release() {
+        audio.release();
+    }
+
+    /**
+     * Opens a stream from the start of the audio that holds its own reference until it is closed, or empty when
+     * the buffer has already gone back to the pool.
+     */
+    public Optional<InputStream> tryOpen() {
+        return audio.tryRetain() ? Optional.of(new SharedAudioInputStream()) : Optional.empty();
+    }
+
+    private int read(int position, byte[] target, int offset, int length) throws IOException {
+        lock.lock();
+        try {
+            while (position >= audio.size() && !finished && failure == null) {
+                changed.await();
+            }
+            if (position < audio.size() || length == 0) {
+                return audio.read(position, target, offset, length);
+            }
+            if (failure != null) {
+                throw new IOException("Audio could not be read completely", failure);
+            }
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for audio");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private class SharedAudioInputStream extends InputStream {
+
+        private int position;
+        private boolean closed;
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            Objects.checkFromIndexSize(off, len, b.length);
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            int read = SharedAudio.this.read(position, b, off, len);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                audio.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.vk.languagecoach.service.cache;
+
+public record CacheStats(long memoryHits,
+                         long diskHits,
+                         long misses,
+                         long memoryEvictions,
+                         long diskEvictions,
+                         long memoryBytes,
+                         long diskBytes) {
+
+    public double hitRate() {
+        long hits = memoryHits + diskHits;
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+}
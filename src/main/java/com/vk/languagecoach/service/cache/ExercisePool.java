@@ -0,0 +1,224 @@
+package com.vk.languagecoach.service.cache;
+
+import com.vk.languagecoach.dto.request.ExerciseRequest;
+import com.vk.languagecoach.model.Exercises;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of pre-generated exercise sets per normalized request. Keys become hot once they have been requested
+ * {@code min-requests} times within {@code popularity-window}, so that one-off requests never pay for pooled
+ * sets, and are dropped again after they have not been requested for {@code idle-ttl}. At most
+ * {@code max-keys} keys are hot, a new one displaces the least recently requested. Every set is served at most
+ * {@code max-serves} times before it is retired.
+ */
+@Component
+@Slf4j
+public class ExercisePool {
+
+    private final boolean enabled;
+    private final int targetDepth;
+    private final int maxServes;
+    private final int maxKeys;
+    private final Duration idleTtl;
+    private final int minRequests;
+    private final Duration popularityWindow;
+
+    private final Map<ExerciseRequestKey, PoolEntry> entries = new ConcurrentHashMap<>();
+    private final LinkedHashMap<ExerciseRequestKey, Candidate> candidates;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong retired = new AtomicLong();
+
+    public ExercisePool(@Value("${exercises.pool.enabled}") boolean enabled,
+                        @Value("${exercises.pool.target-depth}") int targetDepth,
+                        @Value("${exercises.pool.max-serves}") int maxServes,
+                        @Value("${exercises.pool.max-keys}") int maxKeys,
+                        @Value("${exercises.pool.idle-ttl}") Duration idleTtl,
+                        @Value("${exercises.pool.min-requests}") int minRequests,
+                        @Value("${exercises.pool.popularity-window}") Duration popularityWindow,
+                        @Value("${exercises.pool.max-candidates}") int maxCandidates) {
+        this.enabled = enabled;
+        this.targetDepth = targetDepth;
+        this.maxServes = maxServes;
+        this.maxKeys = maxKeys;
+        this.idleTtl = idleTtl;
+        this.minRequests = minRequests;
+        this.popularityWindow = popularityWindow;
+        this.candidates = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ExerciseRequestKey, Candidate> eldest) {
+                return size() > maxCandidates;
+            }
+        };
+    }
+
+    /**
+     * Takes a pooled set for the request. A request that is not pooled yet counts towards making its key hot,
+     * so that the pool is refilled for it.
+     */
+    public Optional<Exercises> take(ExerciseRequest request) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        ExerciseRequestKey key = ExerciseRequestKey.of(request);
+        PoolEntry entry = entries.get(key);
+        if (entry == null) {
+            entry = countRequest(key, request);
+            if (entry == null) {
+                misses.incrementAndGet();
+                return Optional.empty();
+            }
+        }
+        synchronized (entry) {
+            entry.lastRequested = Instant.now();
+            PooledExercises pooled = entry.sets.poll();
+            if (pooled == null) {
+                misses.incrementAndGet();
+                return Optional.empty();
+            }
+
+            hits.incrementAndGet();
+            if (++pooled.served < maxServes) {
+                entry.sets.addLast(pooled);
+            } else {
+                retired.incrementAndGet();
+            }
+            return Optional.of(pooled.exercises);
+        }
+    }
+
+    /**
+     * Adds a set to the pool of a key. Sets that were already returned to a caller count as served once.
+     */
+    public void offer(ExerciseRequest request, Exercises exercises, boolean served) {
+        if (!enabled) {
+            return;
+        }
+
+        PoolEntry entry = entries.get(ExerciseRequestKey.of(request));
+        if (entry == null) {
+            return;
+        }
+        synchronized (entry) {
+            PooledExercises pooled = new PooledExercises(exercises);
+            pooled.served = served ? 1 : 0;
+            if (pooled.served < maxServes && entry.sets.size() < targetDepth) {
+                entry.sets.addLast(pooled);
+            }
+        }
+    }
+
+    /**
+     * Drops idle keys and returns the requests whose pools are below the target depth.
+     */
+    public List<PoolDeficit> deficits() {
+        if (!enabled) {
+            return List.of();
+        }
+
+        Instant idleSince = Instant.now().minus(idleTtl);
+        entries.values().removeIf(entry -> entry.lastRequested.isBefore(idleSince));
+
+        List<PoolDeficit> deficits = new ArrayList<>();
+        for (PoolEntry entry : entries.values()) {
+            synchronized (entry) {
+                int missing = targetDepth - entry.sets.size();
+                if (missing > 0) {
+                    deficits.add(new PoolDeficit(entry.request, missing));
+                }
+            }
+        }
+        return deficits;
+    }
+
+    public PoolStats getStats() {
+        int sets = entries.values().stream().mapToInt(entry -> {
+            synchronized (entry) {
+                return entry.sets.size();
+            }
+        }).sum();
+        return new PoolStats(hits.get(), misses.get(), retired.get(), entries.size(), sets);
+    }
+
+    /**
+     * Counts a request for a key that is not hot, and makes the key hot once it is popular enough.
+     */
+    private PoolEntry countRequest(ExerciseRequestKey key, ExerciseRequest request) {
+        Instant now = Instant.now();
+        synchronized (candidates) {
+            PoolEntry entry = entries.get(key);
+            if (entry != null) {
+                return entry;
+            }
+            Candidate candidate = candidates.get(key);
+            if (candidate == null || candidate.firstRequested.isBefore(now.minus(popularityWindow))) {
+                candidate = new Candidate(now);
+                candidates.put(key, candidate);
+            }
+            if (++candidate.requests < minRequests) {
+                return null;
+            }
+
+            candidates.remove(key);
+            if (entries.size() >= maxKeys) {
+                entries.entrySet().stream()
+                        .min(Comparator.comparing(e -> e.getValue().lastRequested))
+                        .ifPresent(coldest -> entries.remove(coldest.getKey()));
+            }
+            entry = new PoolEntry(request);
+            entries.put(key, entry);
+            return entry;
+        }
+    }
+
+    public record PoolDeficit(ExerciseRequest request, int missing) {
+    }
+
+    public record PoolStats(long hits, long misses, long retired, int keys, int sets) {
+    }
+
+    private static class PoolEntry {
+        private final ExerciseRequest request;
+        private final Deque<PooledExercises> sets = new ArrayDeque<>();
+        private volatile Instant lastRequested = Instant.now();
+
+        PoolEntry(ExerciseRequest request) {
+            this.request = request;
+        }
+    }
+
+    private static class Candidate {
+        private final Instant firstRequested;
+        private int requests;
+
+        Candidate(Instant firstRequested) {
+            this.firstRequested = firstRequested;
+        }
+    }
+
+    private static class PooledExercises {
+        private final Exercises exercises;
+        private int served;
+
+        PooledExercises(Exercises exercises) {
+            this.exercises = exercises;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.vk.languagecoach.service.cache;
+
+import com.vk.languagecoach.dto.AIProvider;
+import com.vk.languagecoach.dto.ExerciseDifficulty;
+import com.vk.languagecoach.dto.request.ExerciseRequest;
+
+import java.util.Locale;
+
+/**
+ * Normalized identity of an exercise request: requests that only differ in case or whitespace share a key.
+ */
+public record ExerciseRequestKey(AIProvider provider,
+                                 String exerciseLanguage,
+                                 String userLanguage,
+                                 String topic,
+                                 int total,
+                                 ExerciseDifficulty difficulty,
+                                 boolean includeBaseForm,
+                                 boolean includeHints) {
+
+    public static ExerciseRequestKey of(ExerciseRequest request) {
+        return new ExerciseRequestKey(
+                request.getProvider(),
+                normalize(request.getExerciseLanguage()),
+                normalize(request.getUserLanguage()),
+                normalize(request.getTopic()),
+                request.getTotal(),
+                request.getDifficulty(),
+                request.isIncludeBaseForm(),
+                request.isIncludeHints());
+    }
+
+    public static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
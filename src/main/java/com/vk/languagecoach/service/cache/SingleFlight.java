@@ -0,0 +1,150 @@
+package com.vk.languagecoach.service.cache;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls with the same key: the first caller (the leader) does the work, callers that
+ * arrive while it is in flight wait for and share its result. A leader interrupted by its own caller does not
+ * fail its followers, one of them takes over instead.
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong leaders = new AtomicLong();
+    private final AtomicLong followers = new AtomicLong();
+
+    public V execute(K key, Supplier<V> supplier) {
+        while (true) {
+            Flight<V> flight = begin(key);
+            if (!flight.isLeader()) {
+                try {
+                    return flight.await();
+                } catch (CancellationException e) {
+                    continue;
+                }
+            }
+            try {
+                V value = supplier.get();
+                flight.complete(value);
+                return value;
+            } catch (RuntimeException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    flight.cancel();
+                } else {
+                    flight.fail(e);
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Joins the flight of the key. The leader must eventually call {@link Flight#complete} or {@link Flight#fail}.
+     */
+    public Flight<V> begin(K key) {
+        CompletableFuture<V> created = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            followers.incrementAndGet();
+            return new Flight<>(existing, false, () -> {
+            });
+        }
+        leaders.incrementAndGet();
+        return new Flight<>(created, true, () -> inFlight.remove(key, created));
+    }
+
+    public long getLeaders() {
+        return leaders.get();
+    }
+
+    public long getFollowers() {
+        return followers.get();
+    }
+
+    public static class Flight<V> {
+
+        private final CompletableFuture<V> future;
+        private final boolean leader;
+        private final Runnable onDone;
+
+        private Flight(CompletableFuture<V> future, boolean leader, Runnable onDone) {
+            this.future = future;
+            this.leader = leader;
+            this.onDone = onDone;
+        }
+
+        public boolean isLeader() {
+            return leader;
+        }
+
+        public void complete(V value) {
+            onDone.run();
+            future.complete(value);
+        }
+
+        /**
+         * Hands a value that is still being produced to the followers. The key stays in flight until
+         * {@link #complete} or {@link #fail}, so that callers arriving in the meantime join it too.
+         */
+        public void share(V value) {
+            future.complete(value);
+        }
+
+        public void fail(Throwable error) {
+            onDone.run();
+            future.completeExceptionally(error);
+        }
+
+        /**
+         * Abandons the flight without an outcome, waiting followers get a {@link CancellationException}.
+         */
+        public void cancel() {
+            onDone.run();
+            future.cancel(false);
+        }
+
+        public V await() {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for an in-flight call", e);
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            }
+        }
+
+        /**
+         * Like {@link #await()}, but gives up once the timeout has elapsed. Followers whose leader only finishes
+         * when someone downstream of them makes progress must wait with a timeout, or they never return.
+         */
+        public V await(Duration timeout) {
+            try {
+                return future.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for an in-flight call", e);
+            } catch (TimeoutException e) {
+                throw new IllegalStateException("Timed out waiting for an in-flight call", e);
+            } catch (ExecutionException e) {
+                throw unwrap(e);
+            }
+        }
+
+        private static RuntimeException unwrap(ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                return runtimeException;
+            }
+            return new IllegalStateException("In-flight call failed", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,390 @@
+package com.vk.languagecoach.service.cache;
+
+import com.vk.languagecoach.service.buffer.AudioBuffer;
+import com.vk.languagecoach.service.buffer.AudioBufferPool;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressed cache of synthesized audio. Entries live in a size-capped in-memory LRU tier
+ * and in an on-disk tier with its own byte budget that survives restarts. Audio is held in pooled
+ * {@link AudioBuffer}s, an entry's buffer stays alive while it is being read even after it has been evicted.
+ */
+@Component
+@Slf4j
+public class TextToSpeechCache {
+
+    private static final String FILE_SUFFIX = ".audio";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    private final boolean enabled;
+    private final long memoryMaxBytes;
+    private final long maxEntryBytes;
+    private final Path diskDirectory;
+    private final long diskMaxBytes;
+
+    private final AudioBufferPool audioBufferPool;
+    private final LinkedHashMap<String, AudioBuffer> memoryEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Long> diskEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+    private long diskBytes;
+    private final ExecutorService diskWriter = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong memoryEvictions = new AtomicLong();
+    private final AtomicLong diskEvictions = new AtomicLong();
+
+    public TextToSpeechCache(AudioBufferPool audioBufferPool,
+                             @Value("${text-to-speech.cache.enabled}") boolean enabled,
+                             @Value("${text-to-speech.cache.memory.max-bytes}") long memoryMaxBytes,
+                             @Value("${text-to-speech.cache.max-entry-bytes}") long maxEntryBytes,
+                             @Value("${text-to-speech.cache.disk.directory:}") String diskDirectory,
+                             @Value("${text-to-speech.cache.disk.max-bytes}") long diskMaxBytes) throws IOException {
+        this.audioBufferPool = audioBufferPool;
+        this.enabled = enabled;
+        this.memoryMaxBytes = memoryMaxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+        this.diskDirectory = diskDirectory.isBlank() ? null : Path.of(diskDirectory);
+        this.diskMaxBytes = diskMaxBytes;
+        if (enabled && this.diskDirectory != null) {
+            loadDiskIndex();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Pending writes are short, let them finish so that the disk tier keeps them
+        diskWriter.shutdown();
+    }
+
+    public String key(String model, String voice, String text, String instructions, double speed, String format) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : List.of(model, voice, text, instructions == null ? "" : instructions,
+                    Double.toString(speed), format)) {
+                digest.update(part.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public Optional<InputStream> get(String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+
+        synchronized (memoryEntries) {
+            AudioBuffer audio = memoryEntries.get(key);
+            if (audio != null) {
+                memoryHits.incrementAndGet();
+                return Optional.of(audio.open());
+            }
+        }
+
+        AudioBuffer audio = readFromDisk(key);
+        if (audio != null) {
+            diskHits.incrementAndGet();
+            try {
+                putInMemory(key, audio);
+                return Optional.of(audio.open());
+            } finally {
+                audio.release();
+            }
+        }
+
+        misses.incrementAndGet();
+        return Optional.empty();
+    }
+
+    /**
+     * Stores the audio, taking its own references for the memory tier and for the disk write, which happens in
+     * the background. The caller keeps its reference.
+     */
+    public void put(String key, AudioBuffer audio) {
+        if (!enabled || audio.size() == 0 || audio.size() > maxEntryBytes) {
+            return;
+        }
+        putInMemory(key, audio);
+        if (diskDirectory != null && audio.size() <= diskMaxBytes) {
+            AudioBuffer diskCopy = audio.retain();
+            try {
+                diskWriter.execute(() -> {
+                    try {
+                        writeToDisk(key, diskCopy);
+                    } finally {
+                        diskCopy.release();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // Shutting down, the entry stays in memory only
+                diskCopy.release();
+            }
+        }
+    }
+
+    /**
+     * Wraps a provider stream so that its bytes are stored under the key once it has been fully read.
+     * Streams that are closed early are not cached.
+     */
+    public InputStream tee(String key, InputStream source) {
+        if (!enabled) {
+            return source;
+        }
+        return new TeeInputStream(key, source);
+    }
+
+    public CacheStats getStats() {
+        synchronized (memoryEntries) {
+            synchronized (diskEntries) {
+                return new CacheStats(memoryHits.get(), diskHits.get(), misses.get(),
+                        memoryEvictions.get(), diskEvictions.get(), memoryBytes, diskBytes);
+            }
+        }
+    }
+
+    private void putInMemory(String key, AudioBuffer audio) {
+        if (audio.size() > memoryMaxBytes) {
+            return;
+        }
+        synchronized (memoryEntries) {
+            AudioBuffer previous = memoryEntries.put(key, audio.retain());
+            memoryBytes += audio.size();
+            if (previous != null) {
+                memoryBytes -= previous.size();
+                previous.release();
+            }
+
+            Iterator<Map.Entry<String, AudioBuffer>> iterator = memoryEntries.entrySet().iterator();
+            while (memoryBytes > memoryMaxBytes && iterator.hasNext()) {
+                Map.Entry<String, AudioBuffer> eldest = iterator.next();
+                memoryBytes -= eldest.getValue().size();
+                eldest.getValue().release();
+                iterator.remove();
+                memoryEvictions.incrementAndGet();
+            }
+        }
+    }
+
+    private AudioBuffer readFromDisk(String key) {
+        if (diskDirectory == null) {
+            return null;
+        }
+        synchronized (diskEntries) {
+            if (diskEntries.get(key) == null) {
+                return null;
+            }
+        }
+
+        Path file = diskDirectory.resolve(key + FILE_SUFFIX);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+            // Read straight into the pooled buffer that the memory tier keeps, a mapping would only be copied
+            int size = Math.toIntExact(channel.size());
+            AudioBuffer audio = audioBufferPool.allocate(size);
+            try {
+                audio.readFrom(channel, size);
+            } catch (IOException e) {
+                audio.release();
+                throw e;
+            }
+            return audio;
+        } catch (IOException e) {
+            log.warn("Failed to read cached audio: {}", file, e);
+            removeFromDisk(key);
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, AudioBuffer audio) {
+        Path file = diskDirectory.resolve(key + FILE_SUFFIX);
+        Path tempFile = null;
+        try {
+            tempFile = Files.createTempFile(diskDirectory, key, TEMP_FILE_SUFFIX);
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                audio.writeTo(channel);
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Failed to write cached audio: {}", file, e);
+            if (tempFile != null) {
+                deleteQuietly(tempFile);
+            }
+            return;
+        }
+
+        synchronized (diskEntries) {
+            Long previous = diskEntries.put(key, (long) audio.size());
+            diskBytes += audio.size() - (previous == null ? 0 : previous);
+
+            Iterator<Map.Entry<String, Long>> iterator = diskEntries.entrySet().iterator();
+            while (diskBytes > diskMaxBytes && iterator.hasNext()) {
+                Map.Entry<String, Long> eldest = iterator.next();
+                diskBytes -= eldest.getValue();
+                iterator.remove();
+                deleteQuietly(diskDirectory.resolve(eldest.getKey() + FILE_SUFFIX));
+                diskEvictions.incrementAndGet();
+            }
+        }
+    }
+
+    private void removeFromDisk(String key) {
+        synchronized (diskEntries) {
+            Long size = diskEntries.remove(key);
+            if (size != null) {
+                diskBytes -= size;
+            }
+        }
+        deleteQuietly(diskDirectory.resolve(key + FILE_SUFFIX));
+    }
+
+    private void loadDiskIndex() throws IOException {
+        Files.createDirectories(diskDirectory);
+        // Temporary files are left behind by writes that were cut short, they are outside the byte budget
+        try (Stream<Path> files = Files.list(diskDirectory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(TEMP_FILE_SUFFIX))
+                    .forEach(this::deleteQuietly);
+        }
+        // Least recently used files first, so that access order survives restarts
+        try (Stream<Path> files = Files.list(diskDirectory)) {
+            files.filter(file -> file.getFileName().toString().endsWith(FILE_SUFFIX))
+                    .sorted(Comparator.comparing(this::lastModified))
+                    .forEach(file -> {
+                        String fileName = file.getFileName().toString();
+                        long size = size(file);
+                        diskEntries.put(fileName.substring(0, fileName.length() - FILE_SUFFIX.length()), size);
+                        diskBytes += size;
+                    });
+        }
+        log.info("Loaded {} cached audio files ({} bytes) from {}", diskEntries.size(), diskBytes, diskDirectory);
+    }
+
+    private FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete cached audio: {}", file, e);
+        }
+    }
+
+    private class TeeInputStream extends FilterInputStream {
+
+        private final String key;
+        private AudioBuffer copy;
+        private boolean completed;
+
+        TeeInputStream(String key, InputStream source) {
+            super(source);
+            this.key = key;
+            this.copy = audioBufferPool.allocate(0);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                complete();
+            } else if (copy != null) {
+                copy.write(b);
+                checkSize();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read == -1) {
+                complete();
+            } else if (copy != null) {
+                copy.write(b, off, read);
+                checkSize();
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes would leave a hole in the copy
+            discard();
+            return super.skip(n);
+        }
+
+        private void checkSize() {
+            if (copy.size() > maxEntryBytes) {
+                discard();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                discard();
+            }
+        }
+
+        private void complete() {
+            if (copy != null && !completed) {
+                completed = true;
+                put(key, copy);
+            }
+        }
+
+        private void discard() {
+            if (copy != null) {
+                copy.release();
+                copy = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.vk.languagecoach.service.cache;
+
+import com.vk.languagecoach.dto.AIProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded, expiring cache of transcriptions keyed by a fingerprint of the audio bytes together with
+ * provider, model and language. The fingerprint is computed in a single streaming pass over the upload.
+ */
+@Component
+public class TranscriptionCache {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final Duration ttl;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() > maxEntries) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    public TranscriptionCache(@Value("${speech-to-text.cache.enabled}") boolean enabled,
+                              @Value("${speech-to-text.cache.max-entries}") int maxEntries,
+                              @Value("${speech-to-text.cache.ttl}") Duration ttl) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.ttl = ttl;
+    }
+
+    /**
+     * Hashes the audio while reading it with a fixed-size buffer, so a cache hit never holds the upload in memory.
+     */
+    public String key(InputStream audio, AIProvider provider, String model, String language) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = audio.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            for (String part : new String[]{String.valueOf(provider), model, language == null ? "" : language}) {
+                digest.update((byte) 0);
+                digest.update(part.getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public Optional<String> get(String key) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt().isBefore(Instant.now())) {
+                entries.remove(key);
+                expirations.incrementAndGet();
+                entry = null;
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+                return Optional.empty();
+            }
+            hits.incrementAndGet();
+            return Optional.of(entry.text());
+        }
+    }
+
+    public void put(String key, String text) {
+        if (!enabled) {
+            return;
+        }
+        synchronized (entries) {
+            entries.put(key, new Entry(text, Instant.now().plus(ttl)));
+        }
+    }
+
+    public Stats getStats() {
+        synchronized (entries) {
+            return new Stats(hits.get(), misses.get(), evictions.get(), expirations.get(), entries.size());
+        }
+    }
+
+    public record Stats(long hits, long misses, long evictions, long expirations, int size) {
+
+        public double hitRate() {
+            long total = hits + misses;
+            return total == 0 ? 0 : (double) hits / total;
+        }
+    }
+
+    private record Entry(String text, Instant expiresAt) {
+    }
+}
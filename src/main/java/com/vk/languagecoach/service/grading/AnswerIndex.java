@@ -0,0 +1,180 @@
+package com.vk.languagecoach.service.grading;
+
+import com.vk.languagecoach.model.Exercise;
+import com.vk.languagecoach.model.ExerciseAnswer;
+import com.vk.languagecoach.model.Exercises;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Bounded LRU of the normalized accepted answers of generated exercises, keyed by a content hash of the
+ * exercise so that the same exercise always gets the same id. Exercises are indexed when they are generated or
+ * stored, grading normalizes the learner's answer once and compares it against the precomputed forms, without a
+ * model round-trip.
+ */
+@Component
+public class AnswerIndex {
+
+    private static final Pattern ALTERNATIVES = Pattern.compile("\\s*[/|]\\s*");
+
+    private final int maxEditDistance;
+    private final LinkedHashMap<String, IndexedExercise> exercises;
+
+    public AnswerIndex(@Value("${exercises.grading.index.max-entries}") int maxEntries,
+                       @Value("${exercises.grading.max-edit-distance}") int maxEditDistance) {
+        this.maxEditDistance = maxEditDistance;
+        this.exercises = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IndexedExercise> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Indexes the answers of every exercise of the set.
+     */
+    public void index(Exercises exercises) {
+        Map<Integer, List<ExerciseAnswer>> answersByExerciseId = exercises.getAnswers() != null ?
+                exercises.getAnswers().stream().collect(Collectors.groupingBy(ExerciseAnswer::getExerciseId)) :
+                Map.of();
+        for (Exercise exercise : exercises.getExercises() != null ? exercises.getExercises() : List.<Exercise>of()) {
+            index(exercise.getText(), answersByExerciseId.getOrDefault(exercise.getExerciseId(), List.of()));
+        }
+    }
+
+    /**
+     * Indexes the answers of an exercise and returns its id.
+     */
+    public String index(String text, List<ExerciseAnswer> answers) {
+        String id = id(text, answers);
+        synchronized (exercises) {
+            if (exercises.get(id) != null) {
+                return id;
+            }
+        }
+
+        Map<Integer, AcceptedAnswer> byPosition = new HashMap<>();
+        for (ExerciseAnswer answer : answers) {
+            if (answer.getAnswer() != null) {
+                byPosition.put(answer.getPosition(), accepted(answer.getAnswer()));
+            }
+        }
+        synchronized (exercises) {
+            exercises.put(id, new IndexedExercise(Map.copyOf(byPosition)));
+        }
+        return id;
+    }
+
+    public boolean contains(String exerciseId) {
+        synchronized (exercises) {
+            return exercises.containsKey(exerciseId);
+        }
+    }
+
+    public Grade grade(String exerciseId, int position, String answer) {
+        IndexedExercise exercise;
+        synchronized (exercises) {
+            exercise = exercises.get(exerciseId);
+        }
+        if (exercise == null) {
+            return new Grade(Verdict.UNKNOWN, null, -1);
+        }
+        AcceptedAnswer accepted = exercise.answers().get(position);
+        if (accepted == null) {
+            return new Grade(Verdict.UNKNOWN, null, -1);
+        }
+        if (answer == null) {
+            return new Grade(Verdict.INCORRECT, accepted.original(), -1);
+        }
+
+        String strict = AnswerNormalizer.strict(answer);
+        for (String form : accepted.strict()) {
+            if (form.equals(strict)) {
+                return new Grade(Verdict.CORRECT, accepted.original(), 0);
+            }
+        }
+
+        // Diacritics and typos within the tolerance are accepted, but flagged so that the learner sees them
+        int[] loose = AnswerNormalizer.loose(strict).codePoints().toArray();
+        int best = -1;
+        for (int[] form : accepted.loose()) {
+            int tolerance = tolerance(form.length);
+            int distance = AnswerNormalizer.distance(loose, form, tolerance);
+            if (distance <= tolerance && (best < 0 || distance < best)) {
+                best = distance;
+            }
+        }
+        return best >= 0 ? new Grade(Verdict.ALMOST, accepted.original(), best)
+                : new Grade(Verdict.INCORRECT, accepted.original(), -1);
+    }
+
+    private int tolerance(int length) {
+        // No typos in very short answers, where one edit already changes the word
+        if (length <= 3) {
+            return 0;
+        }
+        return Math.min(maxEditDistance, length <= 7 ? 1 : 2);
+    }
+
+    private AcceptedAnswer accepted(String answer) {
+        List<String> strict = Arrays.stream(ALTERNATIVES.split(answer))
+                .map(AnswerNormalizer::strict)
+                .filter(form -> !form.isEmpty())
+                .distinct()
+                .toList();
+        List<int[]> loose = strict.stream()
+                .map(form -> AnswerNormalizer.loose(form).codePoints().toArray())
+                .toList();
+        return new AcceptedAnswer(answer, strict, loose);
+    }
+
+    /**
+     * The id of an exercise, the same whether its answers come from the model or from the store.
+     */
+    public static String id(String text, List<ExerciseAnswer> answers) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(text).getBytes(StandardCharsets.UTF_8));
+            List<ExerciseAnswer> byPosition = answers.stream()
+                    .sorted(Comparator.comparingInt(ExerciseAnswer::getPosition))
+                    .toList();
+            for (ExerciseAnswer answer : byPosition) {
+                digest.update((byte) 0);
+                digest.update(Integer.toString(answer.getPosition()).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+                digest.update(String.valueOf(answer.getAnswer()).getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest(), 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    public enum Verdict {
+        CORRECT, ALMOST, INCORRECT, UNKNOWN
+    }
+
+    public record Grade(Verdict verdict, String expected, int distance) {
+    }
+
+    private record IndexedExercise(Map<Integer, AcceptedAnswer> answers) {
+    }
+
+    private record AcceptedAnswer(String original, List<String> strict, List<int[]> loose) {
+    }
+}
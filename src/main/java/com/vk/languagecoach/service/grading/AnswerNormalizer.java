@@ -0,0 +1,82 @@
+package com.vk.languagecoach.service.grading;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Canonical forms of short answers. The strict form only irons out encoding, case, spacing, apostrophe and
+ * Cyrillic stress-mark variants; the loose form additionally drops all diacritics.
+ */
+final class AnswerNormalizer {
+
+    private static final Pattern STRESS_MARKS = Pattern.compile("(?<=\\p{IsCyrillic}\\p{M}{0,2})[\\u0300\\u0301]");
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern APOSTROPHES = Pattern.compile("[\\u2019\\u2018\\u02BC\\u02B9\\u0060\\u00B4\\u2032]");
+    private static final Pattern DASHES = Pattern.compile("[\\u2010-\\u2015\\u2212]");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern EDGE_PUNCTUATION = Pattern.compile("^[^\\p{L}\\p{N}]+|[^\\p{L}\\p{N}]+$");
+
+    private AnswerNormalizer() {
+    }
+
+    static String strict(String answer) {
+        String normalized = Normalizer.normalize(answer, Normalizer.Form.NFKC);
+        normalized = normalized.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+        normalized = APOSTROPHES.matcher(normalized).replaceAll("'");
+        normalized = DASHES.matcher(normalized).replaceAll("-");
+        normalized = WHITESPACE.matcher(normalized).replaceAll(" ");
+        normalized = EDGE_PUNCTUATION.matcher(normalized).replaceAll("");
+        // Stress marks on Cyrillic are a teaching aid, elsewhere the same marks are spelling ("está", "ósmy")
+        normalized = STRESS_MARKS.matcher(Normalizer.normalize(normalized, Normalizer.Form.NFD)).replaceAll("");
+        return Normalizer.normalize(normalized, Normalizer.Form.NFC);
+    }
+
+    static String loose(String strict) {
+        String decomposed = Normalizer.normalize(strict, Normalizer.Form.NFD);
+        return Normalizer.normalize(COMBINING_MARKS.matcher(decomposed).replaceAll(""), Normalizer.Form.NFC);
+    }
+
+    /**
+     * Levenshtein distance between the code points of both strings, or {@code maxDistance + 1} as soon as it is
+     * known to exceed {@code maxDistance}. Only a band of {@code 2 * maxDistance + 1} cells per row is computed.
+     */
+    static int distance(int[] a, int[] b, int maxDistance) {
+        if (Math.abs(a.length - b.length) > maxDistance) {
+            return maxDistance + 1;
+        }
+        int outOfBand = maxDistance + 1;
+        int[] previous = new int[b.length + 1];
+        int[] current = new int[b.length + 1];
+        for (int j = 0; j <= b.length; j++) {
+            previous[j] = j <= maxDistance ? j : outOfBand;
+        }
+
+        for (int i = 1; i <= a.length; i++) {
+            int from = Math.max(1, i - maxDistance);
+            int to = Math.min(b.length, i + maxDistance);
+            current[0] = i <= maxDistance ? i : outOfBand;
+            if (from > 1) {
+                current[from - 1] = outOfBand;
+            }
+            int rowMin = current[0];
+            for (int j = from; j <= to; j++) {
+                int substitution = previous[j - 1] + (a[i - 1] == b[j - 1] ? 0 : 1);
+                int deletion = previous[j] + 1;
+                int insertion = current[j - 1] + 1;
+                current[j] = Math.min(Math.min(substitution, deletion), Math.min(insertion, outOfBand));
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (to < b.length) {
+                current[to + 1] = outOfBand;
+            }
+            if (rowMin > maxDistance) {
+                return outOfBand;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length], outOfBand);
+    }
+}
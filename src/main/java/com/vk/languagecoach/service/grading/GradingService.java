@@ -0,0 +1,83 @@
+package com.vk.languagecoach.service.grading;
+
+import com.vk.languagecoach.dto.request.GradeAnswerRequest;
+import com.vk.languagecoach.dto.request.GradeRequest;
+import com.vk.languagecoach.dto.response.GradeResponse;
+import com.vk.languagecoach.dto.response.GradeResultResponse;
+import com.vk.languagecoach.entity.ExerciseEntity;
+import com.vk.languagecoach.model.ExerciseAnswer;
+import com.vk.languagecoach.repository.ExerciseSetRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Service
+@RequiredArgsConstructor
+public class GradingService {
+
+    private final AnswerIndex answerIndex;
+    private final ExerciseSetRepository exerciseSetRepository;
+
+    /**
+     * Grades every answer of a quiz against the answer index. Exercises missing from the index, after an eviction
+     * or a restart, are loaded from the store first. Answers to exercises found in neither are reported as
+     * {@link AnswerIndex.Verdict#UNKNOWN} and do not count towards the total.
+     */
+    @Transactional(readOnly = true)
+    public GradeResponse grade(GradeRequest gradeRequest) {
+        List<GradeAnswerRequest> answers = gradeRequest.getAnswers() != null ? gradeRequest.getAnswers() : List.of();
+        indexMissing(answers);
+        List<GradeResultResponse> results = new ArrayList<>(answers.size());
+        int correct = 0;
+        int total = 0;
+        for (GradeAnswerRequest answer : answers) {
+            AnswerIndex.Grade grade = answerIndex.grade(answer.getExerciseId(), answer.getPosition(), answer.getAnswer());
+            if (grade.verdict() != AnswerIndex.Verdict.UNKNOWN) {
+                total++;
+            }
+            if (grade.verdict() == AnswerIndex.Verdict.CORRECT || grade.verdict() == AnswerIndex.Verdict.ALMOST) {
+                correct++;
+            }
+            results.add(GradeResultResponse.builder()
+                    .exerciseId(answer.getExerciseId())
+                    .position(answer.getPosition())
+                    .verdict(grade.verdict().name())
+                    .expected(grade.expected())
+                    .distance(grade.distance() >= 0 ? grade.distance() : null)
+                    .build());
+        }
+        return GradeResponse.builder()
+                .correct(correct)
+                .total(total)
+                .results(results)
+                .build();
+    }
+
+    private void indexMissing(List<GradeAnswerRequest> answers) {
+        Set<String> missing = answers.stream()
+                .map(GradeAnswerRequest::getExerciseId)
+                .filter(exerciseId -> exerciseId != null && !answerIndex.contains(exerciseId))
+                .collect(Collectors.toSet());
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        for (ExerciseEntity exercise : exerciseSetRepository.findExercisesByGradingIds(missing)) {
+            List<ExerciseAnswer> exerciseAnswers = exercise.getAnswers().stream()
+                    .map(answerEntity -> {
+                        ExerciseAnswer answer = new ExerciseAnswer();
+                        answer.setExerciseId(exercise.getPosition());
+                        answer.setPosition(answerEntity.getPosition());
+                        answer.setAnswer(answerEntity.getAnswer());
+                        return answer;
+                    })
+                    .toList();
+            answerIndex.index(exercise.getText(), exerciseAnswers);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.vk.languagecoach.service.job;
+
+import com.vk.languagecoach.dto.AIProvider;
+import com.vk.languagecoach.dto.request.ExerciseRequest;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+/**
+ * State of a bulk exercise generation. Each request is stored as soon as its result lands.
+ */
+@Getter
+public class ExerciseBatchJob {
+
+    private final String id;
+    private final AIProvider provider;
+    private final Instant createdAt = Instant.now();
+    private final List<Item> items;
+    private volatile Mode mode;
+    private volatile Status status = Status.SUBMITTED;
+    private volatile String providerBatchId;
+    private volatile Instant finishedAt;
+    private final AtomicBoolean polling = new AtomicBoolean();
+    private final Set<String> consumedFiles = ConcurrentHashMap.newKeySet();
+
+    ExerciseBatchJob(String id, AIProvider provider, List<ExerciseRequest> requests, Mode mode) {
+        this.id = id;
+        this.provider = provider;
+        this.mode = mode;
+        this.items = IntStream.range(0, requests.size())
+                .mapToObj(index -> new Item(index, requests.get(index)))
+                .toList();
+    }
+
+    void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    void setProviderBatchId(String providerBatchId) {
+        this.providerBatchId = providerBatchId;
+    }
+
+    void setStatus(Status status) {
+        this.status = status;
+        this.finishedAt = status == Status.COMPLETED || status == Status.FAILED ? Instant.now() : null;
+    }
+
+    public enum Mode {
+        PROVIDER, LOCAL
+    }
+
+    public enum Status {
+        SUBMITTED, RUNNING, COMPLETED, FAILED
+    }
+
+    public enum ItemStatus {
+        PENDING, DONE, FAILED
+    }
+
+    @Getter
+    public static class Item {
+
+        private final int index;
+        private final ExerciseRequest request;
+        private volatile ItemStatus status = ItemStatus.PENDING;
+        private volatile Long exerciseSetId;
+        private volatile String error;
+
+        Item(int index, ExerciseRequest request) {
+            this.index = index;
+            this.request = request;
+        }
+
+        void complete(Long exerciseSetId) {
+            this.exerciseSetId = exerciseSetId;
+            this.status = ItemStatus.DONE;
+        }
+
+        void fail(String error) {
+            this.error = error;
+            this.status = ItemStatus.FAILED;
+        }
+    }
+}
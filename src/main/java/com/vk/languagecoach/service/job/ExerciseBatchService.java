@@ -0,0 +1,369 @@
+package com.vk.languagecoach.service.job;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.openai.core.http.HttpResponse;
+import com.openai.errors.OpenAIServiceException;
+import com.openai.models.batches.Batch;
+import com.openai.models.batches.BatchCreateParams;
+import com.openai.models.batches.BatchRetrieveParams;
+import com.openai.models.chat.completions.ChatCompletion;
+import com.openai.models.chat.completions.ChatCompletionCreateParams;
+import com.openai.models.files.FileContentParams;
+import com.openai.models.files.FileCreateParams;
+import com.openai.models.files.FileObject;
+import com.openai.models.files.FilePurpose;
+import com.vk.languagecoach.dto.AIProvider;
+import com.vk.languagecoach.dto.request.ExerciseBatchRequest;
+import com.vk.languagecoach.model.Exercises;
+import com.vk.languagecoach.service.ExerciseService;
+import com.vk.languagecoach.service.ExerciseStoreService;
+import com.vk.languagecoach.service.ai.AIServiceProvider;
+import com.vk.languagecoach.service.ai.RateLimiter;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+
+import static com.openai.core.ObjectMappers.jsonMapper;
+import static com.vk.languagecoach.dto.AIModelType.TEXT;
+
+/**
+ * Generates exercise sets in bulk through the provider's OpenAI-compatible Batch API: requests are uploaded as
+ * JSONL, the batch is polled, and results are parsed and stored line by line as the output file is read.
+ * Providers without batch support fall back to a locally throttled concurrent executor.
+ */
+@Service
+@Slf4j
+public class ExerciseBatchService {
+
+    private static final String CHAT_COMPLETIONS_URL = "/v1/chat/completions";
+    private static final Set<Integer> UNSUPPORTED_STATUS_CODES = Set.of(404, 405, 501);
+    private static final Set<Batch.Status> PENDING_STATUSES = Set.of(
+            Batch.Status.VALIDATING, Batch.Status.IN_PROGRESS, Batch.Status.FINALIZING, Batch.Status.CANCELLING);
+    private static final RateLimiter.Admission ADMISSION = new RateLimiter.Admission(RateLimiter.Priority.BULK, 0);
+
+    private final AIServiceProvider aiServiceProvider;
+    private final ExerciseService exerciseService;
+    private final ExerciseStoreService exerciseStoreService;
+    private final ObjectMapper objectMapper;
+    private final Set<AIProvider> batchProviders;
+    private final Semaphore localPermits;
+    private final Duration ttl;
+    private final Map<String, ExerciseBatchJob> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public ExerciseBatchService(AIServiceProvider aiServiceProvider,
+                                ExerciseService exerciseService,
+                                ExerciseStoreService exerciseStoreService,
+                                ObjectMapper objectMapper,
+                                @Value("${exercises.batch.providers}") List<String> batchProviders,
+                                @Value("${exercises.batch.local-concurrency}") int localConcurrency,
+                                @Value("${exercises.batch.ttl}") Duration ttl) {
+        this.aiServiceProvider = aiServiceProvider;
+        this.exerciseService = exerciseService;
+        this.exerciseStoreService = exerciseStoreService;
+        this.objectMapper = objectMapper;
+        this.batchProviders = batchProviders.stream()
+                .filter(provider -> !provider.isBlank())
+                .map(AIProvider::fromString)
+                .collect(Collectors.toCollection(() -> EnumSet.noneOf(AIProvider.class)));
+        this.localPermits = new Semaphore(localConcurrency, true);
+        this.ttl = ttl;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public ExerciseBatchJob submit(ExerciseBatchRequest batchRequest) {
+        AIProvider requested = batchRequest.getProvider() != null ? batchRequest.getProvider() : AIProvider.AUTO;
+        Optional<AIProvider> batchProvider = resolveBatchProvider(requested);
+        AIProvider provider = batchProvider.orElse(requested);
+
+        ExerciseBatchJob job = new ExerciseBatchJob(UUID.randomUUID().toString(), provider,
+                batchRequest.getRequests().stream()
+                        .map(request -> request.toBuilder().provider(provider).build())
+                        .toList(),
+                batchProvider.isPresent() ? ExerciseBatchJob.Mode.PROVIDER : ExerciseBatchJob.Mode.LOCAL);
+        jobs.put(job.getId(), job);
+
+        log.info("Submitted exercise batch: {} with {} requests to provider: {}, mode: {}",
+                job.getId(), job.getItems().size(), provider, job.getMode());
+        executor.submit(() -> {
+            if (job.getMode() == ExerciseBatchJob.Mode.PROVIDER) {
+                submitToProvider(job);
+            } else {
+                runLocally(job);
+            }
+        });
+        return job;
+    }
+
+    public Optional<ExerciseBatchJob> find(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    @Scheduled(fixedDelayString = "${exercises.batch.poll-interval-ms}")
+    public void pollProviderBatches() {
+        for (ExerciseBatchJob job : jobs.values()) {
+            if (job.getMode() == ExerciseBatchJob.Mode.PROVIDER
+                    && job.getStatus() == ExerciseBatchJob.Status.RUNNING
+                    && job.getProviderBatchId() != null
+                    && job.getPolling().compareAndSet(false, true)) {
+                // Downloading and storing results must not hold up the other scheduled tasks
+                executor.submit(() -> {
+                    try {
+                        poll(job);
+                    } catch (RuntimeException e) {
+                        // Transient failures are retried on the next poll
+                        log.warn("Failed to poll exercise batch: {}", job.getId(), e);
+                    } finally {
+                        job.getPolling().set(false);
+                    }
+                });
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${exercises.batch.cleanup-interval-ms}")
+    public void removeExpiredJobs() {
+        Instant expiredBefore = Instant.now().minus(ttl);
+        jobs.values().removeIf(job -> job.getFinishedAt() != null && job.getFinishedAt().isBefore(expiredBefore));
+    }
+
+    private Optional<AIProvider> resolveBatchProvider(AIProvider provider) {
+        if (provider != AIProvider.AUTO) {
+            return batchProviders.contains(provider) ? Optional.of(provider) : Optional.empty();
+        }
+        return aiServiceProvider.getProviders(TEXT).stream().filter(batchProviders::contains).findFirst();
+    }
+
+    private void submitToProvider(ExerciseBatchJob job) {
+        Path input = null;
+        try {
+            input = writeInput(job);
+            Path inputFile = input;
+            Batch batch = aiServiceProvider.execute(job.getProvider(), TEXT, ADMISSION, (client, model) -> {
+                FileObject file = client.files().create(FileCreateParams.builder()
+                        .file(inputFile)
+                        .purpose(FilePurpose.BATCH)
+                        .build());
+                return client.batches().create(BatchCreateParams.builder()
+                        .inputFileId(file.id())
+                        .endpoint(BatchCreateParams.Endpoint.V1_CHAT_COMPLETIONS)
+                        .completionWindow(BatchCreateParams.CompletionWindow._24H)
+                        .build());
+            });
+
+            job.setProviderBatchId(batch.id());
+            job.setStatus(ExerciseBatchJob.Status.RUNNING);
+            log.info("Exercise batch: {} submitted as provider batch: {}", job.getId(), batch.id());
+        } catch (OpenAIServiceException e) {
+            if (!UNSUPPORTED_STATUS_CODES.contains(e.statusCode())) {
+                fail(job, e);
+                return;
+            }
+            log.info("Provider {} has no batch support, running exercise batch: {} locally", job.getProvider(), job.getId());
+            job.setMode(ExerciseBatchJob.Mode.LOCAL);
+            runLocally(job);
+        } catch (IOException | RuntimeException e) {
+            fail(job, e);
+        } finally {
+            deleteQuietly(input);
+        }
+    }
+
+    private Path writeInput(ExerciseBatchJob job) throws IOException {
+        String model = aiServiceProvider.getModel(job.getProvider(), TEXT);
+        Path input = Files.createTempFile("exercise-batch-" + job.getId(), ".jsonl");
+        try (BufferedWriter writer = Files.newBufferedWriter(input, StandardCharsets.UTF_8)) {
+            for (ExerciseBatchJob.Item item : job.getItems()) {
+                ChatCompletionCreateParams params = exerciseService.createCompletionParams(item.getRequest(), model)
+                        .rawParams();
+
+                ObjectNode body = objectMapper.createObjectNode();
+                body.put("model", model);
+                body.set("messages", jsonMapper().valueToTree(params.messages()));
+                params.temperature().ifPresent(temperature -> body.put("temperature", temperature));
+                params.topP().ifPresent(topP -> body.put("top_p", topP));
+                params.maxCompletionTokens().ifPresent(tokens -> body.put("max_completion_tokens", tokens));
+                params.responseFormat().ifPresent(format -> body.set("response_format", jsonMapper().valueToTree(format)));
+
+                ObjectNode line = objectMapper.createObjectNode();
+                line.put("custom_id", String.valueOf(item.getIndex()));
+                line.put("method", "POST");
+                line.put("url", CHAT_COMPLETIONS_URL);
+                line.set("body", body);
+                writer.write(objectMapper.writeValueAsString(line));
+                writer.newLine();
+            }
+        }
+        return input;
+    }
+
+    private void poll(ExerciseBatchJob job) {
+        Batch batch = aiServiceProvider.execute(job.getProvider(), TEXT, ADMISSION,
+                (client, model) -> client.batches().retrieve(BatchRetrieveParams.builder()
+                        .batchId(job.getProviderBatchId())
+                        .build()));
+        if (PENDING_STATUSES.contains(batch.status())) {
+            return;
+        }
+
+        log.info("Provider batch: {} of exercise batch: {} finished with status: {}",
+                batch.id(), job.getId(), batch.status());
+        batch.outputFileId().ifPresent(fileId -> readResults(job, fileId));
+        batch.errorFileId().ifPresent(fileId -> readResults(job, fileId));
+        for (ExerciseBatchJob.Item item : job.getItems()) {
+            if (item.getStatus() == ExerciseBatchJob.ItemStatus.PENDING) {
+                item.fail("Provider batch finished with status: " + batch.status());
+            }
+        }
+        finish(job);
+    }
+
+    /**
+     * Reads a result file once. A file that fails part way is read again from the start on the next poll, the
+     * items it already settled are skipped.
+     */
+    private void readResults(ExerciseBatchJob job, String fileId) {
+        if (job.getConsumedFiles().contains(fileId)) {
+            return;
+        }
+        try (HttpResponse response = aiServiceProvider.execute(job.getProvider(), TEXT, ADMISSION,
+                (client, model) -> client.files().content(FileContentParams.builder().fileId(fileId).build()));
+             BufferedReader reader = new BufferedReader(
+                     new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    handleResult(job, objectMapper.readTree(line));
+                }
+            }
+            job.getConsumedFiles().add(fileId);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read provider batch file: " + fileId, e);
+        }
+    }
+
+    private void handleResult(ExerciseBatchJob job, JsonNode result) {
+        int index = result.path("custom_id").asInt(-1);
+        if (index < 0 || index >= job.getItems().size()) {
+            log.warn("Ignoring unknown result: {} of exercise batch: {}", result.path("custom_id"), job.getId());
+            return;
+        }
+
+        ExerciseBatchJob.Item item = job.getItems().get(index);
+        if (item.getStatus() != ExerciseBatchJob.ItemStatus.PENDING) {
+            return;
+        }
+        JsonNode response = result.path("response");
+        if (response.path("status_code").asInt() != 200) {
+            item.fail(errorMessage(result));
+            return;
+        }
+        try {
+            ChatCompletion completion = jsonMapper().treeToValue(response.path("body"), ChatCompletion.class);
+            completion.usage().ifPresent(usage -> exerciseService.recordUsage(job.getProvider(),
+                    aiServiceProvider.getModel(job.getProvider(), TEXT), item.getRequest(), usage));
+            String content = completion.choices().getFirst().message().content()
+                    .orElseThrow(() -> new IllegalStateException("No content in the response"));
+            Exercises exercises = objectMapper.readValue(content, Exercises.class);
+            item.complete(exerciseStoreService.save(item.getRequest(), exercises));
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to store result: {} of exercise batch: {}", index, job.getId(), e);
+            item.fail(e.getMessage());
+        }
+    }
+
+    private String errorMessage(JsonNode result) {
+        JsonNode error = result.path("error");
+        if (error.isMissingNode() || error.isNull()) {
+            error = result.path("response").path("body").path("error");
+        }
+        return error.path("message").asText("Provider returned status: " + result.path("response").path("status_code"));
+    }
+
+    private void runLocally(ExerciseBatchJob job) {
+        job.setStatus(ExerciseBatchJob.Status.RUNNING);
+        try (ExecutorService itemExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (ExerciseBatchJob.Item item : job.getItems()) {
+                itemExecutor.submit(() -> runLocally(job, item));
+            }
+        }
+        finish(job);
+    }
+
+    private void runLocally(ExerciseBatchJob job, ExerciseBatchJob.Item item) {
+        try {
+            localPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            item.fail("Interrupted");
+            return;
+        }
+        try {
+            Exercises exercises = exerciseService.generateBulkExercises(item.getRequest());
+            item.complete(exerciseStoreService.save(item.getRequest(), exercises));
+        } catch (RuntimeException e) {
+            log.warn("Failed request: {} of exercise batch: {}", item.getIndex(), job.getId(), e);
+            item.fail(e.getMessage());
+        } finally {
+            localPermits.release();
+        }
+    }
+
+    private void finish(ExerciseBatchJob job) {
+        boolean completed = job.getItems().stream()
+                .allMatch(item -> item.getStatus() == ExerciseBatchJob.ItemStatus.DONE);
+        job.setStatus(completed ? ExerciseBatchJob.Status.COMPLETED : ExerciseBatchJob.Status.FAILED);
+        log.info("Exercise batch: {} finished with status: {}", job.getId(), job.getStatus());
+    }
+
+    private void fail(ExerciseBatchJob job, Exception e) {
+        log.warn("Exercise batch: {} failed", job.getId(), e);
+        for (ExerciseBatchJob.Item item : job.getItems()) {
+            if (item.getStatus() == ExerciseBatchJob.ItemStatus.PENDING) {
+                item.fail(e.getMessage());
+            }
+        }
+        finish(job);
+    }
+
+    private void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete batch input file: {}", path, e);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.vk.languagecoach.service.job;
+
+import com.vk.languagecoach.dto.request.tts.TextToSpeechRequest;
+import com.vk.languagecoach.service.TextToSpeechService;
+import lombok.Getter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * State of an asynchronous speech synthesis job. Chunks are spooled into the job directory as they complete
+ * and the archive is assembled from them once every chunk is done.
+ */
+@Getter
+public class TextToSpeechJob {
+
+    public static final String ARCHIVE_NAME = "audio.zip";
+
+    private final String id;
+    private final TextToSpeechRequest request;
+    private final Path directory;
+    private final Instant createdAt = Instant.now();
+    private final List<Chunk> chunks;
+    private final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Status status = Status.QUEUED;
+    private volatile Instant finishedAt;
+
+    TextToSpeechJob(String id, TextToSpeechRequest request, Path directory,
+                    List<TextToSpeechService.SpeechChunk> speechChunks) {
+        this.id = id;
+        this.request = request;
+        this.directory = directory;
+        this.chunks = speechChunks.stream().map(Chunk::new).toList();
+    }
+
+    public Path getArchive() {
+        return directory.resolve(ARCHIVE_NAME);
+    }
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED;
+    }
+
+    void setStatus(Status status) {
+        this.status = status;
+        this.finishedAt = status == Status.COMPLETED || status == Status.FAILED ? Instant.now() : null;
+    }
+
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+
+    public enum ChunkStatus {
+        PENDING, RUNNING, DONE, FAILED
+    }
+
+    @Getter
+    public static class Chunk {
+
+        private final TextToSpeechService.SpeechChunk speechChunk;
+        private volatile ChunkStatus status = ChunkStatus.PENDING;
+        private volatile String error;
+
+        Chunk(TextToSpeechService.SpeechChunk speechChunk) {
+            this.speechChunk = speechChunk;
+        }
+
+        void setStatus(ChunkStatus status, String error) {
+            this.status = status;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.vk.languagecoach.service.job;
+
+import com.vk.languagecoach.dto.request.tts.TextToSpeechRequest;
+import com.vk.languagecoach.mapper.TextToSpeechJobMapper;
+import com.vk.languagecoach.service.AudioZipWriter;
+import com.vk.languagecoach.service.TextToSpeechService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+
+/**
+ * Runs large speech synthesis requests in the background. Chunks are spooled to disk as they complete, so a
+ * retry only synthesizes the chunks that failed, and the finished archive is served from a file.
+ */
+@Service
+@Slf4j
+public class TextToSpeechJobService {
+
+    private static final String PROGRESS_EVENT = "progress";
+
+    private final TextToSpeechService textToSpeechService;
+    private final TextToSpeechJobMapper textToSpeechJobMapper;
+    private final Path directory;
+    private final Duration ttl;
+    private final int perJobConcurrency;
+    private final Map<String, TextToSpeechJob> jobs = new ConcurrentHashMap<>();
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public TextToSpeechJobService(TextToSpeechService textToSpeechService,
+                                  TextToSpeechJobMapper textToSpeechJobMapper,
+                                  @Value("${text-to-speech.jobs.directory}") String directory,
+                                  @Value("${text-to-speech.jobs.ttl}") Duration ttl,
+                                  @Value("${text-to-speech.concurrency.per-request}") int perJobConcurrency)
+            throws IOException {
+        this.textToSpeechService = textToSpeechService;
+        this.textToSpeechJobMapper = textToSpeechJobMapper;
+        this.directory = Path.of(directory);
+        this.ttl = ttl;
+        this.perJobConcurrency = perJobConcurrency;
+
+        Files.createDirectories(this.directory);
+        deleteStaleJobDirectories();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public TextToSpeechJob submit(TextToSpeechRequest request) throws IOException {
+        String id = UUID.randomUUID().toString();
+        Path jobDirectory = Files.createDirectories(directory.resolve(id));
+        TextToSpeechJob job = new TextToSpeechJob(id, request, jobDirectory, textToSpeechService.chunks(request));
+        jobs.put(id, job);
+
+        log.info("Submitted speech job: {} with {} chunks", id, job.getChunks().size());
+        start(job);
+        return job;
+    }
+
+    public Optional<TextToSpeechJob> find(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /**
+     * Synthesizes the failed chunks of a finished job again, keeping the chunks that are already done.
+     */
+    public TextToSpeechJob retry(TextToSpeechJob job) {
+        if (job.getStatus() == TextToSpeechJob.Status.FAILED) {
+            log.info("Retrying speech job: {}", job.getId());
+            start(job);
+        }
+        return job;
+    }
+
+    public SseEmitter subscribe(TextToSpeechJob job) {
+        SseEmitter emitter = new SseEmitter(ttl.toMillis());
+        job.getSubscribers().add(emitter);
+        emitter.onCompletion(() -> job.getSubscribers().remove(emitter));
+        emitter.onTimeout(() -> job.getSubscribers().remove(emitter));
+        emitter.onError(error -> job.getSubscribers().remove(emitter));
+
+        send(job, emitter);
+        if (job.isFinished()) {
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    @Scheduled(fixedDelayString = "${text-to-speech.jobs.cleanup-interval-ms}")
+    public void removeExpiredJobs() {
+        Instant expiredBefore = Instant.now().minus(ttl);
+        jobs.values().removeIf(job -> {
+            if (job.getFinishedAt() == null || job.getFinishedAt().isAfter(expiredBefore)) {
+                return false;
+            }
+            log.info("Removing expired speech job: {}", job.getId());
+            job.getSubscribers().forEach(SseEmitter::complete);
+            try {
+                FileSystemUtils.deleteRecursively(job.getDirectory());
+            } catch (IOException e) {
+                log.warn("Failed to delete speech job directory: {}", job.getDirectory(), e);
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Jobs are kept in memory, spool files of a previous run can not be resumed. Only job directories are
+     * removed, anything else in the configured directory is left alone.
+     */
+    private void deleteStaleJobDirectories() throws IOException {
+        try (Stream<Path> entries = Files.list(directory)) {
+            for (Path entry : entries.filter(Files::isDirectory).filter(this::isJobDirectory).toList()) {
+                FileSystemUtils.deleteRecursively(entry);
+            }
+        }
+    }
+
+    private boolean isJobDirectory(Path path) {
+        try {
+            String name = path.getFileName().toString();
+            return UUID.fromString(name).toString().equals(name);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private void start(TextToSpeechJob job) {
+        if (!job.getRunning().compareAndSet(false, true)) {
+            return;
+        }
+        job.getChunks().stream()
+                .filter(chunk -> chunk.getStatus() == TextToSpeechJob.ChunkStatus.FAILED)
+                .forEach(chunk -> chunk.setStatus(TextToSpeechJob.ChunkStatus.PENDING, null));
+        job.setStatus(TextToSpeechJob.Status.QUEUED);
+        executor.submit(() -> run(job));
+    }
+
+    private void run(TextToSpeechJob job) {
+        TextToSpeechJob.Status status = TextToSpeechJob.Status.FAILED;
+        try {
+            job.setStatus(TextToSpeechJob.Status.RUNNING);
+            publish(job);
+
+            Semaphore permits = new Semaphore(perJobConcurrency);
+            try (ExecutorService chunkExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (TextToSpeechJob.Chunk chunk : job.getChunks()) {
+                    if (chunk.getStatus() == TextToSpeechJob.ChunkStatus.DONE) {
+                        continue;
+                    }
+                    permits.acquire();
+                    chunkExecutor.submit(() -> {
+                        try {
+                            synthesize(job, chunk);
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                }
+            }
+
+            boolean completed = job.getChunks().stream()
+                    .allMatch(chunk -> chunk.getStatus() == TextToSpeechJob.ChunkStatus.DONE);
+            if (completed) {
+                assemble(job);
+            }
+            status = completed ? TextToSpeechJob.Status.COMPLETED : TextToSpeechJob.Status.FAILED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Speech job: {} failed", job.getId(), e);
+        } finally {
+            // Cleared before the status is published, so that a retry seeing FAILED can start the job again
+            job.getRunning().set(false);
+            job.setStatus(status);
+            log.info("Speech job: {} finished with status: {}", job.getId(), status);
+            publish(job);
+            job.getSubscribers().forEach(SseEmitter::complete);
+        }
+    }
+
+    private void synthesize(TextToSpeechJob job, TextToSpeechJob.Chunk chunk) {
+        chunk.setStatus(TextToSpeechJob.ChunkStatus.RUNNING, null);
+        publish(job);
+        try {
+            Path target = job.getDirectory().resolve(chunk.getSpeechChunk().name());
+            textToSpeechService.writeSpeech(job.getRequest(), chunk.getSpeechChunk(), target);
+            chunk.setStatus(TextToSpeechJob.ChunkStatus.DONE, null);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Speech job: {} failed chunk: {}", job.getId(), chunk.getSpeechChunk().name(), e);
+            chunk.setStatus(TextToSpeechJob.ChunkStatus.FAILED, e.getMessage());
+        }
+        publish(job);
+    }
+
+    private void assemble(TextToSpeechJob job) throws IOException {
+        Path partial = job.getDirectory().resolve(TextToSpeechJob.ARCHIVE_NAME + ".part");
+        try (OutputStream outputStream = Files.newOutputStream(partial)) {
+            AudioZipWriter zipWriter = new AudioZipWriter(outputStream);
+            for (TextToSpeechJob.Chunk chunk : job.getChunks()) {
+                try (InputStream audio = Files.newInputStream(job.getDirectory().resolve(chunk.getSpeechChunk().name()))) {
+                    zipWriter.accept(chunk.getSpeechChunk().name(), audio);
+                }
+            }
+            zipWriter.finish();
+        }
+        Files.move(partial, job.getArchive(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void publish(TextToSpeechJob job) {
+        for (SseEmitter emitter : job.getSubscribers()) {
+            send(job, emitter);
+        }
+    }
+
+    private void send(TextToSpeechJob job, SseEmitter emitter) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .name(PROGRESS_EVENT)
+                    .data(textToSpeechJobMapper.mapToTextToSpeechJobResponse(job)));
+        } catch (IOException | IllegalStateException e) {
+            // The subscriber went away, progress is still available by polling
+            job.getSubscribers().remove(emitter);
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package com.vk.languagecoach.service.search;
+
+import com.vk.languagecoach.dto.ExerciseDifficulty;
+import org.springframework.stereotype.Component;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.vk.languagecoach.service.cache.ExerciseRequestKey.normalize;
+
+/**
+ * In-memory inverted index over stored exercise sets, ranked with BM25 over the weighted term frequencies of
+ * {@link SearchDocument}. At a reduced weight, query terms also match the terms that share their stem, taken as
+ * the term without its last {@value #MAX_SUFFIX_LENGTH} letters but at least {@value #MIN_STEM_LENGTH} long, which
+ * stands in for stemming in inflected languages ("читав" finds "читала", "verbs" finds "verb"). Sets are appended;
+ * removing sets compacts the whole index, which is only done when reconciling it with the database. The index can
+ * be written to and merged back from a compact snapshot.
+ */
+@Component
+public class ExerciseSearchIndex {
+
+    private static final int SNAPSHOT_MAGIC = 0x45584958;
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int MIN_STEM_LENGTH = 4;
+    private static final int MAX_SUFFIX_LENGTH = 2;
+    private static final int MAX_STEM_EXPANSIONS = 64;
+    private static final float STEM_MATCH_WEIGHT = 0.5f;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, Postings> postings = new TreeMap<>();
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+    private final List<Document> documents = new ArrayList<>();
+    private double totalLength;
+    private long version;
+
+    public record Hit(long setId, double score) {
+    }
+
+    public record SearchIndexStats(int sets, int terms, long version) {
+    }
+
+    private record Document(long setId, Instant createdAt, String exerciseLanguage, String userLanguage,
+                            ExerciseDifficulty difficulty, float length) {
+    }
+
+    /**
+     * Adds a set unless it is already indexed.
+     */
+    public boolean add(SearchDocument document) {
+        lock.writeLock().lock();
+        try {
+            if (ordinals.containsKey(document.setId())) {
+                return false;
+            }
+            int ordinal = documents.size();
+            ordinals.put(document.setId(), ordinal);
+            documents.add(new Document(document.setId(), document.createdAt(), document.exerciseLanguage(),
+                    document.userLanguage(), document.difficulty(), document.length()));
+            totalLength += document.length();
+            document.terms().forEach((term, weight) ->
+                    postings.computeIfAbsent(term, t -> new Postings()).add(ordinal, weight));
+            version++;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(long setId) {
+        lock.readLock().lock();
+        try {
+            return ordinals.containsKey(setId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The creation time of every indexed set by set id.
+     */
+    public Map<Long, Instant> getIndexedSets() {
+        lock.readLock().lock();
+        try {
+            Map<Long, Instant> indexedSets = HashMap.newHashMap(documents.size());
+            for (Document document : documents) {
+                indexedSets.put(document.setId(), document.createdAt());
+            }
+            return indexedSets;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the given sets and renumbers the rest, compacting every postings list, and returns how many were
+     * removed.
+     */
+    public int removeAll(Collection<Long> setIds) {
+        lock.writeLock().lock();
+        try {
+            boolean[] removed = new boolean[documents.size()];
+            int count = 0;
+            for (Long setId : setIds) {
+                Integer ordinal = ordinals.get(setId);
+                if (ordinal != null && !removed[ordinal]) {
+                    removed[ordinal] = true;
+                    count++;
+                }
+            }
+            if (count == 0) {
+                return 0;
+            }
+
+            // Renumbering keeps the order, so the postings stay sorted by ordinal
+            int[] renumbered = new int[documents.size()];
+            List<Document> kept = new ArrayList<>(documents.size() - count);
+            ordinals.clear();
+            totalLength = 0;
+            for (int ordinal = 0; ordinal < documents.size(); ordinal++) {
+                if (removed[ordinal]) {
+                    renumbered[ordinal] = -1;
+                    continue;
+                }
+                Document document = documents.get(ordinal);
+                renumbered[ordinal] = kept.size();
+                ordinals.put(document.setId(), kept.size());
+                kept.add(document);
+                totalLength += document.length();
+            }
+            documents.clear();
+            documents.addAll(kept);
+            postings.values().removeIf(termPostings -> termPostings.renumber(renumbered) == 0);
+            version++;
+            return count;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Ranks the sets matching any query term, best first. Filters are compared like the stored request metadata.
+     */
+    public List<Hit> search(String query,
+                            String exerciseLanguage,
+                            String userLanguage,
+                            ExerciseDifficulty difficulty,
+                            int limit) {
+        Set<String> terms = new LinkedHashSet<>(
+                SearchTokenizer.tokenize(query, SearchTokenizer.locale(exerciseLanguage)));
+        if (terms.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        String exerciseLanguageFilter = exerciseLanguage == null ? null : normalize(exerciseLanguage);
+        String userLanguageFilter = userLanguage == null ? null : normalize(userLanguage);
+
+        lock.readLock().lock();
+        try {
+            int count = documents.size();
+            if (count == 0) {
+                return List.of();
+            }
+            float averageLength = (float) (totalLength / count);
+            float[] scores = new float[count];
+            float[] formScores = new float[count];
+            for (String term : terms) {
+                score(term, averageLength, scores, formScores);
+            }
+
+            // Ties go to the newer set
+            Comparator<Hit> ranking = Comparator.comparingDouble(Hit::score).thenComparingLong(Hit::setId);
+            PriorityQueue<Hit> top = new PriorityQueue<>(limit + 1, ranking);
+            for (int ordinal = 0; ordinal < count; ordinal++) {
+                if (scores[ordinal] <= 0 || top.size() == limit && scores[ordinal] < top.peek().score()) {
+                    continue;
+                }
+                Document document = documents.get(ordinal);
+                if ((exerciseLanguageFilter == null || exerciseLanguageFilter.equals(document.exerciseLanguage()))
+                        && (userLanguageFilter == null || userLanguageFilter.equals(document.userLanguage()))
+                        && (difficulty == null || difficulty == document.difficulty())) {
+                    top.add(new Hit(document.setId(), scores[ordinal]));
+                    if (top.size() > limit) {
+                        top.poll();
+                    }
+                }
+            }
+            List<Hit> hits = new ArrayList<>(top);
+            hits.sort(ranking.reversed());
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public SearchIndexStats getStats() {
+        lock.readLock().lock();
+        try {
+            return new SearchIndexStats(documents.size(), postings.size(), version);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Writes every indexed set as its term vector against a shared term dictionary. The index is copied under
+     * the read lock and written after releasing it, so a slow disk does not hold up new sets.
+     */
+    public void writeSnapshot(OutputStream outputStream) throws IOException {
+        String[] dictionary;
+        Document[] snapshotDocuments;
+        int[][] termIds;
+        float[][] weights;
+
+        lock.readLock().lock();
+        try {
+            dictionary = postings.keySet().toArray(String[]::new);
+            snapshotDocuments = documents.toArray(Document[]::new);
+            int[] sizes = new int[snapshotDocuments.length];
+            for (Postings termPostings : postings.values()) {
+                for (int i = 0; i < termPostings.size; i++) {
+                    sizes[termPostings.ordinals[i]]++;
+                }
+            }
+            termIds = new int[snapshotDocuments.length][];
+            weights = new float[snapshotDocuments.length][];
+            for (int ordinal = 0; ordinal < sizes.length; ordinal++) {
+                termIds[ordinal] = new int[sizes[ordinal]];
+                weights[ordinal] = new float[sizes[ordinal]];
+            }
+            Arrays.fill(sizes, 0);
+            int termId = 0;
+            for (Postings termPostings : postings.values()) {
+                for (int i = 0; i < termPostings.size; i++) {
+                    int ordinal = termPostings.ordinals[i];
+                    termIds[ordinal][sizes[ordinal]] = termId;
+                    weights[ordinal][sizes[ordinal]++] = termPostings.weights[i];
+                }
+                termId++;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        DataOutputStream output = new DataOutputStream(outputStream);
+        output.writeInt(SNAPSHOT_MAGIC);
+        output.writeInt(SNAPSHOT_VERSION);
+        output.writeInt(dictionary.length);
+        for (String term : dictionary) {
+            output.writeUTF(term);
+        }
+        output.writeInt(snapshotDocuments.length);
+        for (int ordinal = 0; ordinal < snapshotDocuments.length; ordinal++) {
+            Document document = snapshotDocuments[ordinal];
+            output.writeLong(document.setId());
+            output.writeLong(document.createdAt() == null ? Long.MIN_VALUE : document.createdAt().toEpochMilli());
+            output.writeUTF(document.exerciseLanguage());
+            output.writeUTF(document.userLanguage());
+            output.writeUTF(document.difficulty() == null ? "" : document.difficulty().name());
+            output.writeFloat(document.length());
+            output.writeInt(termIds[ordinal].length);
+            for (int i = 0; i < termIds[ordinal].length; i++) {
+                output.writeInt(termIds[ordinal][i]);
+                output.writeFloat(weights[ordinal][i]);
+            }
+        }
+        output.flush();
+    }
+
+    /**
+     * Merges the sets of a snapshot into the index, skipping those already indexed, and returns how many were
+     * added.
+     */
+    public int readSnapshot(InputStream inputStream) throws IOException {
+        DataInputStream input = new DataInputStream(inputStream);
+        if (input.readInt() != SNAPSHOT_MAGIC || input.readInt() != SNAPSHOT_VERSION) {
+            throw new IOException("Unsupported search index snapshot");
+        }
+        String[] dictionary = new String[input.readInt()];
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = input.readUTF();
+        }
+
+        int added = 0;
+        int count = input.readInt();
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            long setId = input.readLong();
+            long createdAt = input.readLong();
+            String exerciseLanguage = input.readUTF();
+            String userLanguage = input.readUTF();
+            String difficulty = input.readUTF();
+            float length = input.readFloat();
+            int size = input.readInt();
+            Map<String, Float> terms = HashMap.newHashMap(size);
+            for (int i = 0; i < size; i++) {
+                terms.put(dictionary[input.readInt()], input.readFloat());
+            }
+            SearchDocument document = new SearchDocument(setId,
+                    createdAt == Long.MIN_VALUE ? null : Instant.ofEpochMilli(createdAt), exerciseLanguage,
+                    userLanguage, difficulty.isEmpty() ? null : ExerciseDifficulty.valueOf(difficulty), terms, length);
+            if (add(document)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    private void score(String term, float averageLength, float[] scores, float[] formScores) {
+        Postings exact = postings.get(term);
+        if (exact != null) {
+            float idf = exact.idf(documents.size());
+            for (int i = 0; i < exact.size; i++) {
+                scores[exact.ordinals[i]] += exact.score(i, idf, averageLength);
+            }
+        }
+        int length = term.codePointCount(0, term.length());
+        if (length < MIN_STEM_LENGTH) {
+            return;
+        }
+        int stemLength = Math.max(MIN_STEM_LENGTH, length - MAX_SUFFIX_LENGTH);
+        String stem = term.substring(0, term.offsetByCodePoints(0, stemLength));
+
+        // A set containing several forms of the term counts the best one, never more than an exact match
+        int expansions = 0;
+        for (Map.Entry<String, Postings> form : postings.subMap(stem, true, stem + Character.MAX_VALUE, false)
+                .entrySet()) {
+            if (form.getKey().equals(term)) {
+                continue;
+            }
+            if (++expansions > MAX_STEM_EXPANSIONS) {
+                break;
+            }
+            Postings formPostings = form.getValue();
+            float idf = formPostings.idf(documents.size());
+            for (int i = 0; i < formPostings.size; i++) {
+                int ordinal = formPostings.ordinals[i];
+                formScores[ordinal] = Math.max(formScores[ordinal],
+                        STEM_MATCH_WEIGHT * formPostings.score(i, idf, averageLength));
+            }
+        }
+        if (expansions == 0) {
+            return;
+        }
+        for (int ordinal = 0; ordinal < formScores.length; ordinal++) {
+            if (formScores[ordinal] > 0) {
+                if (exact == null || !exact.contains(ordinal)) {
+                    scores[ordinal] += formScores[ordinal];
+                }
+                formScores[ordinal] = 0;
+            }
+        }
+    }
+
+    private final class Postings {
+
+        private int[] ordinals = new int[4];
+        private float[] weights = new float[4];
+        private int size;
+
+        void add(int ordinal, float weight) {
+            if (size == ordinals.length) {
+                ordinals = Arrays.copyOf(ordinals, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            ordinals[size] = ordinal;
+            weights[size++] = weight;
+        }
+
+        /**
+         * Maps every ordinal to its new value, dropping those mapped to -1, and returns the remaining size.
+         */
+        int renumber(int[] renumbered) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                int ordinal = renumbered[ordinals[i]];
+                if (ordinal >= 0) {
+                    ordinals[kept] = ordinal;
+                    weights[kept++] = weights[i];
+                }
+            }
+            size = kept;
+            return size;
+        }
+
+        boolean contains(int ordinal) {
+            // Ordinals are appended in increasing order
+            return Arrays.binarySearch(ordinals, 0, size, ordinal) >= 0;
+        }
+
+        float idf(int count) {
+            return (float) Math.log(1 + (count - size + 0.5) / (size + 0.5));
+        }
+
+        float score(int i, float idf, float averageLength) {
+            float frequency = weights[i];
+            float length = documents.get(ordinals[i]).length();
+            return idf * frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * length / averageLength));
+        }
+    }
+}
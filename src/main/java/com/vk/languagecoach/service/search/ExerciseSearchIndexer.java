@@ -0,0 +1,149 @@
+package com.vk.languagecoach.service.search;
+
+import com.vk.languagecoach.repository.ExerciseSetRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Restores the search index at startup from the gzipped snapshot, then reconciles it with the database: sets the
+ * database no longer holds, or holds under a different creation time because an in-memory database handed out
+ * their ids again, are dropped, and whatever sets the database holds beyond the index are indexed, which is every
+ * set on the first start. Loading a set from the database costs a query per exercise, so the snapshot is rewritten
+ * periodically and on shutdown whenever the index has changed.
+ */
+@Component
+@Slf4j
+public class ExerciseSearchIndexer {
+
+    private static final int CATCH_UP_BATCH_SIZE = 200;
+
+    private final ExerciseSearchIndex exerciseSearchIndex;
+    private final ExerciseSetRepository exerciseSetRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Path snapshotFile;
+    private volatile boolean loaded;
+    private long snapshotVersion = -1;
+
+    public ExerciseSearchIndexer(ExerciseSearchIndex exerciseSearchIndex,
+                                 ExerciseSetRepository exerciseSetRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 @Value("${exercises.search.snapshot.file:}") String snapshotFile) {
+        this.exerciseSearchIndex = exerciseSearchIndex;
+        this.exerciseSetRepository = exerciseSetRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.snapshotFile = snapshotFile.isBlank() ? null : Path.of(snapshotFile);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (snapshotFile != null) {
+            try (InputStream input = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+                log.info("Restored {} exercise sets from search index snapshot: {}",
+                        exerciseSearchIndex.readSnapshot(input), snapshotFile);
+            } catch (NoSuchFileException e) {
+                log.info("No search index snapshot at: {}, indexing stored exercise sets", snapshotFile);
+            } catch (IOException | RuntimeException e) {
+                log.warn("Failed to read search index snapshot: {}, indexing stored exercise sets", snapshotFile, e);
+            }
+        }
+        catchUp();
+        loaded = true;
+        writeSnapshot();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writeSnapshot();
+    }
+
+    @Scheduled(fixedDelayString = "${exercises.search.snapshot.interval-ms}")
+    public synchronized void writeSnapshot() {
+        // Until loaded the index is partial and must not replace the snapshot it is being restored from
+        if (snapshotFile == null || !loaded) {
+            return;
+        }
+        long version = exerciseSearchIndex.getStats().version();
+        if (version == snapshotVersion) {
+            return;
+        }
+
+        try {
+            Files.createDirectories(snapshotFile.toAbsolutePath().getParent());
+            Path tempFile = Files.createTempFile(snapshotFile.toAbsolutePath().getParent(),
+                    snapshotFile.getFileName().toString(), ".tmp");
+            try (OutputStream output = new GZIPOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                exerciseSearchIndex.writeSnapshot(output);
+            } catch (IOException e) {
+                Files.deleteIfExists(tempFile);
+                throw e;
+            }
+            Files.move(tempFile, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            snapshotVersion = version;
+            log.debug("Wrote search index snapshot: {}", snapshotFile);
+        } catch (IOException e) {
+            log.warn("Failed to write search index snapshot: {}", snapshotFile, e);
+        }
+    }
+
+    private void catchUp() {
+        // Read before the database, so that sets committed in between are never taken for stale ones
+        Map<Long, Instant> indexedSets = exerciseSearchIndex.getIndexedSets();
+        Map<Long, Instant> storedSets = transactionTemplate.execute(status ->
+                exerciseSetRepository.findAllStoredSets()).stream()
+                .collect(Collectors.toMap(ExerciseSetRepository.StoredSet::getId,
+                        ExerciseSetRepository.StoredSet::getCreatedAt));
+
+        List<Long> stale = indexedSets.entrySet().stream()
+                .filter(indexed -> !sameSet(indexed.getValue(), storedSets.get(indexed.getKey())))
+                .map(Map.Entry::getKey)
+                .toList();
+        if (!stale.isEmpty()) {
+            log.info("Dropped {} exercise sets from the search index that are no longer stored",
+                    exerciseSearchIndex.removeAll(stale));
+        }
+
+        List<Long> missing = storedSets.keySet().stream()
+                .filter(id -> !exerciseSearchIndex.contains(id))
+                .sorted()
+                .toList();
+        for (int from = 0; from < missing.size(); from += CATCH_UP_BATCH_SIZE) {
+            List<Long> batch = missing.subList(from, Math.min(from + CATCH_UP_BATCH_SIZE, missing.size()));
+            List<SearchDocument> documents = transactionTemplate.execute(status ->
+                    exerciseSetRepository.findAllById(batch).stream().map(SearchDocument::of).toList());
+            documents.forEach(exerciseSearchIndex::add);
+        }
+        if (!missing.isEmpty()) {
+            log.info("Indexed {} stored exercise sets for search", missing.size());
+        }
+    }
+
+    private static boolean sameSet(Instant indexedCreatedAt, Instant storedCreatedAt) {
+        return indexedCreatedAt != null && storedCreatedAt != null
+                && indexedCreatedAt.toEpochMilli() == storedCreatedAt.toEpochMilli();
+    }
+}
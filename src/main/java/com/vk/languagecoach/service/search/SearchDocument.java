@@ -0,0 +1,71 @@
+package com.vk.languagecoach.service.search;
+
+import com.vk.languagecoach.dto.ExerciseDifficulty;
+import com.vk.languagecoach.entity.ExerciseAnswerEntity;
+import com.vk.languagecoach.entity.ExerciseEntity;
+import com.vk.languagecoach.entity.ExerciseHintEntity;
+import com.vk.languagecoach.entity.ExerciseSetEntity;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The searchable form of a stored exercise set: its filter attributes and the weighted frequency of every term.
+ * The creation time tells a set apart from a later one that was given the same id.
+ * Topic words count the most, then the answers, which carry the grammar the exercise drills, then the exercise
+ * text; explanations and hints only add context.
+ */
+public record SearchDocument(long setId,
+                             Instant createdAt,
+                             String exerciseLanguage,
+                             String userLanguage,
+                             ExerciseDifficulty difficulty,
+                             Map<String, Float> terms,
+                             float length) {
+
+    static final float TOPIC_WEIGHT = 3f;
+    static final float ANSWER_WEIGHT = 2f;
+    static final float TEXT_WEIGHT = 1f;
+    static final float METADATA_WEIGHT = 1f;
+    static final float EXPLANATION_WEIGHT = 0.5f;
+
+    /**
+     * Reads the set with its exercises, answers and hints, so it must be called while they can still be loaded.
+     */
+    public static SearchDocument of(ExerciseSetEntity exerciseSet) {
+        Locale exerciseLocale = SearchTokenizer.locale(exerciseSet.getExerciseLanguage());
+        Locale userLocale = SearchTokenizer.locale(exerciseSet.getUserLanguage());
+
+        Map<String, Float> terms = new HashMap<>();
+        float length = 0;
+        length += add(terms, exerciseSet.getTopic(), userLocale, TOPIC_WEIGHT);
+        length += add(terms, exerciseSet.getExerciseLanguage(), Locale.ROOT, METADATA_WEIGHT);
+        length += add(terms, exerciseSet.getUserLanguage(), Locale.ROOT, METADATA_WEIGHT);
+        if (exerciseSet.getDifficulty() != null) {
+            length += add(terms, exerciseSet.getDifficulty().name(), Locale.ROOT, METADATA_WEIGHT);
+        }
+        for (ExerciseEntity exercise : exerciseSet.getExercises()) {
+            length += add(terms, exercise.getText(), exerciseLocale, TEXT_WEIGHT);
+            for (ExerciseAnswerEntity answer : exercise.getAnswers()) {
+                length += add(terms, answer.getAnswer(), exerciseLocale, ANSWER_WEIGHT);
+                length += add(terms, answer.getExplanation(), userLocale, EXPLANATION_WEIGHT);
+            }
+            for (ExerciseHintEntity hint : exercise.getHints()) {
+                length += add(terms, hint.getHint(), userLocale, EXPLANATION_WEIGHT);
+            }
+        }
+        return new SearchDocument(exerciseSet.getId(), exerciseSet.getCreatedAt(), exerciseSet.getExerciseLanguage(),
+                exerciseSet.getUserLanguage(), exerciseSet.getDifficulty(), terms, length);
+    }
+
+    private static float add(Map<String, Float> terms, String text, Locale locale, float weight) {
+        float added = 0;
+        for (String term : SearchTokenizer.tokenize(text, locale)) {
+            terms.merge(term, weight, Float::sum);
+            added += weight;
+        }
+        return added;
+    }
+}
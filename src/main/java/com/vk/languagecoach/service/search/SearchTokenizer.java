@@ -0,0 +1,87 @@
+package com.vk.languagecoach.service.search;
+
+import java.text.BreakIterator;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Splits text into search terms. Word boundaries follow the rules of the text's language, terms are folded to
+ * lower case without diacritics so that stress marks and accents typed or omitted by the user do not matter.
+ */
+final class SearchTokenizer {
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern APOSTROPHES = Pattern.compile("[\\u2019\\u2018\\u02BC\\u02B9\\u0060\\u00B4\\u2032]");
+    private static final Map<String, Locale> LOCALES_BY_NAME = localesByName();
+    private static final Map<String, Locale> RESOLVED = new ConcurrentHashMap<>();
+
+    private SearchTokenizer() {
+    }
+
+    static List<String> tokenize(String text, Locale locale) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return terms;
+        }
+        // Typographic apostrophes would split words such as "п’ять" that the plain one keeps together
+        String normalized = APOSTROPHES.matcher(Normalizer.normalize(text, Normalizer.Form.NFKC)).replaceAll("'");
+        BreakIterator words = BreakIterator.getWordInstance(locale);
+        words.setText(normalized);
+        int start = words.first();
+        for (int end = words.next(); end != BreakIterator.DONE; start = end, end = words.next()) {
+            if (isWord(normalized, start, end)) {
+                terms.add(fold(normalized.substring(start, end)));
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Resolves a language as users type it in requests ("Ukrainian", "українська", "uk") to a locale, falling
+     * back to language-neutral boundaries.
+     */
+    static Locale locale(String language) {
+        if (language == null || language.isBlank()) {
+            return Locale.ROOT;
+        }
+        return RESOLVED.computeIfAbsent(language.strip().toLowerCase(Locale.ROOT),
+                name -> LOCALES_BY_NAME.getOrDefault(name, Locale.ROOT));
+    }
+
+    private static boolean isWord(String text, int start, int end) {
+        for (int i = start; i < end; ) {
+            int codePoint = text.codePointAt(i);
+            if (Character.isLetterOrDigit(codePoint)) {
+                return true;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return false;
+    }
+
+    private static String fold(String word) {
+        String folded = word.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+        String decomposed = Normalizer.normalize(folded, Normalizer.Form.NFD);
+        return Normalizer.normalize(COMBINING_MARKS.matcher(decomposed).replaceAll(""), Normalizer.Form.NFC);
+    }
+
+    private static Map<String, Locale> localesByName() {
+        Map<String, Locale> locales = new HashMap<>();
+        for (Locale available : Locale.getAvailableLocales()) {
+            if (available.getLanguage().isEmpty()) {
+                continue;
+            }
+            Locale language = Locale.of(available.getLanguage());
+            locales.putIfAbsent(language.getLanguage(), language);
+            locales.putIfAbsent(language.getDisplayLanguage(Locale.ENGLISH).toLowerCase(Locale.ROOT), language);
+            locales.putIfAbsent(language.getDisplayLanguage(language).toLowerCase(language), language);
+        }
+        return Map.copyOf(locales);
+    }
+}
@@ -0,0 +1,116 @@
+package com.vk.languagecoach.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.vk.languagecoach.model.ExerciseItem;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExerciseItemStreamParserTest {
+
+    private static final String DOCUMENT = """
+            {"exercises": [
+              {"exerciseId": 0, "text": "Я ___ книгу \\"Кобзар\\".",
+               "answers": [{"exerciseId": 0, "position": 1, "answer": "читав", "explanation": "Past, {masc.}"}],
+               "hints": [{"exerciseId": 0, "evidence": 1, "hint": "[a] ]} hint"}]},
+              {"exerciseId": 1, "text": "Вона ___ лист.",
+               "answers": [{"exerciseId": 1, "position": 1, "answer": "пише"}],
+               "hints": []}
+            ]}""";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<ExerciseItem> items = new ArrayList<>();
+
+    @Test
+    void parsesTheWholeDocumentAtOnce() throws IOException {
+        ExerciseItemStreamParser parser = new ExerciseItemStreamParser(objectMapper, items::add);
+
+        parser.feed(DOCUMENT);
+
+        assertEquals(2, parser.finish());
+        assertItems();
+    }
+
+    @Test
+    void parsesDeltasSplitAtEveryCharacter() throws IOException {
+        ExerciseItemStreamParser parser = new ExerciseItemStreamParser(objectMapper, items::add);
+
+        // Splits keywords, numbers, escapes and strings holding braces and brackets
+        DOCUMENT.codePoints().forEach(codePoint -> feed(parser, Character.toString(codePoint)));
+
+        assertEquals(2, parser.finish());
+        assertItems();
+    }
+
+    @Test
+    void emitsEachExerciseAsSoonAsItIsClosed() throws IOException {
+        ExerciseItemStreamParser parser = new ExerciseItemStreamParser(objectMapper, items::add);
+        int secondItem = DOCUMENT.indexOf("{\"exerciseId\": 1");
+
+        parser.feed(DOCUMENT.substring(0, secondItem));
+        assertEquals(1, items.size());
+        assertEquals("читав", items.getFirst().getAnswers().getFirst().getAnswer());
+
+        parser.feed(DOCUMENT.substring(secondItem, DOCUMENT.length() - 3));
+        assertEquals(2, items.size());
+
+        parser.feed(DOCUMENT.substring(DOCUMENT.length() - 3));
+        assertEquals(2, parser.finish());
+    }
+
+    @Test
+    void ignoresObjectsOutsideTheExercisesArray() throws IOException {
+        ExerciseItemStreamParser parser = new ExerciseItemStreamParser(objectMapper, items::add);
+
+        parser.feed("""
+                {"meta": {"exercises": [{"text": "nested"}]}, "notes": [{"text": "other"}],
+                 "exercises": [{"exerciseId": 3, "text": "Ми ___.", "answers": [], "hints": []}]}""");
+
+        assertEquals(1, parser.finish());
+        assertEquals(3, items.getFirst().getExerciseId());
+    }
+
+    @Test
+    void emptyArrayEmitsNothing() throws IOException {
+        ExerciseItemStreamParser parser = new ExerciseItemStreamParser(objectMapper, items::add);
+
+        parser.feed("{\"exercises\": []}");
+
+        assertEquals(0, parser.finish());
+        assertTrue(items.isEmpty());
+    }
+
+    @Test
+    void truncatedDocumentFailsAfterEmittingCompleteExercises() throws IOException {
+        ExerciseItemStreamParser parser = new ExerciseItemStreamParser(objectMapper, items::add);
+
+        parser.feed(DOCUMENT.substring(0, DOCUMENT.indexOf("\"пише\"")));
+
+        assertEquals(1, items.size());
+        assertThrows(IOException.class, parser::finish);
+    }
+
+    private void assertItems() {
+        assertEquals(List.of(0, 1), items.stream().map(ExerciseItem::getExerciseId).toList());
+        ExerciseItem first = items.getFirst();
+        assertEquals("Я ___ книгу \"Кобзар\".", first.getText());
+        assertEquals("Past, {masc.}", first.getAnswers().getFirst().getExplanation());
+        assertEquals("[a] ]} hint", first.getHints().getFirst().getHint());
+        assertEquals("пише", items.get(1).getAnswers().getFirst().getAnswer());
+        assertTrue(items.get(1).getHints().isEmpty());
+    }
+
+    private static void feed(ExerciseItemStreamParser parser, String delta) {
+        try {
+            parser.feed(delta);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.vk.languagecoach.service;
+
+import com.vk.languagecoach.model.Exercise;
+import com.vk.languagecoach.model.ExerciseAnswer;
+import com.vk.languagecoach.model.Exercises;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ExerciseMergerTest {
+
+    private final ExerciseMerger exerciseMerger = new ExerciseMerger(0.8);
+
+    @Test
+    void renumbersExercisesAcrossShards() {
+        Exercises merged = exerciseMerger.merge(List.of(
+                exercises("Я ___ книгу.", "Він ___ додому."),
+                exercises("Ми ___ у парку.")), 10);
+
+        assertEquals(List.of(0, 1, 2), merged.getExercises().stream().map(Exercise::getExerciseId).toList());
+        assertEquals(List.of(0, 1, 2), merged.getAnswers().stream().map(ExerciseAnswer::getExerciseId).toList());
+        assertEquals("Ми ___ у парку.", merged.getExercises().get(2).getText());
+        assertEquals("answer 0", merged.getAnswers().get(2).getAnswer());
+    }
+
+    @Test
+    void dropsNearDuplicatesWithTheirAnswers() {
+        Exercises merged = exerciseMerger.merge(List.of(
+                exercises("Я читаю цікаву книгу щодня."),
+                exercises("Я читаю цікаву книгу щодня!", "Вона пише лист.")), 10);
+
+        assertEquals(2, merged.getExercises().size());
+        assertEquals("Вона пише лист.", merged.getExercises().get(1).getText());
+        assertEquals(2, merged.getAnswers().size());
+        assertEquals("answer 1", merged.getAnswers().get(1).getAnswer());
+        assertEquals(1, merged.getAnswers().get(1).getExerciseId());
+    }
+
+    @Test
+    void stopsAtTheLimit() {
+        Exercises merged = exerciseMerger.merge(List.of(
+                exercises("Перше речення.", "Друге речення тут."),
+                exercises("Третє зовсім інше.")), 2);
+
+        assertEquals(2, merged.getExercises().size());
+        assertEquals(2, merged.getAnswers().size());
+    }
+
+    @Test
+    void mergedSetCanBeMergedAgain() {
+        Exercises first = exerciseMerger.merge(List.of(exercises("Перше речення.", "Друге речення тут.")), 3);
+
+        Exercises topUp = exerciseMerger.merge(List.of(first, exercises("Друге речення тут.", "Третє зовсім інше.")),
+                3);
+
+        assertEquals(List.of("Перше речення.", "Друге речення тут.", "Третє зовсім інше."),
+                topUp.getExercises().stream().map(Exercise::getText).toList());
+        assertEquals(List.of(0, 1, 2), topUp.getAnswers().stream().map(ExerciseAnswer::getExerciseId).toList());
+        assertEquals("answer 1", topUp.getAnswers().get(2).getAnswer());
+    }
+
+    private static Exercises exercises(String... texts) {
+        List<Exercise> exercises = new ArrayList<>();
+        List<ExerciseAnswer> answers = new ArrayList<>();
+        for (int i = 0; i < texts.length; i++) {
+            Exercise exercise = new Exercise();
+            exercise.setExerciseId(i);
+            exercise.setText(texts[i]);
+            exercises.add(exercise);
+
+            ExerciseAnswer answer = new ExerciseAnswer();
+            answer.setExerciseId(i);
+            answer.setAnswer("answer " + i);
+            answers.add(answer);
+        }
+        Exercises result = new Exercises();
+        result.setExercises(exercises);
+        result.setAnswers(answers);
+        return result;
+    }
+}
@@ -0,0 +1,174 @@
+package com.vk.languagecoach.service;
+
+import com.vk.languagecoach.dto.AIProvider;
+import com.vk.languagecoach.dto.ExerciseDifficulty;
+import com.vk.languagecoach.dto.request.ExerciseRequest;
+import com.vk.languagecoach.dto.response.ExerciseAnswerResponse;
+import com.vk.languagecoach.dto.response.ExerciseHintResponse;
+import com.vk.languagecoach.dto.response.ExerciseResponse;
+import com.vk.languagecoach.dto.response.ExerciseSetResponse;
+import com.vk.languagecoach.mapper.ExerciseMapper;
+import com.vk.languagecoach.model.Exercise;
+import com.vk.languagecoach.model.ExerciseAnswer;
+import com.vk.languagecoach.model.ExerciseHint;
+import com.vk.languagecoach.model.Exercises;
+import com.vk.languagecoach.repository.ExerciseSetRepository;
+import com.vk.languagecoach.service.grading.AnswerIndex;
+import com.vk.languagecoach.service.search.ExerciseSearchIndex;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@Import({ExerciseStoreService.class, ExerciseMapper.class, ExerciseSearchIndex.class, AnswerIndex.class})
+class ExerciseStoreServiceTest {
+
+    @Autowired
+    private ExerciseStoreService exerciseStoreService;
+
+    @Autowired
+    private ExerciseSetRepository exerciseSetRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void savesTheSetWithItsExercisesAnswersAndHints() {
+        Long id = exerciseStoreService.save(request("  Past   TENSE ", ExerciseDifficulty.A2), exercises());
+        entityManager.flush();
+        entityManager.clear();
+
+        ExerciseSetResponse exerciseSet = exerciseStoreService.findById(id).orElseThrow();
+
+        assertEquals("ukrainian", exerciseSet.getExerciseLanguage());
+        assertEquals("english", exerciseSet.getUserLanguage());
+        assertEquals("past tense", exerciseSet.getTopic());
+        assertEquals(ExerciseDifficulty.A2, exerciseSet.getDifficulty());
+        assertEquals(List.of("Я ___ книгу ___.", "Вона ___ лист."),
+                exerciseSet.getExercises().stream().map(ExerciseResponse::getText).toList());
+        ExerciseResponse first = exerciseSet.getExercises().getFirst();
+        assertEquals(List.of("читав", "вчора"),
+                first.getAnswers().stream().map(ExerciseAnswerResponse::getAnswer).toList());
+        assertEquals(1, exerciseSet.getExercises().get(1).getAnswers().size());
+    }
+
+    @Test
+    void returnsHintsOrderedByEvidence() {
+        Long id = exerciseStoreService.save(request("past tense", ExerciseDifficulty.A2), exercises());
+        entityManager.flush();
+        entityManager.clear();
+
+        ExerciseResponse first = exerciseStoreService.findById(id).orElseThrow().getExercises().getFirst();
+
+        assertEquals(List.of(1, 2, 3), first.getHints().stream().map(ExerciseHintResponse::getEvidence).toList());
+    }
+
+    @Test
+    void findsSetsByNormalizedTopic() {
+        exerciseStoreService.save(request("Past tense", ExerciseDifficulty.A2), exercises());
+        exerciseStoreService.save(request("past  tense", ExerciseDifficulty.B1), exercises());
+        exerciseStoreService.save(request("Future tense", ExerciseDifficulty.A2), exercises());
+
+        Page<ExerciseSetResponse> page = exerciseStoreService.find(" UKRAINIAN ", null, "  PAST TENSE ", null,
+                PageRequest.of(0, 10));
+
+        assertEquals(2, page.getTotalElements());
+        assertTrue(page.getContent().stream().allMatch(exerciseSet -> exerciseSet.getTopic().equals("past tense")));
+    }
+
+    @Test
+    void combinesFilters() {
+        exerciseStoreService.save(request("Past tense", ExerciseDifficulty.A2), exercises());
+        Long b1 = exerciseStoreService.save(request("Past tense", ExerciseDifficulty.B1), exercises());
+
+        Page<ExerciseSetResponse> page = exerciseStoreService.find("ukrainian", "english", "past tense",
+                ExerciseDifficulty.B1, PageRequest.of(0, 10));
+
+        assertEquals(List.of(b1), page.getContent().stream().map(ExerciseSetResponse::getId).toList());
+        assertTrue(exerciseStoreService.find("polish", null, null, null, PageRequest.of(0, 10)).isEmpty());
+    }
+
+    @Test
+    void paginatesTheLookup() {
+        Long first = exerciseStoreService.save(request("Past tense", ExerciseDifficulty.A2), exercises());
+        Long second = exerciseStoreService.save(request("Past tense", ExerciseDifficulty.A2), exercises());
+        Long third = exerciseStoreService.save(request("Past tense", ExerciseDifficulty.A2), exercises());
+
+        Page<ExerciseSetResponse> firstPage = exerciseStoreService.find(null, null, "past tense", null,
+                PageRequest.of(0, 2, Sort.by("id").descending()));
+        Page<ExerciseSetResponse> secondPage = exerciseStoreService.find(null, null, "past tense", null,
+                PageRequest.of(1, 2, Sort.by("id").descending()));
+
+        assertEquals(3, firstPage.getTotalElements());
+        assertEquals(2, firstPage.getTotalPages());
+        assertEquals(List.of(third, second), firstPage.getContent().stream().map(ExerciseSetResponse::getId).toList());
+        assertEquals(List.of(first), secondPage.getContent().stream().map(ExerciseSetResponse::getId).toList());
+    }
+
+    @Test
+    void listsTheStoredSets() {
+        Long id = exerciseStoreService.save(request("Past tense", ExerciseDifficulty.A2), exercises());
+        entityManager.flush();
+
+        List<ExerciseSetRepository.StoredSet> storedSets = exerciseSetRepository.findAllStoredSets();
+
+        assertEquals(1, storedSets.size());
+        assertEquals(id, storedSets.getFirst().getId());
+        assertEquals(exerciseSetRepository.findById(id).orElseThrow().getCreatedAt(),
+                storedSets.getFirst().getCreatedAt());
+    }
+
+    private static ExerciseRequest request(String topic, ExerciseDifficulty difficulty) {
+        return ExerciseRequest.builder()
+                .provider(AIProvider.OPENAI)
+                .exerciseLanguage("Ukrainian")
+                .userLanguage("English")
+                .topic(topic)
+                .total(2)
+                .difficulty(difficulty)
+                .includeHints(true)
+                .build();
+    }
+
+    private static Exercises exercises() {
+        Exercises exercises = new Exercises();
+        exercises.setExercises(List.of(exercise(0, "Я ___ книгу ___."), exercise(1, "Вона ___ лист.")));
+        exercises.setAnswers(List.of(answer(0, 1, "читав"), answer(0, 2, "вчора"), answer(1, 1, "пише")));
+        // Stored out of order, read back by evidence
+        exercises.setHints(List.of(hint(0, 3, "Past tense"), hint(0, 1, "Masculine"), hint(0, 2, "Perfective")));
+        return exercises;
+    }
+
+    private static Exercise exercise(int exerciseId, String text) {
+        Exercise exercise = new Exercise();
+        exercise.setExerciseId(exerciseId);
+        exercise.setText(text);
+        return exercise;
+    }
+
+    private static ExerciseAnswer answer(int exerciseId, int position, String text) {
+        ExerciseAnswer answer = new ExerciseAnswer();
+        answer.setExerciseId(exerciseId);
+        answer.setPosition(position);
+        answer.setAnswer(text);
+        return answer;
+    }
+
+    private static ExerciseHint hint(int exerciseId, int evidence, String text) {
+        ExerciseHint hint = new ExerciseHint();
+        hint.setExerciseId(exerciseId);
+        hint.setEvidence(evidence);
+        hint.setHint(text);
+        return hint;
+    }
+}
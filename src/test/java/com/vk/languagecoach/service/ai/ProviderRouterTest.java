@@ -0,0 +1,98 @@
+package com.vk.languagecoach.service.ai;
+
+import com.vk.languagecoach.dto.AIProvider;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static com.vk.languagecoach.dto.AIModelType.TEXT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ProviderRouterTest {
+
+    private final ProviderRouter providerRouter = new ProviderRouter(0.2, 200, true, 0.95, 3,
+            Duration.ofMillis(100), 3, Duration.ofSeconds(30));
+
+    @Test
+    void keepsGivenOrderWithoutSamples() {
+        assertEquals(List.of(AIProvider.GROQ, AIProvider.OPENAI),
+                providerRouter.rank(TEXT, List.of(AIProvider.GROQ, AIProvider.OPENAI)));
+    }
+
+    @Test
+    void ranksFasterProviderFirst() {
+        providerRouter.recordSuccess(AIProvider.GROQ, TEXT, Duration.ofMillis(900));
+        providerRouter.recordSuccess(AIProvider.OPENAI, TEXT, Duration.ofMillis(300));
+
+        assertEquals(List.of(AIProvider.OPENAI, AIProvider.GROQ),
+                providerRouter.rank(TEXT, List.of(AIProvider.GROQ, AIProvider.OPENAI)));
+    }
+
+    @Test
+    void unobservedProviderIsRankedAtTheMedian() {
+        providerRouter.recordSuccess(AIProvider.GROQ, TEXT, Duration.ofMillis(200));
+        providerRouter.recordSuccess(AIProvider.OPENAI, TEXT, Duration.ofMillis(1000));
+
+        // The median of 200ms and 1000ms puts the unobserved provider in between
+        assertEquals(List.of(AIProvider.GROQ, AIProvider.REPLAY, AIProvider.OPENAI),
+                providerRouter.rank(TEXT, List.of(AIProvider.OPENAI, AIProvider.REPLAY, AIProvider.GROQ)));
+    }
+
+    @Test
+    void errorsPenalizeTheScore() {
+        providerRouter.recordSuccess(AIProvider.GROQ, TEXT, Duration.ofMillis(300));
+        providerRouter.recordSuccess(AIProvider.OPENAI, TEXT, Duration.ofMillis(400));
+        providerRouter.recordFailure(AIProvider.GROQ, TEXT, new IllegalStateException("timeout"));
+
+        assertEquals(List.of(AIProvider.OPENAI, AIProvider.GROQ),
+                providerRouter.rank(TEXT, List.of(AIProvider.GROQ, AIProvider.OPENAI)));
+    }
+
+    @Test
+    void openCircuitIsRankedLast() {
+        providerRouter.recordSuccess(AIProvider.GROQ, TEXT, Duration.ofMillis(100));
+        providerRouter.recordSuccess(AIProvider.OPENAI, TEXT, Duration.ofMillis(1000));
+        for (int i = 0; i < 3; i++) {
+            providerRouter.recordFailure(AIProvider.GROQ, TEXT, new IllegalStateException("unavailable"));
+        }
+
+        assertEquals(List.of(AIProvider.OPENAI, AIProvider.GROQ),
+                providerRouter.rank(TEXT, List.of(AIProvider.GROQ, AIProvider.OPENAI)));
+        assertFalse(providerRouter.getStats().get(new ProviderRouter.RouteKey(AIProvider.GROQ, TEXT)).available());
+    }
+
+    @Test
+    void successClosesTheCircuit() {
+        for (int i = 0; i < 3; i++) {
+            providerRouter.recordFailure(AIProvider.GROQ, TEXT, new IllegalStateException("unavailable"));
+        }
+        providerRouter.recordSuccess(AIProvider.GROQ, TEXT, Duration.ofMillis(100));
+
+        assertTrue(providerRouter.getStats().get(new ProviderRouter.RouteKey(AIProvider.GROQ, TEXT)).available());
+    }
+
+    @Test
+    void hedgeDelayNeedsEnoughSamples() {
+        providerRouter.recordSuccess(AIProvider.OPENAI, TEXT, Duration.ofMillis(1000));
+        providerRouter.recordSuccess(AIProvider.OPENAI, TEXT, Duration.ofMillis(2000));
+        assertTrue(providerRouter.hedgeDelay(AIProvider.OPENAI, TEXT).isEmpty());
+
+        providerRouter.recordSuccess(AIProvider.OPENAI, TEXT, Duration.ofMillis(3000));
+        assertEquals(Duration.ofMillis(3000), providerRouter.hedgeDelay(AIProvider.OPENAI, TEXT).orElseThrow());
+    }
+
+    @Test
+    void readsSingleRouteFields() {
+        ProviderRouter.RouteKey key = new ProviderRouter.RouteKey(AIProvider.GROQ, TEXT);
+        assertTrue(Double.isNaN(providerRouter.getEwmaLatencyMillis(key)));
+
+        providerRouter.recordSuccess(AIProvider.GROQ, TEXT, Duration.ofMillis(250));
+
+        assertEquals(250.0, providerRouter.getEwmaLatencyMillis(key));
+        assertEquals(0.0, providerRouter.getErrorRate(key));
+        assertEquals(1.0, providerRouter.getAvailable(key));
+    }
+}
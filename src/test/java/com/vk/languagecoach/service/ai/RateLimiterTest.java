@@ -0,0 +1,218 @@
+package com.vk.languagecoach.service.ai;
+
+import com.vk.languagecoach.dto.AIProvider;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RateLimiterTest {
+
+    private static final String MODEL = "gpt-4o";
+    private static final RateLimiter.Admission INTERACTIVE =
+            new RateLimiter.Admission(RateLimiter.Priority.INTERACTIVE, 0);
+    private static final RateLimiter.Admission BULK = new RateLimiter.Admission(RateLimiter.Priority.BULK, 0);
+
+    @Test
+    void admitsWithinQuotaWithoutWaiting() {
+        RateLimiter rateLimiter = rateLimiter(8, Duration.ofMillis(50), 3, 0);
+
+        for (int i = 0; i < 3; i++) {
+            acquire(rateLimiter, BULK);
+        }
+
+        assertThrows(RateLimitExceededException.class, () -> acquire(rateLimiter, BULK));
+        assertEquals(1, rateLimiter.getRejected());
+        assertEquals(0, rateLimiter.getQueued());
+    }
+
+    @Test
+    void rejectionCarriesRetryAfter() {
+        RateLimiter rateLimiter = rateLimiter(8, Duration.ofMillis(20), 1, 0);
+        acquire(rateLimiter, BULK);
+
+        RateLimitExceededException rejected = assertThrows(RateLimitExceededException.class,
+                () -> acquire(rateLimiter, BULK));
+
+        assertEquals(AIProvider.OPENAI, rejected.getProvider());
+        assertEquals(MODEL, rejected.getModel());
+        // One request per minute refills in a minute, never advertised as less than a second
+        assertTrue(rejected.getRetryAfter().compareTo(Duration.ofSeconds(50)) > 0);
+    }
+
+    @Test
+    void waitsForTokensToRefill() {
+        // 1000 tokens per second
+        RateLimiter rateLimiter = rateLimiter(8, Duration.ofSeconds(5), 0, 60_000);
+        acquire(rateLimiter, new RateLimiter.Admission(RateLimiter.Priority.STANDARD, 60_000));
+
+        long started = System.nanoTime();
+        acquire(rateLimiter, new RateLimiter.Admission(RateLimiter.Priority.STANDARD, 100));
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+
+        assertTrue(waited >= 80, "Admitted after " + waited + "ms");
+        assertTrue(waited < 2000, "Admitted after " + waited + "ms");
+    }
+
+    @Test
+    void callLargerThanBucketWaitsForFullBucket() {
+        RateLimiter rateLimiter = rateLimiter(8, Duration.ofMillis(50), 0, 60_000);
+
+        // Capped at the bucket size, so it is admitted once instead of waiting forever
+        acquire(rateLimiter, new RateLimiter.Admission(RateLimiter.Priority.STANDARD, 1_000_000));
+
+        assertThrows(RateLimitExceededException.class,
+                () -> acquire(rateLimiter, new RateLimiter.Admission(RateLimiter.Priority.STANDARD, 1_000_000)));
+    }
+
+    @Test
+    void moreUrgentCallsAreAdmittedFirst() throws Exception {
+        RateLimiter rateLimiter = rateLimiter(8, Duration.ofSeconds(5), 0, 60_000);
+        acquire(rateLimiter, new RateLimiter.Admission(RateLimiter.Priority.STANDARD, 60_000));
+
+        List<RateLimiter.Priority> admitted = new CopyOnWriteArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<?> bulk = executor.submit(() -> {
+                acquire(rateLimiter, new RateLimiter.Admission(RateLimiter.Priority.BULK, 200));
+                admitted.add(RateLimiter.Priority.BULK);
+            });
+            waitForQueued(rateLimiter, 1);
+            Future<?> interactive = executor.submit(() -> {
+                acquire(rateLimiter, new RateLimiter.Admission(RateLimiter.Priority.INTERACTIVE, 200));
+                admitted.add(RateLimiter.Priority.INTERACTIVE);
+            });
+
+            bulk.get(5, TimeUnit.SECONDS);
+            interactive.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(List.of(RateLimiter.Priority.INTERACTIVE, RateLimiter.Priority.BULK), admitted);
+    }
+
+    @Test
+    void fullQueueEvictsLessUrgentWaiter() throws Exception {
+        RateLimiter rateLimiter = rateLimiter(1, Duration.ofSeconds(5), 0, 60_000);
+        acquire(rateLimiter, new RateLimiter.Admission(RateLimiter.Priority.STANDARD, 60_000));
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<?> bulk = executor.submit(() ->
+                    acquire(rateLimiter, new RateLimiter.Admission(RateLimiter.Priority.BULK, 200)));
+            waitForQueued(rateLimiter, 1);
+
+            acquire(rateLimiter, new RateLimiter.Admission(RateLimiter.Priority.INTERACTIVE, 200));
+
+            ExecutionException evicted = assertThrows(ExecutionException.class, () -> bulk.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(RateLimitExceededException.class, evicted.getCause());
+        }
+        assertEquals(1, rateLimiter.getRejected());
+    }
+
+    @Test
+    void fullQueueRejectsEquallyUrgentCall() throws Exception {
+        RateLimiter rateLimiter = rateLimiter(1, Duration.ofMillis(500), 1, 0);
+        acquire(rateLimiter, BULK);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<?> waiting = executor.submit(() -> acquire(rateLimiter, BULK));
+            waitForQueued(rateLimiter, 1);
+
+            long started = System.nanoTime();
+            assertThrows(RateLimitExceededException.class, () -> acquire(rateLimiter, BULK));
+            assertTrue(System.nanoTime() - started < TimeUnit.MILLISECONDS.toNanos(400),
+                    "Rejected without waiting");
+
+            assertThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(2, rateLimiter.getRejected());
+    }
+
+    @Test
+    void tooManyRequestsPausesTheLimit() {
+        RateLimiter rateLimiter = rateLimiter(8, Duration.ofMillis(50), 100, 0);
+        try (RateLimiter.Permit ignored = rateLimiter.acquire(AIProvider.OPENAI, MODEL, BULK)) {
+            rateLimiter.currentObserver().onResponse(response(429, "retry-after", "30"));
+        }
+
+        RateLimitExceededException rejected = assertThrows(RateLimitExceededException.class,
+                () -> acquire(rateLimiter, INTERACTIVE));
+        assertTrue(rejected.getRetryAfter().compareTo(Duration.ofSeconds(20)) > 0);
+    }
+
+    @Test
+    void remainingHeadersClampTheBucket() {
+        RateLimiter rateLimiter = rateLimiter(8, Duration.ofMillis(50), 100, 0);
+        try (RateLimiter.Permit ignored = rateLimiter.acquire(AIProvider.OPENAI, MODEL, BULK)) {
+            rateLimiter.currentObserver().onResponse(response(200, "x-ratelimit-remaining-requests", "0"));
+        }
+
+        assertThrows(RateLimitExceededException.class, () -> acquire(rateLimiter, BULK));
+    }
+
+    @Test
+    void observerIsOnlyBoundWhilePermitIsOpen() {
+        RateLimiter rateLimiter = rateLimiter(8, Duration.ofMillis(50), 100, 0);
+        rateLimiter.acquire(AIProvider.OPENAI, MODEL, BULK).close();
+
+        assertEquals(OkHttpAIClient.ResponseObserver.NONE, rateLimiter.currentObserver());
+    }
+
+    @Test
+    void providersWithoutQuotaAreNotLimited() {
+        RateLimiter rateLimiter = rateLimiter(1, Duration.ofMillis(10), 1, 1);
+
+        for (int i = 0; i < 10; i++) {
+            rateLimiter.acquire(AIProvider.REPLAY, MODEL, BULK).close();
+        }
+        assertEquals(0, rateLimiter.getRejected());
+    }
+
+    @Test
+    void disabledLimiterAdmitsEverything() {
+        RateLimiter rateLimiter = new RateLimiter(false, 1, Duration.ofMillis(10), 1, 1, 1, 1);
+
+        for (int i = 0; i < 10; i++) {
+            acquire(rateLimiter, BULK);
+        }
+        assertEquals(0, rateLimiter.getRejected());
+    }
+
+    private static RateLimiter rateLimiter(int queueCapacity, Duration maxWait, long requestsPerMinute,
+                                           long tokensPerMinute) {
+        return new RateLimiter(true, queueCapacity, maxWait, 0, 0, requestsPerMinute, tokensPerMinute);
+    }
+
+    private static void acquire(RateLimiter rateLimiter, RateLimiter.Admission admission) {
+        rateLimiter.acquire(AIProvider.OPENAI, MODEL, admission).close();
+    }
+
+    private static void waitForQueued(RateLimiter rateLimiter, int queued) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (rateLimiter.getQueued() < queued) {
+            assertTrue(System.nanoTime() < deadline, "Call was not queued");
+            Thread.sleep(1);
+        }
+    }
+
+    private static Response response(int code, String header, String value) {
+        return new Response.Builder()
+                .request(new Request.Builder().url("https://api.openai.com/v1/chat/completions").build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message(code == 429 ? "Too Many Requests" : "OK")
+                .header(header, value)
+                .build();
+    }
+}
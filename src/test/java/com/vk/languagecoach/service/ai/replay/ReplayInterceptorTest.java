@@ -0,0 +1,83 @@
+package com.vk.languagecoach.service.ai.replay;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReplayInterceptorTest {
+
+    private static final MediaType JSON = MediaType.get("application/json");
+    private static final String URL = "http://replay.invalid/v1/chat/completions";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordingMatchesAcrossCompletionCaps() throws IOException {
+        ReplayCorpus recordCorpus = new ReplayCorpus(directory);
+        execute(client(recordCorpus, ReplayInterceptor.Mode.RECORD, "first"), "gpt-4o", 1000);
+        execute(client(recordCorpus, ReplayInterceptor.Mode.RECORD, "second"), "gpt-4o", 2000);
+
+        try (Stream<Path> files = Files.list(directory.resolve(ReplayCorpus.Endpoint.CHAT.getDirectory()))) {
+            assertEquals(1, files.count());
+        }
+
+        ReplayCorpus replayCorpus = new ReplayCorpus(directory);
+        String replayed = execute(client(replayCorpus, ReplayInterceptor.Mode.REPLAY, "network"), "gpt-4o-mini", 4000);
+
+        assertEquals("second", replayed);
+    }
+
+    private OkHttpClient client(ReplayCorpus corpus, ReplayInterceptor.Mode mode, String providerResponse) {
+        Map<ReplayCorpus.Endpoint, LatencyDistribution> latencies = Arrays.stream(ReplayCorpus.Endpoint.values())
+                .collect(Collectors.toMap(Function.identity(),
+                        endpoint -> new LatencyDistribution(Duration.ZERO, Duration.ZERO)));
+        return new OkHttpClient.Builder()
+                .addInterceptor(new ReplayInterceptor(corpus, mode, objectMapper, latencies, 0, 500, 0, 0))
+                // Stands in for the provider
+                .addInterceptor(chain -> new Response.Builder()
+                        .request(chain.request())
+                        .protocol(Protocol.HTTP_1_1)
+                        .code(200)
+                        .message("OK")
+                        .body(ResponseBody.create(providerResponse.getBytes(StandardCharsets.UTF_8), JSON))
+                        .build())
+                .build();
+    }
+
+    private String execute(OkHttpClient client, String model, long maxCompletionTokens) throws IOException {
+        Map<String, Object> body = Map.of(
+                "model", model,
+                "max_completion_tokens", maxCompletionTokens,
+                "messages", new Object[]{Map.of("role", "user", "content", "Number of exercises: 3")});
+        Request request = new Request.Builder()
+                .url(URL)
+                .post(RequestBody.create(objectMapper.writeValueAsBytes(body), JSON))
+                .build();
+        try (Response response = client.newCall(request).execute()) {
+            return response.body().string();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.vk.languagecoach.service.budget;
+
+import com.vk.languagecoach.dto.AIProvider;
+import com.vk.languagecoach.dto.request.ExerciseRequest;
+import com.vk.languagecoach.service.ExercisePromptBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExerciseTokenBudgetTest {
+
+    // Counts as the chat overhead of its two messages only
+    private static final ExercisePromptBuilder.ExercisePrompt PROMPT = new ExercisePromptBuilder.ExercisePrompt("", "");
+
+    @Test
+    void estimateFollowsPriorBeforeAnyObservation() {
+        ExerciseTokenBudget budget = new ExerciseTokenBudget(Duration.ofSeconds(30), 100, 0.2);
+
+        ExerciseTokenBudget.Estimate estimate = budget.estimate(request("Ukrainian", 10), PROMPT, "model");
+
+        assertEquals(16, estimate.promptTokens());
+        assertEquals(920, estimate.completionTokens());
+        // Three initial deviations of 0.25 above a ratio of one
+        assertEquals(1610, estimate.maxCompletionTokens());
+        assertEquals(Duration.ofMillis(9200), estimate.latency());
+        assertEquals(936, estimate.totalTokens());
+    }
+
+    @Test
+    void hintsAndBaseFormsRaiseEstimate() {
+        ExerciseTokenBudget budget = new ExerciseTokenBudget(Duration.ofSeconds(30), 100, 0.2);
+        ExerciseRequest request = request("Ukrainian", 10).toBuilder()
+                .includeHints(true)
+                .includeBaseForm(true)
+                .build();
+
+        assertEquals(1470, budget.estimate(request, PROMPT, "model").completionTokens());
+    }
+
+    @Test
+    void observedTokensCorrectLanguageAndModelFallback() {
+        ExerciseTokenBudget budget = new ExerciseTokenBudget(Duration.ofSeconds(30), 100, 0.2);
+
+        budget.record(request("Ukrainian", 10), PROMPT, "model", 32, 1840, Duration.ZERO);
+
+        assertEquals(1104, budget.estimate(request(" ukrainian ", 10), PROMPT, "model").completionTokens());
+        assertEquals(1104, budget.estimate(request("Spanish", 10), PROMPT, "model").completionTokens());
+        assertEquals(19, budget.estimate(request("Spanish", 10), PROMPT, "model").promptTokens());
+        assertEquals(920, budget.estimate(request("Ukrainian", 10), PROMPT, "other").completionTokens());
+
+        // A language of its own moves away from the model-wide ratio
+        budget.record(request("Spanish", 10), PROMPT, "model", 16, 460, Duration.ZERO);
+        long ukrainian = budget.estimate(request("Ukrainian", 10), PROMPT, "model").completionTokens();
+        long spanish = budget.estimate(request("Spanish", 10), PROMPT, "model").completionTokens();
+        assertTrue(spanish < ukrainian, spanish + " < " + ukrainian);
+    }
+
+    @Test
+    void capKeepsMarginWhenRatioIsSteady() {
+        ExerciseTokenBudget budget = new ExerciseTokenBudget(Duration.ofSeconds(30), 100, 1);
+
+        budget.record(request("Ukrainian", 10), PROMPT, "model", 16, 920, Duration.ZERO);
+
+        ExerciseTokenBudget.Estimate estimate = budget.estimate(request("Ukrainian", 10), PROMPT, "model");
+        assertEquals(920, estimate.completionTokens());
+        assertEquals(984, estimate.maxCompletionTokens());
+    }
+
+    @Test
+    void throughputIsLearnedFromLongCompletionsOnly() {
+        ExerciseTokenBudget budget = new ExerciseTokenBudget(Duration.ofSeconds(30), 100, 0.2);
+
+        budget.record(request("Ukrainian", 1), PROMPT, "model", 16, 110, Duration.ofMillis(10));
+        ExerciseTokenBudget.Estimate estimate = budget.estimate(request("Ukrainian", 10), PROMPT, "model");
+        assertEquals(Duration.ofMillis(estimate.completionTokens() * 10), estimate.latency());
+
+        budget.record(request("Ukrainian", 10), PROMPT, "model", 16, 920, Duration.ofMillis(4600));
+        estimate = budget.estimate(request("Ukrainian", 10), PROMPT, "model");
+        assertEquals(920, estimate.completionTokens());
+        // 200 tokens per second moves the default of 100 a fifth of the way
+        assertEquals(Duration.ofMillis(7667), estimate.latency());
+    }
+
+    @Test
+    void maxExercisesWithinSloIsBoundedBySlowestModel() {
+        ExerciseTokenBudget budget = new ExerciseTokenBudget(Duration.ofSeconds(30), 100, 1);
+
+        assertEquals(10, budget.maxExercisesWithinSlo(request("Ukrainian", 10), List.of("fast")));
+        assertEquals(33, budget.maxExercisesWithinSlo(request("Ukrainian", 50), List.of("fast")));
+
+        budget.record(request("Ukrainian", 10), PROMPT, "slow", 16, 920, Duration.ofMillis(18400));
+        assertEquals(16, budget.maxExercisesWithinSlo(request("Ukrainian", 50), List.of("fast", "slow")));
+    }
+
+    @Test
+    void maxExercisesWithinSloIsZeroWhenNothingFits() {
+        ExerciseTokenBudget budget = new ExerciseTokenBudget(Duration.ofSeconds(1), 100, 0.2);
+
+        assertEquals(0, budget.maxExercisesWithinSlo(request("Ukrainian", 10), List.of("model")));
+    }
+
+    private static ExerciseRequest request(String exerciseLanguage, int total) {
+        return ExerciseRequest.builder()
+                .provider(AIProvider.OPENAI)
+                .exerciseLanguage(exerciseLanguage)
+                .userLanguage("English")
+                .topic("verbs")
+                .total(total)
+                .build();
+    }
+}
@@ -0,0 +1,130 @@
+package com.vk.languagecoach.service.buffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AudioBufferPoolTest {
+
+    private static final int MIN_BUFFER_BYTES = 1024;
+
+    private final AudioBufferPool pool = new AudioBufferPool(true, MIN_BUFFER_BYTES, 8 * 1024, 16 * 1024);
+
+    @Test
+    void releasedBufferIsReused() {
+        AudioBuffer first = pool.allocate(1000);
+        assertEquals(1024, pool.getStats().inUseBytes());
+        first.release();
+        assertEquals(0, pool.getStats().inUseBytes());
+        assertEquals(1024, pool.getStats().idleBytes());
+
+        pool.allocate(600).release();
+
+        BufferPoolStats stats = pool.getStats();
+        assertEquals(1, stats.hits());
+        assertEquals(1, stats.misses());
+    }
+
+    @Test
+    void bufferGoesBackOnlyAfterTheLastReference() throws IOException {
+        AudioBuffer audio = pool.allocate(16);
+        audio.write(new byte[]{1, 2, 3}, 0, 3);
+        audio.retain();
+        InputStream stream = audio.open();
+
+        audio.release();
+        audio.release();
+        assertEquals(1024, pool.getStats().inUseBytes());
+        assertArrayEquals(new byte[]{1, 2, 3}, stream.readAllBytes());
+
+        stream.close();
+        assertEquals(0, pool.getStats().inUseBytes());
+    }
+
+    @Test
+    void closingAStreamTwiceReleasesOnce() throws IOException {
+        AudioBuffer audio = pool.allocate(16);
+        InputStream stream = audio.open();
+
+        stream.close();
+        stream.close();
+        assertEquals(1024, pool.getStats().inUseBytes());
+
+        audio.release();
+        assertEquals(0, pool.getStats().inUseBytes());
+    }
+
+    @Test
+    void releasedBufferCannotBeRetained() {
+        AudioBuffer audio = pool.allocate(16);
+        audio.release();
+
+        assertFalse(audio.tryRetain());
+        assertTrue(audio.tryOpen().isEmpty());
+        assertThrows(IllegalStateException.class, audio::retain);
+        assertThrows(IllegalStateException.class, audio::release);
+    }
+
+    @Test
+    void growsIntoALargerSizeClass() throws IOException {
+        byte[] payload = new byte[3000];
+        Arrays.fill(payload, (byte) 7);
+        AudioBuffer audio = pool.allocate(100);
+
+        assertEquals(3000, audio.readFrom(new ByteArrayInputStream(payload)));
+
+        assertEquals(3000, audio.size());
+        assertEquals(4096, pool.getStats().inUseBytes());
+        try (InputStream stream = audio.open()) {
+            assertArrayEquals(payload, stream.readAllBytes());
+        }
+        audio.release();
+        assertEquals(0, pool.getStats().inUseBytes());
+    }
+
+    @Test
+    void oversizedPayloadsAreUnpooled() {
+        AudioBuffer audio = pool.allocate(64 * 1024);
+        audio.release();
+
+        BufferPoolStats stats = pool.getStats();
+        assertEquals(1, stats.unpooled());
+        assertEquals(0, stats.inUseBytes());
+        assertEquals(0, stats.idleBytes());
+    }
+
+    @Test
+    void idleBuffersBeyondTheBudgetAreDropped() {
+        AudioBuffer first = pool.allocate(8 * 1024);
+        AudioBuffer second = pool.allocate(8 * 1024);
+        AudioBuffer third = pool.allocate(8 * 1024);
+        first.release();
+        second.release();
+        third.release();
+
+        BufferPoolStats stats = pool.getStats();
+        assertEquals(16 * 1024, stats.idleBytes());
+        assertEquals(1, stats.dropped());
+    }
+
+    @Test
+    void disabledPoolHandsOutHeapBuffers() {
+        AudioBufferPool disabled = new AudioBufferPool(false, MIN_BUFFER_BYTES, 8 * 1024, 16 * 1024);
+        AudioBuffer audio = disabled.allocate(100);
+        audio.write(42);
+        audio.release();
+
+        BufferPoolStats stats = disabled.getStats();
+        assertEquals(1, stats.unpooled());
+        assertEquals(0, stats.idleBytes());
+    }
+}
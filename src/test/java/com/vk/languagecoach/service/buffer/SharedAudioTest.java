@@ -0,0 +1,72 @@
+package com.vk.languagecoach.service.buffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SharedAudioTest {
+
+    private final AudioBufferPool pool = new AudioBufferPool(true, 16, 1024, 4 * 1024);
+
+    @Test
+    void readersStreamTheAudioAsItIsWritten() throws Exception {
+        SharedAudio audio = new SharedAudio(pool.allocate(0));
+        InputStream early = audio.tryOpen().orElseThrow();
+        audio.write(new byte[]{1, 2}, 0, 2);
+
+        byte[] read = new byte[8];
+        assertEquals(2, early.read(read));
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<byte[]> rest = executor.submit(early::readAllBytes);
+            InputStream late = audio.tryOpen().orElseThrow();
+            // Writes past the initial capacity move the audio to a larger buffer
+            audio.write(new byte[40], 0, 40);
+            audio.finish();
+
+            assertEquals(40, rest.get(5, TimeUnit.SECONDS).length);
+            assertEquals(42, late.readAllBytes().length);
+            late.close();
+        }
+        early.close();
+    }
+
+    @Test
+    void readersSeeTheFailureAfterTheBytesWritten() throws IOException {
+        SharedAudio audio = new SharedAudio(pool.allocate(0));
+        audio.write(new byte[]{1, 2, 3}, 0, 3);
+        audio.fail(new IllegalStateException("Provider went away"));
+
+        try (InputStream stream = audio.tryOpen().orElseThrow()) {
+            byte[] read = new byte[3];
+            assertEquals(3, stream.read(read));
+            assertArrayEquals(new byte[]{1, 2, 3}, read);
+            assertThrows(IOException.class, stream::read);
+        }
+    }
+
+    @Test
+    void bufferGoesBackAfterTheProducerAndEveryReader() throws IOException {
+        SharedAudio audio = new SharedAudio(pool.allocate(0));
+        InputStream stream = audio.tryOpen().orElseThrow();
+        audio.finish();
+
+        audio.release();
+        assertTrue(pool.getStats().inUseBytes() > 0);
+        stream.close();
+
+        assertEquals(0, pool.getStats().inUseBytes());
+        assertFalse(audio.tryOpen().isPresent());
+    }
+}
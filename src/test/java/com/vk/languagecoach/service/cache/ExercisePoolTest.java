@@ -0,0 +1,99 @@
+package com.vk.languagecoach.service.cache;
+
+import com.vk.languagecoach.dto.AIProvider;
+import com.vk.languagecoach.dto.request.ExerciseRequest;
+import com.vk.languagecoach.model.Exercises;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExercisePoolTest {
+
+    @Test
+    void keyBecomesHotAfterMinRequests() {
+        ExercisePool pool = pool(3, Duration.ofHours(1), 10);
+        ExerciseRequest request = request("verbs");
+
+        assertTrue(pool.take(request).isEmpty());
+        assertTrue(pool.take(request).isEmpty());
+        assertTrue(pool.deficits().isEmpty());
+
+        assertTrue(pool.take(request).isEmpty());
+        assertEquals(1, pool.deficits().size());
+        assertEquals(3, pool.deficits().getFirst().missing());
+    }
+
+    @Test
+    void oneOffRequestsAreNeverPooled() {
+        ExercisePool pool = pool(2, Duration.ofHours(1), 10);
+
+        for (int i = 0; i < 100; i++) {
+            pool.take(request("topic " + i));
+        }
+        Exercises exercises = new Exercises();
+        pool.offer(request("topic 1"), exercises, true);
+
+        assertTrue(pool.deficits().isEmpty());
+        assertEquals(0, pool.getStats().keys());
+        assertEquals(0, pool.getStats().sets());
+    }
+
+    @Test
+    void requestsOutsideTheWindowDoNotCount() throws InterruptedException {
+        ExercisePool pool = pool(2, Duration.ofMillis(20), 10);
+        ExerciseRequest request = request("verbs");
+
+        pool.take(request);
+        Thread.sleep(40);
+        pool.take(request);
+
+        assertTrue(pool.deficits().isEmpty());
+    }
+
+    @Test
+    void hotKeyServesOfferedSets() {
+        ExercisePool pool = pool(1, Duration.ofHours(1), 10);
+        ExerciseRequest request = request("verbs");
+        Exercises exercises = new Exercises();
+
+        assertTrue(pool.take(request).isEmpty());
+        pool.offer(request, exercises, false);
+
+        assertSame(exercises, pool.take(request).orElseThrow());
+        assertEquals(1, pool.getStats().hits());
+    }
+
+    @Test
+    void maxKeysIsEnforcedOnInsert() throws InterruptedException {
+        ExercisePool pool = pool(1, Duration.ofHours(1), 2);
+
+        pool.take(request("first"));
+        Thread.sleep(5);
+        pool.take(request("second"));
+        Thread.sleep(5);
+        pool.take(request("third"));
+
+        assertEquals(2, pool.getStats().keys());
+        // The least recently requested key made room
+        pool.offer(request("first"), new Exercises(), false);
+        assertEquals(0, pool.getStats().sets());
+    }
+
+    private static ExercisePool pool(int minRequests, Duration popularityWindow, int maxKeys) {
+        return new ExercisePool(true, 3, 5, maxKeys, Duration.ofHours(2), minRequests, popularityWindow, 1000);
+    }
+
+    private static ExerciseRequest request(String topic) {
+        return ExerciseRequest.builder()
+                .provider(AIProvider.OPENAI)
+                .exerciseLanguage("Ukrainian")
+                .userLanguage("English")
+                .topic(topic)
+                .total(10)
+                .build();
+    }
+}
@@ -0,0 +1,194 @@
+package com.vk.languagecoach.service.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+    @Test
+    void followersShareTheResultOfTheLeader() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<String> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+                calls.incrementAndGet();
+                started.countDown();
+                await(release);
+                return "value";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            Future<String> follower = executor.submit(() -> singleFlight.execute("key", () -> {
+                calls.incrementAndGet();
+                return "other";
+            }));
+            waitForFollowers(1);
+            release.countDown();
+
+            assertEquals("value", leader.get(5, TimeUnit.SECONDS));
+            assertEquals("value", follower.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, calls.get());
+        assertEquals(1, singleFlight.getLeaders());
+        assertEquals(1, singleFlight.getFollowers());
+    }
+
+    @Test
+    void completedFlightIsNotReused() {
+        assertEquals("first", singleFlight.execute("key", () -> "first"));
+        assertEquals("second", singleFlight.execute("key", () -> "second"));
+        assertEquals(2, singleFlight.getLeaders());
+        assertEquals(0, singleFlight.getFollowers());
+    }
+
+    @Test
+    void differentKeysDoNotCoalesce() {
+        SingleFlight.Flight<String> first = singleFlight.begin("first");
+        SingleFlight.Flight<String> second = singleFlight.begin("second");
+
+        assertTrue(first.isLeader());
+        assertTrue(second.isLeader());
+        first.complete("done");
+        second.complete("done");
+    }
+
+    @Test
+    void leaderFailureIsSharedWithFollowers() {
+        SingleFlight.Flight<String> leader = singleFlight.begin("key");
+        SingleFlight.Flight<String> follower = singleFlight.begin("key");
+        assertTrue(leader.isLeader());
+        assertFalse(follower.isLeader());
+
+        IllegalArgumentException failure = new IllegalArgumentException("provider failed");
+        leader.fail(failure);
+
+        assertSame(failure, assertThrows(IllegalArgumentException.class, follower::await));
+        assertTrue(singleFlight.begin("key").isLeader());
+    }
+
+    @Test
+    void checkedFailureIsWrapped() {
+        SingleFlight.Flight<String> leader = singleFlight.begin("key");
+        SingleFlight.Flight<String> follower = singleFlight.begin("key");
+
+        Exception failure = new Exception("checked");
+        leader.fail(failure);
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class, follower::await);
+        assertSame(failure, thrown.getCause());
+    }
+
+    @Test
+    void followerTakesOverFromInterruptedLeader() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicInteger calls = new AtomicInteger();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<String> leader = executor.submit(() -> singleFlight.execute("key", () -> {
+                calls.incrementAndGet();
+                started.countDown();
+                await(new CountDownLatch(1));
+                return "leader";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            Future<String> follower = executor.submit(() -> singleFlight.execute("key", () -> {
+                calls.incrementAndGet();
+                return "follower";
+            }));
+            waitForFollowers(1);
+            leader.cancel(true);
+
+            assertEquals("follower", follower.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(2, calls.get());
+        assertEquals(2, singleFlight.getLeaders());
+    }
+
+    @Test
+    void cancelledFlightIsRemoved() {
+        SingleFlight.Flight<String> leader = singleFlight.begin("key");
+        SingleFlight.Flight<String> follower = singleFlight.begin("key");
+
+        leader.cancel();
+
+        assertThrows(CancellationException.class, follower::await);
+        assertTrue(singleFlight.begin("key").isLeader());
+    }
+
+    @Test
+    void sharedValueKeepsTheKeyInFlight() {
+        SingleFlight.Flight<String> leader = singleFlight.begin("key");
+        leader.share("partial");
+
+        SingleFlight.Flight<String> late = singleFlight.begin("key");
+        assertFalse(late.isLeader());
+        assertEquals("partial", late.await());
+
+        leader.complete("partial");
+        assertTrue(singleFlight.begin("key").isLeader());
+    }
+
+    @Test
+    void awaitWithTimeoutGivesUpOnSlowLeader() {
+        SingleFlight.Flight<String> leader = singleFlight.begin("key");
+        SingleFlight.Flight<String> follower = singleFlight.begin("key");
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class,
+                () -> follower.await(Duration.ofMillis(50)));
+        assertTrue(thrown.getCause() instanceof TimeoutException);
+
+        leader.complete("late");
+        assertEquals("late", follower.await(Duration.ofSeconds(1)));
+    }
+
+    @Test
+    void interruptedFollowerKeepsItsInterruptStatus() {
+        singleFlight.begin("key");
+        SingleFlight.Flight<String> follower = singleFlight.begin("key");
+
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(IllegalStateException.class, follower::await);
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    private void waitForFollowers(long followers) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (singleFlight.getFollowers() < followers) {
+            assertTrue(System.nanoTime() < deadline, "Follower did not join the flight");
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", e);
+        }
+    }
+}
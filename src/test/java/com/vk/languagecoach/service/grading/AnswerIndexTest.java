@@ -0,0 +1,123 @@
+package com.vk.languagecoach.service.grading;
+
+import com.vk.languagecoach.model.Exercise;
+import com.vk.languagecoach.model.ExerciseAnswer;
+import com.vk.languagecoach.model.Exercises;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AnswerIndexTest {
+
+    private final AnswerIndex answerIndex = new AnswerIndex(100, 2);
+
+    @Test
+    void gradesExactAnswersAsCorrect() {
+        String id = answerIndex.index("Я ___ книгу.", List.of(answer(0, 1, "читав")));
+
+        AnswerIndex.Grade grade = answerIndex.grade(id, 1, " Чита́в ");
+
+        assertEquals(AnswerIndex.Verdict.CORRECT, grade.verdict());
+        assertEquals("читав", grade.expected());
+        assertEquals(0, grade.distance());
+    }
+
+    @Test
+    void acceptsTyposAndMissingDiacriticsAsAlmost() {
+        String id = answerIndex.index("Я ___ книгу.", List.of(answer(0, 1, "прочитав")));
+
+        AnswerIndex.Grade typo = answerIndex.grade(id, 1, "прочітав");
+        AnswerIndex.Grade wrong = answerIndex.grade(id, 1, "написала");
+
+        assertEquals(AnswerIndex.Verdict.ALMOST, typo.verdict());
+        assertEquals(1, typo.distance());
+        assertEquals(AnswerIndex.Verdict.INCORRECT, wrong.verdict());
+    }
+
+    @Test
+    void missingLatinAccentsAreAlmost() {
+        String id = answerIndex.index("El libro ___ aquí.", List.of(answer(0, 1, "está")));
+
+        AnswerIndex.Grade grade = answerIndex.grade(id, 1, "esta");
+
+        assertEquals(AnswerIndex.Verdict.ALMOST, grade.verdict());
+        assertEquals(0, grade.distance());
+    }
+
+    @Test
+    void shortAnswersHaveNoTypoTolerance() {
+        String id = answerIndex.index("___ тут.", List.of(answer(0, 1, "кіт")));
+
+        assertEquals(AnswerIndex.Verdict.INCORRECT, answerIndex.grade(id, 1, "кит").verdict());
+    }
+
+    @Test
+    void acceptsEveryAlternative() {
+        String id = answerIndex.index("Він ___ додому.", List.of(answer(0, 1, "пішов / поїхав")));
+
+        assertEquals(AnswerIndex.Verdict.CORRECT, answerIndex.grade(id, 1, "поїхав").verdict());
+        assertEquals(AnswerIndex.Verdict.CORRECT, answerIndex.grade(id, 1, "пішов").verdict());
+    }
+
+    @Test
+    void unknownExercisesAndPositionsAreReported() {
+        String id = answerIndex.index("Я ___ книгу.", List.of(answer(0, 1, "читав")));
+
+        assertEquals(AnswerIndex.Verdict.UNKNOWN, answerIndex.grade("missing", 1, "читав").verdict());
+        assertEquals(AnswerIndex.Verdict.UNKNOWN, answerIndex.grade(id, 2, "читав").verdict());
+        assertEquals(AnswerIndex.Verdict.INCORRECT, answerIndex.grade(id, 1, null).verdict());
+    }
+
+    @Test
+    void idDoesNotDependOnAnswerOrder() {
+        assertEquals(AnswerIndex.id("Я ___ ___.", List.of(answer(0, 1, "читав"), answer(0, 2, "книгу"))),
+                AnswerIndex.id("Я ___ ___.", List.of(answer(0, 2, "книгу"), answer(0, 1, "читав"))));
+    }
+
+    @Test
+    void idIsPureAndIndexingIsExplicit() {
+        String id = AnswerIndex.id("Я ___ книгу.", List.of(answer(0, 1, "читав")));
+        assertFalse(answerIndex.contains(id));
+
+        Exercises exercises = new Exercises();
+        exercises.setExercises(List.of(exercise(0, "Я ___ книгу."), exercise(1, "Вона ___ лист.")));
+        exercises.setAnswers(List.of(answer(0, 1, "читав"), answer(1, 1, "пише")));
+        answerIndex.index(exercises);
+
+        assertTrue(answerIndex.contains(id));
+        String second = AnswerIndex.id("Вона ___ лист.", List.of(answer(1, 1, "пише")));
+        assertEquals(AnswerIndex.Verdict.CORRECT, answerIndex.grade(second, 1, "пише").verdict());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedExercise() {
+        AnswerIndex small = new AnswerIndex(2, 2);
+        String first = small.index("Перше ___.", List.of(answer(0, 1, "один")));
+        String second = small.index("Друге ___.", List.of(answer(1, 1, "два")));
+        small.grade(first, 1, "один");
+
+        small.index("Третє ___.", List.of(answer(2, 1, "три")));
+
+        assertTrue(small.contains(first));
+        assertFalse(small.contains(second));
+    }
+
+    private static Exercise exercise(int exerciseId, String text) {
+        Exercise exercise = new Exercise();
+        exercise.setExerciseId(exerciseId);
+        exercise.setText(text);
+        return exercise;
+    }
+
+    private static ExerciseAnswer answer(int exerciseId, int position, String text) {
+        ExerciseAnswer answer = new ExerciseAnswer();
+        answer.setExerciseId(exerciseId);
+        answer.setPosition(position);
+        answer.setAnswer(text);
+        return answer;
+    }
+}
@@ -0,0 +1,92 @@
+package com.vk.languagecoach.service.grading;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AnswerNormalizerTest {
+
+    @Test
+    void strictIronsOutCaseSpacingAndStressMarks() {
+        assertEquals("читав", AnswerNormalizer.strict(" Чита́в "));
+        assertEquals("it's a dog", AnswerNormalizer.strict("It’s   a DOG!"));
+        assertEquals("пів-години", AnswerNormalizer.strict("пів–години"));
+    }
+
+    @Test
+    void strictKeepsLetterDiacritics() {
+        assertEquals("їжак", AnswerNormalizer.strict("Їжак"));
+        assertEquals("ça va", AnswerNormalizer.strict("Ça va"));
+        assertEquals("está", AnswerNormalizer.strict("Está"));
+        assertEquals("ósmy", AnswerNormalizer.strict("ósmy"));
+    }
+
+    @Test
+    void strictComposesDecomposedInput() {
+        assertEquals("ї", AnswerNormalizer.strict("ї"));
+    }
+
+    @Test
+    void looseDropsAllDiacritics() {
+        assertEquals("ca va", AnswerNormalizer.loose("ça va"));
+        assertEquals("іжак", AnswerNormalizer.loose("їжак"));
+    }
+
+    @Test
+    void distanceCountsEdits() {
+        assertEquals(0, distance("читав", "читав", 2));
+        assertEquals(1, distance("читав", "чітав", 2));
+        assertEquals(1, distance("читав", "читаав", 2));
+        assertEquals(1, distance("читав", "чтав", 2));
+        assertEquals(2, distance("читав", "чітаф", 2));
+    }
+
+    @Test
+    void distanceStopsBeyondTheMaximum() {
+        assertEquals(3, distance("читав", "писала", 2));
+        assertEquals(2, distance("кіт", "кітеня", 1));
+        assertEquals(1, distance("abc", "xyz", 0));
+    }
+
+    @Test
+    void bandedDistanceMatchesTheFullMatrix() {
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            int[] a = randomWord(random);
+            int[] b = randomWord(random);
+            int maxDistance = random.nextInt(4);
+
+            int expected = Math.min(levenshtein(a, b), maxDistance + 1);
+            assertEquals(expected, AnswerNormalizer.distance(a, b, maxDistance),
+                    new String(a, 0, a.length) + " / " + new String(b, 0, b.length) + " within " + maxDistance);
+        }
+    }
+
+    private static int distance(String a, String b, int maxDistance) {
+        return AnswerNormalizer.distance(a.codePoints().toArray(), b.codePoints().toArray(), maxDistance);
+    }
+
+    private static int[] randomWord(Random random) {
+        // A small alphabet makes matches, and therefore short distances, likely
+        return random.ints(random.nextInt(9), 'a', 'e').toArray();
+    }
+
+    private static int levenshtein(int[] a, int[] b) {
+        int[][] d = new int[a.length + 1][b.length + 1];
+        for (int i = 0; i <= a.length; i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length; j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length; i++) {
+            for (int j = 1; j <= b.length; j++) {
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1),
+                        d[i - 1][j - 1] + (a[i - 1] == b[j - 1] ? 0 : 1));
+            }
+        }
+        return d[a.length][b.length];
+    }
+}
@@ -0,0 +1,101 @@
+package com.vk.languagecoach.service.grading;
+
+import com.vk.languagecoach.dto.AIProvider;
+import com.vk.languagecoach.dto.ExerciseDifficulty;
+import com.vk.languagecoach.dto.request.ExerciseRequest;
+import com.vk.languagecoach.dto.request.GradeAnswerRequest;
+import com.vk.languagecoach.dto.request.GradeRequest;
+import com.vk.languagecoach.dto.response.GradeResponse;
+import com.vk.languagecoach.mapper.ExerciseMapper;
+import com.vk.languagecoach.model.Exercise;
+import com.vk.languagecoach.model.ExerciseAnswer;
+import com.vk.languagecoach.model.Exercises;
+import com.vk.languagecoach.repository.ExerciseSetRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest
+@Import({AnswerIndex.class, GradingService.class, ExerciseMapper.class})
+class GradingServiceTest {
+
+    @Autowired
+    private GradingService gradingService;
+
+    @Autowired
+    private AnswerIndex answerIndex;
+
+    @Autowired
+    private ExerciseMapper exerciseMapper;
+
+    @Autowired
+    private ExerciseSetRepository exerciseSetRepository;
+
+    @Test
+    void gradesStoredExercisesMissingFromTheIndex() {
+        Exercises exercises = exercises();
+        exerciseSetRepository.saveAndFlush(exerciseMapper.mapToExerciseSetEntity(exerciseRequest(), exercises));
+        String exerciseId = exerciseMapper.mapToExerciseResponses(exercises).getFirst().getId();
+        assertFalse(answerIndex.contains(exerciseId));
+
+        GradeResponse response = gradingService.grade(gradeRequest(exerciseId, "читав"));
+
+        assertEquals(1, response.getCorrect());
+        assertEquals(1, response.getTotal());
+        assertEquals("CORRECT", response.getResults().getFirst().getVerdict());
+        assertTrue(answerIndex.contains(exerciseId));
+    }
+
+    @Test
+    void exercisesFoundNowhereAreUnknown() {
+        GradeResponse response = gradingService.grade(gradeRequest("0123456789abcdef0123456789abcdef", "читав"));
+
+        assertEquals(0, response.getCorrect());
+        assertEquals(0, response.getTotal());
+        assertEquals("UNKNOWN", response.getResults().getFirst().getVerdict());
+    }
+
+    private static ExerciseRequest exerciseRequest() {
+        return ExerciseRequest.builder()
+                .provider(AIProvider.OPENAI)
+                .exerciseLanguage("Ukrainian")
+                .userLanguage("English")
+                .topic("Past tense")
+                .total(1)
+                .difficulty(ExerciseDifficulty.A2)
+                .build();
+    }
+
+    private static Exercises exercises() {
+        Exercise exercise = new Exercise();
+        exercise.setExerciseId(0);
+        exercise.setText("Я ___ книгу.");
+        ExerciseAnswer answer = new ExerciseAnswer();
+        answer.setExerciseId(0);
+        answer.setPosition(1);
+        answer.setAnswer("читав");
+
+        Exercises exercises = new Exercises();
+        exercises.setExercises(List.of(exercise));
+        exercises.setAnswers(List.of(answer));
+        exercises.setHints(List.of());
+        return exercises;
+    }
+
+    private static GradeRequest gradeRequest(String exerciseId, String text) {
+        GradeAnswerRequest answer = new GradeAnswerRequest();
+        answer.setExerciseId(exerciseId);
+        answer.setPosition(1);
+        answer.setAnswer(text);
+        GradeRequest gradeRequest = new GradeRequest();
+        gradeRequest.setAnswers(List.of(answer));
+        return gradeRequest;
+    }
+}
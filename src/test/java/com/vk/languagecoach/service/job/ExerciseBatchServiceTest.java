@@ -0,0 +1,219 @@
+package com.vk.languagecoach.service.job;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.openai.client.OpenAIClient;
+import com.vk.languagecoach.dto.AIProvider;
+import com.vk.languagecoach.dto.ExerciseDifficulty;
+import com.vk.languagecoach.dto.request.ExerciseBatchRequest;
+import com.vk.languagecoach.dto.request.ExerciseRequest;
+import com.vk.languagecoach.metrics.AIMetrics;
+import com.vk.languagecoach.model.Exercises;
+import com.vk.languagecoach.service.ExerciseMerger;
+import com.vk.languagecoach.service.ExercisePromptBuilder;
+import com.vk.languagecoach.service.ExerciseService;
+import com.vk.languagecoach.service.ExerciseStoreService;
+import com.vk.languagecoach.service.ai.AIClientFactory;
+import com.vk.languagecoach.service.ai.AIService;
+import com.vk.languagecoach.service.ai.AIServiceProvider;
+import com.vk.languagecoach.service.ai.ProviderRouter;
+import com.vk.languagecoach.service.ai.RateLimiter;
+import com.vk.languagecoach.service.ai.replay.LatencyDistribution;
+import com.vk.languagecoach.service.ai.replay.ReplayCorpus;
+import com.vk.languagecoach.service.ai.replay.ReplayInterceptor;
+import com.vk.languagecoach.service.async.AsyncTasks;
+import com.vk.languagecoach.service.budget.ExerciseTokenBudget;
+import com.vk.languagecoach.service.cache.ExercisePool;
+import com.vk.languagecoach.service.grading.AnswerIndex;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.Interceptor;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExerciseBatchServiceTest {
+
+    private static final String BASE_URL = "http://replay.invalid/v1";
+    private static final String MODEL = "gpt-4o";
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RateLimiter rateLimiter = new RateLimiter(false, 64, Duration.ofSeconds(1), 0, 0, 0, 0);
+    private final AIClientFactory aiClientFactory = new AIClientFactory(rateLimiter, 4, Duration.ofMinutes(1), 64, 16,
+            false, Duration.ofSeconds(1), Duration.ofSeconds(10), Duration.ofSeconds(10), Duration.ofSeconds(30), 0,
+            Duration.ofMillis(100), Duration.ofSeconds(1), 0);
+    private final Map<Long, Exercises> stored = new ConcurrentHashMap<>();
+    private AIServiceProvider aiServiceProvider;
+    private ExerciseBatchService exerciseBatchService;
+
+    @AfterEach
+    void shutdown() {
+        exerciseBatchService.shutdown();
+        aiServiceProvider.shutdown();
+        aiClientFactory.shutdown();
+    }
+
+    @Test
+    void storesEveryResultOfACompletedBatch() throws Exception {
+        exerciseBatchService = exerciseBatchService(replay());
+
+        ExerciseBatchJob job = run(List.of(1, 2, 3));
+
+        assertEquals(ExerciseBatchJob.Status.COMPLETED, job.getStatus());
+        for (ExerciseBatchJob.Item item : job.getItems()) {
+            assertEquals(ExerciseBatchJob.ItemStatus.DONE, item.getStatus());
+            // Each stored set answers the request of its custom id
+            assertEquals(item.getRequest().getTotal(), stored.get(item.getExerciseSetId()).getExercises().size());
+        }
+        assertTrue(tokens("prompt") > 0);
+        assertTrue(tokens("completion") > 0);
+    }
+
+    @Test
+    void storesThePartialOutputOfAnExpiredBatch() throws Exception {
+        ReplayInterceptor replay = replay();
+        exerciseBatchService = exerciseBatchService(chain -> expire(replay.intercept(chain), 2));
+
+        ExerciseBatchJob job = run(List.of(1, 2, 3));
+
+        assertEquals(ExerciseBatchJob.Status.FAILED, job.getStatus());
+        List<ExerciseBatchJob.Item> items = job.getItems();
+        assertEquals(ExerciseBatchJob.ItemStatus.DONE, items.get(0).getStatus());
+        assertEquals(ExerciseBatchJob.ItemStatus.DONE, items.get(1).getStatus());
+        assertEquals(ExerciseBatchJob.ItemStatus.FAILED, items.get(2).getStatus());
+        assertNotNull(items.get(2).getError());
+        assertEquals(2, stored.size());
+    }
+
+    private ExerciseBatchJob run(List<Integer> totals) throws InterruptedException {
+        ExerciseBatchRequest batchRequest = new ExerciseBatchRequest();
+        batchRequest.setProvider(AIProvider.REPLAY);
+        batchRequest.setRequests(totals.stream().map(this::request).toList());
+
+        ExerciseBatchJob job = exerciseBatchService.submit(batchRequest);
+        await(() -> job.getStatus() != ExerciseBatchJob.Status.SUBMITTED);
+        assertEquals(ExerciseBatchJob.Mode.PROVIDER, job.getMode());
+        assertNotNull(job.getProviderBatchId());
+
+        exerciseBatchService.pollProviderBatches();
+        await(() -> job.getFinishedAt() != null);
+        return job;
+    }
+
+    /**
+     * Reports every batch as expired and cuts its output file down to the given number of lines.
+     */
+    private Response expire(Response response, int keptLines) throws IOException {
+        String path = response.request().url().encodedPath();
+        String body;
+        if (path.contains("/batches/")) {
+            ObjectNode batch = (ObjectNode) objectMapper.readTree(response.body().string());
+            body = batch.put("status", "expired").toString();
+        } else if (path.endsWith("/content")) {
+            body = response.body().string().lines().limit(keptLines).collect(Collectors.joining("\n", "", "\n"));
+        } else {
+            return response;
+        }
+        return response.newBuilder()
+                .body(ResponseBody.create(body.getBytes(StandardCharsets.UTF_8), response.body().contentType()))
+                .build();
+    }
+
+    private ReplayInterceptor replay() throws IOException {
+        Map<ReplayCorpus.Endpoint, LatencyDistribution> latencies = Arrays.stream(ReplayCorpus.Endpoint.values())
+                .collect(Collectors.toMap(Function.identity(),
+                        endpoint -> new LatencyDistribution(Duration.ZERO, Duration.ZERO)));
+        return new ReplayInterceptor(new ReplayCorpus(null), ReplayInterceptor.Mode.REPLAY, objectMapper, latencies,
+                0, 503, 0, 0);
+    }
+
+    private ExerciseBatchService exerciseBatchService(Interceptor provider) {
+        OpenAIClient client = aiClientFactory.createClient("replay", BASE_URL, provider);
+        AIMetrics aiMetrics = new AIMetrics(meterRegistry);
+        aiServiceProvider = new AIServiceProvider(List.of(new AIService() {
+            @Override
+            public OpenAIClient getClient() {
+                return client;
+            }
+
+            @Override
+            public AIProvider getName() {
+                return AIProvider.REPLAY;
+            }
+        }), new ProviderRouter(0.2, 200, false, 0.95, 20, Duration.ofMillis(500), 5, Duration.ofSeconds(30)),
+                aiMetrics, rateLimiter, MODEL, MODEL, MODEL, MODEL, MODEL, MODEL, MODEL, MODEL);
+
+        ExerciseStoreService exerciseStoreService = new RecordingExerciseStoreService();
+        ExerciseService exerciseService = new ExerciseService(aiServiceProvider,
+                new ExercisePool(false, 3, 5, 200, Duration.ofHours(2), 3, Duration.ofHours(1), 1000),
+                new ExerciseMerger(0.8), exerciseStoreService, new ExercisePromptBuilder(100),
+                new ExerciseTokenBudget(Duration.ofSeconds(30), 100, 0.2), new AnswerIndex(1000, 2), new AsyncTasks(),
+                objectMapper, aiMetrics, 1, 30, 10, false, 16);
+        return new ExerciseBatchService(aiServiceProvider, exerciseService, exerciseStoreService, objectMapper,
+                List.of("replay"), 1, Duration.ofHours(1));
+    }
+
+    private ExerciseRequest request(int total) {
+        return ExerciseRequest.builder()
+                .exerciseLanguage("ukrainian")
+                .userLanguage("english")
+                .topic("past tense")
+                .total(total)
+                .difficulty(ExerciseDifficulty.A2)
+                .build();
+    }
+
+    private double tokens(String kind) {
+        Counter counter = meterRegistry.find("ai.tokens")
+                .tags("provider", AIProvider.REPLAY.toString(), "model", MODEL, "kind", kind)
+                .counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out waiting for the exercise batch");
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Keeps stored sets in memory instead of the database.
+     */
+    private class RecordingExerciseStoreService extends ExerciseStoreService {
+
+        private final AtomicLong ids = new AtomicLong();
+
+        RecordingExerciseStoreService() {
+            super(null, null, null, null);
+        }
+
+        @Override
+        public Long save(ExerciseRequest exerciseRequest, Exercises exercises) {
+            long id = ids.incrementAndGet();
+            stored.put(id, exercises);
+            return id;
+        }
+    }
+}
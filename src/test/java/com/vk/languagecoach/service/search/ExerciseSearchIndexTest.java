@@ -0,0 +1,189 @@
+package com.vk.languagecoach.service.search;
+
+import com.vk.languagecoach.dto.ExerciseDifficulty;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExerciseSearchIndexTest {
+
+    private static final Instant CREATED_AT = Instant.parse("2026-10-01T10:00:00.123Z");
+
+    private final ExerciseSearchIndex exerciseSearchIndex = new ExerciseSearchIndex();
+
+    @Test
+    void addsEverySetOnce() {
+        assertTrue(exerciseSearchIndex.add(document(1, "past", "tense")));
+        assertFalse(exerciseSearchIndex.add(document(1, "future")));
+
+        assertEquals(1, exerciseSearchIndex.getStats().sets());
+        assertEquals(List.of(1L), setIds(exerciseSearchIndex.search("past", null, null, null, 10)));
+        assertTrue(exerciseSearchIndex.search("future", null, null, null, 10).isEmpty());
+    }
+
+    @Test
+    void removedSetsAreNoLongerFound() {
+        exerciseSearchIndex.add(document(1, "past", "tense"));
+        exerciseSearchIndex.add(document(2, "past", "participle"));
+        exerciseSearchIndex.add(document(3, "future", "tense"));
+
+        assertEquals(1, exerciseSearchIndex.removeAll(List.of(2L, 42L)));
+
+        assertFalse(exerciseSearchIndex.contains(2));
+        assertEquals(List.of(1L), setIds(exerciseSearchIndex.search("past", null, null, null, 10)));
+        assertEquals(List.of(1L, 3L), setIds(exerciseSearchIndex.search("tense", null, null, null, 10)).stream()
+                .sorted().toList());
+        assertTrue(exerciseSearchIndex.search("participle", null, null, null, 10).isEmpty());
+        assertEquals(2, exerciseSearchIndex.getStats().sets());
+        assertEquals(3, exerciseSearchIndex.getStats().terms());
+    }
+
+    @Test
+    void removedSetIdCanBeIndexedAgain() {
+        exerciseSearchIndex.add(document(1, "past", "tense"));
+        exerciseSearchIndex.add(document(2, "future", "tense"));
+        exerciseSearchIndex.removeAll(List.of(1L));
+
+        assertTrue(exerciseSearchIndex.add(document(1, "imperative")));
+
+        assertEquals(List.of(1L), setIds(exerciseSearchIndex.search("imperative", null, null, null, 10)));
+        assertTrue(exerciseSearchIndex.search("past", null, null, null, 10).isEmpty());
+        assertEquals(List.of(2L), setIds(exerciseSearchIndex.search("future", null, null, null, 10)));
+    }
+
+    @Test
+    void removingNothingKeepsTheVersion() {
+        exerciseSearchIndex.add(document(1, "past"));
+        long version = exerciseSearchIndex.getStats().version();
+
+        assertEquals(0, exerciseSearchIndex.removeAll(List.of(7L)));
+
+        assertEquals(version, exerciseSearchIndex.getStats().version());
+    }
+
+    @Test
+    void snapshotRoundTripKeepsCreationTimes() throws IOException {
+        exerciseSearchIndex.add(document(1, "past", "tense"));
+        exerciseSearchIndex.add(document(2, "future", "tense"));
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        exerciseSearchIndex.writeSnapshot(snapshot);
+
+        ExerciseSearchIndex restored = new ExerciseSearchIndex();
+        assertEquals(2, restored.readSnapshot(new ByteArrayInputStream(snapshot.toByteArray())));
+
+        assertEquals(Map.of(1L, CREATED_AT, 2L, CREATED_AT), restored.getIndexedSets());
+        assertEquals(exerciseSearchIndex.search("tense", null, null, null, 10),
+                restored.search("tense", null, null, null, 10));
+    }
+
+    @Test
+    void snapshotSkipsSetsAlreadyIndexed() throws IOException {
+        exerciseSearchIndex.add(document(1, "past"));
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        exerciseSearchIndex.writeSnapshot(snapshot);
+
+        assertEquals(0, exerciseSearchIndex.readSnapshot(new ByteArrayInputStream(snapshot.toByteArray())));
+    }
+
+    @Test
+    void ranksRarerTermsHigher() {
+        exerciseSearchIndex.add(document(1, "tense", "past"));
+        exerciseSearchIndex.add(document(2, "tense", "future"));
+        exerciseSearchIndex.add(document(3, "tense", "present"));
+
+        // "past" occurs in one set, "tense" in all of them
+        List<ExerciseSearchIndex.Hit> hits = exerciseSearchIndex.search("past tense", null, null, null, 10);
+
+        assertEquals(1L, hits.getFirst().setId());
+        assertEquals(3, hits.size());
+        assertTrue(hits.get(0).score() > hits.get(1).score());
+    }
+
+    @Test
+    void ranksHigherTermFrequencyHigher() {
+        exerciseSearchIndex.add(document(1, "verb", "noun", "noun", "noun"));
+        exerciseSearchIndex.add(document(2, "verb", "verb", "verb", "noun"));
+        exerciseSearchIndex.add(document(3, "adjective"));
+
+        assertEquals(List.of(2L, 1L), setIds(exerciseSearchIndex.search("verb", null, null, null, 10)));
+    }
+
+    @Test
+    void normalizesForDocumentLength() {
+        exerciseSearchIndex.add(document(1, "verb", "a", "b", "c", "d", "e", "f", "g"));
+        exerciseSearchIndex.add(document(2, "verb", "h"));
+        exerciseSearchIndex.add(document(3, "noun"));
+
+        assertEquals(List.of(2L, 1L), setIds(exerciseSearchIndex.search("verb", null, null, null, 10)));
+    }
+
+    @Test
+    void tiesGoToTheNewerSet() {
+        exerciseSearchIndex.add(document(1, "verb"));
+        exerciseSearchIndex.add(document(2, "verb"));
+        exerciseSearchIndex.add(document(3, "noun"));
+
+        assertEquals(List.of(2L, 1L), setIds(exerciseSearchIndex.search("verb", null, null, null, 10)));
+    }
+
+    @Test
+    void matchesOtherFormsOfTheStemBelowExactMatches() {
+        exerciseSearchIndex.add(document(1, "читала"));
+        exerciseSearchIndex.add(document(2, "читав"));
+        exerciseSearchIndex.add(document(3, "писав"));
+
+        List<ExerciseSearchIndex.Hit> hits = exerciseSearchIndex.search("читав", null, null, null, 10);
+
+        assertEquals(List.of(2L, 1L), setIds(hits));
+    }
+
+    @Test
+    void shortTermsOnlyMatchExactly() {
+        exerciseSearchIndex.add(document(1, "cats"));
+        exerciseSearchIndex.add(document(2, "dog"));
+
+        assertTrue(exerciseSearchIndex.search("cat", null, null, null, 10).isEmpty());
+    }
+
+    @Test
+    void appliesFiltersAndLimit() {
+        exerciseSearchIndex.add(document(1, "ukrainian", "english", ExerciseDifficulty.A1, "verb"));
+        exerciseSearchIndex.add(document(2, "ukrainian", "english", ExerciseDifficulty.B1, "verb"));
+        exerciseSearchIndex.add(document(3, "polish", "english", ExerciseDifficulty.A1, "verb"));
+        exerciseSearchIndex.add(document(4, "polish", "german", ExerciseDifficulty.A1, "noun"));
+
+        assertEquals(List.of(2L, 1L), setIds(exerciseSearchIndex.search("verb", " Ukrainian ", null, null, 10)));
+        assertEquals(List.of(3L, 1L), setIds(exerciseSearchIndex.search("verb", null, null, ExerciseDifficulty.A1,
+                10)));
+        assertEquals(List.of(3L), setIds(exerciseSearchIndex.search("verb", null, "english", null, 1)));
+        assertTrue(exerciseSearchIndex.search("verb", null, null, null, 0).isEmpty());
+    }
+
+    static SearchDocument document(long setId, String... terms) {
+        return document(setId, "ukrainian", "english", ExerciseDifficulty.A2, terms);
+    }
+
+    static SearchDocument document(long setId, String exerciseLanguage, String userLanguage,
+                                   ExerciseDifficulty difficulty, String... terms) {
+        Map<String, Float> weights = new HashMap<>();
+        for (String term : terms) {
+            weights.merge(term, 1f, Float::sum);
+        }
+        return new SearchDocument(setId, CREATED_AT, exerciseLanguage, userLanguage, difficulty, weights,
+                terms.length);
+    }
+
+    static List<Long> setIds(List<ExerciseSearchIndex.Hit> hits) {
+        return hits.stream().map(ExerciseSearchIndex.Hit::setId).toList();
+    }
+}
@@ -0,0 +1,46 @@
+package com.vk.languagecoach.service.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchTokenizerTest {
+
+    @Test
+    void splitsWordsAndDropsPunctuation() {
+        assertEquals(List.of("past", "tense", "irregular", "verbs", "part", "2"),
+                SearchTokenizer.tokenize("Past tense — irregular verbs, part 2!", Locale.ENGLISH));
+    }
+
+    @Test
+    void foldsCaseAndDiacritics() {
+        assertEquals(List.of("читав", "книгу"), SearchTokenizer.tokenize("Чита́в КНИГУ", Locale.of("uk")));
+        assertEquals(List.of("cafe", "deja", "vu"), SearchTokenizer.tokenize("Café déjà vu", Locale.FRENCH));
+    }
+
+    @Test
+    void keepsEveryApostropheInsideWords() {
+        assertEquals(List.of("п'ять", "м'яч"), SearchTokenizer.tokenize("П’ять м'яч", Locale.of("uk")));
+        assertEquals(List.of("don't"), SearchTokenizer.tokenize("don’t", Locale.ENGLISH));
+    }
+
+    @Test
+    void emptyTextHasNoTerms() {
+        assertTrue(SearchTokenizer.tokenize(null, Locale.ROOT).isEmpty());
+        assertTrue(SearchTokenizer.tokenize("  ", Locale.ROOT).isEmpty());
+        assertTrue(SearchTokenizer.tokenize("— …", Locale.ROOT).isEmpty());
+    }
+
+    @Test
+    void resolvesLanguagesAsUsersTypeThem() {
+        assertEquals("uk", SearchTokenizer.locale("Ukrainian").getLanguage());
+        assertEquals("uk", SearchTokenizer.locale(" українська ").getLanguage());
+        assertEquals("uk", SearchTokenizer.locale("uk").getLanguage());
+        assertEquals(Locale.ROOT, SearchTokenizer.locale("Klingonese"));
+        assertEquals(Locale.ROOT, SearchTokenizer.locale(null));
+    }
+}
@@ -30,13 +30,14 @@ export const ExerciseForm: React.FC<ExerciseFormProps> = ({
                     <div className="label-with-tooltip">
                         Provider:
                         <Tooltip
-                            text="Choose the AI provider to generate exercises. GROQ is faster, OpenAI may provide more varied content.">
+                            text="Choose the AI provider to generate exercises. GROQ is faster, OpenAI may provide more varied content. AUTO picks the fastest healthy provider.">
                             <span className="tooltip-trigger">?</span>
                         </Tooltip>
                     </div>
                     <select name="provider" value={form.provider} onChange={onFormChange}>
                         <option value="GROQ">GROQ</option>
                         <option value="OPENAI">OPENAI</option>
+                        <option value="AUTO">AUTO</option>
                     </select>
                 </label>
             </div>
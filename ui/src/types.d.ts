@@ -1,5 +1,5 @@
 type ExerciseDifficulty = 'A1' | 'A2' | 'B1' | 'B2' | 'C1' | 'C2';
-type AIProvider = 'GROQ' | 'OPENAI';
+type AIProvider = 'GROQ' | 'OPENAI' | 'AUTO';
 
 interface ExerciseRequest {
     provider: AIProvider;